@@ -0,0 +1,30 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+import ch.tsphp.metrics.CompilationPhase;
+
+/**
+ * A task which processes a single compilation unit in a single phase.
+ */
+public abstract class AUnitPhaseRunner implements Runnable
+{
+    protected final String id;
+    protected final CompilationPhase phase;
+
+    protected AUnitPhaseRunner(String theId, CompilationPhase thePhase) {
+        id = theId;
+        phase = thePhase;
+    }
+
+    /**
+     * Is called after run() and is not measured, hence work which does not concern the unit belongs here.
+     */
+    protected void afterRun() {
+        //nothing to do per default
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+import ch.tsphp.common.IErrorLogger;
+import ch.tsphp.common.exceptions.TSPHPException;
+import ch.tsphp.metrics.CompilationPhase;
+import ch.tsphp.metrics.MetricsRecorder;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects the errors of a compilation, hands them to the registered error loggers (see
+ * {@link DiagnosticsDispatcher}) and aborts the compilation according to the {@link FailFastPolicy}.
+ * <p/>
+ * Errors which are logged via {@link #log(TSPHPException)} occur before the translation and abort it, errors which
+ * are logged via {@link #getTranslationErrorLogger()} do not abort the translation of the other compilation units.
+ */
+public class CompilationErrors implements IErrorLogger
+{
+    private final CompilationLifecycle lifecycle;
+    private final TaskScheduler scheduler;
+    private final MetricsRecorder metricsRecorder;
+    private final Collection<IErrorLogger> errorLoggers = new ArrayDeque<>();
+    private final DiagnosticsDispatcher diagnosticsDispatcher = new DiagnosticsDispatcher(errorLoggers);
+    private final Runnable diagnosticsDrainer = new Runnable()
+    {
+        @Override
+        public void run() {
+            diagnosticsDispatcher.drain();
+        }
+    };
+    private final IErrorLogger translationErrorLogger = new TranslationErrorLogger();
+    private final AtomicInteger numberOfErrors = new AtomicInteger();
+    /**
+     * Compilation units for which an error was logged during the current compilation, their translations are not
+     * cached.
+     */
+    private final Set<String> unitsWithErrors = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile FailFastPolicy failFastPolicy = FailFastPolicy.NEVER;
+    private volatile boolean hasFoundError = false;
+    private volatile boolean hasFoundErrorBeforeTranslation = false;
+
+    public CompilationErrors(CompilationLifecycle theLifecycle, TaskScheduler theScheduler,
+            MetricsRecorder theMetricsRecorder) {
+        lifecycle = theLifecycle;
+        scheduler = theScheduler;
+        metricsRecorder = theMetricsRecorder;
+    }
+
+    public void registerErrorLogger(IErrorLogger errorLogger) {
+        errorLoggers.add(errorLogger);
+    }
+
+    public void setMaxErrorsPerUnit(int maxErrorsPerUnit) {
+        diagnosticsDispatcher.setMaxErrorsPerUnit(maxErrorsPerUnit);
+    }
+
+    public void setFailFastPolicy(FailFastPolicy policy) {
+        failFastPolicy = policy;
+    }
+
+    public void clearRegistrations() {
+        errorLoggers.clear();
+        failFastPolicy = FailFastPolicy.NEVER;
+        diagnosticsDispatcher.setMaxErrorsPerUnit(DiagnosticsDispatcher.DEFAULT_MAX_ERRORS_PER_UNIT);
+    }
+
+    @Override
+    public void log(TSPHPException exception) {
+        hasFoundErrorBeforeTranslation = true;
+        informErrorLoggers(exception, lifecycle.getCurrentPhase());
+    }
+
+    public IErrorLogger getTranslationErrorLogger() {
+        return translationErrorLogger;
+    }
+
+    private void informErrorLoggers(TSPHPException exception, CompilationPhase phase) {
+        hasFoundError = true;
+        metricsRecorder.errorOccurred();
+        String unitId = scheduler.getCurrentUnitId();
+        if (unitId != null) {
+            unitsWithErrors.add(unitId);
+        }
+        if (diagnosticsDispatcher.add(unitId, exception)) {
+            if (scheduler.isRunningTask()) {
+                scheduleDiagnosticsDrain();
+            } else {
+                //not called by a worker of the compiler, hence there is no worker which could be held up
+                diagnosticsDrainer.run();
+            }
+        }
+        int errors = numberOfErrors.incrementAndGet();
+        if (!lifecycle.isAborted() && failFastPolicy.shallAbort(errors, phase) && lifecycle.abort()) {
+            log(new TSPHPException("Compilation aborted after " + errors + " error(s), the last one occurred in the "
+                    + "phase " + phase));
+        }
+    }
+
+    /**
+     * Hands the errors to the loggers on the I/O executor, hence slow loggers do not hold up the workers. The drain
+     * is not counted as pending task of the current phase, the last errors are drained when the compilation completes.
+     */
+    private void scheduleDiagnosticsDrain() {
+        if (diagnosticsDispatcher.tryScheduleDrain()) {
+            scheduler.executeIo(diagnosticsDrainer);
+        }
+    }
+
+    /**
+     * Hands the remaining errors to the loggers on the calling thread.
+     */
+    public void drain() {
+        diagnosticsDrainer.run();
+    }
+
+    public List<TSPHPException> getDeliveredDiagnostics() {
+        return diagnosticsDispatcher.getDeliveredDiagnostics();
+    }
+
+    public boolean hasFoundError() {
+        return hasFoundError;
+    }
+
+    public boolean hasFoundErrorBeforeTranslation() {
+        return hasFoundErrorBeforeTranslation;
+    }
+
+    public boolean hasFoundErrorIn(String id) {
+        return unitsWithErrors.contains(id);
+    }
+
+    public void reset() {
+        hasFoundError = false;
+        hasFoundErrorBeforeTranslation = false;
+        numberOfErrors.set(0);
+        unitsWithErrors.clear();
+        diagnosticsDispatcher.reset();
+    }
+
+    /**
+     * Error logger for translators - errors which occur during the translation do not abort the translation of the
+     * other compilation units.
+     */
+    private class TranslationErrorLogger implements IErrorLogger
+    {
+        @Override
+        public void log(TSPHPException exception) {
+            informErrorLoggers(exception, CompilationPhase.TRANSLATION);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Future of a compilation which is completed by the compiler itself once the compilation has completed, hence no
+ * thread is blocked on the compiler's side. Cancelling it cancels the compilation (see
+ * {@link IIncrementalCompiler#cancel()}).
+ */
+public class CompilationFuture implements Future<CompilationResultDto>
+{
+    private final IIncrementalCompiler compiler;
+    private final CountDownLatch completed = new CountDownLatch(1);
+    private volatile CompilationResultDto result;
+    private volatile boolean isCancelled;
+
+    public CompilationFuture(IIncrementalCompiler theCompiler) {
+        compiler = theCompiler;
+    }
+
+    public void complete(CompilationResultDto theResult) {
+        result = theResult;
+        completed.countDown();
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean isCancelling = !isDone();
+        if (isCancelling) {
+            isCancelled = true;
+            compiler.cancel();
+        }
+        return isCancelling;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return isCancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return completed.getCount() == 0;
+    }
+
+    /**
+     * Returns the result also if the future was cancelled (the result of the aborted compilation).
+     */
+    @Override
+    public CompilationResultDto get() throws InterruptedException {
+        completed.await();
+        return result;
+    }
+
+    @Override
+    @SuppressWarnings("checkstyle:throwscount")
+    public CompilationResultDto get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        if (!completed.await(timeout, unit)) {
+            throw new TimeoutException("The compilation did not complete within " + timeout + " " + unit);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+import ch.tsphp.common.ICompilerListener;
+import ch.tsphp.common.ITranslatorFactory;
+import ch.tsphp.exceptions.CompilerException;
+import ch.tsphp.metrics.CompilationPhase;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps track of the state of a compilation - whether it is ongoing, was aborted or timed out - measures the wall time
+ * of its phases and completes its result.
+ */
+public class CompilationLifecycle
+{
+    private final Object lock = new Object();
+    private volatile boolean isCompiling = false;
+    private boolean needReset = false;
+    /**
+     * Set if the compilation was cancelled or aborted by the fail-fast policy - queued tasks are dropped from then on.
+     */
+    private volatile boolean isAborted = false;
+    private volatile boolean isTranslationAborted = false;
+    private volatile boolean hasTimedOut = false;
+    /**
+     * Is completed when the current compilation has completed, null if it was not started via compileAsync().
+     */
+    private final AtomicReference<CompilationFuture> pendingResult = new AtomicReference<>();
+
+    /**
+     * The phase to which errors of the type checker are attributed, errors of translators belong to the translation.
+     */
+    private volatile CompilationPhase currentPhase = CompilationPhase.PARSE_AND_DEFINITION;
+    private final ConcurrentMap<CompilationPhase, Long> phaseWallTimes = new ConcurrentHashMap<>();
+    private volatile long compilationStartedAt;
+    private volatile long phaseStartedAt;
+
+    /**
+     * Starts a compilation and its time measurement.
+     *
+     * @throws CompilerException if the compiler needs a reset first.
+     */
+    public void start() {
+        boolean doesNotNeedReset;
+        synchronized (lock) {
+            doesNotNeedReset = !needReset;
+            isCompiling = true;
+            needReset = true;
+        }
+        if (!doesNotNeedReset) {
+            throw new CompilerException("Cannot compile during an ongoing compilation.");
+        }
+        startTimeMeasurement();
+    }
+
+    /**
+     * Starts a recompilation, its time measurement has to be started once the recompilation was prepared.
+     *
+     * @throws CompilerException if the compiler did not compile before or the units of the last compilation were not
+     *                           all processed or were released already.
+     */
+    public void startRecompilation(boolean hasReleasedCompilationUnits) {
+        boolean hasCompiledBefore;
+        synchronized (lock) {
+            if (isCompiling) {
+                throw new CompilerException("Cannot recompile during an ongoing compilation.");
+            }
+            if (isAborted) {
+                throw new CompilerException("The last compilation was aborted and did not process all compilation "
+                        + "units, use reset() first.");
+            }
+            if (hasReleasedCompilationUnits) {
+                throw new CompilerException("The compilation units were released after the last compilation (see "
+                        + "UnitRetentionPolicy), use reset() first.");
+            }
+            hasCompiledBefore = needReset;
+            isCompiling = hasCompiledBefore;
+        }
+        if (!hasCompiledBefore) {
+            throw new CompilerException("Nothing to recompile, use compile() first.");
+        }
+        resetState();
+        currentPhase = CompilationPhase.DEFINITION;
+    }
+
+    public void checkNotCompiling(String errorMessage) {
+        boolean hasStartedCompiling;
+        synchronized (lock) {
+            hasStartedCompiling = isCompiling;
+        }
+        if (hasStartedCompiling) {
+            throw new CompilerException(errorMessage);
+        }
+    }
+
+    public void checkNeedsNoReset(String errorMessage) {
+        boolean doesNeedReset;
+        synchronized (lock) {
+            doesNeedReset = needReset;
+        }
+        if (doesNeedReset) {
+            throw new CompilerException(errorMessage);
+        }
+    }
+
+    public boolean isCompiling() {
+        synchronized (lock) {
+            return isCompiling;
+        }
+    }
+
+    public boolean needsAReset() {
+        synchronized (lock) {
+            return needReset;
+        }
+    }
+
+    public boolean isAborted() {
+        return isAborted;
+    }
+
+    public boolean isTranslationAborted() {
+        return isTranslationAborted;
+    }
+
+    /**
+     * Prevents further translations, the translations of the current compilation are discarded once it completes.
+     */
+    public void abortTranslation() {
+        isTranslationAborted = true;
+    }
+
+    public void cancel() {
+        boolean isOngoing;
+        synchronized (lock) {
+            isOngoing = isCompiling;
+        }
+        if (isOngoing) {
+            abort();
+        }
+    }
+
+    /**
+     * Drops queued tasks and prevents further phases and translations, the completion of the compilation is
+     * signalled as soon as the running tasks have finished.
+     *
+     * @return true if the compilation was not aborted before.
+     */
+    public boolean abort() {
+        boolean hasAborted = false;
+        synchronized (lock) {
+            if (!isAborted) {
+                isAborted = true;
+                isTranslationAborted = true;
+                hasAborted = true;
+            }
+        }
+        return hasAborted;
+    }
+
+    /**
+     * Creates the future of the compilation which is about to be started.
+     *
+     * @throws CompilerException if a compilation is ongoing.
+     */
+    public CompilationFuture createPendingResult(IIncrementalCompiler compiler) {
+        CompilationFuture future = new CompilationFuture(compiler);
+        if (!pendingResult.compareAndSet(null, future)) {
+            throw new CompilerException("Cannot compile during an ongoing compilation.");
+        }
+        return future;
+    }
+
+    /**
+     * Discards the given future since its compilation could not be started.
+     */
+    public void discardPendingResult(CompilationFuture future) {
+        pendingResult.compareAndSet(future, null);
+    }
+
+    /**
+     * Waits for the result of the given future, the compilation is aborted if it does not complete within the given
+     * timeout and its result is awaited for at most the same time again.
+     *
+     * @throws CompilerException if the aborted compilation did not complete within the second wait either.
+     */
+    public CompilationResultDto await(CompilationFuture future, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        CompilationResultDto result;
+        try {
+            try {
+                result = future.get(timeout, unit);
+            } catch (TimeoutException ex) {
+                abortDueToTimeout(future);
+                result = future.get(timeout, unit);
+            }
+        } catch (TimeoutException ex) {
+            throw new CompilerException("The compilation was aborted due to the timeout but its running tasks did "
+                    + "not finish within the timeout either.", ex);
+        }
+        return result;
+    }
+
+    /**
+     * Aborts the compilation of the given future unless it has completed or was aborted already - atomically with
+     * respect to the creation of the result in {@link #complete}, hence a result is marked as timed out only if the
+     * abort took effect.
+     */
+    private void abortDueToTimeout(CompilationFuture future) {
+        synchronized (lock) {
+            if (pendingResult.get() == future && !isAborted) {
+                hasTimedOut = true;
+                abort();
+            }
+        }
+    }
+
+    public CompilationPhase getCurrentPhase() {
+        return currentPhase;
+    }
+
+    public void startTimeMeasurement() {
+        compilationStartedAt = System.nanoTime();
+        phaseStartedAt = compilationStartedAt;
+    }
+
+    /**
+     * Records the wall time of the current phase and starts the given one.
+     */
+    public void enterPhase(CompilationPhase phase) {
+        long now = System.nanoTime();
+        phaseWallTimes.put(currentPhase, now - phaseStartedAt);
+        phaseStartedAt = now;
+        currentPhase = phase;
+    }
+
+    /**
+     * Ends the compilation, informs the given listeners and completes the pending result if there is one.
+     */
+    public void complete(Collection<ICompilerListener> compilerListeners, CompilationErrors errors,
+            TranslationPublisher translationPublisher) {
+        long now = System.nanoTime();
+        phaseWallTimes.put(currentPhase, now - phaseStartedAt);
+        CompilationFuture future;
+        CompilationResultDto result;
+        synchronized (lock) {
+            future = pendingResult.getAndSet(null);
+            result = future != null ? createResult(now - compilationStartedAt, errors, translationPublisher) : null;
+        }
+        isCompiling = false;
+        for (ICompilerListener listener : compilerListeners) {
+            listener.afterCompilingCompleted();
+        }
+        if (future != null) {
+            future.complete(result);
+        }
+    }
+
+    private CompilationResultDto createResult(long wallTime, CompilationErrors errors,
+            TranslationPublisher translationPublisher) {
+        Map<CompilationPhase, Long> wallTimes = new EnumMap<>(CompilationPhase.class);
+        wallTimes.putAll(phaseWallTimes);
+        Map<ITranslatorFactory, Map<String, String>> translationsPerTarget = translationPublisher.copyTranslations();
+        Map<String, String> translationsOfFirstTarget = translationsPerTarget.isEmpty()
+                ? Collections.<String, String>emptyMap() : translationsPerTarget.values().iterator().next();
+        return new CompilationResultDto(translationsOfFirstTarget, translationsPerTarget,
+                errors.getDeliveredDiagnostics(), wallTimes, wallTime, errors.hasFoundError(), isAborted,
+                hasTimedOut);
+    }
+
+    public void reset() {
+        resetState();
+        currentPhase = CompilationPhase.PARSE_AND_DEFINITION;
+        synchronized (lock) {
+            needReset = false;
+        }
+    }
+
+    private void resetState() {
+        isAborted = false;
+        isTranslationAborted = false;
+        hasTimedOut = false;
+        phaseWallTimes.clear();
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+import ch.tsphp.common.ITranslatorFactory;
+import ch.tsphp.common.exceptions.TSPHPException;
+import ch.tsphp.metrics.CompilationPhase;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of a single compilation, see {@link IIncrementalCompiler#compileAndWait(long,
+ * java.util.concurrent.TimeUnit)}. All durations are in nanoseconds.
+ */
+public class CompilationResultDto
+{
+    /**
+     * The translations of the first translator factory per compilation unit (empty if translations are not retained
+     * or the compilation was aborted).
+     */
+    public final Map<String, String> translations;
+    /**
+     * The translations per translator factory (in the order of the factories) and per compilation unit.
+     */
+    public final Map<ITranslatorFactory, Map<String, String>> translationsPerTarget;
+    /**
+     * The errors in the order they were handed to the error loggers (without duplicates and suppressed errors, see
+     * {@link IIncrementalCompiler#setMaxErrorsPerUnit(int)}), including the errors which occurred while compilation
+     * units were added.
+     */
+    public final List<TSPHPException> diagnostics;
+    /**
+     * Wall time per phase, whereby a phase starts when the previous one has completed and the first one starts with
+     * the call of compile(). The translation starts when the type checking of all units has completed successfully
+     * (the units are translated in parallel to the type checking though). Phases which were not reached are missing.
+     */
+    public final Map<CompilationPhase, Long> phaseWallTimes;
+    public final long wallTime;
+    public final boolean hasFoundError;
+    public final boolean wasAborted;
+    public final boolean hasTimedOut;
+
+    public CompilationResultDto(Map<String, String> theTranslations,
+            Map<ITranslatorFactory, Map<String, String>> theTranslationsPerTarget, List<TSPHPException> theDiagnostics,
+            Map<CompilationPhase, Long> thePhaseWallTimes, long theWallTime, boolean hasFoundAnError,
+            boolean hasBeenAborted, boolean hasBeenTimedOut) {
+        translations = Collections.unmodifiableMap(theTranslations);
+        translationsPerTarget = Collections.unmodifiableMap(theTranslationsPerTarget);
+        diagnostics = Collections.unmodifiableList(theDiagnostics);
+        phaseWallTimes = Collections.unmodifiableMap(thePhaseWallTimes);
+        wallTime = theWallTime;
+        hasFoundError = hasFoundAnError;
+        wasAborted = hasBeenAborted;
+        hasTimedOut = hasBeenTimedOut;
+    }
+}
@@ -6,49 +6,30 @@
 
 package ch.tsphp;
 
-import ch.tsphp.common.CompilationUnitDto;
-import ch.tsphp.common.ICompiler;
+import ch.tsphp.cache.ITranslationCache;
 import ch.tsphp.common.ICompilerListener;
 import ch.tsphp.common.IErrorLogger;
 import ch.tsphp.common.IParser;
 import ch.tsphp.common.ITSPHPAstAdaptor;
-import ch.tsphp.common.ITranslator;
 import ch.tsphp.common.ITranslatorFactory;
 import ch.tsphp.common.ITypeChecker;
-import ch.tsphp.common.ParserUnitDto;
 import ch.tsphp.common.exceptions.TSPHPException;
-import ch.tsphp.exceptions.CompilerException;
-import org.antlr.runtime.tree.CommonTreeNodeStream;
+import ch.tsphp.io.BufferPoolStatisticsDto;
+import ch.tsphp.io.ReadBufferPool;
+import ch.tsphp.library.LibrarySummary;
+import ch.tsphp.metrics.IMetricsListener;
 
-import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayDeque;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
-public class Compiler implements ICompiler
+public class Compiler implements IIncrementalCompiler
 {
-
-    private final ITSPHPAstAdaptor astAdaptor;
-    private final IParser parser;
-    private final ITypeChecker typeChecker;
-    private final ExecutorService executorService;
-
-    private final Collection<ICompilerListener> compilerListeners = new ArrayDeque<>();
-    private final Collection<ITranslatorFactory> translatorFactories;
-
-    private Collection<CompilationUnitDto> compilationUnits = new ArrayDeque<>();
-    private final Collection<IErrorLogger> errorLoggers = new ArrayDeque<>();
-    private boolean isCompiling = false;
-    private boolean needReset = false;
-    private boolean hasFoundError = false;
-
-    private final Object lock = new Object();
-    private Map<String, String> translations = new HashMap<>();
-    private Collection<Future> tasks = new ArrayDeque<>();
+    private final CompilerComponentsDto components;
+    private final PhaseEngine phaseEngine;
 
     public Compiler(
             ITSPHPAstAdaptor theAstAdaptor,
@@ -56,435 +37,296 @@ public class Compiler implements ICompiler
             ITypeChecker theTypeChecker,
             Collection<ITranslatorFactory> theTranslatorFactories,
             ExecutorService theExecutorService) {
+        this(new CompilerComponentsFactory(theExecutorService, theExecutorService).create(
+                theAstAdaptor, theParser, theTypeChecker, theTranslatorFactories));
+    }
 
-        astAdaptor = theAstAdaptor;
-        typeChecker = theTypeChecker;
-        parser = theParser;
-        translatorFactories = theTranslatorFactories;
-        executorService = theExecutorService;
+    /**
+     * Creates a compiler which works with the given collaborators, see {@link CompilerComponentsFactory}.
+     */
+    public Compiler(CompilerComponentsDto theComponents) {
+        components = theComponents;
+        phaseEngine = new PhaseEngine(components);
 
         init();
     }
 
     private void init() {
-        parser.registerErrorLogger(this);
-        typeChecker.registerErrorLogger(this);
+        components.parser.registerErrorLogger(this);
+        components.typeChecker.registerErrorLogger(this);
     }
 
     @Override
     public void registerCompilerListener(ICompilerListener listener) {
-        compilerListeners.add(listener);
+        phaseEngine.registerCompilerListener(listener);
     }
 
     @Override
     public boolean hasFoundError() {
-        boolean hasStartedCompiling;
-        synchronized (lock) {
-            hasStartedCompiling = isCompiling;
-        }
-        if (hasStartedCompiling) {
-            throw new CompilerException("Cannot check for exceptions during compilation.");
-        }
-        return hasFoundError;
+        components.lifecycle.checkNotCompiling("Cannot check for exceptions during compilation.");
+        return components.errors.hasFoundError();
     }
 
     @Override
     public void registerErrorLogger(IErrorLogger errorLogger) {
-        errorLoggers.add(errorLogger);
+        components.errors.registerErrorLogger(errorLogger);
     }
 
     @Override
     public void log(TSPHPException exception) {
-        hasFoundError = true;
-        for (IErrorLogger logger : errorLoggers) {
-            logger.log(exception);
-        }
+        components.errors.log(exception);
     }
 
     @Override
-    public void addCompilationUnit(String id, final String string) {
-        add(new ParseAndDefinitionPhaseRunner(id, new IParserMethod()
-        {
-            @Override
-            public ParserUnitDto parser(IParser theParser) {
-                return theParser.parse(string);
-            }
-        }));
+    public void setMaxErrorsPerUnit(int maxErrorsPerUnit) {
+        components.lifecycle.checkNotCompiling(
+                "Cannot change the maximum number of errors per unit during compilation.");
+        components.errors.setMaxErrorsPerUnit(maxErrorsPerUnit);
     }
 
-    private void add(ParseAndDefinitionPhaseRunner runner) {
-        boolean doesNotNeedReset;
-        synchronized (lock) {
-            doesNotNeedReset = !needReset;
-        }
-        if (doesNotNeedReset) {
-            tasks.add(executorService.submit(runner));
-        } else {
-            throw new CompilerException("Tried to parse after calling compile(). If compilation was finished "
-                    + "and you wish to recompile, then use reset() first.");
-        }
+    @Override
+    public void setFailFastPolicy(FailFastPolicy policy) {
+        components.lifecycle.checkNotCompiling("Cannot change the fail-fast policy during compilation.");
+        components.errors.setFailFastPolicy(policy);
     }
 
     @Override
-    public void addCompilationUnit(String id, final char[] chars, final int numberOfActualCharsInArray) {
-        add(new ParseAndDefinitionPhaseRunner(id, new IParserMethod()
-        {
-            @Override
-            public ParserUnitDto parser(IParser theParser) {
-                return theParser.parse(chars, numberOfActualCharsInArray);
-            }
-        }));
+    public void cancel() {
+        components.lifecycle.cancel();
     }
 
-    @Override
-    public void addCompilationUnit(String id, final InputStream inputStream) throws IOException {
-        add(new ParseAndDefinitionPhaseRunner(id, new IParserMethod()
-        {
-            @Override
-            public ParserUnitDto parser(IParser theParser) throws IOException {
-                return theParser.parseInputStream(inputStream);
-            }
-        }));
+    /**
+     * Lets {@link #shutdown()} shut down the given executor.
+     */
+    void takeOwnershipOf(ExecutorService theExecutorService) {
+        components.scheduler.takeOwnershipOf(theExecutorService);
     }
 
     @Override
-    public void addCompilationUnit(String id, final InputStream inputStream, final int size) throws IOException {
-        add(new ParseAndDefinitionPhaseRunner(id, new IParserMethod()
-        {
-            @Override
-            public ParserUnitDto parser(IParser theParser) throws IOException {
-                return theParser.parseInputStream(inputStream, size);
-            }
-        }));
+    public void shutdown() {
+        components.scheduler.shutdown();
     }
 
     @Override
-    public void addCompilationUnit(String id, final InputStream inputStream, final String encoding) throws IOException {
-        add(new ParseAndDefinitionPhaseRunner(id, new IParserMethod()
-        {
-            @Override
-            public ParserUnitDto parser(IParser theParser) throws IOException {
-                return theParser.parseInputStream(inputStream, encoding);
-            }
-        }));
+    public void setUnitRetentionPolicy(UnitRetentionPolicy policy) {
+        components.lifecycle.checkNotCompiling("Cannot change the unit retention policy during compilation.");
+        components.unitRetention.setUnitRetentionPolicy(policy);
     }
 
     @Override
-    public void addCompilationUnit(String id, final InputStream inputStream, final int initialBufferSize,
-            final String encoding)
-            throws IOException {
-        add(new ParseAndDefinitionPhaseRunner(id, new IParserMethod()
-        {
-            @Override
-            public ParserUnitDto parser(IParser theParser) throws IOException {
-                return theParser.parseInputStream(inputStream, initialBufferSize, encoding);
-            }
-        }));
+    public boolean wasAborted() {
+        components.lifecycle.checkNotCompiling("Cannot check for an abort during compilation.");
+        return components.lifecycle.isAborted();
     }
 
     @Override
-    public void addCompilationUnit(String id, final InputStream inputStream, final int initialBufferSize,
-            final int readBufferSize,
-            final String encoding) throws IOException {
-        add(new ParseAndDefinitionPhaseRunner(id, new IParserMethod()
-        {
-            @Override
-            public ParserUnitDto parser(IParser theParser) throws IOException {
-                return theParser.parseInputStream(inputStream, initialBufferSize, readBufferSize, encoding);
-            }
-        }));
+    public void addCompilationUnit(String id, String string) {
+        phaseEngine.add(id, components.parserMethodFactory.createParserMethod(string));
     }
 
     @Override
-    public void addFile(final String pathToFileInclFileName) throws IOException {
-        add(new ParseAndDefinitionPhaseRunner(pathToFileInclFileName, new IParserMethod()
-        {
-            @Override
-            public ParserUnitDto parser(IParser theParser) throws IOException {
-                return theParser.parseFile(pathToFileInclFileName);
-            }
-        }));
+    public void addCompilationUnit(String id, char[] chars, int numberOfActualCharsInArray) {
+        phaseEngine.add(id, components.parserMethodFactory.createParserMethod(chars, numberOfActualCharsInArray));
     }
 
     @Override
-    public void addFile(final String pathToFileInclFileName, final String encoding) throws IOException {
-        add(new ParseAndDefinitionPhaseRunner(pathToFileInclFileName, new IParserMethod()
-        {
-            @Override
-            public ParserUnitDto parser(IParser theParser) throws IOException {
-                return theParser.parseFile(pathToFileInclFileName, encoding);
-            }
-        }));
+    public void addCompilationUnit(String id, InputStream inputStream) {
+        addCompilationUnit(id, inputStream, ReadBufferPool.DEFAULT_INITIAL_BUFFER_SIZE, null);
     }
 
     @Override
-    public void compile() {
-        boolean doesNotNeedReset;
-        synchronized (lock) {
-            doesNotNeedReset = !needReset;
-            isCompiling = true;
-            needReset = true;
-        }
-        if (doesNotNeedReset) {
-            waitUntilExecutorFinished(new Runnable()
-            {
-                @Override
-                public void run() {
-                    doReferencePhase();
-                }
-            });
-        } else {
-            throw new CompilerException("Cannot compile during an ongoing compilation.");
-        }
+    public void addCompilationUnit(String id, InputStream inputStream, int size) {
+        addCompilationUnit(id, inputStream, size, null);
     }
 
     @Override
-    public boolean isCompiling() {
-        synchronized (lock) {
-            return isCompiling;
-        }
+    public void addCompilationUnit(String id, InputStream inputStream, String encoding) {
+        addCompilationUnit(id, inputStream, ReadBufferPool.DEFAULT_INITIAL_BUFFER_SIZE, encoding);
     }
 
     @Override
-    public boolean needsAReset() {
-        synchronized (lock) {
-            return needReset;
-        }
+    public void addCompilationUnit(String id, InputStream inputStream, int initialBufferSize, String encoding)
+            {
+        addCompilationUnit(id, inputStream, initialBufferSize, ReadBufferPool.DEFAULT_READ_BUFFER_SIZE, encoding);
     }
 
+    /**
+     * The stream is read with the buffers of the {@link ReadBufferPool} of the executing thread rather than with
+     * buffers which the parser allocates per compilation unit.
+     */
     @Override
-    public void reset() {
-        boolean hasStartedCompiling;
-        synchronized (lock) {
-            hasStartedCompiling = isCompiling;
-        }
-        if (hasStartedCompiling) {
-            throw new CompilerException("Cannot reset during compilation.");
-        }
-        typeChecker.reset();
-        parser.reset();
-        compilationUnits = new ArrayDeque<>();
-        translations = new HashMap<>();
-        hasFoundError = false;
-        needReset = false;
-
-    }
-
-    @SuppressWarnings("checkstyle:illegalcatch")
-    private void waitUntilExecutorFinished(final Runnable callback) {
-        new Thread(new Runnable()
-        {
-            @Override
-            public void run() {
-                try {
-                    for (Future task : tasks) {
-                        task.get();
-                    }
-                    tasks = new ArrayDeque<>();
-                    callback.run();
-                } catch (Exception ex) {
-                    log(new TSPHPException("Unexpected exception occurred: " + ex.getMessage(), ex));
-                }
-            }
-        }).start();
-
-    }
-
-    private void doReferencePhase() {
-        informParsingDefinitionCompleted();
-        if (!compilationUnits.isEmpty()) {
-            for (CompilationUnitDto compilationUnit : compilationUnits) {
-                tasks.add(executorService.submit(new ReferencePhaseRunner(compilationUnit)));
-            }
-            waitUntilExecutorFinished(new Runnable()
-            {
-                @Override
-                public void run() {
-                    doTypeChecking();
-                }
-            });
-        } else {
-            log(new TSPHPException("No compilation units specified"));
-            informCompilingCompleted();
-        }
+    public void addCompilationUnit(String id, InputStream inputStream, int initialBufferSize, int readBufferSize,
+            String encoding) {
+        phaseEngine.add(id, components.parserMethodFactory.createParserMethod(
+                inputStream, initialBufferSize, readBufferSize, encoding));
     }
 
-    private void doTypeChecking() {
-        informReferenceCompleted();
-        if (!compilationUnits.isEmpty()) {
-            for (CompilationUnitDto compilationUnit : compilationUnits) {
-                tasks.add(executorService.submit(new TypeCheckRunner(compilationUnit)));
-            }
-            waitUntilExecutorFinished(new Runnable()
-            {
-                @Override
-                public void run() {
-                    doTranslation();
-                }
-            });
-        } else {
-            log(new TSPHPException("No compilation units specified"));
-            informCompilingCompleted();
-        }
+    @Override
+    public void addFile(String pathToFileInclFileName) {
+        addFile(pathToFileInclFileName, null);
     }
 
-    private void doTranslation() {
-        informTypeCheckingCompleted();
-        if (!hasFoundError) {
-            if (translatorFactories != null && translatorFactories.size() > 0) {
-                for (final ITranslatorFactory translatorFactory : translatorFactories) {
-                    for (final CompilationUnitDto compilationUnit : compilationUnits) {
-                        tasks.add(executorService.submit(new TranslatorRunner(translatorFactory, compilationUnit)));
-                    }
-                }
-                waitUntilExecutorFinished(new Runnable()
-                {
-                    @Override
-                    public void run() {
-                        informCompilingCompleted();
-                    }
-                });
-            } else {
-                log(new TSPHPException("No translator factories specified"));
-                informCompilingCompleted();
-            }
+    @Override
+    public void addFile(String pathToFileInclFileName, String encoding) {
+        if (components.scheduler.hasSeparateIoExecutor()) {
+            phaseEngine.addFromLoader(pathToFileInclFileName,
+                    components.parserMethodFactory.createFileLoader(pathToFileInclFileName, encoding));
         } else {
-            log(new TSPHPException("Translation aborted due to occurred errors"));
-            informCompilingCompleted();
+            phaseEngine.add(pathToFileInclFileName,
+                    components.parserMethodFactory.createFileParserMethod(pathToFileInclFileName, encoding));
         }
     }
 
     @Override
-    public Map<String, String> getTranslations() {
-        return translations;
+    public void addFiles(Collection<String> pathsToFilesInclFileName) {
+        addFiles(pathsToFilesInclFileName, null);
     }
 
-    private void informParsingDefinitionCompleted() {
-        for (ICompilerListener listener : compilerListeners) {
-            listener.afterParsingAndDefinitionPhaseCompleted();
+    @Override
+    public void addFiles(Collection<String> pathsToFilesInclFileName, String encoding) {
+        //the largest files are added first so that they do not end up as critical path of the parsing phase
+        for (String path : components.parserMethodFactory.orderLargestFirst(pathsToFilesInclFileName)) {
+            addFile(path, encoding);
         }
     }
 
-    private void informReferenceCompleted() {
-        for (ICompilerListener listener : compilerListeners) {
-            listener.afterReferencePhaseCompleted();
-        }
+    @Override
+    public void addLibrarySummary(LibrarySummary librarySummary) {
+        phaseEngine.addLibrarySummary(librarySummary);
     }
 
-    private void informTypeCheckingCompleted() {
-        for (ICompilerListener listener : compilerListeners) {
-            listener.afterTypecheckingCompleted();
-        }
+    @Override
+    public void updateCompilationUnit(String id, String string) {
+        components.lifecycle.checkNotCompiling("Cannot apply changes during compilation.");
+        components.incrementalState.update(id, components.parserMethodFactory.createParserMethod(string));
     }
 
-    private void informCompilingCompleted() {
-        isCompiling = false;
-        for (ICompilerListener listener : compilerListeners) {
-            listener.afterCompilingCompleted();
-        }
+    @Override
+    public void updateFile(String pathToFileInclFileName) {
+        updateFile(pathToFileInclFileName, null);
     }
 
-    /**
-     * Delegate of a parser method which returns a ParserUnitDto.
-     */
-    private interface IParserMethod
-    {
+    @Override
+    public void updateFile(String pathToFileInclFileName, String encoding) {
+        components.lifecycle.checkNotCompiling("Cannot apply changes during compilation.");
+        components.incrementalState.update(pathToFileInclFileName,
+                components.parserMethodFactory.createFileParserMethod(pathToFileInclFileName, encoding));
+    }
 
-        ParserUnitDto parser(IParser parser) throws IOException;
+    @Override
+    public void removeCompilationUnit(String id) {
+        components.lifecycle.checkNotCompiling("Cannot apply changes during compilation.");
+        components.incrementalState.remove(id);
     }
 
-    private class ParseAndDefinitionPhaseRunner implements Runnable
-    {
+    @Override
+    public Collection<String> getDependentCompilationUnits(String id) {
+        return components.incrementalState.getDependentCompilationUnits(id);
+    }
 
-        private final IParserMethod parserMethod;
-        private final String id;
+    @Override
+    public void setTranslationCache(ITranslationCache theTranslationCache) {
+        components.lifecycle.checkNotCompiling("Cannot change the translation cache during compilation.");
+        components.incrementalState.setTranslationCache(theTranslationCache);
+    }
 
-        public ParseAndDefinitionPhaseRunner(String theId, IParserMethod aParserMethod) {
-            parserMethod = aParserMethod;
-            id = theId;
-        }
+    @Override
+    public void registerTranslationListener(ITranslationListener listener) {
+        components.translationPublisher.registerTranslationListener(listener);
+    }
 
-        @Override
-        @SuppressWarnings("checkstyle:illegalcatch")
-        public void run() {
-            try {
-                ParserUnitDto parserUnit = parserMethod.parser(parser);
-                CommonTreeNodeStream commonTreeNodeStream = new CommonTreeNodeStream(
-                        astAdaptor, parserUnit.compilationUnit);
-                commonTreeNodeStream.setTokenStream(parserUnit.tokenStream);
-
-                typeChecker.enrichWithDefinitions(parserUnit.compilationUnit, commonTreeNodeStream);
-                compilationUnits.add(new CompilationUnitDto(id, parserUnit.compilationUnit, commonTreeNodeStream));
-
-            } catch (Exception ex) {
-                log(new TSPHPException("Unexpected exception occurred: " + ex.getMessage(), ex));
-            }
-        }
+    @Override
+    public void registerMetricsListener(IMetricsListener listener) {
+        components.metricsRecorder.registerListener(listener);
     }
 
-    private class ReferencePhaseRunner implements Runnable
-    {
+    @Override
+    public void clearRegistrations() {
+        components.lifecycle.checkNotCompiling("Cannot clear the registrations during compilation.");
+        phaseEngine.clearCompilerListeners();
+        components.errors.clearRegistrations();
+        components.translationPublisher.clearRegistrations();
+        components.metricsRecorder.clearListeners();
+        components.incrementalState.setTranslationCache(null);
+        components.unitRetention.setUnitRetentionPolicy(UnitRetentionPolicy.RETAIN_FOR_RECOMPILATION);
+    }
 
-        private final CompilationUnitDto dto;
+    @Override
+    public BufferPoolStatisticsDto getBufferPoolStatistics() {
+        return components.parserMethodFactory.getBufferPoolStatistics();
+    }
 
-        ReferencePhaseRunner(CompilationUnitDto aDto) {
-            dto = aDto;
-        }
+    @Override
+    public void setRetainTranslations(boolean shallRetainTranslations) {
+        components.translationPublisher.setRetainTranslations(shallRetainTranslations);
+    }
 
-        @Override
-        @SuppressWarnings("checkstyle:illegalcatch")
-        public void run() {
-            try {
-                typeChecker.enrichWithReferences(dto.compilationUnit, dto.treeNodeStream);
-            } catch (Exception ex) {
-                log(new TSPHPException("Unexpected exception occurred: " + ex.getMessage(), ex));
-            }
-        }
+    @Override
+    public void compile() {
+        phaseEngine.compile(false);
     }
 
-    private class TypeCheckRunner implements Runnable
-    {
+    /**
+     * Compiles on the calling thread as well and blocks until the compilation has completed.
+     * <p/>
+     * If the compilation does not complete within the given timeout, it is aborted and its result is awaited for at
+     * most the same time again. The result is marked as timed out only if the abort actually stopped work, a
+     * compilation which completed in the meantime is returned as it is.
+     *
+     * @throws ch.tsphp.exceptions.CompilerException if the aborted compilation did not complete within the second
+     *                                                wait either.
+     */
+    @Override
+    public CompilationResultDto compileAndWait(long timeout, TimeUnit unit) throws InterruptedException {
+        //the calling thread waits anyway and can hence release the hold of the parsing phase itself
+        return components.lifecycle.await(phaseEngine.startCompilation(this, true), timeout, unit);
+    }
 
-        private final CompilationUnitDto dto;
+    @Override
+    public Future<CompilationResultDto> compileAsync() {
+        return phaseEngine.startCompilation(this, false);
+    }
 
-        TypeCheckRunner(CompilationUnitDto aDto) {
-            dto = aDto;
-        }
+    /**
+     * Recompiles the changed compilation units as well as the units which depend on them.
+     * <p/>
+     * The type checker does not support to remove single definitions from its symbol tables. Hence it is reset and
+     * the definition and reference phase are run again for all compilation units - only changed units are parsed
+     * again though. Type checking and translation on the other hand are only done for the changed units, the units
+     * which depend on them and the units which were not translated successfully during the last compilation.
+     */
+    @Override
+    public void recompile() {
+        phaseEngine.recompile();
+    }
 
-        @Override
-        @SuppressWarnings("checkstyle:illegalcatch")
-        public void run() {
-            try {
-                typeChecker.doTypeChecking(dto.compilationUnit, dto.treeNodeStream);
-            } catch (Exception ex) {
-                log(new TSPHPException("Unexpected exception occurred: " + ex.getMessage(), ex));
-            }
-        }
+    @Override
+    public boolean isCompiling() {
+        return components.lifecycle.isCompiling();
     }
 
-    private class TranslatorRunner implements Runnable
-    {
+    @Override
+    public boolean needsAReset() {
+        return components.lifecycle.needsAReset();
+    }
 
-        private final CompilationUnitDto dto;
-        private final ITranslatorFactory translatorFactory;
+    @Override
+    public void reset() {
+        components.lifecycle.checkNotCompiling("Cannot reset during compilation.");
+        phaseEngine.reset();
+    }
 
-        public TranslatorRunner(ITranslatorFactory theTranslatorFactory, CompilationUnitDto compilationUnit) {
-            translatorFactory = theTranslatorFactory;
-            dto = compilationUnit;
-        }
+    /**
+     * Returns the translations of the first translator factory, see {@link #getTranslationsPerTarget()} for the
+     * translations of all translator factories.
+     */
+    @Override
+    public Map<String, String> getTranslations() {
+        return components.translationPublisher.getTranslations();
+    }
 
-        @Override
-        @SuppressWarnings("checkstyle:illegalcatch")
-        public void run() {
-            try {
-                dto.treeNodeStream.reset();
-                ITranslator translator = translatorFactory.build();
-                translator.registerErrorLogger(Compiler.this);
-                String translation = translator.translate(dto.treeNodeStream);
-                translations.put(dto.id, translation);
-            } catch (Exception ex) {
-                log(new TSPHPException("Unexpected exception occurred: " + ex.getMessage(), ex));
-            }
-        }
+    @Override
+    public Map<ITranslatorFactory, Map<String, String>> getTranslationsPerTarget() {
+        return components.translationPublisher.getTranslationsPerTarget();
     }
 }
@@ -0,0 +1,61 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+import ch.tsphp.common.IParser;
+import ch.tsphp.common.ITSPHPAstAdaptor;
+import ch.tsphp.common.ITranslatorFactory;
+import ch.tsphp.common.ITypeChecker;
+import ch.tsphp.metrics.MetricsRecorder;
+
+import java.util.Collection;
+
+/**
+ * The collaborators of a {@link Compiler}, see {@link CompilerComponentsFactory}.
+ */
+public class CompilerComponentsDto
+{
+    public final ITSPHPAstAdaptor astAdaptor;
+    public final IParser parser;
+    public final ITypeChecker typeChecker;
+    public final Collection<ITranslatorFactory> translatorFactories;
+    public final CompilationLifecycle lifecycle;
+    public final MetricsRecorder metricsRecorder;
+    public final TaskScheduler scheduler;
+    public final CompilationErrors errors;
+    public final IncrementalState incrementalState;
+    public final TranslationPublisher translationPublisher;
+    public final UnitRetention unitRetention;
+    public final ParserMethodFactory parserMethodFactory;
+
+    public CompilerComponentsDto(
+            ITSPHPAstAdaptor theAstAdaptor,
+            IParser theParser,
+            ITypeChecker theTypeChecker,
+            Collection<ITranslatorFactory> theTranslatorFactories,
+            CompilationLifecycle theLifecycle,
+            MetricsRecorder theMetricsRecorder,
+            TaskScheduler theScheduler,
+            CompilationErrors theErrors,
+            IncrementalState theIncrementalState,
+            TranslationPublisher theTranslationPublisher,
+            UnitRetention theUnitRetention,
+            ParserMethodFactory theParserMethodFactory) {
+        astAdaptor = theAstAdaptor;
+        parser = theParser;
+        typeChecker = theTypeChecker;
+        translatorFactories = theTranslatorFactories;
+        lifecycle = theLifecycle;
+        metricsRecorder = theMetricsRecorder;
+        scheduler = theScheduler;
+        errors = theErrors;
+        incrementalState = theIncrementalState;
+        translationPublisher = theTranslationPublisher;
+        unitRetention = theUnitRetention;
+        parserMethodFactory = theParserMethodFactory;
+    }
+}
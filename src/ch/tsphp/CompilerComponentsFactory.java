@@ -0,0 +1,49 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+import ch.tsphp.common.IParser;
+import ch.tsphp.common.ITSPHPAstAdaptor;
+import ch.tsphp.common.ITranslatorFactory;
+import ch.tsphp.common.ITypeChecker;
+import ch.tsphp.metrics.MetricsRecorder;
+
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Creates the collaborators of a {@link Compiler} which runs the CPU bound phases on the given executorService and
+ * blocking I/O on the given ioExecutorService.
+ * <p/>
+ * If both are the same, then files are read by the parser within the parsing and definition phase.
+ */
+public class CompilerComponentsFactory
+{
+    private final ExecutorService executorService;
+    private final ExecutorService ioExecutorService;
+
+    public CompilerComponentsFactory(ExecutorService theExecutorService, ExecutorService theIoExecutorService) {
+        executorService = theExecutorService;
+        ioExecutorService = theIoExecutorService;
+    }
+
+    public CompilerComponentsDto create(ITSPHPAstAdaptor astAdaptor, IParser parser, ITypeChecker typeChecker,
+            Collection<ITranslatorFactory> translatorFactories) {
+        CompilationLifecycle lifecycle = new CompilationLifecycle();
+        MetricsRecorder metricsRecorder = new MetricsRecorder();
+        TaskScheduler scheduler = new TaskScheduler(executorService, ioExecutorService, lifecycle, metricsRecorder);
+        CompilationErrors errors = new CompilationErrors(lifecycle, scheduler, metricsRecorder);
+        scheduler.registerErrorLogger(errors);
+        IncrementalState incrementalState = new IncrementalState(translatorFactories);
+
+        return new CompilerComponentsDto(astAdaptor, parser, typeChecker, translatorFactories, lifecycle,
+                metricsRecorder, scheduler, errors, incrementalState,
+                new TranslationPublisher(translatorFactories, scheduler, errors, incrementalState),
+                new UnitRetention(typeChecker, incrementalState),
+                new ParserMethodFactory());
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+import ch.tsphp.common.ISymbol;
+import ch.tsphp.common.ITSPHPAst;
+import org.antlr.runtime.tree.Tree;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps track of which compilation unit uses symbols defined in which other compilation units.
+ */
+public class DependencyGraph
+{
+    private final ConcurrentMap<String, Set<String>> dependencies = new ConcurrentHashMap<>();
+
+    /**
+     * Determines the compilation units the given compilation unit depends on and stores them.
+     *
+     * @param id              the id of the compilation unit
+     * @param compilationUnit the already enriched AST of the compilation unit
+     * @param ids             maps the root of each compilation unit to its id
+     */
+    public void update(String id, ITSPHPAst compilationUnit, Map<ITSPHPAst, String> ids) {
+        Set<String> dependenciesOfUnit = new HashSet<>();
+        Deque<ITSPHPAst> asts = new ArrayDeque<>();
+        asts.push(compilationUnit);
+        while (!asts.isEmpty()) {
+            ITSPHPAst ast = asts.pop();
+            String definingUnit = getDefiningCompilationUnit(ast.getSymbol(), ids);
+            if (definingUnit != null) {
+                dependenciesOfUnit.add(definingUnit);
+            }
+            for (int i = 0; i < ast.getChildCount(); ++i) {
+                asts.push(ast.getChild(i));
+            }
+        }
+        dependenciesOfUnit.remove(id);
+        dependencies.put(id, Collections.unmodifiableSet(dependenciesOfUnit));
+    }
+
+    private String getDefiningCompilationUnit(ISymbol symbol, Map<ITSPHPAst, String> ids) {
+        String id = null;
+        if (symbol != null && symbol.getDefinitionAst() != null) {
+            Tree root = symbol.getDefinitionAst();
+            while (root.getParent() != null) {
+                root = root.getParent();
+            }
+            id = ids.get(root);
+        }
+        return id;
+    }
+
+    public void remove(String id) {
+        dependencies.remove(id);
+    }
+
+    public void clear() {
+        dependencies.clear();
+    }
+
+    public Set<String> getDependencies(String id) {
+        Set<String> dependenciesOfUnit = dependencies.get(id);
+        return dependenciesOfUnit != null ? dependenciesOfUnit : Collections.<String>emptySet();
+    }
+
+    /**
+     * Returns the ids of the compilation units the given unit depends on directly or indirectly (excluding itself).
+     */
+    public Set<String> getTransitiveDependencies(String id) {
+        Set<String> transitiveDependencies = new HashSet<>();
+        Deque<String> ids = new ArrayDeque<>();
+        ids.push(id);
+        while (!ids.isEmpty()) {
+            for (String dependency : getDependencies(ids.pop())) {
+                if (transitiveDependencies.add(dependency)) {
+                    ids.push(dependency);
+                }
+            }
+        }
+        transitiveDependencies.remove(id);
+        return transitiveDependencies;
+    }
+
+    /**
+     * Returns the ids of the compilation units which use at least one symbol defined in one of the given units.
+     */
+    public Set<String> getDependents(Collection<String> ids) {
+        Set<String> dependents = new HashSet<>();
+        for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+            if (!Collections.disjoint(entry.getValue(), ids)) {
+                dependents.add(entry.getKey());
+            }
+        }
+        return dependents;
+    }
+
+    /**
+     * Returns the ids of the compilation units which depend directly or indirectly on one of the given units
+     * (excluding the given units unless they depend on each other).
+     */
+    public Set<String> getTransitiveDependents(Collection<String> ids) {
+        Set<String> transitiveDependents = new HashSet<>();
+        Collection<String> unitsToVisit = ids;
+        while (!unitsToVisit.isEmpty()) {
+            Set<String> dependents = getDependents(unitsToVisit);
+            dependents.removeAll(transitiveDependents);
+            transitiveDependents.addAll(dependents);
+            unitsToVisit = dependents;
+        }
+        return transitiveDependents;
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+import ch.tsphp.common.exceptions.TSPHPException;
+
+/**
+ * An error together with the unit it belongs to and its position in the unit (-1 if unknown), see
+ * {@link DiagnosticsDispatcher}.
+ */
+class DiagnosticDto
+{
+    public final String unitId;
+    public final TSPHPException exception;
+    public final int line;
+    public final int charPositionInLine;
+    /**
+     * The order in which the errors were queued.
+     */
+    public final long sequence;
+
+    DiagnosticDto(String theUnitId, TSPHPException theException, int theLine, int theCharPositionInLine,
+            long theSequence) {
+        unitId = theUnitId;
+        exception = theException;
+        line = theLine;
+        charPositionInLine = theCharPositionInLine;
+        sequence = theSequence;
+    }
+}
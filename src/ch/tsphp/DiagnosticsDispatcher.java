@@ -0,0 +1,216 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+import ch.tsphp.common.IErrorLogger;
+import ch.tsphp.common.ITSPHPAst;
+import ch.tsphp.common.exceptions.DefinitionException;
+import ch.tsphp.common.exceptions.ReferenceException;
+import ch.tsphp.common.exceptions.TSPHPException;
+import ch.tsphp.common.exceptions.UnexpectedTokenException;
+import org.antlr.runtime.RecognitionException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decouples the threads which report errors from the error loggers.
+ * <p/>
+ * Errors are put into a lock-free queue whereby identical messages of the same compilation unit are dropped and at
+ * most maxErrorsPerUnit errors per unit are kept. A single consumer (see {@link #drain()}) hands them to the loggers in
+ * batches, each batch ordered by compilation unit and position.
+ */
+public class DiagnosticsDispatcher
+{
+    public static final int DEFAULT_MAX_ERRORS_PER_UNIT = 100;
+
+    private final Collection<IErrorLogger> errorLoggers;
+    private final Queue<DiagnosticDto> pendingDiagnostics = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean isDrainScheduled = new AtomicBoolean();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ConcurrentMap<String, Boolean> reportedMessages = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicInteger> numberOfErrorsPerUnit = new ConcurrentHashMap<>();
+    private final Queue<TSPHPException> deliveredDiagnostics = new ConcurrentLinkedQueue<>();
+    private volatile int maxErrorsPerUnit = DEFAULT_MAX_ERRORS_PER_UNIT;
+
+    /**
+     * @param theErrorLoggers The loggers which receive the errors, the collection is not copied and hence loggers can
+     *                        still be added later on.
+     */
+    public DiagnosticsDispatcher(Collection<IErrorLogger> theErrorLoggers) {
+        errorLoggers = theErrorLoggers;
+    }
+
+    public void setMaxErrorsPerUnit(int theMaxErrorsPerUnit) {
+        maxErrorsPerUnit = theMaxErrorsPerUnit;
+    }
+
+    /**
+     * Queues the given error of the given compilation unit (null if it does not belong to a specific unit).
+     *
+     * @return true if the error was queued, false if it was dropped as duplicate or because the unit reached its
+     * maximum number of errors.
+     */
+    public boolean add(String unitId, TSPHPException exception) {
+        String unitKey = unitId != null ? unitId : "";
+        boolean isQueued = reportedMessages.putIfAbsent(unitKey + '\u0000' + exception.getMessage(), true) == null;
+        if (isQueued && unitId != null) {
+            int numberOfErrors = getErrorCounter(unitId).incrementAndGet();
+            isQueued = numberOfErrors <= maxErrorsPerUnit;
+            if (numberOfErrors == maxErrorsPerUnit + 1) {
+                pendingDiagnostics.add(new DiagnosticDto(unitId, new TSPHPException("Further errors of " + unitId
+                        + " are suppressed, it reached the maximum of " + maxErrorsPerUnit + " errors."),
+                        Integer.MAX_VALUE, Integer.MAX_VALUE, sequence.getAndIncrement()));
+            }
+        }
+        if (isQueued) {
+            pendingDiagnostics.add(new DiagnosticDto(unitId, exception, getLine(exception),
+                    getCharPositionInLine(exception), sequence.getAndIncrement()));
+        }
+        return isQueued;
+    }
+
+    private AtomicInteger getErrorCounter(String unitId) {
+        AtomicInteger counter = numberOfErrorsPerUnit.get(unitId);
+        if (counter == null) {
+            AtomicInteger newCounter = new AtomicInteger();
+            counter = numberOfErrorsPerUnit.putIfAbsent(unitId, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Returns true if the caller shall run {@link #drain()} (on a thread of its choice) - it returns false as long as
+     * the previously requested drain has not started yet, hence there is at most one drain per batch.
+     */
+    public boolean tryScheduleDrain() {
+        return !pendingDiagnostics.isEmpty() && isDrainScheduled.compareAndSet(false, true);
+    }
+
+    /**
+     * Hands all queued errors as one batch to the loggers. Drains are serialised, hence the loggers are never called
+     * concurrently and batches are delivered in order.
+     */
+    public synchronized void drain() {
+        //errors which are queued from now on require a new drain
+        isDrainScheduled.set(false);
+        List<DiagnosticDto> batch = new ArrayList<>();
+        DiagnosticDto diagnostic = pendingDiagnostics.poll();
+        while (diagnostic != null) {
+            batch.add(diagnostic);
+            diagnostic = pendingDiagnostics.poll();
+        }
+        Collections.sort(batch, new UnitAndPositionComparator());
+        for (DiagnosticDto dto : batch) {
+            deliveredDiagnostics.add(dto.exception);
+            for (IErrorLogger logger : errorLoggers) {
+                logger.log(dto.exception);
+            }
+        }
+    }
+
+    /**
+     * Returns the errors which were handed to the loggers since the last reset in the order they were delivered.
+     */
+    public List<TSPHPException> getDeliveredDiagnostics() {
+        return new ArrayList<>(deliveredDiagnostics);
+    }
+
+    /**
+     * Forgets the reported messages, the number of errors per unit and the delivered errors.
+     */
+    public void reset() {
+        reportedMessages.clear();
+        numberOfErrorsPerUnit.clear();
+        deliveredDiagnostics.clear();
+    }
+
+    private int getLine(TSPHPException exception) {
+        int line = -1;
+        ITSPHPAst ast = getAst(exception);
+        if (ast != null) {
+            line = ast.getLine();
+        } else if (exception instanceof UnexpectedTokenException) {
+            RecognitionException recognitionException = ((UnexpectedTokenException) exception)
+                    .getRecognitionException();
+            if (recognitionException != null) {
+                line = recognitionException.line;
+            }
+        }
+        return line;
+    }
+
+    private int getCharPositionInLine(TSPHPException exception) {
+        int position = -1;
+        ITSPHPAst ast = getAst(exception);
+        if (ast != null) {
+            position = ast.getCharPositionInLine();
+        } else if (exception instanceof UnexpectedTokenException) {
+            RecognitionException recognitionException = ((UnexpectedTokenException) exception)
+                    .getRecognitionException();
+            if (recognitionException != null) {
+                position = recognitionException.charPositionInLine;
+            }
+        }
+        return position;
+    }
+
+    private ITSPHPAst getAst(TSPHPException exception) {
+        ITSPHPAst ast = null;
+        if (exception instanceof DefinitionException) {
+            ast = ((DefinitionException) exception).getNewDefinition();
+        } else if (exception instanceof ReferenceException) {
+            ast = ((ReferenceException) exception).getDefinition();
+        }
+        return ast;
+    }
+
+    /**
+     * Orders by unit id (errors which do not belong to a unit come last), line, position in line and finally by the
+     * order in which the errors were queued.
+     */
+    private static class UnitAndPositionComparator implements Comparator<DiagnosticDto>
+    {
+        @Override
+        public int compare(DiagnosticDto dto1, DiagnosticDto dto2) {
+            int result = compareUnitIds(dto1.unitId, dto2.unitId);
+            if (result == 0) {
+                result = Integer.compare(dto1.line, dto2.line);
+            }
+            if (result == 0) {
+                result = Integer.compare(dto1.charPositionInLine, dto2.charPositionInLine);
+            }
+            if (result == 0) {
+                result = Long.compare(dto1.sequence, dto2.sequence);
+            }
+            return result;
+        }
+
+        private int compareUnitIds(String unitId1, String unitId2) {
+            int result;
+            if (unitId1 == null) {
+                result = unitId2 == null ? 0 : 1;
+            } else {
+                result = unitId2 == null ? -1 : unitId1.compareTo(unitId2);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+/**
+ * Defines on which threads the compiler does its work.
+ */
+public enum ExecutionMode
+{
+    /**
+     * All work is done by a fixed thread pool with a multiple of the number of processors as size.
+     */
+    FIXED_POOL,
+    /**
+     * The CPU bound phases run on a work-stealing pool with one thread per processor whereas blocking I/O (reading
+     * files and informing translation listeners which usually write the output) runs on a separate pool which grows
+     * as needed, hence slow file systems do not keep the CPU bound phases from using all processors.
+     */
+    SEPARATE_IO_AND_CPU
+}
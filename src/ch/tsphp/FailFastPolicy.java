@@ -0,0 +1,75 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+import ch.tsphp.metrics.CompilationPhase;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Defines when a compilation is aborted because of the errors which occurred so far.
+ * <p/>
+ * An aborted compilation drops its queued tasks and informs the compiler listeners as soon as the running tasks have
+ * finished, see {@link IIncrementalCompiler#cancel()}.
+ */
+public final class FailFastPolicy
+{
+    /**
+     * Never aborts, all phases run to the end regardless of the number of errors (default).
+     */
+    public static final FailFastPolicy NEVER = new FailFastPolicy(Integer.MAX_VALUE,
+            Collections.<CompilationPhase>emptySet());
+
+    private final int maxNumberOfErrors;
+    private final Set<CompilationPhase> phases;
+
+    private FailFastPolicy(int theMaxNumberOfErrors, Set<CompilationPhase> thePhases) {
+        maxNumberOfErrors = theMaxNumberOfErrors;
+        phases = thePhases;
+    }
+
+    /**
+     * Aborts as soon as the given number of errors occurred.
+     */
+    public static FailFastPolicy afterErrors(int numberOfErrors) {
+        if (numberOfErrors < 1) {
+            throw new IllegalArgumentException("numberOfErrors needs to be at least 1, was " + numberOfErrors);
+        }
+        return new FailFastPolicy(numberOfErrors, Collections.<CompilationPhase>emptySet());
+    }
+
+    /**
+     * Aborts as soon as an error occurred in one of the given phases.
+     */
+    public static FailFastPolicy afterFirstErrorIn(CompilationPhase phase, CompilationPhase... furtherPhases) {
+        Set<CompilationPhase> phases = EnumSet.of(phase);
+        phases.addAll(Arrays.asList(furtherPhases));
+        return new FailFastPolicy(Integer.MAX_VALUE, Collections.unmodifiableSet(phases));
+    }
+
+    /**
+     * Returns a policy which aborts if this policy or the given one does.
+     */
+    public FailFastPolicy or(FailFastPolicy policy) {
+        Set<CompilationPhase> combinedPhases = EnumSet.noneOf(CompilationPhase.class);
+        combinedPhases.addAll(phases);
+        combinedPhases.addAll(policy.phases);
+        return new FailFastPolicy(Math.min(maxNumberOfErrors, policy.maxNumberOfErrors),
+                Collections.unmodifiableSet(combinedPhases));
+    }
+
+    /**
+     * Returns whether the compilation shall be aborted after the given number of errors whereby the last error
+     * occurred in the given phase.
+     */
+    public boolean shallAbort(int numberOfErrors, CompilationPhase phase) {
+        return numberOfErrors >= maxNumberOfErrors || phases.contains(phase);
+    }
+}
@@ -6,44 +6,93 @@
 
 package ch.tsphp;
 
-import ch.tsphp.common.ICompiler;
 import ch.tsphp.common.ITSPHPAstAdaptor;
 import ch.tsphp.common.ITranslatorFactory;
 import ch.tsphp.common.TSPHPAstAdaptor;
 import ch.tsphp.parser.ParserFacade;
 import ch.tsphp.translators.php54.PHP54TranslatorFactory;
-import ch.tsphp.typechecker.TypeChecker;
+import ch.tsphp.typesystem.SnapshotTypeChecker;
 
 import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
+/**
+ * Creates compilers which translate to PHP 5.4. The executors which are created by this initialiser (rather than passed
+ * in) belong to the created compiler and are shut down by {@link IIncrementalCompiler#shutdown()}.
+ */
 public class HardCodedCompilerInitialiser implements ICompilerInitialiser
 {
 
     private static final int CORE_MULTIPLICATION_FACTOR = 4;
 
     @Override
-    public ICompiler create() {
+    public IIncrementalCompiler create() {
         return create(Runtime.getRuntime().availableProcessors() * CORE_MULTIPLICATION_FACTOR);
     }
 
     @Override
-    public ICompiler create(final int numberOfWorkers) {
-        return create(Executors.newFixedThreadPool(numberOfWorkers));
+    public IIncrementalCompiler create(final int numberOfWorkers) {
+        ExecutorService executorService = Executors.newFixedThreadPool(numberOfWorkers);
+        Compiler compiler = create(executorService, executorService);
+        compiler.takeOwnershipOf(executorService);
+        return compiler;
+    }
+
+    @Override
+    public IIncrementalCompiler create(ExecutionMode executionMode) {
+        IIncrementalCompiler compiler;
+        switch (executionMode) {
+            case SEPARATE_IO_AND_CPU:
+                compiler = createWithSeparateIoAndCpu();
+                break;
+            case FIXED_POOL:
+            default:
+                compiler = create();
+                break;
+        }
+        return compiler;
+    }
+
+    private IIncrementalCompiler createWithSeparateIoAndCpu() {
+        ExecutorService executorService = createCpuExecutorService();
+        ExecutorService ioExecutorService = createIoExecutorService();
+        Compiler compiler = create(executorService, ioExecutorService);
+        compiler.takeOwnershipOf(executorService);
+        compiler.takeOwnershipOf(ioExecutorService);
+        return compiler;
+    }
+
+    protected ExecutorService createCpuExecutorService() {
+        //asyncMode (FIFO) preserves the largest-first order in which the compiler submits the tasks of a phase
+        return new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+                ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    }
+
+    protected ExecutorService createIoExecutorService() {
+        return Executors.newCachedThreadPool();
+    }
+
+    @Override
+    public IIncrementalCompiler create(ExecutorService executorService) {
+        return create(executorService, executorService);
     }
 
-    public ICompiler create(ExecutorService executorService) {
+    /**
+     * Creates a compiler which runs the CPU bound phases on the given executorService and blocking I/O on the given
+     * ioExecutorService.
+     */
+    public Compiler create(ExecutorService executorService, ExecutorService ioExecutorService) {
         Collection<ITranslatorFactory> translatorFactories = new ArrayDeque<>();
         translatorFactories.add(new PHP54TranslatorFactory());
 
         ITSPHPAstAdaptor adaptor = new TSPHPAstAdaptor();
-        return new Compiler(
+        return new Compiler(new CompilerComponentsFactory(executorService, ioExecutorService).create(
                 adaptor,
                 new ParserFacade(adaptor),
-                new TypeChecker(),
-                translatorFactories,
-                executorService);
+                new SnapshotTypeChecker(),
+                translatorFactories));
     }
 }
@@ -6,16 +6,16 @@
 
 package ch.tsphp;
 
-import ch.tsphp.common.ICompiler;
-
 import java.util.concurrent.ExecutorService;
 
 public interface ICompilerInitialiser
 {
 
-    ICompiler create();
+    IIncrementalCompiler create();
+
+    IIncrementalCompiler create(final int numberOfWorkers);
 
-    ICompiler create(final int numberOfWorkers);
+    IIncrementalCompiler create(ExecutorService executorService);
 
-    ICompiler create(ExecutorService executorService);
+    IIncrementalCompiler create(ExecutionMode executionMode);
 }
@@ -0,0 +1,177 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+import ch.tsphp.cache.ITranslationCache;
+import ch.tsphp.common.ICompiler;
+import ch.tsphp.common.ITranslatorFactory;
+import ch.tsphp.io.BufferPoolStatisticsDto;
+import ch.tsphp.library.LibrarySummary;
+import ch.tsphp.metrics.IMetricsListener;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A compiler which keeps its compilation units after a compilation and is thus able to recompile only the units
+ * which changed and the units which depend on them.
+ * <p/>
+ * Changes are collected via the update and remove methods and are applied on the next call of {@link #recompile()}.
+ */
+public interface IIncrementalCompiler extends ICompiler
+{
+    /**
+     * Adds all given files at once whereby the largest files are parsed first.
+     */
+    void addFiles(Collection<String> pathsToFilesInclFileName) throws IOException;
+
+    /**
+     * Adds all given files which use the given encoding at once whereby the largest files are parsed first.
+     */
+    void addFiles(Collection<String> pathsToFilesInclFileName, String encoding) throws IOException;
+
+    /**
+     * Adds the declarations of the given library summary as compilation units.
+     * <p/>
+     * They are used to resolve the symbols of the other compilation units but are themselves neither type checked nor
+     * translated. They are removed on {@link #reset()} like any other compilation unit.
+     */
+    void addLibrarySummary(LibrarySummary librarySummary);
+
+    void updateCompilationUnit(String id, String string);
+
+    void updateFile(String pathToFileInclFileName) throws IOException;
+
+    void updateFile(String pathToFileInclFileName, String encoding) throws IOException;
+
+    void removeCompilationUnit(String id);
+
+    /**
+     * Recompiles the changed compilation units and their dependents, requires that compile() was called before.
+     */
+    void recompile();
+
+    /**
+     * Returns the ids of the compilation units which used at least one symbol of the given unit during the last
+     * compilation.
+     */
+    Collection<String> getDependentCompilationUnits(String id);
+
+    /**
+     * Sets a cache which allows to reuse translations of previous compilations, also of other compiler instances.
+     * <p/>
+     * A compilation unit is neither type checked nor translated if neither its source nor the source of a unit it
+     * depends on (directly or indirectly) changed since its translation was put into the cache.
+     * <p/>
+     * The cache has to be set before compilation units are added.
+     */
+    void setTranslationCache(ITranslationCache translationCache);
+
+    void registerTranslationListener(ITranslationListener listener);
+
+    /**
+     * Returns the translations per translator factory (in the order of the factories) and per compilation unit,
+     * whereas getTranslations() only returns the translations of the first translator factory.
+     */
+    Map<ITranslatorFactory, Map<String, String>> getTranslationsPerTarget();
+
+    /**
+     * Defines whether translations are kept in memory and returned by getTranslations() (default is true).
+     * <p/>
+     * Turn it off if all translations are consumed by an {@link ITranslationListener} anyway.
+     */
+    void setRetainTranslations(boolean retainTranslations);
+
+    /**
+     * Registers a listener which receives wall time, CPU time, allocated bytes, queue wait time and number of errors of
+     * each compilation unit in each phase (see {@link ch.tsphp.metrics.CompilationMetrics} for an aggregation).
+     * <p/>
+     * Nothing is measured as long as no metrics listener is registered.
+     */
+    void registerMetricsListener(IMetricsListener listener);
+
+    /**
+     * Returns how often the buffers used to read the input streams of compilation units could be reused. The buffers
+     * are kept across {@link #reset()} and {@link #recompile()}.
+     */
+    BufferPoolStatisticsDto getBufferPoolStatistics();
+
+    /**
+     * Removes all registered compiler, translation and metrics listeners as well as all error loggers and the
+     * translation cache, retains translations again and restores the default fail-fast policy, maximum number of
+     * errors per unit and unit retention policy. Together with {@link #reset()} the compiler is then in the same state
+     * as a newly created one, which allows to reuse it for an unrelated compilation.
+     */
+    void clearRegistrations();
+
+    /**
+     * Defines when a compilation is aborted due to the errors found so far (default is {@link FailFastPolicy#NEVER}).
+     */
+    void setFailFastPolicy(FailFastPolicy policy);
+
+    /**
+     * Defines how many errors per compilation unit are handed to the error loggers (default is
+     * {@link DiagnosticsDispatcher#DEFAULT_MAX_ERRORS_PER_UNIT}), further errors of the unit are suppressed.
+     * <p/>
+     * The loggers are called asynchronously on the I/O executor in batches which are ordered by compilation unit and
+     * position, they are never called concurrently and identical messages of the same unit are only logged once. All
+     * errors are logged before the compiler listeners are informed that the compilation has completed.
+     */
+    void setMaxErrorsPerUnit(int maxErrorsPerUnit);
+
+    /**
+     * Defines how long the ASTs and token streams of the compilation units are kept (default is
+     * {@link UnitRetentionPolicy#RETAIN_FOR_RECOMPILATION}).
+     */
+    void setUnitRetentionPolicy(UnitRetentionPolicy policy);
+
+    /**
+     * Aborts the ongoing compilation - does nothing if the compiler is not compiling.
+     * <p/>
+     * Tasks which have not started yet are dropped, no further phase is started and nothing is translated anymore.
+     * The compiler listeners are informed via afterCompilingCompleted as soon as the tasks which are running at the
+     * moment have finished (the other listener methods are not called anymore).
+     * <p/>
+     * An aborted compilation did not process all compilation units, hence {@link #reset()} needs to be called before
+     * the compiler can be used again, {@link #recompile()} is not possible.
+     */
+    void cancel();
+
+    /**
+     * Shuts down the executors which were created together with the compiler by an {@link ICompilerInitialiser}
+     * (executors which were passed in by the caller are not touched). Running tasks complete but the compiler cannot
+     * compile anymore afterwards.
+     */
+    void shutdown();
+
+    /**
+     * Returns whether the last compilation was cancelled or aborted by the fail-fast policy.
+     */
+    boolean wasAborted();
+
+    /**
+     * Compiles the added compilation units and blocks until the compilation has completed, no compiler listener is
+     * needed.
+     * <p/>
+     * The compilation is cancelled if it does not complete within the given timeout, in which case the result of the
+     * aborted compilation is returned as soon as its running tasks have finished (see {@link #cancel()}). A
+     * CompilerException is thrown if they do not finish within the timeout either.
+     * <p/>
+     * Compiler listeners might be informed on the calling thread since it does work of the compilation while it
+     * waits anyway.
+     */
+    CompilationResultDto compileAndWait(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Compiles the added compilation units and returns a future which is completed with the result after the compiler
+     * listeners were informed that the compilation has completed. Cancelling the future cancels the compilation.
+     */
+    Future<CompilationResultDto> compileAsync();
+}
@@ -0,0 +1,21 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+import ch.tsphp.common.IParser;
+import ch.tsphp.common.ParserUnitDto;
+
+import java.io.IOException;
+
+/**
+ * Delegate of a parser method which returns a ParserUnitDto.
+ */
+public interface IParserMethod
+{
+
+    ParserUnitDto parser(IParser parser) throws IOException;
+}
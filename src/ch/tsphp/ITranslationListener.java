@@ -0,0 +1,21 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+import ch.tsphp.common.ITranslatorFactory;
+
+/**
+ * Receives the translation of a compilation unit as soon as it is available.
+ * <p/>
+ * Translations are only handed out if the type checking of all compilation units was successful. The listener is
+ * called from a worker thread of the compiler and might be called concurrently for different compilation units.
+ */
+public interface ITranslationListener
+{
+
+    void afterTranslationCompleted(String id, ITranslatorFactory translatorFactory, String translation);
+}
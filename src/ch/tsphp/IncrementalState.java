@@ -0,0 +1,198 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+import ch.tsphp.cache.ITranslationCache;
+import ch.tsphp.common.CompilationUnitDto;
+import ch.tsphp.common.ITSPHPAst;
+import ch.tsphp.common.ITranslatorFactory;
+import org.antlr.runtime.TokenStream;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps track of the changes since the last compilation and of the dependencies between the compilation units, hence
+ * of the units which need to be type checked and translated (see {@link IIncrementalCompiler#recompile()}), and
+ * looks up and stores their translations in the translation cache (see {@link TranslationCacheAccess}).
+ */
+public class IncrementalState
+{
+    private final DependencyGraph dependencyGraph = new DependencyGraph();
+    private final TranslationCacheAccess translationCacheAccess;
+    private final ConcurrentMap<String, IParserMethod> changedCompilationUnits = new ConcurrentHashMap<>();
+    private final Set<String> removedCompilationUnits = new HashSet<>();
+    /**
+     * Compilation units of library summaries, they only take part in the definition and reference phase.
+     */
+    private final Set<String> libraryUnits = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    /**
+     * Compilation units which were not translated successfully during the last compilation.
+     */
+    private Set<String> unitsToRecompile = new HashSet<>();
+    /**
+     * Compilation units which need to be type checked and translated in the current compilation - null means all.
+     */
+    private Set<String> dirtyCompilationUnits;
+    private Map<ITSPHPAst, String> compilationUnitIds;
+
+    public IncrementalState(Collection<ITranslatorFactory> theTranslatorFactories) {
+        translationCacheAccess = new TranslationCacheAccess(dependencyGraph, theTranslatorFactories);
+    }
+
+    public void addLibraryUnit(String id) {
+        libraryUnits.add(id);
+    }
+
+    /**
+     * Registers a change of the given compilation unit which is applied by the next recompilation.
+     */
+    public void update(String id, IParserMethod parserMethod) {
+        removedCompilationUnits.remove(id);
+        changedCompilationUnits.put(id, parserMethod);
+    }
+
+    public void remove(String id) {
+        changedCompilationUnits.remove(id);
+        removedCompilationUnits.add(id);
+        libraryUnits.remove(id);
+    }
+
+    /**
+     * Marks the change of the given compilation unit as applied unless it was changed again in the meantime.
+     */
+    public void changeApplied(String id, IParserMethod parserMethod) {
+        changedCompilationUnits.remove(id, parserMethod);
+    }
+
+    public Map<String, IParserMethod> getChangedCompilationUnits() {
+        return Collections.unmodifiableMap(changedCompilationUnits);
+    }
+
+    public Collection<String> getDependentCompilationUnits(String id) {
+        return dependencyGraph.getDependents(Collections.singleton(id));
+    }
+
+    /**
+     * Determines the compilation units which need to be type checked and translated in the recompilation - the
+     * changed units, the units which depend on them and the units which were not translated successfully during the
+     * last compilation.
+     *
+     * @return the ids of the changed and removed compilation units.
+     */
+    public Set<String> prepareRecompilation() {
+        Set<String> changedIds = new HashSet<>(changedCompilationUnits.keySet());
+        changedIds.addAll(removedCompilationUnits);
+
+        dirtyCompilationUnits = new HashSet<>(unitsToRecompile);
+        dirtyCompilationUnits.addAll(changedIds);
+        dirtyCompilationUnits.addAll(dependencyGraph.getTransitiveDependents(changedIds));
+        dirtyCompilationUnits.removeAll(removedCompilationUnits);
+        return changedIds;
+    }
+
+    /**
+     * Forgets the dependencies and the content of the compilation units which were removed since the last compilation.
+     *
+     * @return the ids of the removed compilation units.
+     */
+    public Collection<String> takeRemovedCompilationUnits() {
+        Collection<String> removedIds = new HashSet<>(removedCompilationUnits);
+        for (String id : removedIds) {
+            dependencyGraph.remove(id);
+            translationCacheAccess.remove(id);
+        }
+        removedCompilationUnits.clear();
+        return removedIds;
+    }
+
+    /**
+     * Indexes the given compilation units, the dependencies of a unit are determined via the index.
+     */
+    public void setCompilationUnits(Collection<CompilationUnitDto> compilationUnits) {
+        compilationUnitIds = new IdentityHashMap<>(compilationUnits.size());
+        for (CompilationUnitDto compilationUnit : compilationUnits) {
+            compilationUnitIds.put(compilationUnit.compilationUnit, compilationUnit.id);
+        }
+    }
+
+    public void updateDependencies(CompilationUnitDto compilationUnit) {
+        dependencyGraph.update(compilationUnit.id, compilationUnit.compilationUnit, compilationUnitIds);
+    }
+
+    /**
+     * Returns whether the given compilation unit needs to be type checked and translated. Units of library summaries
+     * are neither type checked nor translated.
+     */
+    public boolean needsTypeChecking(String id) {
+        return (dirtyCompilationUnits == null || dirtyCompilationUnits.contains(id)) && !libraryUnits.contains(id);
+    }
+
+    /**
+     * Returns the compilation units which were type checked and translated in the current compilation.
+     */
+    public Set<String> getCompiledUnits() {
+        return dirtyCompilationUnits != null ? dirtyCompilationUnits : new HashSet<>(compilationUnitIds.values());
+    }
+
+    /**
+     * Remembers the compiled units to be recompiled if an error was found, they were not translated successfully.
+     */
+    public void compilationCompleted(boolean hasFoundError) {
+        unitsToRecompile = hasFoundError ? getCompiledUnits() : new HashSet<String>();
+    }
+
+    /**
+     * Forgets the dependencies since the compilation units were released.
+     */
+    public void releaseDependencies() {
+        compilationUnitIds = null;
+        dependencyGraph.clear();
+    }
+
+    public void setTranslationCache(ITranslationCache theTranslationCache) {
+        translationCacheAccess.setTranslationCache(theTranslationCache);
+    }
+
+    /**
+     * Stores the content hash of the given compilation unit if a translation cache is used.
+     */
+    public void setContent(String id, TokenStream tokenStream) {
+        if (translationCacheAccess.isEnabled()) {
+            translationCacheAccess.setContent(id, tokenStream.toString());
+        }
+    }
+
+    /**
+     * @return the cached translations of the given compilation unit or null if not all of them are cached
+     */
+    public Collection<TranslationDto> getCachedTranslations(String id) {
+        return translationCacheAccess.get(id);
+    }
+
+    public void putIntoCache(TranslationDto dto) throws IOException {
+        translationCacheAccess.put(dto);
+    }
+
+    public void reset() {
+        dependencyGraph.clear();
+        changedCompilationUnits.clear();
+        removedCompilationUnits.clear();
+        libraryUnits.clear();
+        unitsToRecompile = new HashSet<>();
+        dirtyCompilationUnits = null;
+        compilationUnitIds = null;
+        translationCacheAccess.clear();
+    }
+}
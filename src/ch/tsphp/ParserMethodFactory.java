@@ -0,0 +1,104 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+import ch.tsphp.common.IParser;
+import ch.tsphp.common.ParserUnitDto;
+import ch.tsphp.io.BufferPoolStatisticsDto;
+import ch.tsphp.io.ReadBufferPool;
+import ch.tsphp.io.SourceFileReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.CharBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Creates the parser methods of the compilation units, the source of a unit is read by the thread which parses it
+ * unless it is loaded beforehand (see {@link #createFileLoader(String, String)}).
+ */
+public class ParserMethodFactory
+{
+    private final SourceFileReader sourceFileReader = new SourceFileReader();
+    private final ReadBufferPool readBufferPool = new ReadBufferPool();
+
+    public IParserMethod createParserMethod(final String string) {
+        return new IParserMethod()
+        {
+            @Override
+            public ParserUnitDto parser(IParser theParser) {
+                return theParser.parse(string);
+            }
+        };
+    }
+
+    public IParserMethod createParserMethod(final char[] chars, final int numberOfActualCharsInArray) {
+        return new IParserMethod()
+        {
+            @Override
+            public ParserUnitDto parser(IParser theParser) {
+                return theParser.parse(chars, numberOfActualCharsInArray);
+            }
+        };
+    }
+
+    /**
+     * The stream is read with the buffers of the {@link ReadBufferPool} of the executing thread rather than with
+     * buffers which the parser allocates per compilation unit.
+     */
+    public IParserMethod createParserMethod(final InputStream inputStream, final int initialBufferSize,
+            final int readBufferSize, final String encoding) {
+        return new IParserMethod()
+        {
+            @Override
+            public ParserUnitDto parser(IParser theParser) throws IOException {
+                CharBuffer source = readBufferPool.read(inputStream, initialBufferSize, readBufferSize, encoding);
+                return theParser.parse(source.array(), source.remaining());
+            }
+        };
+    }
+
+    /**
+     * Reads the file with the given encoding (null for the default encoding of the platform) via the
+     * {@link SourceFileReader} and parses its content.
+     */
+    public IParserMethod createFileParserMethod(final String pathToFileInclFileName, final String encoding) {
+        return new IParserMethod()
+        {
+            @Override
+            public ParserUnitDto parser(IParser theParser) throws IOException {
+                CharBuffer source = sourceFileReader.read(pathToFileInclFileName, encoding);
+                return theParser.parse(source.array(), source.remaining());
+            }
+        };
+    }
+
+    /**
+     * Returns a loader which reads the file with the given encoding (null for the default encoding of the platform)
+     * on the calling thread and returns the parser method of its content, hence the parsing does not block on I/O.
+     */
+    public Callable<IParserMethod> createFileLoader(final String pathToFileInclFileName, final String encoding) {
+        return new Callable<IParserMethod>()
+        {
+            @Override
+            public IParserMethod call() throws IOException {
+                CharBuffer source = sourceFileReader.read(pathToFileInclFileName, encoding);
+                return createParserMethod(source.array(), source.remaining());
+            }
+        };
+    }
+
+    public List<String> orderLargestFirst(Collection<String> pathsToFilesInclFileName) {
+        return sourceFileReader.orderLargestFirst(pathsToFilesInclFileName);
+    }
+
+    public BufferPoolStatisticsDto getBufferPoolStatistics() {
+        return readBufferPool.getStatistics();
+    }
+}
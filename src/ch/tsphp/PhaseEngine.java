@@ -0,0 +1,314 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+import ch.tsphp.common.ICompilerListener;
+import ch.tsphp.common.ITranslatorFactory;
+import ch.tsphp.common.exceptions.TSPHPException;
+import ch.tsphp.library.LibrarySummary;
+import ch.tsphp.metrics.CompilationPhase;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the phases of a compilation - parsing and definition, reference, type checking and translation. The
+ * compilation units are processed concurrently within a phase (see {@link TaskScheduler}) and the next phase starts
+ * as soon as all units have passed the current one.
+ */
+public class PhaseEngine
+{
+    private final Collection<ITranslatorFactory> translatorFactories;
+    private final CompilationLifecycle lifecycle;
+    private final TaskScheduler scheduler;
+    private final CompilationErrors errors;
+    private final IncrementalState incrementalState;
+    private final TranslationPublisher translationPublisher;
+    private final ParserMethodFactory parserMethodFactory;
+    private final PhaseRunnerFactory runnerFactory;
+
+    private final Collection<ICompilerListener> compilerListeners = new ArrayDeque<>();
+    private final AtomicInteger numberOfAddedCompilationUnits = new AtomicInteger();
+    private final AtomicInteger numberOfPendingTypeChecks = new AtomicInteger();
+
+    private final Runnable referencePhase = unlessAborted(new Runnable()
+    {
+        @Override
+        public void run() {
+            doReferencePhase();
+        }
+    });
+    private final Runnable typeCheckingAndTranslation = unlessAborted(new Runnable()
+    {
+        @Override
+        public void run() {
+            doTypeCheckingAndTranslation();
+        }
+    });
+    private final Runnable translationCompletion = unlessAborted(new Runnable()
+    {
+        @Override
+        public void run() {
+            finishTranslation();
+        }
+    });
+    private final Runnable typeCheckCompleted = new Runnable()
+    {
+        @Override
+        public void run() {
+            if (numberOfPendingTypeChecks.decrementAndGet() == 0) {
+                typeCheckingCompleted();
+            }
+        }
+    };
+
+    public PhaseEngine(CompilerComponentsDto components) {
+        translatorFactories = components.translatorFactories;
+        lifecycle = components.lifecycle;
+        scheduler = components.scheduler;
+        errors = components.errors;
+        incrementalState = components.incrementalState;
+        translationPublisher = components.translationPublisher;
+        parserMethodFactory = components.parserMethodFactory;
+        runnerFactory = new PhaseRunnerFactory(components);
+    }
+
+    public void registerCompilerListener(ICompilerListener listener) {
+        compilerListeners.add(listener);
+    }
+
+    public void clearCompilerListeners() {
+        compilerListeners.clear();
+    }
+
+    /**
+     * Submits the parsing and definition phase of the given compilation unit.
+     */
+    public void add(String id, IParserMethod parserMethod) {
+        checkCanAdd();
+        numberOfAddedCompilationUnits.incrementAndGet();
+        scheduler.submitWork(runnerFactory.createParseAndDefinitionPhaseRunner(id, parserMethod));
+    }
+
+    /**
+     * Submits the loading of the given compilation unit to the I/O executor, see
+     * {@link PhaseRunnerFactory#createFileLoader(String, Callable)}.
+     */
+    public void addFromLoader(String id, Callable<IParserMethod> loader) {
+        checkCanAdd();
+        numberOfAddedCompilationUnits.incrementAndGet();
+        scheduler.submitIoWork(runnerFactory.createFileLoader(id, loader));
+    }
+
+    /**
+     * Adds the declarations of the given library summary, they only take part in the definition and reference phase.
+     */
+    public void addLibrarySummary(LibrarySummary librarySummary) {
+        for (Map.Entry<String, String> entry : librarySummary.getDeclarations().entrySet()) {
+            incrementalState.addLibraryUnit(entry.getKey());
+            add(entry.getKey(), parserMethodFactory.createParserMethod(entry.getValue()));
+        }
+    }
+
+    private void checkCanAdd() {
+        lifecycle.checkNeedsNoReset("Tried to parse after calling compile(). If compilation was finished "
+                + "and you wish to recompile, then use reset() first.");
+    }
+
+    /**
+     * Starts the compilation whose result is completed via the returned future.
+     *
+     * @param releaseOnCallingThread see {@link #compile(boolean)}
+     */
+    public CompilationFuture startCompilation(IIncrementalCompiler compiler, boolean releaseOnCallingThread) {
+        CompilationFuture future = lifecycle.createPendingResult(compiler);
+        boolean hasStarted = false;
+        try {
+            compile(releaseOnCallingThread);
+            hasStarted = true;
+        } finally {
+            if (!hasStarted) {
+                lifecycle.discardPendingResult(future);
+            }
+        }
+        return future;
+    }
+
+    /**
+     * @param releaseOnCallingThread Whether the hold of the parsing and definition phase is released on the calling
+     *                               thread which saves a hand-off to a worker but might run the reference phase
+     *                               callback and inform listeners on the calling thread.
+     */
+    public void compile(boolean releaseOnCallingThread) {
+        lifecycle.start();
+        translationPublisher.init(numberOfAddedCompilationUnits.get());
+        scheduler.setPhaseCompletedCallback(referencePhase);
+        if (releaseOnCallingThread) {
+            scheduler.taskCompleted();
+        } else {
+            //releases the hold of the parsing and definition phase (see TaskScheduler) on a worker thread so that
+            //compile() does not block and listeners are never informed on the thread which called it
+            scheduler.submit(new Runnable()
+            {
+                @Override
+                public void run() {
+                    scheduler.taskCompleted();
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs the definition and reference phase for all compilation units again whereas type checking and
+     * translation are only done for the dirty units (see {@link IncrementalState#prepareRecompilation()}).
+     */
+    public void recompile() {
+        lifecycle.startRecompilation(runnerFactory.hasReleasedCompilationUnits());
+        final Collection<Runnable> runners = prepareRecompilation();
+        lifecycle.startTimeMeasurement();
+        scheduler.submit(new Runnable()
+        {
+            @Override
+            public void run() {
+                scheduler.doPhase(runners, referencePhase);
+            }
+        });
+    }
+
+    private Collection<Runnable> prepareRecompilation() {
+        Collection<String> changedIds = incrementalState.prepareRecompilation();
+        Collection<String> removedIds = incrementalState.takeRemovedCompilationUnits();
+        translationPublisher.removeAll(removedIds);
+        scheduler.removeEstimatedCosts(removedIds);
+
+        runnerFactory.resetAnalysis();
+        errors.reset();
+        translationPublisher.reset();
+        return runnerFactory.createRecompilationRunners(changedIds);
+    }
+
+    public void reset() {
+        runnerFactory.reset();
+        numberOfAddedCompilationUnits.set(0);
+        translationPublisher.init(0);
+        translationPublisher.reset();
+        errors.reset();
+        scheduler.reset();
+        incrementalState.reset();
+        lifecycle.reset();
+    }
+
+    /**
+     * Returns a phase callback which starts the given phase unless the compilation was aborted - the compilation
+     * units were not all processed in this case, hence the compilation is finished right away.
+     */
+    private Runnable unlessAborted(final Runnable nextPhase) {
+        return new Runnable()
+        {
+            @Override
+            public void run() {
+                if (lifecycle.isAborted()) {
+                    finishAbortedCompilation();
+                } else {
+                    nextPhase.run();
+                }
+            }
+        };
+    }
+
+    private void doReferencePhase() {
+        informParsingDefinitionCompleted();
+        lifecycle.enterPhase(CompilationPhase.REFERENCE);
+        if (runnerFactory.hasCompilationUnits()) {
+            scheduler.doPhase(runnerFactory.createReferencePhaseRunners(), typeCheckingAndTranslation);
+        } else {
+            errors.log(new TSPHPException("No compilation units specified"));
+            complete();
+        }
+    }
+
+    /**
+     * Type checks all compilation units whereupon each unit is translated as soon as its type checking is done.
+     * <p/>
+     * The type checking phase itself cannot start before the reference phase of all units has completed since a unit
+     * might use symbols of any other unit. The translation of a unit on the other hand does only depend on its own
+     * type checking and thus there is no need to wait until all units are type checked.
+     */
+    private void doTypeCheckingAndTranslation() {
+        informReferenceCompleted();
+        lifecycle.enterPhase(CompilationPhase.TYPE_CHECK);
+        if (runnerFactory.hasCompilationUnits()) {
+            Collection<Runnable> runners = runnerFactory.createTypeCheckRunners(typeCheckCompleted);
+            numberOfPendingTypeChecks.set(runners.size());
+            if (runners.isEmpty()) {
+                typeCheckingCompleted();
+            }
+            scheduler.doPhase(runners, translationCompletion);
+        } else {
+            errors.log(new TSPHPException("No compilation units specified"));
+            complete();
+        }
+    }
+
+    private void typeCheckingCompleted() {
+        informTypeCheckingCompleted();
+        if (errors.hasFoundErrorBeforeTranslation()) {
+            lifecycle.abortTranslation();
+            errors.log(new TSPHPException("Translation aborted due to occurred errors"));
+        } else if (translatorFactories == null || translatorFactories.isEmpty()) {
+            errors.log(new TSPHPException("No translator factories specified"));
+        } else {
+            lifecycle.enterPhase(CompilationPhase.TRANSLATION);
+            translationPublisher.typeCheckingSucceeded();
+        }
+    }
+
+    private void finishTranslation() {
+        if (lifecycle.isTranslationAborted()) {
+            translationPublisher.discard(incrementalState.getCompiledUnits());
+        }
+        incrementalState.compilationCompleted(errors.hasFoundError());
+        complete();
+    }
+
+    /**
+     * The compilation units were not all processed, hence translations which were done before the abort are
+     * incomplete and the compiler needs a reset before it can compile again.
+     */
+    private void finishAbortedCompilation() {
+        translationPublisher.discardAll();
+        complete();
+    }
+
+    private void complete() {
+        //the loggers shall have received all errors before the listeners are informed
+        errors.drain();
+        runnerFactory.releaseCompilationUnits();
+        lifecycle.complete(compilerListeners, errors, translationPublisher);
+    }
+
+    private void informParsingDefinitionCompleted() {
+        for (ICompilerListener listener : compilerListeners) {
+            listener.afterParsingAndDefinitionPhaseCompleted();
+        }
+    }
+
+    private void informReferenceCompleted() {
+        for (ICompilerListener listener : compilerListeners) {
+            listener.afterReferencePhaseCompleted();
+        }
+    }
+
+    private void informTypeCheckingCompleted() {
+        for (ICompilerListener listener : compilerListeners) {
+            listener.afterTypecheckingCompleted();
+        }
+    }
+}
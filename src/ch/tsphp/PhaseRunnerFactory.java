@@ -0,0 +1,339 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+import ch.tsphp.common.CompilationUnitDto;
+import ch.tsphp.common.ITranslator;
+import ch.tsphp.common.ITranslatorFactory;
+import ch.tsphp.common.ParserUnitDto;
+import ch.tsphp.common.exceptions.TSPHPException;
+import ch.tsphp.metrics.CompilationPhase;
+import org.antlr.runtime.TokenStream;
+import org.antlr.runtime.tree.CommonTreeNodeStream;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Creates the runners which process the compilation units in the single phases and keeps the parsed compilation
+ * units for the runners of the subsequent phases.
+ */
+public class PhaseRunnerFactory
+{
+    private final CompilerComponentsDto components;
+    /**
+     * Is filled concurrently by the workers of the parsing and definition phase, hence a lock-free queue.
+     */
+    private final Collection<CompilationUnitDto> compilationUnits = new ConcurrentLinkedQueue<>();
+
+    public PhaseRunnerFactory(CompilerComponentsDto theComponents) {
+        components = theComponents;
+    }
+
+    public boolean hasCompilationUnits() {
+        return !compilationUnits.isEmpty();
+    }
+
+    public Runnable createParseAndDefinitionPhaseRunner(String id, IParserMethod parserMethod) {
+        return new ParseAndDefinitionPhaseRunner(id, parserMethod);
+    }
+
+    /**
+     * Creates a runner which loads a compilation unit on the I/O executor and submits the parsing and definition
+     * phase of the loaded unit to the executor for the CPU bound phases afterwards.
+     */
+    public Runnable createFileLoader(String id, Callable<IParserMethod> loader) {
+        return new FileLoader(id, loader);
+    }
+
+    /**
+     * Creates the runners of a recompilation - the definition phase is run again for the unchanged compilation units
+     * whereas changed units are parsed again.
+     *
+     * @param changedIds the ids of the changed and removed compilation units.
+     */
+    public Collection<Runnable> createRecompilationRunners(Collection<String> changedIds) {
+        Collection<Runnable> runners = new ArrayDeque<>();
+        Iterator<CompilationUnitDto> iterator = compilationUnits.iterator();
+        while (iterator.hasNext()) {
+            CompilationUnitDto compilationUnit = iterator.next();
+            if (changedIds.contains(compilationUnit.id)) {
+                iterator.remove();
+            } else {
+                runners.add(new DefinitionPhaseRunner(compilationUnit));
+            }
+        }
+        Map<String, IParserMethod> changedCompilationUnits = components.incrementalState.getChangedCompilationUnits();
+        for (Map.Entry<String, IParserMethod> entry : changedCompilationUnits.entrySet()) {
+            runners.add(new ParseAndDefinitionPhaseRunner(entry.getKey(), entry.getValue()));
+        }
+        return runners;
+    }
+
+    public Collection<Runnable> createReferencePhaseRunners() {
+        components.incrementalState.setCompilationUnits(compilationUnits);
+        Collection<Runnable> runners = new ArrayDeque<>(compilationUnits.size());
+        for (CompilationUnitDto compilationUnit : compilationUnits) {
+            runners.add(new ReferencePhaseRunner(compilationUnit));
+        }
+        return runners;
+    }
+
+    /**
+     * Creates the runners which type check and translate the compilation units which need it, see
+     * {@link IncrementalState#needsTypeChecking(String)}.
+     *
+     * @param typeCheckCompleted Is run after the type checking of each unit.
+     */
+    public Collection<Runnable> createTypeCheckRunners(Runnable typeCheckCompleted) {
+        Collection<Runnable> runners = new ArrayDeque<>(compilationUnits.size());
+        for (CompilationUnitDto compilationUnit : compilationUnits) {
+            if (components.incrementalState.needsTypeChecking(compilationUnit.id)) {
+                runners.add(new TypeCheckRunner(compilationUnit, typeCheckCompleted));
+            } else {
+                components.unitRetention.releaseTokenStream(compilationUnit);
+            }
+        }
+        return runners;
+    }
+
+    public void releaseCompilationUnits() {
+        components.unitRetention.releaseCompilationUnits(compilationUnits);
+    }
+
+    public boolean hasReleasedCompilationUnits() {
+        return components.unitRetention.hasReleasedCompilationUnits();
+    }
+
+    /**
+     * Resets the parser and the type checker - the symbol tables of the type checker reference the ASTs of the
+     * compilation units and need to be built again.
+     */
+    public void resetAnalysis() {
+        components.typeChecker.reset();
+        components.parser.reset();
+    }
+
+    public void reset() {
+        resetAnalysis();
+        compilationUnits.clear();
+        components.unitRetention.reset();
+    }
+
+    private boolean hasTranslatorFactories() {
+        return components.translatorFactories != null && components.translatorFactories.size() > 0;
+    }
+
+    private class FileLoader implements Runnable
+    {
+        private final String id;
+        private final Callable<IParserMethod> loader;
+
+        FileLoader(String theId, Callable<IParserMethod> theLoader) {
+            id = theId;
+            loader = theLoader;
+        }
+
+        @Override
+        @SuppressWarnings("checkstyle:illegalcatch")
+        public void run() {
+            try {
+                components.scheduler.submitWork(new ParseAndDefinitionPhaseRunner(id, loader.call()));
+            } catch (Exception ex) {
+                components.errors.log(new TSPHPException("Unexpected exception occurred: " + ex.getMessage(), ex));
+            }
+        }
+    }
+
+    private class ParseAndDefinitionPhaseRunner extends AUnitPhaseRunner
+    {
+
+        private final IParserMethod parserMethod;
+
+        public ParseAndDefinitionPhaseRunner(String theId, IParserMethod aParserMethod) {
+            super(theId, CompilationPhase.PARSE_AND_DEFINITION);
+            parserMethod = aParserMethod;
+        }
+
+        @Override
+        @SuppressWarnings("checkstyle:illegalcatch")
+        public void run() {
+            try {
+                ParserUnitDto parserUnit = parserMethod.parser(components.parser);
+                CommonTreeNodeStream commonTreeNodeStream = new CommonTreeNodeStream(
+                        components.astAdaptor, parserUnit.compilationUnit);
+                commonTreeNodeStream.setTokenStream(parserUnit.tokenStream);
+                components.incrementalState.setContent(id, parserUnit.tokenStream);
+                components.scheduler.setEstimatedCost(id, parserUnit.tokenStream.size());
+
+                components.typeChecker.enrichWithDefinitions(parserUnit.compilationUnit, commonTreeNodeStream);
+                compilationUnits.add(new CompilationUnitDto(id, parserUnit.compilationUnit, commonTreeNodeStream));
+                components.incrementalState.changeApplied(id, parserMethod);
+
+            } catch (Exception ex) {
+                components.errors.log(new TSPHPException("Unexpected exception occurred: " + ex.getMessage(), ex));
+            }
+        }
+    }
+
+    /**
+     * Runs the definition phase for an already parsed compilation unit (used during a recompilation).
+     */
+    private class DefinitionPhaseRunner extends AUnitPhaseRunner
+    {
+
+        private final CompilationUnitDto dto;
+
+        DefinitionPhaseRunner(CompilationUnitDto aDto) {
+            super(aDto.id, CompilationPhase.DEFINITION);
+            dto = aDto;
+        }
+
+        @Override
+        @SuppressWarnings("checkstyle:illegalcatch")
+        public void run() {
+            try {
+                dto.treeNodeStream.reset();
+                components.typeChecker.enrichWithDefinitions(dto.compilationUnit, dto.treeNodeStream);
+            } catch (Exception ex) {
+                components.errors.log(new TSPHPException("Unexpected exception occurred: " + ex.getMessage(), ex));
+            }
+        }
+    }
+
+    private class ReferencePhaseRunner extends AUnitPhaseRunner
+    {
+
+        private final CompilationUnitDto dto;
+
+        ReferencePhaseRunner(CompilationUnitDto aDto) {
+            super(aDto.id, CompilationPhase.REFERENCE);
+            dto = aDto;
+        }
+
+        @Override
+        @SuppressWarnings("checkstyle:illegalcatch")
+        public void run() {
+            try {
+                components.typeChecker.enrichWithReferences(dto.compilationUnit, dto.treeNodeStream);
+                //dirty units are updated again after the type checking since it resolves further symbols (e.g. methods)
+                components.incrementalState.updateDependencies(dto);
+            } catch (Exception ex) {
+                components.errors.log(new TSPHPException("Unexpected exception occurred: " + ex.getMessage(), ex));
+            }
+        }
+    }
+
+    private class TypeCheckRunner extends AUnitPhaseRunner
+    {
+
+        private final CompilationUnitDto dto;
+        private final Runnable typeCheckCompleted;
+
+        TypeCheckRunner(CompilationUnitDto aDto, Runnable theTypeCheckCompleted) {
+            super(aDto.id, CompilationPhase.TYPE_CHECK);
+            dto = aDto;
+            typeCheckCompleted = theTypeCheckCompleted;
+        }
+
+        @Override
+        @SuppressWarnings("checkstyle:illegalcatch")
+        public void run() {
+            try {
+                if (!translateFromCache()) {
+                    components.typeChecker.doTypeChecking(dto.compilationUnit, dto.treeNodeStream);
+                    components.incrementalState.updateDependencies(dto);
+                    translate();
+                }
+            } catch (Exception ex) {
+                components.errors.log(new TSPHPException("Unexpected exception occurred: " + ex.getMessage(), ex));
+            } finally {
+                components.unitRetention.releaseTokenStream(dto);
+            }
+        }
+
+        /**
+         * Tries to get the translations of the compilation unit from the cache.
+         *
+         * @return true if all translations were found, false otherwise
+         */
+        private boolean translateFromCache() {
+            Collection<TranslationDto> cachedTranslations = hasTranslatorFactories()
+                    ? components.incrementalState.getCachedTranslations(dto.id) : null;
+            if (cachedTranslations != null) {
+                for (TranslationDto translation : cachedTranslations) {
+                    components.translationPublisher.add(translation);
+                }
+            }
+            return cachedTranslations != null;
+        }
+
+        /**
+         * The translators get the token stream passed since the one of the unit might be released right afterwards.
+         */
+        private void translate() {
+            if (!components.errors.hasFoundErrorBeforeTranslation() && hasTranslatorFactories()) {
+                TokenStream tokenStream = dto.treeNodeStream.getTokenStream();
+                for (ITranslatorFactory translatorFactory : components.translatorFactories) {
+                    components.scheduler.submitWork(new TranslatorRunner(translatorFactory, dto, tokenStream));
+                }
+            }
+        }
+
+        @Override
+        protected void afterRun() {
+            typeCheckCompleted.run();
+        }
+    }
+
+    private class TranslatorRunner extends AUnitPhaseRunner
+    {
+
+        private final CompilationUnitDto dto;
+        private final ITranslatorFactory translatorFactory;
+        private final TokenStream tokenStream;
+
+        public TranslatorRunner(ITranslatorFactory theTranslatorFactory, CompilationUnitDto compilationUnit,
+                TokenStream theTokenStream) {
+            super(compilationUnit.id, CompilationPhase.TRANSLATION);
+            translatorFactory = theTranslatorFactory;
+            dto = compilationUnit;
+            tokenStream = theTokenStream;
+        }
+
+        @Override
+        @SuppressWarnings("checkstyle:illegalcatch")
+        public void run() {
+            if (!components.lifecycle.isTranslationAborted()) {
+                try {
+                    ITranslator translator = translatorFactory.build();
+                    translator.registerErrorLogger(components.errors.getTranslationErrorLogger());
+                    String translation = translator.translate(createTreeNodeStream());
+                    components.translationPublisher.add(
+                            new TranslationDto(dto.id, translatorFactory, translation, false));
+                } catch (Exception ex) {
+                    components.errors.getTranslationErrorLogger().log(
+                            new TSPHPException("Unexpected exception occurred: " + ex.getMessage(), ex));
+                }
+            }
+        }
+
+        /**
+         * Creates a stream of its own over the AST of the unit since the translators of the same unit run
+         * concurrently. It is cheap, the stream walks the AST lazily and does not buffer the nodes.
+         */
+        private CommonTreeNodeStream createTreeNodeStream() {
+            CommonTreeNodeStream treeNodeStream = new CommonTreeNodeStream(components.astAdaptor, dto.compilationUnit);
+            treeNodeStream.setTokenStream(tokenStream);
+            return treeNodeStream;
+        }
+    }
+}
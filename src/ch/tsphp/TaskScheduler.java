@@ -0,0 +1,287 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+import ch.tsphp.common.IErrorLogger;
+import ch.tsphp.common.exceptions.TSPHPException;
+import ch.tsphp.metrics.MetricsRecorder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the tasks of a compilation on the executors of the compiler and calls the callback of the current phase as
+ * soon as all tasks of the phase have completed.
+ * <p/>
+ * Work - tasks which process a compilation unit or read its source - is dropped once the compilation was aborted, the
+ * compilation completes as soon as the running tasks have finished. Other tasks only coordinate the phases and run
+ * even if the compilation was aborted.
+ */
+public class TaskScheduler
+{
+    private final ExecutorService executorService;
+    /**
+     * Executes blocking I/O (reading files, informing translation listeners) - the same as executorService unless a
+     * separate one was specified.
+     */
+    private final ExecutorService ioExecutorService;
+    private final CompilationLifecycle lifecycle;
+    private final MetricsRecorder metricsRecorder;
+    /**
+     * Executors which were created for the compiler, they are shut down by {@link #shutdown()}.
+     */
+    private final Collection<ExecutorService> ownedExecutorServices = new ConcurrentLinkedQueue<>();
+    private final Collection<IErrorLogger> errorLoggers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Number of submitted tasks which have not yet completed plus one as long as the current phase has not submitted
+     * all its tasks yet (respectively as long as compile() was not called during the parsing and definition phase).
+     */
+    private final AtomicInteger numberOfPendingTasks = new AtomicInteger(1);
+    private final AtomicReference<Runnable> phaseCompletedCallback = new AtomicReference<>();
+    /**
+     * The task which the current worker thread runs, errors are attributed to its compilation unit.
+     */
+    private final ThreadLocal<TaskRunner> currentTask = new ThreadLocal<>();
+
+    /**
+     * Estimated cost of processing a compilation unit in a phase, namely its number of tokens.
+     */
+    private final ConcurrentMap<String, Integer> estimatedCosts = new ConcurrentHashMap<>();
+    private final Comparator<Runnable> largestFirst = new LargestFirstComparator();
+
+    public TaskScheduler(ExecutorService theExecutorService, ExecutorService theIoExecutorService,
+            CompilationLifecycle theLifecycle, MetricsRecorder theMetricsRecorder) {
+        executorService = theExecutorService;
+        ioExecutorService = theIoExecutorService;
+        lifecycle = theLifecycle;
+        metricsRecorder = theMetricsRecorder;
+    }
+
+    /**
+     * Registers a logger for the exceptions which tasks and phase callbacks did not handle themselves.
+     */
+    public void registerErrorLogger(IErrorLogger errorLogger) {
+        errorLoggers.add(errorLogger);
+    }
+
+    public boolean hasSeparateIoExecutor() {
+        return ioExecutorService != executorService;
+    }
+
+    /**
+     * Lets {@link #shutdown()} shut down the given executor.
+     */
+    public void takeOwnershipOf(ExecutorService theExecutorService) {
+        ownedExecutorServices.add(theExecutorService);
+    }
+
+    public void shutdown() {
+        for (ExecutorService ownedExecutorService : ownedExecutorServices) {
+            ownedExecutorService.shutdown();
+        }
+    }
+
+    public void submit(Runnable task) {
+        submit(task, executorService, false);
+    }
+
+    public void submitIo(Runnable task) {
+        submit(task, ioExecutorService, false);
+    }
+
+    public void submitWork(Runnable work) {
+        submit(work, executorService, true);
+    }
+
+    public void submitIoWork(Runnable work) {
+        submit(work, ioExecutorService, true);
+    }
+
+    private void submit(Runnable task, ExecutorService executor, boolean isWork) {
+        numberOfPendingTasks.incrementAndGet();
+        try {
+            executor.execute(new TaskRunner(task, isWork));
+        } catch (RejectedExecutionException ex) {
+            log(new TSPHPException("Unexpected exception occurred: " + ex.getMessage(), ex));
+            taskCompleted();
+        }
+    }
+
+    /**
+     * Executes the given task on the I/O executor without counting it as task of the current phase - it runs on the
+     * calling thread if the executor rejects it.
+     */
+    public void executeIo(Runnable task) {
+        try {
+            ioExecutorService.execute(task);
+        } catch (RejectedExecutionException ex) {
+            task.run();
+        }
+    }
+
+    /**
+     * Sets the callback which is called as soon as the tasks of the current phase have completed, the phase is held
+     * until {@link #taskCompleted()} is called once more than tasks were submitted.
+     */
+    public void setPhaseCompletedCallback(Runnable callback) {
+        phaseCompletedCallback.set(callback);
+    }
+
+    /**
+     * Submits the given runners and calls the given callback as soon as all tasks of the phase are completed.
+     * <p/>
+     * Tasks which are submitted by runners of this phase are considered to be part of the phase as well.
+     */
+    public void doPhase(Collection<? extends Runnable> runners, Runnable callback) {
+        //the largest units are submitted first so that they do not end up as critical path at the end of the phase
+        List<Runnable> orderedRunners = new ArrayList<>(runners);
+        Collections.sort(orderedRunners, largestFirst);
+
+        phaseCompletedCallback.set(callback);
+        //make sure the callback is not called before all runners are submitted
+        numberOfPendingTasks.incrementAndGet();
+        for (Runnable runner : orderedRunners) {
+            submitWork(runner);
+        }
+        taskCompleted();
+    }
+
+    @SuppressWarnings("checkstyle:illegalcatch")
+    public void taskCompleted() {
+        if (numberOfPendingTasks.decrementAndGet() == 0) {
+            Runnable callback = phaseCompletedCallback.getAndSet(null);
+            if (callback != null) {
+                try {
+                    callback.run();
+                } catch (Exception ex) {
+                    log(new TSPHPException("Unexpected exception occurred: " + ex.getMessage(), ex));
+                }
+            }
+        }
+    }
+
+    private void log(TSPHPException exception) {
+        for (IErrorLogger errorLogger : errorLoggers) {
+            errorLogger.log(exception);
+        }
+    }
+
+    /**
+     * Returns whether the calling thread is a worker which runs a task of the compilation.
+     */
+    public boolean isRunningTask() {
+        return currentTask.get() != null;
+    }
+
+    /**
+     * Returns the id of the compilation unit which the task of the calling thread processes or null if it does not
+     * process one.
+     */
+    public String getCurrentUnitId() {
+        TaskRunner task = currentTask.get();
+        return task != null ? task.getUnitId() : null;
+    }
+
+    public void setEstimatedCost(String id, int cost) {
+        estimatedCosts.put(id, cost);
+    }
+
+    public void removeEstimatedCosts(Collection<String> ids) {
+        for (String id : ids) {
+            estimatedCosts.remove(id);
+        }
+    }
+
+    public void reset() {
+        numberOfPendingTasks.set(1);
+        phaseCompletedCallback.set(null);
+        estimatedCosts.clear();
+    }
+
+    /**
+     * Wraps a task and informs the scheduler when the task has completed.
+     * <p/>
+     * Tasks which process a single compilation unit are measured if metrics listeners are registered.
+     */
+    private class TaskRunner implements Runnable
+    {
+        private final Runnable task;
+        private final boolean isWork;
+        private final long submittedAt;
+
+        TaskRunner(Runnable theTask, boolean isTaskWork) {
+            task = theTask;
+            isWork = isTaskWork;
+            submittedAt = metricsRecorder.getSubmissionTime();
+        }
+
+        @Override
+        public void run() {
+            currentTask.set(this);
+            try {
+                //the work of an aborted compilation is dropped, it completes as soon as the running tasks have finished
+                if (!isWork || !lifecycle.isAborted()) {
+                    runTask();
+                }
+            } finally {
+                taskCompleted();
+                currentTask.remove();
+            }
+        }
+
+        String getUnitId() {
+            return task instanceof AUnitPhaseRunner ? ((AUnitPhaseRunner) task).id : null;
+        }
+
+        private void runTask() {
+            if (task instanceof AUnitPhaseRunner) {
+                AUnitPhaseRunner runner = (AUnitPhaseRunner) task;
+                if (metricsRecorder.isEnabled()) {
+                    metricsRecorder.measure(runner.id, runner.phase, runner, submittedAt);
+                } else {
+                    runner.run();
+                }
+                runner.afterRun();
+            } else {
+                task.run();
+            }
+        }
+    }
+
+    /**
+     * Orders unit phase runners by the estimated cost of their units in descending order, other tasks come last.
+     */
+    private class LargestFirstComparator implements Comparator<Runnable>
+    {
+        @Override
+        public int compare(Runnable runner1, Runnable runner2) {
+            return Integer.compare(getEstimatedCost(runner2), getEstimatedCost(runner1));
+        }
+
+        private int getEstimatedCost(Runnable runner) {
+            int cost = 0;
+            if (runner instanceof AUnitPhaseRunner) {
+                Integer estimatedCost = estimatedCosts.get(((AUnitPhaseRunner) runner).id);
+                if (estimatedCost != null) {
+                    cost = estimatedCost;
+                }
+            }
+            return cost;
+        }
+    }
+}
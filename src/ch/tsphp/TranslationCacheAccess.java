@@ -0,0 +1,138 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+import ch.tsphp.cache.ContentHash;
+import ch.tsphp.cache.ITranslationCache;
+import ch.tsphp.common.ITranslatorFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Looks up and stores the translations of compilation units in a translation cache.
+ * <p/>
+ * The cache key of a unit consists of its own content hash and the content hashes of all units it depends on.
+ * Translations are cached per translator factory, a factory is identified by its class name and its position among
+ * the translator factories (so that differently configured factories of the same class do not share translations as
+ * long as they are passed in the same order).
+ */
+public class TranslationCacheAccess
+{
+    private final DependencyGraph dependencyGraph;
+    private final Collection<ITranslatorFactory> translatorFactories;
+    private final Map<ITranslatorFactory, String> translatorIds = new IdentityHashMap<>();
+    private final ConcurrentMap<String, String> contentHashes = new ConcurrentHashMap<>();
+    /**
+     * The keys with which the translations of the current compilation were looked up.
+     */
+    private final ConcurrentMap<String, String> cacheKeys = new ConcurrentHashMap<>();
+    private volatile ITranslationCache translationCache;
+
+    public TranslationCacheAccess(DependencyGraph theDependencyGraph,
+            Collection<ITranslatorFactory> theTranslatorFactories) {
+        dependencyGraph = theDependencyGraph;
+        translatorFactories = theTranslatorFactories;
+        if (theTranslatorFactories != null) {
+            int index = 0;
+            for (ITranslatorFactory translatorFactory : theTranslatorFactories) {
+                translatorIds.put(translatorFactory, translatorFactory.getClass().getName() + "#" + index);
+                ++index;
+            }
+        }
+    }
+
+    /**
+     * @param theTranslationCache the cache to use or null if translations shall not be cached
+     */
+    public void setTranslationCache(ITranslationCache theTranslationCache) {
+        translationCache = theTranslationCache;
+    }
+
+    public boolean isEnabled() {
+        return translationCache != null;
+    }
+
+    /**
+     * Stores the content hash of the given compilation unit, has to be called before its translations are looked up.
+     */
+    public void setContent(String id, String content) {
+        contentHashes.put(id, ContentHash.of(content));
+    }
+
+    public void remove(String id) {
+        contentHashes.remove(id);
+        cacheKeys.remove(id);
+    }
+
+    public void clear() {
+        contentHashes.clear();
+        cacheKeys.clear();
+    }
+
+    /**
+     * Returns the cached translations of the given compilation unit, one per translator factory.
+     *
+     * @return the translations or null if not all of them are cached
+     */
+    public Collection<TranslationDto> get(String id) {
+        Collection<TranslationDto> cachedTranslations = null;
+        String cacheKey = translationCache != null ? getCacheKey(id) : null;
+        if (cacheKey == null) {
+            cacheKeys.remove(id);
+        } else {
+            cacheKeys.put(id, cacheKey);
+            cachedTranslations = new ArrayDeque<>();
+            for (ITranslatorFactory translatorFactory : translatorFactories) {
+                String translation = translationCache.get(id, translatorIds.get(translatorFactory), cacheKey);
+                if (translation == null) {
+                    cachedTranslations = null;
+                    break;
+                }
+                cachedTranslations.add(new TranslationDto(id, translatorFactory, translation, true));
+            }
+        }
+        return cachedTranslations;
+    }
+
+    /**
+     * Caches the given translation if the type checking did not resolve symbols of units which were not yet known
+     * when the cache key was determined by {@link #get(String)} (the key would not cover all inputs of the
+     * translation otherwise).
+     */
+    public void put(TranslationDto dto) throws IOException {
+        ITranslationCache cache = translationCache;
+        String cacheKey = cacheKeys.get(dto.id);
+        if (cache != null && cacheKey != null && cacheKey.equals(getCacheKey(dto.id))) {
+            cache.put(dto.id, translatorIds.get(dto.translatorFactory), cacheKey, dto.translation);
+        }
+    }
+
+    /**
+     * @return the key or null if the content hash of a unit is not known (was added before the cache was set)
+     */
+    private String getCacheKey(String id) {
+        Set<String> ids = new TreeSet<>(dependencyGraph.getTransitiveDependencies(id));
+        ids.add(id);
+        StringBuilder stringBuilder = new StringBuilder();
+        for (String unitId : ids) {
+            String contentHash = contentHashes.get(unitId);
+            if (contentHash == null) {
+                return null;
+            }
+            stringBuilder.append(unitId).append(':').append(contentHash).append('|');
+        }
+        return ContentHash.of(stringBuilder.toString());
+    }
+}
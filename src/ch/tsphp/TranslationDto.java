@@ -0,0 +1,28 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+import ch.tsphp.common.ITranslatorFactory;
+
+/**
+ * The translation of a compilation unit done by the translator of the given factory.
+ */
+public class TranslationDto
+{
+    public final String id;
+    public final ITranslatorFactory translatorFactory;
+    public final String translation;
+    public final boolean isFromCache;
+
+    public TranslationDto(String theId, ITranslatorFactory theTranslatorFactory, String theTranslation,
+            boolean isTranslationFromCache) {
+        id = theId;
+        translatorFactory = theTranslatorFactory;
+        translation = theTranslation;
+        isFromCache = isTranslationFromCache;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+import ch.tsphp.common.ITranslatorFactory;
+import ch.tsphp.common.exceptions.TSPHPException;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Releases the translations of the compilation units - stores them, puts them into the translation cache and informs
+ * the translation listeners.
+ * <p/>
+ * Translations are done as soon as the type checking of a single unit is done but a later found error aborts the
+ * translation. Hence, translations are kept pending until the type checking of all units was successful.
+ */
+public class TranslationPublisher
+{
+    private final TaskScheduler scheduler;
+    private final CompilationErrors errors;
+    private final IncrementalState incrementalState;
+    /**
+     * Is filled concurrently by the translator workers and pre-sized when the compilation starts (see
+     * {@link #init(int)}).
+     */
+    private final TranslationStore translations;
+    private final Collection<ITranslationListener> translationListeners = new ArrayDeque<>();
+    private final Collection<TranslationDto> pendingTranslations = new ConcurrentLinkedQueue<>();
+    private volatile boolean retainTranslations = true;
+    private volatile boolean isTypeCheckingSuccessful = false;
+
+    public TranslationPublisher(Collection<ITranslatorFactory> theTranslatorFactories, TaskScheduler theScheduler,
+            CompilationErrors theErrors, IncrementalState theIncrementalState) {
+        scheduler = theScheduler;
+        errors = theErrors;
+        incrementalState = theIncrementalState;
+        translations = new TranslationStore(theTranslatorFactories);
+    }
+
+    public void registerTranslationListener(ITranslationListener listener) {
+        translationListeners.add(listener);
+    }
+
+    public void setRetainTranslations(boolean shallRetainTranslations) {
+        retainTranslations = shallRetainTranslations;
+    }
+
+    public void clearRegistrations() {
+        translationListeners.clear();
+        retainTranslations = true;
+    }
+
+    /**
+     * Pre-sizes the store for the given number of compilation units, previous translations are discarded.
+     */
+    public void init(int numberOfCompilationUnits) {
+        translations.init(numberOfCompilationUnits);
+    }
+
+    /**
+     * Adds the given translation which is released as soon as the type checking of all units was successful.
+     */
+    public void add(TranslationDto dto) {
+        pendingTranslations.add(dto);
+        if (isTypeCheckingSuccessful) {
+            releasePendingTranslations();
+        }
+    }
+
+    /**
+     * Releases the pending translations as well as all further ones right away.
+     */
+    public void typeCheckingSucceeded() {
+        isTypeCheckingSuccessful = true;
+        releasePendingTranslations();
+    }
+
+    private void releasePendingTranslations() {
+        Iterator<TranslationDto> iterator = pendingTranslations.iterator();
+        while (iterator.hasNext()) {
+            TranslationDto dto = iterator.next();
+            //remove returns false if another thread has released the translation in the meantime
+            if (pendingTranslations.remove(dto)) {
+                releaseTranslation(dto);
+            }
+        }
+    }
+
+    private void releaseTranslation(final TranslationDto dto) {
+        if (retainTranslations) {
+            translations.put(dto);
+        }
+        if (!dto.isFromCache) {
+            putIntoCache(dto);
+        }
+        if (!translationListeners.isEmpty()) {
+            if (scheduler.hasSeparateIoExecutor()) {
+                //listeners usually write the translation somewhere and should not block a CPU bound worker
+                scheduler.submitIo(new Runnable()
+                {
+                    @Override
+                    public void run() {
+                        informTranslationListeners(dto);
+                    }
+                });
+            } else {
+                informTranslationListeners(dto);
+            }
+        }
+    }
+
+    /**
+     * Caches the given translation if no error was logged for its unit (see {@link TranslationCacheAccess#put}).
+     */
+    private void putIntoCache(TranslationDto dto) {
+        if (!errors.hasFoundErrorIn(dto.id)) {
+            try {
+                incrementalState.putIntoCache(dto);
+            } catch (IOException ex) {
+                errors.getTranslationErrorLogger().log(new TSPHPException(
+                        "Could not write to the translation cache: " + ex.getMessage(), ex));
+            }
+        }
+    }
+
+    @SuppressWarnings("checkstyle:illegalcatch")
+    private void informTranslationListeners(TranslationDto dto) {
+        for (ITranslationListener listener : translationListeners) {
+            try {
+                listener.afterTranslationCompleted(dto.id, dto.translatorFactory, dto.translation);
+            } catch (Exception ex) {
+                errors.getTranslationErrorLogger().log(
+                        new TSPHPException("Unexpected exception occurred: " + ex.getMessage(), ex));
+            }
+        }
+    }
+
+    /**
+     * Discards the pending translations and the translations of the given compilation units - translations which
+     * were started before an error occurred are not valid and translations of previous compilations of the same
+     * units are outdated.
+     */
+    public void discard(Collection<String> ids) {
+        pendingTranslations.clear();
+        translations.removeAll(ids);
+    }
+
+    /**
+     * Discards the pending translations and all translations since the compilation units were not all processed.
+     */
+    public void discardAll() {
+        pendingTranslations.clear();
+        translations.clear();
+    }
+
+    public void removeAll(Collection<String> ids) {
+        translations.removeAll(ids);
+    }
+
+    /**
+     * Prepares the publisher for the next compilation, the translations of the last one are kept.
+     */
+    public void reset() {
+        isTypeCheckingSuccessful = false;
+        pendingTranslations.clear();
+    }
+
+    public Map<String, String> getTranslations() {
+        return translations.getOfFirstTarget();
+    }
+
+    public Map<ITranslatorFactory, Map<String, String>> getTranslationsPerTarget() {
+        return translations.getPerTarget();
+    }
+
+    public Map<ITranslatorFactory, Map<String, String>> copyTranslations() {
+        return translations.copy();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+import ch.tsphp.common.ITranslatorFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the translations of the compilation units per translator factory (target).
+ * <p/>
+ * The translations of a target are filled concurrently by the translator workers, the targets themselves are fixed
+ * when the store is created.
+ */
+public class TranslationStore
+{
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final Collection<ITranslatorFactory> translatorFactories;
+    private volatile Map<ITranslatorFactory, Map<String, String>> translations;
+
+    public TranslationStore(Collection<ITranslatorFactory> theTranslatorFactories) {
+        translatorFactories = theTranslatorFactories != null
+                ? theTranslatorFactories : Collections.<ITranslatorFactory>emptyList();
+        translations = create(0);
+    }
+
+    /**
+     * Replaces the translations with empty maps which can hold the translations of the given number of units without
+     * rehashing and which are striped by the number of processors (the translations are added concurrently).
+     */
+    public void init(int numberOfCompilationUnits) {
+        translations = create(numberOfCompilationUnits);
+    }
+
+    private Map<ITranslatorFactory, Map<String, String>> create(int numberOfCompilationUnits) {
+        int expectedSize = Math.max(1, numberOfCompilationUnits);
+        //linked map keeps the order of the translator factories
+        Map<ITranslatorFactory, Map<String, String>> map = new LinkedHashMap<>();
+        for (ITranslatorFactory translatorFactory : translatorFactories) {
+            map.put(translatorFactory, new ConcurrentHashMap<String, String>((int) (expectedSize / LOAD_FACTOR) + 1,
+                    LOAD_FACTOR, Runtime.getRuntime().availableProcessors()));
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    public void put(TranslationDto dto) {
+        Map<String, String> translationsOfTarget = translations.get(dto.translatorFactory);
+        if (translationsOfTarget != null) {
+            translationsOfTarget.put(dto.id, dto.translation);
+        }
+    }
+
+    /**
+     * Removes the translations of the given compilation units of all targets.
+     */
+    public void removeAll(Collection<String> ids) {
+        for (Map<String, String> translationsOfTarget : translations.values()) {
+            translationsOfTarget.keySet().removeAll(ids);
+        }
+    }
+
+    public void clear() {
+        for (Map<String, String> translationsOfTarget : translations.values()) {
+            translationsOfTarget.clear();
+        }
+    }
+
+    /**
+     * Returns the translations of the first translator factory or an empty map if there is none.
+     */
+    public Map<String, String> getOfFirstTarget() {
+        Collection<Map<String, String>> values = translations.values();
+        return values.isEmpty() ? Collections.<String, String>emptyMap() : values.iterator().next();
+    }
+
+    /**
+     * Returns the translations per translator factory (in the order of the factories) and per compilation unit.
+     */
+    public Map<ITranslatorFactory, Map<String, String>> getPerTarget() {
+        return translations;
+    }
+
+    /**
+     * Returns a copy which is not changed by later compilations.
+     */
+    public Map<ITranslatorFactory, Map<String, String>> copy() {
+        Map<ITranslatorFactory, Map<String, String>> copy = new LinkedHashMap<>();
+        for (Map.Entry<ITranslatorFactory, Map<String, String>> entry : translations.entrySet()) {
+            copy.put(entry.getKey(), Collections.unmodifiableMap(new HashMap<>(entry.getValue())));
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+}
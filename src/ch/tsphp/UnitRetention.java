@@ -0,0 +1,67 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+import ch.tsphp.common.CompilationUnitDto;
+import ch.tsphp.common.ITypeChecker;
+
+import java.util.Collection;
+
+/**
+ * Releases the token streams and ASTs of the compilation units as soon as the {@link UnitRetentionPolicy} allows it.
+ */
+public class UnitRetention
+{
+    private final ITypeChecker typeChecker;
+    private final IncrementalState incrementalState;
+    private volatile UnitRetentionPolicy unitRetentionPolicy = UnitRetentionPolicy.RETAIN_FOR_RECOMPILATION;
+    /**
+     * Set if the compilation units were released after the last compilation, see
+     * {@link #releaseCompilationUnits(Collection)}.
+     */
+    private volatile boolean hasReleasedCompilationUnits = false;
+
+    public UnitRetention(ITypeChecker theTypeChecker, IncrementalState theIncrementalState) {
+        typeChecker = theTypeChecker;
+        incrementalState = theIncrementalState;
+    }
+
+    public void setUnitRetentionPolicy(UnitRetentionPolicy policy) {
+        unitRetentionPolicy = policy;
+    }
+
+    public boolean hasReleasedCompilationUnits() {
+        return hasReleasedCompilationUnits;
+    }
+
+    /**
+     * Releases the token stream of the given unit if the retention policy allows it, the stream is needed by the
+     * type checker and the translators only.
+     */
+    public void releaseTokenStream(CompilationUnitDto compilationUnit) {
+        if (unitRetentionPolicy == UnitRetentionPolicy.RELEASE_AFTER_TRANSLATION) {
+            compilationUnit.treeNodeStream = null;
+        }
+    }
+
+    /**
+     * Releases the ASTs of the given compilation units if the retention policy allows it - the symbol tables of the
+     * type checker and the dependencies reference the ASTs as well, hence they are reset too.
+     */
+    public void releaseCompilationUnits(Collection<CompilationUnitDto> compilationUnits) {
+        if (unitRetentionPolicy == UnitRetentionPolicy.RELEASE_AFTER_TRANSLATION) {
+            compilationUnits.clear();
+            incrementalState.releaseDependencies();
+            typeChecker.reset();
+            hasReleasedCompilationUnits = true;
+        }
+    }
+
+    public void reset() {
+        hasReleasedCompilationUnits = false;
+    }
+}
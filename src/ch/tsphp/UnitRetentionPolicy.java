@@ -0,0 +1,26 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp;
+
+/**
+ * Defines how long the compiler keeps the ASTs and token streams of the compilation units.
+ */
+public enum UnitRetentionPolicy
+{
+    /**
+     * Everything is kept until {@link IIncrementalCompiler#reset()}, which allows to use
+     * {@link IIncrementalCompiler#recompile()} (default).
+     */
+    RETAIN_FOR_RECOMPILATION,
+    /**
+     * The token stream of a unit (including its hidden whitespace and comment tokens) is released as soon as the
+     * translators of the unit are done with it, respectively right after the type checking if the unit is not
+     * translated. The ASTs are released together with the symbol tables (which reference them) once the compilation
+     * has completed. Hence the compiler needs to be reset before it can compile again, recompile() is not possible.
+     */
+    RELEASE_AFTER_TRANSLATION
+}
@@ -0,0 +1,50 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.cache;
+
+import ch.tsphp.exceptions.CompilerException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Utility class which calculates hashes of contents.
+ */
+public final class ContentHash
+{
+    private static final String ALGORITHM = "SHA-1";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final int HALF_BYTE = 4;
+    private static final int LOWER_HALF_BYTE_MASK = 0x0F;
+
+    private ContentHash() {
+    }
+
+    public static String of(String content) {
+        return of(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String of(byte[] content) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new CompilerException(ALGORITHM + " is not supported by this platform.", ex);
+        }
+        return toHex(digest.digest(content));
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; ++i) {
+            chars[2 * i] = HEX_DIGITS[(bytes[i] >> HALF_BYTE) & LOWER_HALF_BYTE_MASK];
+            chars[2 * i + 1] = HEX_DIGITS[bytes[i] & LOWER_HALF_BYTE_MASK];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Translation cache which stores one file per compilation unit and translator in a cache directory.
+ * <p/>
+ * Each file contains the key followed by the translation. Entries are written to a temporary file first and moved
+ * to their final location afterwards so that a concurrently running compiler never reads a partially written entry.
+ */
+public class FileTranslationCache implements ITranslationCache
+{
+    private static final String FILE_EXTENSION = ".cache";
+
+    private final Path directory;
+
+    public FileTranslationCache(String theDirectory) {
+        directory = Paths.get(theDirectory);
+    }
+
+    @Override
+    public String get(String id, String translatorId, String key) {
+        String translation = null;
+        Path file = getFile(id, translatorId);
+        if (Files.isRegularFile(file)) {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (input.readUTF().equals(key)) {
+                    byte[] bytes = new byte[input.readInt()];
+                    input.readFully(bytes);
+                    translation = new String(bytes, StandardCharsets.UTF_8);
+                }
+            } catch (IOException ex) {
+                //a corrupt entry is treated as if there was none, it will be overwritten by the next put
+                translation = null;
+            }
+        }
+        return translation;
+    }
+
+    @Override
+    public void put(String id, String translatorId, String key, String translation) throws IOException {
+        Files.createDirectories(directory);
+        Path file = getFile(id, translatorId);
+        Path tempFile = Files.createTempFile(directory, file.getFileName().toString(), null);
+        try {
+            byte[] bytes = translation.getBytes(StandardCharsets.UTF_8);
+            try (DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                output.writeUTF(key);
+                output.writeInt(bytes.length);
+                output.write(bytes);
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private Path getFile(String id, String translatorId) {
+        return directory.resolve(ContentHash.of(translatorId + "|" + id) + FILE_EXTENSION);
+    }
+}
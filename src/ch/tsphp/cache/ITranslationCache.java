@@ -0,0 +1,23 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.cache;
+
+import java.io.IOException;
+
+/**
+ * Stores translations of compilation units together with a key which identifies the input they were created from.
+ */
+public interface ITranslationCache
+{
+
+    /**
+     * Returns the cached translation or null if there is none or if it was created for another key.
+     */
+    String get(String id, String translatorId, String key);
+
+    void put(String id, String translatorId, String key, String translation) throws IOException;
+}
@@ -0,0 +1,82 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.console;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Thin client which forwards console arguments to a {@link CompileServer} and prints its response.
+ * <p/>
+ * Paths are made absolute before they are sent since the server does not share the working directory of the client.
+ */
+public class CompileClient
+{
+    private final int port;
+
+    public CompileClient(int thePort) {
+        port = thePort;
+    }
+
+    /**
+     * Sends the given arguments to the server, prints diagnostics and translated files to the given stream as they
+     * arrive and returns the exit code of the server.
+     */
+    public int run(String[] args, PrintStream out) throws IOException {
+        int exitCode = CompileServer.EXIT_ERROR;
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            PrintWriter writer = new PrintWriter(
+                    new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+            String[] absoluteArgs = makePathsAbsolute(args);
+            for (String arg : absoluteArgs) {
+                writer.println(arg);
+            }
+            writer.println();
+
+            String line = reader.readLine();
+            while (line != null) {
+                if (line.startsWith(CompileServer.PREFIX_EXIT)) {
+                    exitCode = Integer.parseInt(line.substring(CompileServer.PREFIX_EXIT.length()));
+                } else {
+                    out.println(line);
+                }
+                line = reader.readLine();
+            }
+        }
+        return exitCode;
+    }
+
+    /**
+     * Makes all paths absolute but leaves options and include/exclude patterns untouched.
+     */
+    public static String[] makePathsAbsolute(String[] args) {
+        String[] absoluteArgs = new String[args.length];
+        boolean isPattern = false;
+        for (int i = 0; i < args.length; ++i) {
+            String arg = args[i];
+            if (isPattern || arg.startsWith("--")) {
+                absoluteArgs[i] = arg;
+                isPattern = arg.equals(ConsoleReader.OPTION_INCLUDE) || arg.equals(ConsoleReader.OPTION_EXCLUDE);
+            } else {
+                absoluteArgs[i] = new File(arg).getAbsolutePath();
+                isPattern = false;
+            }
+        }
+        return absoluteArgs;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.console;
+
+import ch.tsphp.IIncrementalCompiler;
+import ch.tsphp.ITranslationListener;
+import ch.tsphp.common.IErrorLogger;
+import ch.tsphp.common.ITranslatorFactory;
+import ch.tsphp.common.exceptions.TSPHPException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps a compiler warm and compiles on behalf of {@link CompileClient}s which connect via a localhost TCP port.
+ * <p/>
+ * Hence parser, type checker and translator classes are only loaded and JIT compiled once instead of for each
+ * invocation of the console.
+ * <p/>
+ * The protocol is line based and uses UTF-8: the client sends one argument per line (the same arguments which
+ * {@link ConsoleReader#readArguments(String[])} accepts, with absolute paths) followed by an empty line. The server
+ * streams back diagnostics prefixed with {@link #PREFIX_ERROR} and the ids of translated files prefixed with
+ * {@link #PREFIX_TRANSLATED} as soon as they occur and finishes the response with {@link #PREFIX_EXIT} followed by
+ * the exit code. The argument {@link #COMMAND_SHUTDOWN} stops the server.
+ * <p/>
+ * Requests are processed one after another since they share the same compiler.
+ */
+public class CompileServer implements Runnable
+{
+    public static final String PREFIX_ERROR = "error: ";
+    public static final String PREFIX_TRANSLATED = "translated: ";
+    public static final String PREFIX_EXIT = "exit: ";
+    public static final String COMMAND_SHUTDOWN = "--shutdown";
+    public static final int EXIT_SUCCESS = 0;
+    public static final int EXIT_ERROR = 1;
+
+    private static final int BACKLOG = 50;
+
+    private final IIncrementalCompiler compiler;
+    private final IConsoleReader consoleReader;
+    private final ServerSocket serverSocket;
+    private volatile PrintWriter currentClient;
+    private volatile boolean isShutdown;
+
+    public CompileServer(IIncrementalCompiler theCompiler, int port) throws IOException {
+        this(theCompiler, new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress()));
+    }
+
+    public CompileServer(IIncrementalCompiler theCompiler, ServerSocket theServerSocket) {
+        compiler = theCompiler;
+        consoleReader = new ConsoleReader(compiler);
+        serverSocket = theServerSocket;
+
+        compiler.registerErrorLogger(new ClientErrorLogger());
+        compiler.registerTranslationListener(new ClientTranslationListener());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts and processes requests until {@link #shutdown()} is called or a client sends
+     * {@link #COMMAND_SHUTDOWN}.
+     */
+    @Override
+    public void run() {
+        while (!isShutdown) {
+            try (Socket socket = serverSocket.accept()) {
+                process(socket);
+            } catch (SocketException ex) {
+                if (!isShutdown) {
+                    ex.printStackTrace();
+                }
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+        consoleReader.close();
+    }
+
+    public void shutdown() {
+        isShutdown = true;
+        try {
+            serverSocket.close();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private void process(Socket socket) throws IOException {
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        PrintWriter writer = new PrintWriter(
+                new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+
+        List<String> args = new ArrayList<>();
+        String line = reader.readLine();
+        while (line != null && !line.isEmpty()) {
+            args.add(line);
+            line = reader.readLine();
+        }
+
+        int exitCode;
+        if (args.size() == 1 && args.get(0).equals(COMMAND_SHUTDOWN)) {
+            shutdown();
+            exitCode = EXIT_SUCCESS;
+        } else {
+            exitCode = compile(args.toArray(new String[args.size()]), writer);
+        }
+        writer.println(PREFIX_EXIT + exitCode);
+    }
+
+    private int compile(String[] args, PrintWriter client) {
+        compiler.reset();
+        compiler.setTranslationCache(null);
+        currentClient = client;
+        try {
+            if (consoleReader.readArguments(args)) {
+                consoleReader.awaitCompilation();
+            }
+            return compiler.hasFoundError() ? EXIT_ERROR : EXIT_SUCCESS;
+        } catch (InterruptedException ex) {
+            //the client gets an exit code nonetheless, the server itself keeps running
+            ex.printStackTrace();
+            return EXIT_ERROR;
+        } finally {
+            currentClient = null;
+        }
+    }
+
+    private void send(String prefix, String message) {
+        PrintWriter client = currentClient;
+        if (client != null) {
+            client.println(prefix + message.replace('\n', ' ').replace('\r', ' '));
+        }
+    }
+
+    private class ClientErrorLogger implements IErrorLogger
+    {
+        @Override
+        public void log(TSPHPException exception) {
+            send(PREFIX_ERROR, String.valueOf(exception.getMessage()));
+        }
+    }
+
+    private class ClientTranslationListener implements ITranslationListener
+    {
+        @Override
+        public void afterTranslationCompleted(String id, ITranslatorFactory translatorFactory, String translation) {
+            send(PREFIX_TRANSLATED, id);
+        }
+    }
+}
@@ -6,24 +6,208 @@
 
 package ch.tsphp.console;
 
-import ch.tsphp.common.ICompiler;
+import ch.tsphp.IIncrementalCompiler;
+import ch.tsphp.cache.FileTranslationCache;
+import ch.tsphp.common.ACompilerListener;
+import ch.tsphp.common.exceptions.TSPHPException;
+import ch.tsphp.library.LibrarySummary;
+import ch.tsphp.metrics.CompilationMetrics;
+import ch.tsphp.metrics.IMetricsListener;
+import ch.tsphp.metrics.UnitPhaseMetricsDto;
+
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 
 public class ConsoleReader implements IConsoleReader
 {
+    public static final String OPTION_CACHE = "--cache";
+    public static final String OPTION_INCLUDE = "--include";
+    public static final String OPTION_EXCLUDE = "--exclude";
+    public static final String OPTION_OUT = "--out";
+    public static final String OPTION_METRICS = "--metrics";
+    public static final String OPTION_LIBRARY = "--library";
+
+    private static final Set<String> OPTIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            OPTION_CACHE, OPTION_INCLUDE, OPTION_EXCLUDE, OPTION_OUT, OPTION_METRICS, OPTION_LIBRARY)));
+
+    private final IIncrementalCompiler compiler;
+    private final SourceFileFinder sourceFileFinder;
+    private final boolean isOwnerOfSourceFileFinder;
+    private final ISourceFileListener sourceFileListener = new SourceFileListener();
+    private Path outputDirectory;
+    private TranslationFileWriter translationFileWriter;
+    private Path metricsFile;
+    private MetricsExporter metricsExporter;
+    private volatile CountDownLatch compilationCompleted;
+    private SourceWatcher sourceWatcher;
 
-    private final ICompiler compiler;
+    public ConsoleReader(IIncrementalCompiler theCompiler) {
+        this(theCompiler, new SourceFileFinder(theCompiler), true);
+    }
+
+    /**
+     * Creates a reader which uses the given finder, the finder is not closed by {@link #close()}.
+     */
+    public ConsoleReader(IIncrementalCompiler theCompiler, SourceFileFinder theSourceFileFinder) {
+        this(theCompiler, theSourceFileFinder, false);
+    }
 
-    public ConsoleReader(ICompiler theCompiler) {
+    private ConsoleReader(IIncrementalCompiler theCompiler, SourceFileFinder theSourceFileFinder, boolean isOwner) {
         compiler = theCompiler;
+        sourceFileFinder = theSourceFileFinder;
+        isOwnerOfSourceFileFinder = isOwner;
     }
 
+    /**
+     * Reads the options (which need to precede the paths) and compiles the files of the given paths.
+     * <p/>
+     * A path can be a file, a directory or a glob such as src/&#42;&#42;/&#42;.tsphp. Directories and globs are
+     * walked in parallel and each found .tsphp file is passed to the compiler as soon as it was found.
+     * <p/>
+     * The translations are written to .php files next to the given files unless --out is specified.
+     * <p/>
+     * Supported options:
+     * <ul>
+     * <li>--cache &lt;directory&gt; reuses translations of previous runs which are stored in the given directory</li>
+     * <li>--include &lt;glob&gt; only files of directories which match at least one include pattern are compiled</li>
+     * <li>--exclude &lt;glob&gt; files and directories which match an exclude pattern are skipped</li>
+     * <li>--out &lt;directory&gt; writes the translations into the given directory mirroring the source tree</li>
+     * <li>--metrics &lt;file&gt; writes time and memory spent per file and phase as JSON to the given file</li>
+     * <li>--library &lt;file&gt; resolves symbols against the given library summary (see {@link Main}) instead of
+     * compiling the library's source files</li>
+     * </ul>
+     * Options of previous calls are not retained, hence the same instance can be used for several compilations.
+     */
     @Override
-    public void readArguments(String[] args) {
-        if (args.length > 0) {
-            addFile(args[0]);
+    public boolean readArguments(String[] args) {
+        sourceFileFinder.clearPatterns();
+        outputDirectory = null;
+        metricsFile = null;
+        int index = 0;
+        while (index + 1 < args.length && isOption(args[index])) {
+            readOption(args[index], args[index + 1]);
+            index += 2;
+        }
+        boolean hasPaths = index < args.length;
+        if (hasPaths) {
+            if (translationFileWriter == null) {
+                translationFileWriter = new TranslationFileWriter(compiler);
+                compiler.registerTranslationListener(translationFileWriter);
+                compiler.setRetainTranslations(false);
+            }
+            translationFileWriter.setOutputDirectory(outputDirectory);
+            if (compilationCompleted == null) {
+                compiler.registerCompilerListener(new CompilationCompletedListener());
+            }
+            compilationCompleted = new CountDownLatch(1);
+            if (metricsFile != null && metricsExporter == null) {
+                metricsExporter = new MetricsExporter();
+                compiler.registerMetricsListener(metricsExporter);
+            }
+            if (metricsExporter != null) {
+                metricsExporter.start(metricsFile);
+            }
+            for (; index < args.length; ++index) {
+                addPath(args[index]);
+            }
             compiler.compile();
         }
+        return hasPaths;
+    }
+
+    /**
+     * Blocks until the compilation which was started by the last call of readArguments has completed and all its
+     * output was written (returns immediately if no compilation was started).
+     */
+    @Override
+    public void awaitCompilation() throws InterruptedException {
+        CountDownLatch latch = compilationCompleted;
+        if (latch != null) {
+            latch.await();
+        }
+    }
+
+    /**
+     * Creates a watcher for the paths passed to subsequent calls of {@link #readArguments(String[])}, the paths are
+     * registered with the watcher before they are compiled. Files created later on within a watched directory are
+     * translated to the same location as if they had existed from the beginning.
+     */
+    public SourceWatcher createSourceWatcher() throws IOException {
+        sourceWatcher = new SourceWatcher(compiler, sourceFileFinder, new ISourceFileListener()
+        {
+            @Override
+            public void sourceFileFound(Path root, Path file) {
+                if (translationFileWriter != null) {
+                    translationFileWriter.addSourceFile(file.toString(), root.relativize(file));
+                }
+            }
+        });
+        return sourceWatcher;
+    }
+
+    private boolean isOption(String arg) {
+        return OPTIONS.contains(arg);
+    }
+
+    private void readOption(String option, String value) {
+        switch (option) {
+            case OPTION_CACHE:
+                compiler.setTranslationCache(new FileTranslationCache(value));
+                break;
+            case OPTION_INCLUDE:
+                sourceFileFinder.addIncludePattern(value);
+                break;
+            case OPTION_EXCLUDE:
+                sourceFileFinder.addExcludePattern(value);
+                break;
+            case OPTION_OUT:
+                outputDirectory = Paths.get(value);
+                break;
+            case OPTION_METRICS:
+                metricsFile = Paths.get(value);
+                break;
+            case OPTION_LIBRARY:
+                addLibrary(value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option " + option);
+        }
+    }
+
+    private void addLibrary(String path) {
+        try (InputStream inputStream = Files.newInputStream(Paths.get(path))) {
+            compiler.addLibrarySummary(LibrarySummary.read(inputStream));
+        } catch (IOException ex) {
+            compiler.log(new TSPHPException("Could not read the library " + path + ": " + ex.getMessage(), ex));
+        }
+    }
+
+    private void addPath(String path) {
+        if (SourceFileFinder.isGlob(path)) {
+            if (sourceWatcher != null) {
+                sourceWatcher.watchGlob(path);
+            }
+            sourceFileFinder.findByGlob(path, sourceFileListener);
+        } else if (Files.isDirectory(Paths.get(path))) {
+            if (sourceWatcher != null) {
+                sourceWatcher.watchDirectory(Paths.get(path));
+            }
+            addDirectory(path);
+        } else {
+            if (sourceWatcher != null) {
+                sourceWatcher.watchFile(Paths.get(path));
+            }
+            addFile(path);
+        }
     }
 
     @Override
@@ -31,12 +215,85 @@ public class ConsoleReader implements IConsoleReader
         try {
             compiler.addFile(path);
         } catch (IOException ex) {
-            ex.printStackTrace();
+            compiler.log(new TSPHPException("Could not read the file " + path + ": " + ex.getMessage(), ex));
         }
     }
 
     @Override
     public void addDirectory(String path) {
-        throw new UnsupportedOperationException("Not supported yet.");
+        sourceFileFinder.find(Paths.get(path), sourceFileListener);
+    }
+
+    @Override
+    public void close() {
+        if (isOwnerOfSourceFileFinder) {
+            sourceFileFinder.close();
+        }
+    }
+
+    /**
+     * Passes found files to the compiler right away so that they are parsed while the remaining directories are
+     * still being walked.
+     */
+    private class SourceFileListener implements ISourceFileListener
+    {
+        @Override
+        public void sourceFileFound(Path root, Path file) {
+            String id = file.toString();
+            if (translationFileWriter != null) {
+                translationFileWriter.addSourceFile(id, root.relativize(file));
+            }
+            addFile(id);
+        }
+    }
+
+    /**
+     * Exports the metrics (if requested) before it signals that the compilation has completed, hence callers of
+     * {@link #awaitCompilation()} can rely on all output being written.
+     */
+    private class CompilationCompletedListener extends ACompilerListener
+    {
+        @Override
+        public void afterCompilingCompleted() {
+            if (metricsExporter != null) {
+                metricsExporter.export();
+            }
+            compilationCompleted.countDown();
+        }
+    }
+
+    /**
+     * Collects the metrics of a compilation and writes them as JSON to a file once the compilation has completed.
+     */
+    private class MetricsExporter implements IMetricsListener
+    {
+        private volatile CompilationMetrics metrics;
+        private volatile Path file;
+
+        void start(Path theFile) {
+            file = theFile;
+            metrics = theFile != null
+                    ? new CompilationMetrics(Runtime.getRuntime().availableProcessors()) : null;
+        }
+
+        @Override
+        public void afterUnitPhaseCompleted(UnitPhaseMetricsDto unitPhaseMetrics) {
+            CompilationMetrics currentMetrics = metrics;
+            if (currentMetrics != null) {
+                currentMetrics.afterUnitPhaseCompleted(unitPhaseMetrics);
+            }
+        }
+
+        void export() {
+            CompilationMetrics currentMetrics = metrics;
+            if (currentMetrics != null) {
+                try {
+                    Files.write(file, currentMetrics.toJson().getBytes(StandardCharsets.UTF_8));
+                } catch (IOException ex) {
+                    compiler.log(new TSPHPException("Could not write the metrics to " + file + ": "
+                            + ex.getMessage(), ex));
+                }
+            }
+        }
     }
 }
@@ -6,12 +6,30 @@
 
 package ch.tsphp.console;
 
-public interface IConsoleReader
+import java.io.Closeable;
+
+public interface IConsoleReader extends Closeable
 {
 
-    void readArguments(String[] args);
+    /**
+     * Reads the given arguments and starts the compilation of the given paths.
+     *
+     * @return true if a compilation was started, false if no path was given
+     */
+    boolean readArguments(String[] args);
+
+    /**
+     * Blocks until the compilation started by the last call of {@link #readArguments(String[])} has completed.
+     */
+    void awaitCompilation() throws InterruptedException;
 
     void addFile(String path);
 
     void addDirectory(String path);
+
+    /**
+     * Releases the threads which were created to walk directories.
+     */
+    @Override
+    void close();
 }
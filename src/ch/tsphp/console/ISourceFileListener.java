@@ -0,0 +1,23 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.console;
+
+import java.nio.file.Path;
+
+/**
+ * Listener which is informed about each source file a {@link SourceFileFinder} discovers.
+ * <p/>
+ * Directories are walked in parallel and hence the listener might be called concurrently.
+ */
+public interface ISourceFileListener
+{
+    /**
+     * @param root The directory in which the search started.
+     * @param file The found file (resolved against root).
+     */
+    void sourceFileFound(Path root, Path file);
+}
@@ -0,0 +1,85 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.console;
+
+import ch.tsphp.common.IErrorLogger;
+import ch.tsphp.common.TSPHPAstAdaptor;
+import ch.tsphp.common.exceptions.TSPHPException;
+import ch.tsphp.exceptions.CompilerException;
+import ch.tsphp.library.LibrarySummary;
+import ch.tsphp.library.LibrarySummaryCreator;
+import ch.tsphp.parser.ParserFacade;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Writes the {@link LibrarySummary} of files and directories to a file (see --create-library of {@link Main}).
+ */
+class LibrarySummaryWriter
+{
+    private final IErrorLogger errorLogger;
+
+    LibrarySummaryWriter(IErrorLogger theErrorLogger) {
+        errorLogger = theErrorLogger;
+    }
+
+    /**
+     * Creates the summary of the given files and directories and writes it to the given library file.
+     *
+     * @return {@link CompileServer#EXIT_SUCCESS} if the summary was written, {@link CompileServer#EXIT_ERROR} if an
+     * error occurred (it was logged)
+     */
+    int write(String libraryFile, String[] paths) throws InterruptedException {
+        ParserFacade parser = new ParserFacade(new TSPHPAstAdaptor());
+        parser.registerErrorLogger(errorLogger);
+        ExecutorService executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        int exitCode = CompileServer.EXIT_ERROR;
+        try {
+            LibrarySummary summary = new LibrarySummaryCreator(parser, executorService).create(findFiles(paths), null);
+            try (OutputStream outputStream = Files.newOutputStream(Paths.get(libraryFile))) {
+                summary.write(outputStream);
+            }
+            exitCode = CompileServer.EXIT_SUCCESS;
+        } catch (IOException | CompilerException ex) {
+            errorLogger.log(new TSPHPException(ex.getMessage(), ex));
+        } finally {
+            executorService.shutdown();
+        }
+        return exitCode;
+    }
+
+    private Collection<String> findFiles(String[] paths) {
+        final List<String> files = Collections.synchronizedList(new ArrayList<String>());
+        ISourceFileListener listener = new ISourceFileListener()
+        {
+            @Override
+            public void sourceFileFound(Path root, Path file) {
+                files.add(file.toString());
+            }
+        };
+        try (SourceFileFinder sourceFileFinder = new SourceFileFinder(errorLogger)) {
+            for (String path : paths) {
+                if (Files.isDirectory(Paths.get(path))) {
+                    sourceFileFinder.find(Paths.get(path), listener);
+                } else {
+                    files.add(path);
+                }
+            }
+        }
+        return files;
+    }
+}
@@ -6,19 +6,125 @@
 
 package ch.tsphp.console;
 
+import ch.tsphp.ExecutionMode;
 import ch.tsphp.HardCodedCompilerInitialiser;
+import ch.tsphp.IIncrementalCompiler;
+import ch.tsphp.UnitRetentionPolicy;
+import ch.tsphp.common.IErrorLogger;
+import ch.tsphp.common.exceptions.TSPHPException;
+
+import java.io.IOException;
+import java.util.Arrays;
 
 public final class Main
 {
+    public static final String OPTION_DAEMON = "--daemon";
+    public static final String OPTION_CONNECT = "--connect";
+    public static final String OPTION_CREATE_LIBRARY = "--create-library";
+    public static final String OPTION_WATCH = "--watch";
 
     private Main() {
     }
 
     /**
+     * Compiles the given paths (see {@link ConsoleReader#readArguments(String[])}).
+     * <p/>
+     * Alternatively --daemon &lt;port&gt; starts a {@link CompileServer} which keeps the compiler warm and
+     * --connect &lt;port&gt; followed by the usual arguments lets such a server do the compilation.
+     * <p/>
+     * --create-library &lt;file&gt; followed by files and directories writes a
+     * {@link ch.tsphp.library.LibrarySummary} of them to the given file which can be passed to later compilations via
+     * --library &lt;file&gt;.
+     * <p/>
+     * --watch followed by the usual arguments compiles the given paths and then keeps watching them, each round of
+     * changes is recompiled with the same (warm) compiler (see {@link SourceWatcher}) until the process is killed.
+     *
      * @param args the command line arguments
      */
-    public static void main(final String[] args) {
-        IConsoleReader consoleReader = new ConsoleReader(new HardCodedCompilerInitialiser().create());
-        consoleReader.readArguments(args);
+    public static void main(final String[] args) throws InterruptedException {
+        if (args.length >= 2 && args[0].equals(OPTION_DAEMON)) {
+            System.exit(serve(Integer.parseInt(args[1])));
+        } else if (args.length >= 2 && args[0].equals(OPTION_CONNECT)) {
+            System.exit(connect(Integer.parseInt(args[1]), Arrays.copyOfRange(args, 2, args.length)));
+        } else if (args.length > 2 && args[0].equals(OPTION_CREATE_LIBRARY)) {
+            LibrarySummaryWriter writer = new LibrarySummaryWriter(new StandardErrorLogger());
+            System.exit(writer.write(args[1], Arrays.copyOfRange(args, 2, args.length)));
+        } else if (args.length >= 2 && args[0].equals(OPTION_WATCH)) {
+            System.exit(watch(Arrays.copyOfRange(args, 1, args.length)));
+        } else {
+            System.exit(compile(args));
+        }
+    }
+
+    private static int serve(int port) {
+        try {
+            new CompileServer(createCompiler(), port).run();
+            return CompileServer.EXIT_SUCCESS;
+        } catch (IOException ex) {
+            new StandardErrorLogger().log(new TSPHPException(ex.getMessage(), ex));
+            return CompileServer.EXIT_ERROR;
+        }
+    }
+
+    private static int connect(int port, String[] args) {
+        try {
+            return new CompileClient(port).run(args, System.out);
+        } catch (IOException ex) {
+            new StandardErrorLogger().log(new TSPHPException(ex.getMessage(), ex));
+            return CompileServer.EXIT_ERROR;
+        }
+    }
+
+    private static int compile(String[] args) throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler();
+        compiler.registerErrorLogger(new StandardErrorLogger());
+        //a single compilation, hence nothing needs to be kept for a recompilation
+        compiler.setUnitRetentionPolicy(UnitRetentionPolicy.RELEASE_AFTER_TRANSLATION);
+        int exitCode = CompileServer.EXIT_SUCCESS;
+        try (IConsoleReader consoleReader = new ConsoleReader(compiler)) {
+            if (consoleReader.readArguments(args)) {
+                consoleReader.awaitCompilation();
+                exitCode = compiler.hasFoundError() ? CompileServer.EXIT_ERROR : CompileServer.EXIT_SUCCESS;
+            }
+        } finally {
+            compiler.shutdown();
+        }
+        return exitCode;
+    }
+
+    private static int watch(String[] args) throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler();
+        IErrorLogger errorLogger = new StandardErrorLogger();
+        compiler.registerErrorLogger(errorLogger);
+        int exitCode = CompileServer.EXIT_SUCCESS;
+        try (ConsoleReader consoleReader = new ConsoleReader(compiler);
+             SourceWatcher sourceWatcher = consoleReader.createSourceWatcher()) {
+            if (consoleReader.readArguments(args)) {
+                consoleReader.awaitCompilation();
+                sourceWatcher.run();
+            }
+        } catch (IOException ex) {
+            errorLogger.log(new TSPHPException(ex.getMessage(), ex));
+            exitCode = CompileServer.EXIT_ERROR;
+        } finally {
+            compiler.shutdown();
+        }
+        return exitCode;
+    }
+
+    /**
+     * Files are read and translations written on a separate I/O pool so that slow (e.g. network) file systems do not
+     * keep the CPU bound phases from using all processors.
+     */
+    private static IIncrementalCompiler createCompiler() {
+        return new HardCodedCompilerInitialiser().create(ExecutionMode.SEPARATE_IO_AND_CPU);
+    }
+
+    private static class StandardErrorLogger implements IErrorLogger
+    {
+        @Override
+        public void log(TSPHPException exception) {
+            System.err.println(exception.getMessage());
+        }
     }
 }
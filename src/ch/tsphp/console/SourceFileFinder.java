@@ -0,0 +1,272 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.console;
+
+import ch.tsphp.common.IErrorLogger;
+import ch.tsphp.common.exceptions.TSPHPException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Walks directory trees in parallel and reports each file which ends with
+ * {@link TranslationFileWriter#SOURCE_FILE_EXTENSION} and passes the include and exclude patterns as soon as it is
+ * found.
+ * <p/>
+ * Patterns use the glob syntax of {@link java.nio.file.FileSystem#getPathMatcher(String)} and are matched against
+ * the path of a file relative to the directory in which the search started. Directories matching an exclude pattern
+ * are not walked at all. Symbolic links to directories are followed but each directory is walked only once per
+ * search, hence cyclic links do not lead to an endless walk.
+ */
+public class SourceFileFinder implements Closeable
+{
+    private static final String GLOB_CHARACTERS = "*?[{";
+
+    private final List<PathMatcher> includes = new ArrayList<>();
+    private final List<PathMatcher> excludes = new ArrayList<>();
+    private final IErrorLogger errorLogger;
+    private final ForkJoinPool forkJoinPool;
+    private final boolean isOwnerOfForkJoinPool;
+
+    /**
+     * Creates a finder with a pool of its own which is shut down by {@link #close()}.
+     */
+    public SourceFileFinder(IErrorLogger theErrorLogger) {
+        this(theErrorLogger, new ForkJoinPool(), true);
+    }
+
+    /**
+     * Creates a finder which uses the given pool, the pool is not shut down by {@link #close()}.
+     */
+    public SourceFileFinder(IErrorLogger theErrorLogger, ForkJoinPool theForkJoinPool) {
+        this(theErrorLogger, theForkJoinPool, false);
+    }
+
+    private SourceFileFinder(IErrorLogger theErrorLogger, ForkJoinPool theForkJoinPool, boolean isOwner) {
+        errorLogger = theErrorLogger;
+        forkJoinPool = theForkJoinPool;
+        isOwnerOfForkJoinPool = isOwner;
+    }
+
+    public void addIncludePattern(String glob) {
+        includes.add(createMatcher(glob));
+    }
+
+    public void addExcludePattern(String glob) {
+        excludes.add(createMatcher(glob));
+    }
+
+    /**
+     * Removes all include and exclude patterns.
+     */
+    public void clearPatterns() {
+        includes.clear();
+        excludes.clear();
+    }
+
+    /**
+     * Indicates whether the given path contains glob characters and should hence be passed to
+     * {@link #findByGlob(String, ISourceFileListener)} rather than be treated as file or directory.
+     */
+    public static boolean isGlob(String path) {
+        for (int i = 0; i < GLOB_CHARACTERS.length(); ++i) {
+            if (path.indexOf(GLOB_CHARACTERS.charAt(i)) != -1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Walks the given directory and blocks until all files have been reported to the given listener.
+     */
+    public void find(Path directory, ISourceFileListener listener) {
+        find(directory, null, listener);
+    }
+
+    /**
+     * Splits the given glob (for instance src/&#42;&#42;/model/&#42;.tsphp) into the directory without glob
+     * characters (src) and the remaining pattern which a file needs to match in addition to the include patterns.
+     */
+    public void findByGlob(String glob, ISourceFileListener listener) {
+        find(getGlobDirectory(glob), getGlobPattern(glob), listener);
+    }
+
+    /**
+     * Returns the leading directory of the given glob which does not contain any glob characters.
+     */
+    public static Path getGlobDirectory(String glob) {
+        String normalisedGlob = glob.replace('\\', '/');
+        int endOfDirectory = getEndOfGlobDirectory(normalisedGlob);
+        return Paths.get(endOfDirectory == -1 ? "." : normalisedGlob.substring(0, endOfDirectory + 1));
+    }
+
+    /**
+     * Returns a matcher for the part of the given glob which follows {@link #getGlobDirectory(String)}, it is matched
+     * against paths relative to this directory.
+     */
+    public static PathMatcher getGlobPattern(String glob) {
+        String normalisedGlob = glob.replace('\\', '/');
+        return createMatcher(normalisedGlob.substring(getEndOfGlobDirectory(normalisedGlob) + 1));
+    }
+
+    private static int getEndOfGlobDirectory(String normalisedGlob) {
+        int firstGlobCharacter = normalisedGlob.length();
+        for (int i = 0; i < GLOB_CHARACTERS.length(); ++i) {
+            int index = normalisedGlob.indexOf(GLOB_CHARACTERS.charAt(i));
+            if (index != -1 && index < firstGlobCharacter) {
+                firstGlobCharacter = index;
+            }
+        }
+        return normalisedGlob.lastIndexOf('/', firstGlobCharacter);
+    }
+
+    /**
+     * Indicates whether the given file would be reported if the given root directory was walked.
+     *
+     * @param pattern an additional pattern (see {@link #getGlobPattern(String)}) or null
+     */
+    public boolean isSourceFile(Path root, Path file, PathMatcher pattern) {
+        return isSourceFile(root.relativize(file), pattern);
+    }
+
+    /**
+     * Indicates whether the given directory would be skipped if the given root directory was walked.
+     */
+    public boolean isExcludedDirectory(Path root, Path directory) {
+        return matchesAny(excludes, root.relativize(directory));
+    }
+
+    private void find(Path directory, PathMatcher pattern, ISourceFileListener listener) {
+        if (Files.isDirectory(directory)) {
+            forkJoinPool.invoke(new DirectoryWalker(new Search(directory, pattern, listener), directory));
+        } else {
+            errorLogger.log(new TSPHPException(directory + " is not a directory."));
+        }
+    }
+
+    private static PathMatcher createMatcher(String glob) {
+        return Paths.get(".").getFileSystem().getPathMatcher("glob:" + glob);
+    }
+
+    private boolean isSourceFile(Path relativePath, PathMatcher pattern) {
+        if (!relativePath.toString().endsWith(TranslationFileWriter.SOURCE_FILE_EXTENSION)) {
+            return false;
+        }
+        boolean matchesPattern = pattern == null || pattern.matches(relativePath);
+        boolean isIncluded = includes.isEmpty() || matchesAny(includes, relativePath);
+        return matchesPattern && isIncluded && !matchesAny(excludes, relativePath);
+    }
+
+    private boolean matchesAny(Collection<PathMatcher> matchers, Path path) {
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Shuts the pool down if it was created by this finder.
+     */
+    @Override
+    public void close() {
+        if (isOwnerOfForkJoinPool) {
+            forkJoinPool.shutdown();
+        }
+    }
+
+    /**
+     * The state which is shared by the walkers of a single search.
+     */
+    private static class Search
+    {
+        private final Path root;
+        private final PathMatcher pattern;
+        private final ISourceFileListener listener;
+        private final Set<Path> visitedDirectories = Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+
+        Search(Path theRoot, PathMatcher thePattern, ISourceFileListener theListener) {
+            root = theRoot;
+            pattern = thePattern;
+            listener = theListener;
+        }
+
+        /**
+         * Returns true if the given directory was not visited before during this search (symbolic links resolved).
+         */
+        boolean visit(Path directory) throws IOException {
+            return visitedDirectories.add(directory.toRealPath());
+        }
+    }
+
+    private class DirectoryWalker extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Search search;
+        private final Path directory;
+
+        DirectoryWalker(Search theSearch, Path theDirectory) {
+            search = theSearch;
+            directory = theDirectory;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryWalker> subDirectories = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                if (search.visit(directory)) {
+                    for (Path path : stream) {
+                        walk(path, subDirectories);
+                    }
+                }
+            } catch (IOException ex) {
+                logReadError(ex);
+            } catch (DirectoryIteratorException ex) {
+                //the iteration over the stream wraps the IOException
+                logReadError(ex.getCause());
+            }
+            for (DirectoryWalker walker : subDirectories) {
+                walker.join();
+            }
+        }
+
+        private void logReadError(IOException ex) {
+            errorLogger.log(new TSPHPException("Could not read the directory " + directory + ": " + ex.getMessage(),
+                    ex));
+        }
+
+        private void walk(Path path, Collection<DirectoryWalker> subDirectories) {
+            Path relativePath = search.root.relativize(path);
+            if (Files.isDirectory(path)) {
+                if (!matchesAny(excludes, relativePath)) {
+                    DirectoryWalker walker = new DirectoryWalker(search, path);
+                    walker.fork();
+                    subDirectories.add(walker);
+                }
+            } else if (isSourceFile(relativePath, search.pattern)) {
+                search.listener.sourceFileFound(search.root, path);
+            }
+        }
+    }
+}
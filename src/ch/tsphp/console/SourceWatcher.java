@@ -0,0 +1,278 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.console;
+
+import ch.tsphp.IIncrementalCompiler;
+import ch.tsphp.common.ACompilerListener;
+import ch.tsphp.common.exceptions.TSPHPException;
+import ch.tsphp.exceptions.CompilerException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches source files via a {@link java.nio.file.WatchService} and recompiles the changed files (and the files
+ * depending on them) with the same compiler, hence the parsed compilation units and the type system of the unchanged
+ * files are reused.
+ * <p/>
+ * Events are coalesced: a round of changes ends only after no further event was received during the quiet period,
+ * so that saving several files at once (or an editor writing a file in several steps) triggers a single
+ * recompilation. Only the recompiled files are translated and hence only their translations are rewritten.
+ * <p/>
+ * The watched paths should be registered before the initial compilation is started so that changes made during
+ * this compilation are picked up by the first round.
+ */
+public class SourceWatcher implements Closeable
+{
+    public static final long DEFAULT_QUIET_PERIOD_IN_MS = 200;
+
+    private final IIncrementalCompiler compiler;
+    private final SourceFileFinder sourceFileFinder;
+    private final ISourceFileListener sourceFileListener;
+    private final WatchedDirectories watchedDirectories;
+    private final List<WatchedRoot> roots = new ArrayList<>();
+    private final Map<Path, String> knownFiles = new HashMap<>();
+    private volatile long quietPeriodInMs = DEFAULT_QUIET_PERIOD_IN_MS;
+    private volatile boolean isClosed;
+    private volatile CountDownLatch recompilationCompleted;
+
+    /**
+     * @param theSourceFileListener is informed about each changed or created file within a watched directory
+     *                              before the file is passed to the compiler.
+     */
+    public SourceWatcher(IIncrementalCompiler theCompiler, SourceFileFinder theSourceFileFinder,
+            ISourceFileListener theSourceFileListener) throws IOException {
+        compiler = theCompiler;
+        sourceFileFinder = theSourceFileFinder;
+        sourceFileListener = theSourceFileListener;
+        watchedDirectories = new WatchedDirectories(theSourceFileFinder);
+        compiler.registerCompilerListener(new RecompilationCompletedListener());
+    }
+
+    public void setQuietPeriod(long theQuietPeriodInMs) {
+        quietPeriodInMs = theQuietPeriodInMs;
+    }
+
+    /**
+     * Watches the given directory and all its sub-directories which are not excluded by the include and exclude
+     * patterns of the {@link SourceFileFinder}.
+     */
+    public void watchDirectory(Path directory) {
+        watch(new WatchedRoot(directory, null, null));
+    }
+
+    /**
+     * Watches the files matching the given glob (see {@link SourceFileFinder#findByGlob(String,
+     * ISourceFileListener)}).
+     */
+    public void watchGlob(String glob) {
+        watch(new WatchedRoot(SourceFileFinder.getGlobDirectory(glob), SourceFileFinder.getGlobPattern(glob), null));
+    }
+
+    /**
+     * Watches a single file, the file is passed to the compiler with the given path as id.
+     */
+    public void watchFile(Path file) {
+        Path absoluteFile = file.toAbsolutePath().normalize();
+        WatchedRoot root = new WatchedRoot(absoluteFile.getParent(), null, file);
+        roots.add(root);
+        try {
+            watchedDirectories.register(root.getDirectory());
+            knownFiles.put(absoluteFile, file.toString());
+        } catch (IOException ex) {
+            compiler.log(new TSPHPException("Could not watch the file " + file + ": " + ex.getMessage(), ex));
+        }
+    }
+
+    private void watch(WatchedRoot root) {
+        roots.add(root);
+        Collection<Path> files = new ArrayList<>();
+        registerRecursively(root, root.getDirectory(), files);
+        for (Path file : files) {
+            knownFiles.put(file.toAbsolutePath().normalize(), file.toString());
+        }
+    }
+
+    /**
+     * Blocks and recompiles after each round of changes until the watcher is closed.
+     */
+    public void run() throws InterruptedException {
+        while (!isClosed) {
+            processChanges(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Waits at most the given time for a change, collects further changes until the quiet period passed without
+     * any event and recompiles the affected files.
+     *
+     * @return true if a recompilation took place and has completed, false otherwise (no relevant change occurred
+     * or the watcher was closed)
+     */
+    public boolean processChanges(long timeout, TimeUnit unit) throws InterruptedException {
+        Set<Path> changedPaths = new LinkedHashSet<>();
+        try {
+            WatchKey key = watchedDirectories.poll(timeout, unit);
+            while (key != null) {
+                collectChanges(key, changedPaths);
+                key = watchedDirectories.poll(quietPeriodInMs, TimeUnit.MILLISECONDS);
+            }
+        } catch (ClosedWatchServiceException ex) {
+            return false;
+        }
+        return applyChanges(changedPaths) && recompile();
+    }
+
+    private void collectChanges(WatchKey key, Collection<Path> changedPaths) {
+        Path directory = watchedDirectories.getDirectory(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                //events were lost, hence everything within the directory might have changed
+                changedPaths.add(directory);
+                Path absoluteDirectory = directory.toAbsolutePath().normalize();
+                for (Map.Entry<Path, String> entry : knownFiles.entrySet()) {
+                    if (entry.getKey().startsWith(absoluteDirectory)) {
+                        changedPaths.add(Paths.get(entry.getValue()));
+                    }
+                }
+            } else {
+                changedPaths.add(directory.resolve((Path) event.context()));
+            }
+        }
+        watchedDirectories.reset(key);
+    }
+
+    private boolean applyChanges(Collection<Path> changedPaths) {
+        boolean hasChanged = false;
+        for (Path path : changedPaths) {
+            if (Files.isDirectory(path)) {
+                Collection<Path> files = new ArrayList<>();
+                for (WatchedRoot root : roots) {
+                    if (root.getFile() == null && path.startsWith(root.getDirectory())
+                            && !sourceFileFinder.isExcludedDirectory(root.getDirectory(), path)) {
+                        registerRecursively(root, path, files);
+                    }
+                }
+                for (Path file : files) {
+                    hasChanged = updateFile(file) || hasChanged;
+                }
+            } else if (Files.isRegularFile(path)) {
+                hasChanged = updateFile(path) || hasChanged;
+            } else {
+                hasChanged = removeFiles(path.toAbsolutePath().normalize()) || hasChanged;
+            }
+        }
+        return hasChanged;
+    }
+
+    private boolean updateFile(Path path) {
+        Path absolutePath = path.toAbsolutePath().normalize();
+        for (WatchedRoot root : roots) {
+            if (contains(root, path, absolutePath)) {
+                Path file = root.getFile() != null ? root.getFile() : path;
+                if (root.getFile() == null) {
+                    sourceFileListener.sourceFileFound(root.getDirectory(), file);
+                }
+                knownFiles.put(absolutePath, file.toString());
+                try {
+                    compiler.updateFile(file.toString());
+                } catch (IOException ex) {
+                    compiler.log(new TSPHPException("Could not read the file " + file + ": " + ex.getMessage(), ex));
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean contains(WatchedRoot root, Path path, Path absolutePath) {
+        if (root.getFile() != null) {
+            return absolutePath.equals(root.getDirectory().resolve(root.getFile().getFileName()));
+        }
+        return path.startsWith(root.getDirectory())
+                && sourceFileFinder.isSourceFile(root.getDirectory(), path, root.getPattern());
+    }
+
+    /**
+     * Removes the given file or all files within the given (no longer existing) directory.
+     */
+    private boolean removeFiles(Path absolutePath) {
+        boolean hasRemoved = false;
+        Iterator<Map.Entry<Path, String>> iterator = knownFiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, String> entry = iterator.next();
+            if (entry.getKey().startsWith(absolutePath)) {
+                compiler.removeCompilationUnit(entry.getValue());
+                iterator.remove();
+                hasRemoved = true;
+            }
+        }
+        return hasRemoved;
+    }
+
+    private boolean recompile() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        recompilationCompleted = latch;
+        try {
+            compiler.recompile();
+        } catch (CompilerException ex) {
+            recompilationCompleted = null;
+            compiler.log(new TSPHPException("Could not recompile: " + ex.getMessage(), ex));
+            return false;
+        }
+        latch.await();
+        return true;
+    }
+
+    private void registerRecursively(WatchedRoot root, Path directory, Collection<Path> foundFiles) {
+        try {
+            watchedDirectories.registerRecursively(root, directory, foundFiles);
+        } catch (IOException ex) {
+            compiler.log(new TSPHPException("Could not watch the directory " + directory + ": "
+                    + ex.getMessage(), ex));
+        }
+    }
+
+    /**
+     * Stops watching, a blocked {@link #run()} or {@link #processChanges(long, TimeUnit)} returns as soon as an
+     * ongoing recompilation has completed.
+     */
+    @Override
+    public void close() throws IOException {
+        isClosed = true;
+        watchedDirectories.close();
+    }
+
+    private class RecompilationCompletedListener extends ACompilerListener
+    {
+        @Override
+        public void afterCompilingCompleted() {
+            CountDownLatch latch = recompilationCompleted;
+            if (latch != null) {
+                recompilationCompleted = null;
+                latch.countDown();
+            }
+        }
+    }
+}
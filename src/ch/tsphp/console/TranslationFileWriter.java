@@ -0,0 +1,190 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.console;
+
+import ch.tsphp.ITranslationListener;
+import ch.tsphp.common.IErrorLogger;
+import ch.tsphp.common.ITranslatorFactory;
+import ch.tsphp.common.exceptions.TSPHPException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes each translation to a .php file as soon as the translation is available.
+ * <p/>
+ * Per default the file is written next to the translated file. If an output directory is specified, then the
+ * translation of a file which was registered via {@link #addSourceFile(String, Path)} is written to the same relative
+ * path within the output directory, hence the output directory mirrors the source tree.
+ * <p/>
+ * A file is only written if its content changes, hence the modification time of unchanged files is preserved (which
+ * keeps opcode caches and incremental deployments from processing them again). Files are written to a temporary file
+ * first which is then renamed, so that readers never see a partially written translation.
+ * <p/>
+ * The path of a file does not depend on the target, hence only the translations of a single translator factory are
+ * written - translations of another factory are reported as error instead of overwriting the files of the first one.
+ */
+public class TranslationFileWriter implements ITranslationListener
+{
+    public static final String SOURCE_FILE_EXTENSION = ".tsphp";
+    public static final String TARGET_FILE_EXTENSION = ".php";
+
+    private final IErrorLogger errorLogger;
+    private volatile Path outputDirectory;
+    private final ConcurrentMap<String, Path> relativePaths = new ConcurrentHashMap<>();
+    private final AtomicReference<ITranslatorFactory> target = new AtomicReference<>();
+
+    public TranslationFileWriter(IErrorLogger theErrorLogger) {
+        this(theErrorLogger, null);
+    }
+
+    public TranslationFileWriter(IErrorLogger theErrorLogger, Path theOutputDirectory) {
+        errorLogger = theErrorLogger;
+        outputDirectory = theOutputDirectory;
+    }
+
+    /**
+     * Sets the directory into which translations are written, null to write them next to the translated files.
+     * <p/>
+     * Must not be changed during compilation.
+     */
+    public void setOutputDirectory(Path theOutputDirectory) {
+        outputDirectory = theOutputDirectory;
+        relativePaths.clear();
+    }
+
+    /**
+     * Registers the path of the source file with the given id relative to the source root it was found in.
+     */
+    public void addSourceFile(String id, Path relativePath) {
+        relativePaths.put(id, relativePath);
+    }
+
+    @Override
+    public void afterTranslationCompleted(String id, ITranslatorFactory translatorFactory, String translation) {
+        if (target.compareAndSet(null, translatorFactory) || target.get() == translatorFactory) {
+            write(id, translation);
+        } else {
+            errorLogger.log(new TSPHPException("Could not write the translation of " + id + " since the translations "
+                    + "of several translator factories would be written to the same file, only the translations of "
+                    + target.get().getClass().getName() + " are written."));
+        }
+    }
+
+    /**
+     * Writes the given translations (for instance the ones of {@link ch.tsphp.CompilationResultDto#translations}) in
+     * parallel using the given executor and blocks until all are written. A file is written on the calling thread if
+     * the executor rejects it.
+     *
+     * @return the number of files which were written, i.e. without the files whose content did not change
+     */
+    public int writeAll(Map<String, String> translations, ExecutorService executorService)
+            throws InterruptedException {
+        final AtomicInteger numberOfWrittenFiles = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(translations.size());
+        for (final Map.Entry<String, String> entry : translations.entrySet()) {
+            Runnable writer = new Runnable()
+            {
+                @Override
+                public void run() {
+                    try {
+                        if (write(entry.getKey(), entry.getValue())) {
+                            numberOfWrittenFiles.incrementAndGet();
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            };
+            try {
+                executorService.execute(writer);
+            } catch (RejectedExecutionException ex) {
+                writer.run();
+            }
+        }
+        latch.await();
+        return numberOfWrittenFiles.get();
+    }
+
+    private boolean write(String id, String translation) {
+        Path file = getTargetFile(id);
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            if (outputDirectory != null && directory != null) {
+                Files.createDirectories(directory);
+            }
+            byte[] content = translation.getBytes(StandardCharsets.UTF_8);
+            if (!hasContent(file, content)) {
+                writeAtomically(directory, file, content);
+                return true;
+            }
+        } catch (IOException ex) {
+            errorLogger.log(new TSPHPException("Could not write the translation to " + file + ": "
+                    + ex.getMessage(), ex));
+        }
+        return false;
+    }
+
+    private boolean hasContent(Path file, byte[] content) throws IOException {
+        return Files.isRegularFile(file) && Files.size(file) == content.length
+                && Arrays.equals(Files.readAllBytes(file), content);
+    }
+
+    private void writeAtomically(Path directory, Path file, byte[] content) throws IOException {
+        //the temporary file needs to be on the same file system, otherwise it cannot be renamed atomically. It is not
+        //created via Files.createTempFile since it would only be accessible by the owner
+        Path temporaryFile = directory.resolve("." + file.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.write(temporaryFile, content, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            try {
+                Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    protected Path getTargetFile(String pathOfSourceFile) {
+        Path targetFile;
+        if (outputDirectory != null) {
+            Path relativePath = relativePaths.get(pathOfSourceFile);
+            if (relativePath == null) {
+                relativePath = Paths.get(pathOfSourceFile).getFileName();
+            }
+            targetFile = outputDirectory.resolve(replaceExtension(relativePath.toString()));
+        } else {
+            targetFile = Paths.get(replaceExtension(pathOfSourceFile));
+        }
+        return targetFile;
+    }
+
+    private String replaceExtension(String pathOfSourceFile) {
+        String path = pathOfSourceFile;
+        if (path.endsWith(SOURCE_FILE_EXTENSION)) {
+            path = path.substring(0, path.length() - SOURCE_FILE_EXTENSION.length());
+        }
+        return path + TARGET_FILE_EXTENSION;
+    }
+}
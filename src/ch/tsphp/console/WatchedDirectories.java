@@ -0,0 +1,97 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.console;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The directories registered at the {@link WatchService} of a {@link SourceWatcher}.
+ */
+class WatchedDirectories implements Closeable
+{
+    private final SourceFileFinder sourceFileFinder;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+
+    WatchedDirectories(SourceFileFinder theSourceFileFinder) throws IOException {
+        sourceFileFinder = theSourceFileFinder;
+        watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    void register(Path directory) throws IOException {
+        WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        directories.put(key, directory);
+    }
+
+    /**
+     * Registers the given directory and all its sub-directories which are not excluded by the {@link SourceFileFinder}
+     * and adds the source files of the given root found meanwhile to foundFiles.
+     */
+    void registerRecursively(final WatchedRoot root, Path directory, final Collection<Path> foundFiles)
+            throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                Path rootDirectory = root.getDirectory();
+                if (!dir.equals(rootDirectory) && sourceFileFinder.isExcludedDirectory(rootDirectory, dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                register(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (sourceFileFinder.isSourceFile(root.getDirectory(), file, root.getPattern())) {
+                    foundFiles.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * @return the key of a watched directory with pending events or null if none was signalled within the given time.
+     */
+    WatchKey poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return watchService.poll(timeout, unit);
+    }
+
+    Path getDirectory(WatchKey key) {
+        return directories.get(key);
+    }
+
+    /**
+     * Resets the given key after its events were processed, the directory is forgotten if it is no longer valid.
+     */
+    void reset(WatchKey key) {
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
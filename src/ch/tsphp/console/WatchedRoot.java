@@ -0,0 +1,42 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.console;
+
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+
+/**
+ * A directory watched by the {@link SourceWatcher}, optionally restricted to the files matching a pattern or to a
+ * single file.
+ */
+class WatchedRoot
+{
+    private final Path directory;
+    private final PathMatcher pattern;
+    private final Path file;
+
+    WatchedRoot(Path theDirectory, PathMatcher thePattern, Path theFile) {
+        directory = theDirectory;
+        pattern = thePattern;
+        file = theFile;
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    PathMatcher getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return the watched file or null if all matching files within the directory are watched.
+     */
+    Path getFile() {
+        return file;
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.io;
+
+/**
+ * Snapshot of the usage of a {@link ReadBufferPool}.
+ * <p/>
+ * A read is a hit if it could be served entirely with the buffers of the pool, and a miss if a buffer had to be
+ * allocated or grown.
+ */
+public class BufferPoolStatisticsDto
+{
+    public final long numberOfHits;
+    public final long numberOfMisses;
+    /**
+     * Hits divided by all reads, 0 if nothing was read yet.
+     */
+    public final double hitRate;
+
+    public BufferPoolStatisticsDto(long theNumberOfHits, long theNumberOfMisses) {
+        numberOfHits = theNumberOfHits;
+        numberOfMisses = theNumberOfMisses;
+        long numberOfReads = theNumberOfHits + theNumberOfMisses;
+        hitRate = numberOfReads > 0 ? theNumberOfHits / (double) numberOfReads : 0;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads input streams into a char[] for the parser with buffers which are reused per thread.
+ * <p/>
+ * The parser's own stream support allocates a read buffer and a data buffer per compilation unit and doubles the
+ * data buffer until the stream fits. This pool keeps a byte buffer, a char buffer and the decoders per thread
+ * instead, hence reading thousands of units allocates only the resulting char[] of each unit (which cannot be
+ * reused since the tokens of the unit read their text from it).
+ * <p/>
+ * Buffers which grew beyond maxRetainedChars are dropped after the read so that a single huge unit does not pin its
+ * buffers for the lifetime of the thread.
+ */
+public class ReadBufferPool
+{
+    /**
+     * Same default as the parser uses.
+     */
+    public static final int DEFAULT_INITIAL_BUFFER_SIZE = 1024;
+    /**
+     * Same default as the parser uses.
+     */
+    public static final int DEFAULT_READ_BUFFER_SIZE = 1024;
+    public static final int DEFAULT_MAX_RETAINED_CHARS = 1024 * 1024;
+    /**
+     * Needs to hold at least one complete character of any encoding, otherwise decoding cannot make progress.
+     */
+    private static final int MIN_READ_BUFFER_SIZE = 16;
+
+    private final int maxRetainedChars;
+    private final ThreadLocal<ReadBuffers> buffers = new ThreadLocal<>();
+    private final AtomicLong numberOfHits = new AtomicLong();
+    private final AtomicLong numberOfMisses = new AtomicLong();
+
+    public ReadBufferPool() {
+        this(DEFAULT_MAX_RETAINED_CHARS);
+    }
+
+    public ReadBufferPool(int theMaxRetainedChars) {
+        maxRetainedChars = theMaxRetainedChars;
+    }
+
+    /**
+     * Reads the whole stream and closes it afterwards (like the parser does).
+     *
+     * @param initialBufferSize The expected number of chars.
+     * @param readBufferSize The number of bytes which are read from the stream at once.
+     * @param encoding The encoding of the stream or null for the default encoding of the platform.
+     * @return A buffer whose array contains the decoded chars starting at index 0 and whose remaining() is the number
+     * of decoded chars.
+     */
+    public CharBuffer read(InputStream inputStream, int initialBufferSize, int readBufferSize, String encoding)
+            throws IOException {
+        try {
+            ReadBuffers readBuffers = acquire(initialBufferSize, readBufferSize);
+            CharsetDecoder decoder = readBuffers.getDecoder(
+                    encoding != null ? Charset.forName(encoding) : Charset.defaultCharset());
+            ByteBuffer bytes = readBuffers.bytes;
+            boolean isEndOfInput = false;
+            while (!isEndOfInput) {
+                int numberOfReadBytes = inputStream.read(bytes.array(), bytes.position(), bytes.remaining());
+                isEndOfInput = numberOfReadBytes < 0;
+                if (!isEndOfInput) {
+                    bytes.position(bytes.position() + numberOfReadBytes);
+                }
+                bytes.flip();
+                decode(readBuffers, decoder, bytes, isEndOfInput);
+                bytes.compact();
+            }
+            flush(readBuffers, decoder);
+            return release(readBuffers);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    public BufferPoolStatisticsDto getStatistics() {
+        return new BufferPoolStatisticsDto(numberOfHits.get(), numberOfMisses.get());
+    }
+
+    private ReadBuffers acquire(int initialBufferSize, int theReadBufferSize) {
+        ReadBuffers readBuffers = buffers.get();
+        if (readBuffers == null) {
+            readBuffers = new ReadBuffers();
+            buffers.set(readBuffers);
+        }
+        readBuffers.hasAllocated = false;
+        int readBufferSize = Math.max(theReadBufferSize, MIN_READ_BUFFER_SIZE);
+        if (readBuffers.bytes == null || readBuffers.bytes.capacity() < readBufferSize) {
+            readBuffers.bytes = ByteBuffer.allocate(readBufferSize);
+            readBuffers.hasAllocated = true;
+        }
+        if (readBuffers.chars == null || readBuffers.chars.capacity() < initialBufferSize) {
+            readBuffers.chars = CharBuffer.allocate(initialBufferSize);
+            readBuffers.hasAllocated = true;
+        }
+        readBuffers.bytes.clear();
+        readBuffers.chars.clear();
+        return readBuffers;
+    }
+
+    private void decode(ReadBuffers readBuffers, CharsetDecoder decoder, ByteBuffer bytes, boolean isEndOfInput) {
+        CoderResult result = decoder.decode(bytes, readBuffers.chars, isEndOfInput);
+        while (result.isOverflow()) {
+            grow(readBuffers);
+            result = decoder.decode(bytes, readBuffers.chars, isEndOfInput);
+        }
+    }
+
+    private void flush(ReadBuffers readBuffers, CharsetDecoder decoder) {
+        CoderResult result = decoder.flush(readBuffers.chars);
+        while (result.isOverflow()) {
+            grow(readBuffers);
+            result = decoder.flush(readBuffers.chars);
+        }
+    }
+
+    private void grow(ReadBuffers readBuffers) {
+        CharBuffer chars = readBuffers.chars;
+        CharBuffer newChars = CharBuffer.allocate(Math.max(chars.capacity() * 2, 1));
+        chars.flip();
+        newChars.put(chars);
+        readBuffers.chars = newChars;
+        readBuffers.hasAllocated = true;
+    }
+
+    private CharBuffer release(ReadBuffers readBuffers) {
+        CharBuffer chars = readBuffers.chars;
+        chars.flip();
+        char[] result = new char[chars.remaining()];
+        chars.get(result);
+        if (chars.capacity() > maxRetainedChars) {
+            readBuffers.chars = null;
+        }
+        if (readBuffers.hasAllocated) {
+            numberOfMisses.incrementAndGet();
+        } else {
+            numberOfHits.incrementAndGet();
+        }
+        return CharBuffer.wrap(result);
+    }
+
+    /**
+     * The buffers and decoders of a single thread.
+     */
+    private static class ReadBuffers
+    {
+        private ByteBuffer bytes;
+        private CharBuffer chars;
+        private boolean hasAllocated;
+        private Charset lastCharset;
+        private CharsetDecoder lastDecoder;
+
+        private CharsetDecoder getDecoder(Charset charset) {
+            if (!charset.equals(lastCharset)) {
+                //like InputStreamReader which is used by the parser, malformed input is replaced rather than reported
+                lastDecoder = charset.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+                lastCharset = charset;
+            } else {
+                lastDecoder.reset();
+            }
+            return lastDecoder;
+        }
+    }
+}
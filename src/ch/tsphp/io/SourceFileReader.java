@@ -0,0 +1,172 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads source files and decodes them directly into the char[] which is passed to the parser.
+ * <p/>
+ * Large files are memory-mapped and decoded straight from the mapping. Small files (for which mapping costs more than
+ * it saves) are read into a direct byte buffer which is reused per thread. Either way the bytes are decoded only once
+ * and into a char[] which is large enough for the whole file, hence there is no intermediate copy and no growing of
+ * buffers.
+ * <p/>
+ * A mapping cannot be released explicitly, it remains until the buffer is garbage collected. On Windows a mapped file
+ * is locked during this time, i.e. it cannot be saved, renamed or deleted (which breaks editors, especially in watch
+ * mode). Hence mapping is turned off on Windows per default and large files are read into a heap buffer instead which
+ * is not retained after decoding.
+ * <p/>
+ * The resulting char[] is not pooled: the parser keeps a reference to it and tokens read their text from it lazily,
+ * hence it lives as long as the token stream of the compilation unit.
+ */
+public class SourceFileReader
+{
+    public static final int DEFAULT_MAPPING_THRESHOLD = 64 * 1024;
+
+    private final int mappingThreshold;
+    private final boolean isMappingEnabled;
+    private final ThreadLocal<ByteBuffer> readBuffers = new ThreadLocal<>();
+
+    public SourceFileReader() {
+        this(DEFAULT_MAPPING_THRESHOLD);
+    }
+
+    /**
+     * @param theMappingThreshold Files with at least the given number of bytes are memory-mapped (unless on Windows).
+     */
+    public SourceFileReader(int theMappingThreshold) {
+        this(theMappingThreshold, !isWindows());
+    }
+
+    /**
+     * @param theMappingThreshold Files with at least the given number of bytes are considered large.
+     * @param shallMapLargeFiles  Whether large files are memory-mapped or read into a heap buffer of their own.
+     */
+    public SourceFileReader(int theMappingThreshold, boolean shallMapLargeFiles) {
+        mappingThreshold = theMappingThreshold;
+        isMappingEnabled = shallMapLargeFiles;
+    }
+
+    private static boolean isWindows() {
+        return System.getProperty("os.name", "").startsWith("Windows");
+    }
+
+    /**
+     * Reads the file with the given path.
+     *
+     * @param encoding The encoding of the file or null for the default encoding of the platform (like the parser does).
+     * @return A buffer whose array contains the decoded chars starting at index 0 and whose remaining() is the number
+     * of decoded chars.
+     */
+    public CharBuffer read(String path, String encoding) throws IOException {
+        Charset charset = encoding != null ? Charset.forName(encoding) : Charset.defaultCharset();
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(path + " is too large to be compiled.");
+            }
+            ByteBuffer bytes;
+            if (size < mappingThreshold) {
+                bytes = readFully(channel, getReadBuffer((int) size));
+            } else if (isMappingEnabled) {
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                bytes = readFully(channel, ByteBuffer.allocate((int) size));
+            }
+            return decode(bytes, charset);
+        }
+    }
+
+    private ByteBuffer readFully(FileChannel channel, ByteBuffer bytes) throws IOException {
+        int numberOfReadBytes = 0;
+        while (bytes.hasRemaining() && numberOfReadBytes >= 0) {
+            numberOfReadBytes = channel.read(bytes);
+        }
+        bytes.flip();
+        return bytes;
+    }
+
+    /**
+     * Orders the given files by their size in descending order, files whose size cannot be determined come last.
+     */
+    public List<String> orderLargestFirst(Collection<String> paths) {
+        final Map<String, Long> sizes = new HashMap<>(paths.size() * 2);
+        for (String path : paths) {
+            sizes.put(path, getFileSize(path));
+        }
+        List<String> orderedPaths = new ArrayList<>(paths);
+        Collections.sort(orderedPaths, new Comparator<String>()
+        {
+            @Override
+            public int compare(String path1, String path2) {
+                return Long.compare(sizes.get(path2), sizes.get(path1));
+            }
+        });
+        return orderedPaths;
+    }
+
+    private long getFileSize(String path) {
+        long size;
+        try {
+            size = Files.size(Paths.get(path));
+        } catch (IOException | InvalidPathException ex) {
+            //the error is reported when the file is read
+            size = 0;
+        }
+        return size;
+    }
+
+    private ByteBuffer getReadBuffer(int size) {
+        ByteBuffer buffer = readBuffers.get();
+        if (buffer == null || buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(Math.max(size, mappingThreshold));
+            readBuffers.set(buffer);
+        }
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    private CharBuffer decode(ByteBuffer bytes, Charset charset) throws CharacterCodingException {
+        //like InputStreamReader which is used by the parser, malformed input is replaced rather than reported
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        char[] chars = new char[(int) Math.ceil(bytes.remaining() * (double) decoder.maxCharsPerByte())];
+        CharBuffer buffer = CharBuffer.wrap(chars);
+        CoderResult result = decoder.decode(bytes, buffer, true);
+        if (!result.isUnderflow()) {
+            result.throwException();
+        }
+        result = decoder.flush(buffer);
+        if (!result.isUnderflow()) {
+            result.throwException();
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.library;
+
+import ch.tsphp.common.ITSPHPAst;
+import ch.tsphp.common.ParserUnitDto;
+import ch.tsphp.parser.antlr.TSPHPParser;
+import org.antlr.runtime.Token;
+import org.antlr.runtime.TokenStream;
+
+/**
+ * Extracts the declarations of a parsed compilation unit as TSPHP code.
+ * <p/>
+ * Namespaces, use statements, constants, classes, interfaces and functions are kept, all other statements of a
+ * namespace are dropped. The bodies of functions and methods are replaced by an empty body respectively by a throw
+ * statement if they have a return type. Comments and whitespace are reduced to a single space.
+ */
+public class DeclarationExtractor
+{
+    private static final String VOID_BODY = "{}";
+    private static final String NON_VOID_BODY = "{throw new \\Exception();}";
+
+    public String extract(ParserUnitDto parserUnit) {
+        StringBuilder stringBuilder = new StringBuilder();
+        ITSPHPAst root = parserUnit.compilationUnit;
+        if (root.getType() == TSPHPParser.Namespace) {
+            appendNamespace(stringBuilder, root, parserUnit.tokenStream);
+        } else {
+            for (int i = 0; i < root.getChildCount(); ++i) {
+                appendNamespace(stringBuilder, root.getChild(i), parserUnit.tokenStream);
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    private void appendNamespace(StringBuilder stringBuilder, ITSPHPAst namespace, TokenStream tokenStream) {
+        stringBuilder.append("namespace");
+        ITSPHPAst name = namespace.getChild(0);
+        if (name.getType() != TSPHPParser.DEFAULT_NAMESPACE) {
+            //the name is absolute and has a trailing backslash, e.g. \a\b\
+            String text = name.getText();
+            stringBuilder.append(' ').append(text.substring(1, text.length() - 1));
+        }
+        stringBuilder.append('{');
+        ITSPHPAst body = namespace.getChild(1);
+        for (int i = 0; i < body.getChildCount(); ++i) {
+            ITSPHPAst statement = body.getChild(i);
+            switch (statement.getType()) {
+                case TSPHPParser.Use:
+                case TSPHPParser.CONSTANT_DECLARATION_LIST:
+                case TSPHPParser.Interface:
+                    appendTokens(stringBuilder, tokenStream, statement.getTokenStartIndex(),
+                            statement.getTokenStopIndex());
+                    break;
+                case TSPHPParser.Function:
+                    appendFunction(stringBuilder, tokenStream, statement);
+                    break;
+                case TSPHPParser.Class:
+                    appendClass(stringBuilder, tokenStream, statement);
+                    break;
+                default:
+                    //statements are not part of the declarations
+                    break;
+            }
+        }
+        stringBuilder.append('}');
+    }
+
+    private void appendClass(StringBuilder stringBuilder, TokenStream tokenStream, ITSPHPAst classDeclaration) {
+        int index = classDeclaration.getTokenStartIndex();
+        ITSPHPAst body = null;
+        for (int i = 0; i < classDeclaration.getChildCount() && body == null; ++i) {
+            if (classDeclaration.getChild(i).getType() == TSPHPParser.CLASS_BODY) {
+                body = classDeclaration.getChild(i);
+            }
+        }
+        if (body != null) {
+            for (int i = 0; i < body.getChildCount(); ++i) {
+                ITSPHPAst member = body.getChild(i);
+                int type = member.getType();
+                if (type == TSPHPParser.METHOD_DECLARATION || type == TSPHPParser.Construct) {
+                    appendTokens(stringBuilder, tokenStream, index, member.getTokenStartIndex() - 1);
+                    appendFunction(stringBuilder, tokenStream, member);
+                    index = member.getTokenStopIndex() + 1;
+                }
+            }
+        }
+        appendTokens(stringBuilder, tokenStream, index, classDeclaration.getTokenStopIndex());
+    }
+
+    /**
+     * Appends the signature of the given function or method and replaces its body unless it is abstract.
+     */
+    private void appendFunction(StringBuilder stringBuilder, TokenStream tokenStream, ITSPHPAst function) {
+        int stop = function.getTokenStopIndex();
+        int bodyStart = findBodyStart(tokenStream, function.getTokenStartIndex(), stop);
+        if (bodyStart != -1) {
+            appendTokens(stringBuilder, tokenStream, function.getTokenStartIndex(), bodyStart - 1);
+            stringBuilder.append(isVoid(function) ? VOID_BODY : NON_VOID_BODY);
+        } else {
+            appendTokens(stringBuilder, tokenStream, function.getTokenStartIndex(), stop);
+        }
+    }
+
+    /**
+     * Returns the index of the opening brace of the body, namely the first brace after the parameter list, or -1 if
+     * the function has no body.
+     */
+    private int findBodyStart(TokenStream tokenStream, int start, int stop) {
+        int depth = 0;
+        boolean hasParameterList = false;
+        int bodyStart = -1;
+        for (int i = start; i <= stop && bodyStart == -1; ++i) {
+            int type = tokenStream.get(i).getType();
+            if (type == TSPHPParser.LeftParenthesis) {
+                ++depth;
+                hasParameterList = true;
+            } else if (type == TSPHPParser.RightParenthesis) {
+                --depth;
+            } else if (hasParameterList && depth == 0 && type == TSPHPParser.LeftCurlyBrace) {
+                bodyStart = i;
+            }
+        }
+        return bodyStart;
+    }
+
+    private boolean isVoid(ITSPHPAst function) {
+        boolean isVoid = false;
+        for (int i = 0; i < function.getChildCount() && !isVoid; ++i) {
+            ITSPHPAst child = function.getChild(i);
+            if (child.getType() == TSPHPParser.TYPE) {
+                for (int j = 0; j < child.getChildCount() && !isVoid; ++j) {
+                    isVoid = child.getChild(j).getType() == TSPHPParser.Void;
+                }
+            }
+        }
+        return isVoid;
+    }
+
+    private void appendTokens(StringBuilder stringBuilder, TokenStream tokenStream, int start, int stop) {
+        for (int i = start; i <= stop; ++i) {
+            Token token = tokenStream.get(i);
+            if (token.getChannel() == Token.HIDDEN_CHANNEL) {
+                if (stringBuilder.length() > 0 && stringBuilder.charAt(stringBuilder.length() - 1) != ' ') {
+                    stringBuilder.append(' ');
+                }
+            } else {
+                stringBuilder.append(token.getText());
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.library;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The declarations of the compilation units of a library, see {@link DeclarationExtractor}.
+ * <p/>
+ * The binary format is a deflate compressed stream of: magic number, format version, number of units and per unit
+ * its id followed by the length and the UTF-8 bytes of its declarations.
+ */
+public class LibrarySummary
+{
+    /**
+     * TSPS in ASCII.
+     */
+    private static final int MAGIC_NUMBER = 0x54535053;
+    private static final int VERSION = 1;
+
+    private final Map<String, String> declarations;
+
+    /**
+     * @param theDeclarations The declarations per compilation unit id.
+     */
+    public LibrarySummary(Map<String, String> theDeclarations) {
+        declarations = Collections.unmodifiableMap(new LinkedHashMap<>(theDeclarations));
+    }
+
+    public Map<String, String> getDeclarations() {
+        return declarations;
+    }
+
+    /**
+     * Writes the summary in the binary format to the given stream, the stream is not closed.
+     */
+    public void write(OutputStream outputStream) throws IOException {
+        DeflaterOutputStream deflaterStream = new DeflaterOutputStream(outputStream,
+                new Deflater(Deflater.BEST_COMPRESSION));
+        DataOutputStream dataStream = new DataOutputStream(deflaterStream);
+        dataStream.writeInt(MAGIC_NUMBER);
+        dataStream.writeInt(VERSION);
+        dataStream.writeInt(declarations.size());
+        for (Map.Entry<String, String> entry : declarations.entrySet()) {
+            dataStream.writeUTF(entry.getKey());
+            byte[] bytes = entry.getValue().getBytes(StandardCharsets.UTF_8);
+            dataStream.writeInt(bytes.length);
+            dataStream.write(bytes);
+        }
+        dataStream.flush();
+        deflaterStream.finish();
+    }
+
+    /**
+     * Reads a summary which was written with {@link #write(OutputStream)}, the stream is not closed.
+     *
+     * @throws IOException if the stream does not contain a summary or one of an unsupported version.
+     */
+    public static LibrarySummary read(InputStream inputStream) throws IOException {
+        DataInputStream dataStream = new DataInputStream(new InflaterInputStream(inputStream));
+        if (dataStream.readInt() != MAGIC_NUMBER) {
+            throw new IOException("The given input is not a library summary.");
+        }
+        int version = dataStream.readInt();
+        if (version != VERSION) {
+            throw new IOException("Library summaries of version " + version + " are not supported, only version "
+                    + VERSION + ".");
+        }
+        int numberOfUnits = dataStream.readInt();
+        Map<String, String> declarations = new LinkedHashMap<>(numberOfUnits * 2);
+        for (int i = 0; i < numberOfUnits; ++i) {
+            String id = dataStream.readUTF();
+            byte[] bytes = new byte[dataStream.readInt()];
+            dataStream.readFully(bytes);
+            declarations.put(id, new String(bytes, StandardCharsets.UTF_8));
+        }
+        return new LibrarySummary(declarations);
+    }
+}
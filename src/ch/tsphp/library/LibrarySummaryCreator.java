@@ -0,0 +1,108 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.library;
+
+import ch.tsphp.common.IParser;
+import ch.tsphp.common.ParserUnitDto;
+import ch.tsphp.exceptions.CompilerException;
+import ch.tsphp.io.SourceFileReader;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Creates a {@link LibrarySummary} out of source files whereby the files are read, parsed and reduced to their
+ * declarations in parallel.
+ */
+public class LibrarySummaryCreator
+{
+    private final IParser parser;
+    private final ExecutorService executorService;
+    private final SourceFileReader sourceFileReader = new SourceFileReader();
+    private final DeclarationExtractor declarationExtractor = new DeclarationExtractor();
+
+    /**
+     * @param theParser The parser used for the source files, syntax errors are reported to its error loggers.
+     * @param theExecutorService The executor on which the files are processed.
+     */
+    public LibrarySummaryCreator(IParser theParser, ExecutorService theExecutorService) {
+        parser = theParser;
+        executorService = theExecutorService;
+    }
+
+    /**
+     * Creates the summary of the given files whereby their paths are used as ids of the compilation units.
+     *
+     * @param encoding The encoding of the files or null for the platform's default encoding.
+     * @throws CompilerException if a file could not be read or contains syntax errors. The remaining files are
+     *                           cancelled as soon as a file could not be read.
+     * @throws InterruptedException if the calling thread was interrupted while waiting for the files, the remaining
+     *                              files are cancelled.
+     */
+    public LibrarySummary create(Collection<String> pathsToFilesInclFileName, String encoding)
+            throws InterruptedException {
+        parser.reset();
+        Map<String, Future<String>> futures = new LinkedHashMap<>(pathsToFilesInclFileName.size() * 2);
+        Map<String, String> declarations = new LinkedHashMap<>(pathsToFilesInclFileName.size() * 2);
+        boolean isComplete = false;
+        try {
+            for (String path : pathsToFilesInclFileName) {
+                futures.put(path, executorService.submit(new ExtractRunner(path, encoding)));
+            }
+            for (Map.Entry<String, Future<String>> entry : futures.entrySet()) {
+                declarations.put(entry.getKey(), getDeclarations(entry.getKey(), entry.getValue()));
+            }
+            isComplete = true;
+        } finally {
+            if (!isComplete) {
+                //the summary cannot be created anymore, hence the remaining files do not need to be processed.
+                //Running extractions are not interrupted since they share the parser
+                for (Future<String> future : futures.values()) {
+                    future.cancel(false);
+                }
+            }
+        }
+        if (parser.hasFoundError()) {
+            throw new CompilerException("Could not create the library summary, syntax errors occurred.");
+        }
+        return new LibrarySummary(declarations);
+    }
+
+    private String getDeclarations(String path, Future<String> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            throw new CompilerException("Could not create the library summary, the file " + path + " failed: "
+                    + ex.getCause().getMessage(), ex.getCause());
+        }
+    }
+
+    private class ExtractRunner implements Callable<String>
+    {
+        private final String path;
+        private final String encoding;
+
+        ExtractRunner(String thePath, String theEncoding) {
+            path = thePath;
+            encoding = theEncoding;
+        }
+
+        @Override
+        public String call() throws IOException {
+            CharBuffer source = sourceFileReader.read(path, encoding);
+            ParserUnitDto parserUnit = parser.parse(source.array(), source.remaining());
+            return declarationExtractor.extract(parserUnit);
+        }
+    }
+}
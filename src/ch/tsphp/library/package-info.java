@@ -0,0 +1,11 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+/**
+ * Contains library summaries: the declarations of a set of compilation units without their implementation, which
+ * allow to type check code against a library without compiling the library itself.
+ */
+package ch.tsphp.library;
@@ -0,0 +1,264 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the measurements of a compilation and aggregates them per phase.
+ * <p/>
+ * Besides the per unit measurements it provides histograms per phase, the units which took the longest and how busy
+ * the workers of the executor were (overall and per phase), and it can export everything as JSON.
+ */
+public class CompilationMetrics implements IMetricsListener
+{
+    private final Collection<UnitPhaseMetricsDto> unitMetrics = new ConcurrentLinkedQueue<>();
+    private final Map<CompilationPhase, PhaseHistograms> phaseHistograms = new EnumMap<>(CompilationPhase.class);
+    private final AtomicLong firstSubmission = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong lastCompletion = new AtomicLong(Long.MIN_VALUE);
+    private final int numberOfWorkers;
+
+    public CompilationMetrics() {
+        this(0);
+    }
+
+    /**
+     * @param theNumberOfWorkers The number of workers of the executor for the CPU bound phases, used to report the
+     *                           parallel efficiency in the JSON export (omitted if 0).
+     */
+    public CompilationMetrics(int theNumberOfWorkers) {
+        numberOfWorkers = theNumberOfWorkers;
+        for (CompilationPhase phase : CompilationPhase.values()) {
+            phaseHistograms.put(phase, new PhaseHistograms());
+        }
+    }
+
+    @Override
+    public void afterUnitPhaseCompleted(UnitPhaseMetricsDto metrics) {
+        long now = System.nanoTime();
+        long submittedAt = now - metrics.wallTime - metrics.queueWaitTime;
+        unitMetrics.add(metrics);
+        phaseHistograms.get(metrics.phase).add(metrics, submittedAt, now);
+        updateIfLess(firstSubmission, submittedAt);
+        updateIfGreater(lastCompletion, now);
+    }
+
+    private static void updateIfLess(AtomicLong value, long candidate) {
+        long current = value.get();
+        while (candidate < current && !value.compareAndSet(current, candidate)) {
+            current = value.get();
+        }
+    }
+
+    private static void updateIfGreater(AtomicLong value, long candidate) {
+        long current = value.get();
+        while (candidate > current && !value.compareAndSet(current, candidate)) {
+            current = value.get();
+        }
+    }
+
+    public Collection<UnitPhaseMetricsDto> getUnitMetrics() {
+        return Collections.unmodifiableCollection(unitMetrics);
+    }
+
+    public Histogram getWallTimeHistogram(CompilationPhase phase) {
+        return phaseHistograms.get(phase).wallTime;
+    }
+
+    public Histogram getCpuTimeHistogram(CompilationPhase phase) {
+        return phaseHistograms.get(phase).cpuTime;
+    }
+
+    public Histogram getAllocatedBytesHistogram(CompilationPhase phase) {
+        return phaseHistograms.get(phase).allocatedBytes;
+    }
+
+    public Histogram getQueueWaitTimeHistogram(CompilationPhase phase) {
+        return phaseHistograms.get(phase).queueWaitTime;
+    }
+
+    public long getNumberOfErrors(CompilationPhase phase) {
+        return phaseHistograms.get(phase).numberOfErrors.get();
+    }
+
+    /**
+     * Time between the submission of the first measured task and the completion of the last one in nanoseconds.
+     */
+    public long getElapsedTime() {
+        return getElapsedTime(firstSubmission, lastCompletion);
+    }
+
+    /**
+     * Time between the submission of the first task of the given phase and the completion of its last task.
+     */
+    public long getElapsedTime(CompilationPhase phase) {
+        PhaseHistograms histograms = phaseHistograms.get(phase);
+        return getElapsedTime(histograms.firstSubmission, histograms.lastCompletion);
+    }
+
+    private long getElapsedTime(AtomicLong firstSubmissionTime, AtomicLong lastCompletionTime) {
+        long first = firstSubmissionTime.get();
+        long last = lastCompletionTime.get();
+        return last >= first ? last - first : 0;
+    }
+
+    /**
+     * Average number of units which were processed in parallel during the given phase (sum of the wall times divided
+     * by the elapsed time of the phase).
+     */
+    public double getParallelism(CompilationPhase phase) {
+        long elapsedTime = getElapsedTime(phase);
+        return elapsedTime == 0 ? 0 : (double) phaseHistograms.get(phase).wallTime.getSum() / elapsedTime;
+    }
+
+    /**
+     * Achieved parallelism of the given phase relative to the given number of workers - 1 means all workers were busy
+     * during the whole phase, a low value indicates a skewed phase where few large units made up the critical path.
+     *
+     * @return the efficiency or 0 if the given number of workers is not positive
+     */
+    public double getParallelEfficiency(CompilationPhase phase, int theNumberOfWorkers) {
+        return theNumberOfWorkers > 0 ? getParallelism(phase) / theNumberOfWorkers : 0;
+    }
+
+    /**
+     * Ratio of the time the given number of workers spent processing units to the elapsed time.
+     * <p/>
+     * A value close to 1 together with long queue wait times indicates that the executor is saturated, a low value
+     * that workers were idle (e.g. while waiting for a phase to complete).
+     *
+     * @return the utilisation or 0 if nothing was measured or the given number of workers is not positive
+     */
+    public double getWorkerUtilisation(int theNumberOfWorkers) {
+        long busyTime = 0;
+        for (PhaseHistograms histograms : phaseHistograms.values()) {
+            busyTime += histograms.wallTime.getSum();
+        }
+        long elapsedTime = getElapsedTime();
+        return elapsedTime == 0 || theNumberOfWorkers <= 0
+                ? 0 : (double) busyTime / elapsedTime / theNumberOfWorkers;
+    }
+
+    /**
+     * Returns the ids of the given number of units which took the longest (wall time summed over all phases) in
+     * descending order.
+     */
+    public List<String> getSlowestUnits(int numberOfUnits) {
+        final Map<String, Long> wallTimes = getWallTimePerUnit();
+        List<String> ids = new ArrayList<>(wallTimes.keySet());
+        Collections.sort(ids, new Comparator<String>()
+        {
+            @Override
+            public int compare(String id1, String id2) {
+                return wallTimes.get(id2).compareTo(wallTimes.get(id1));
+            }
+        });
+        return ids.subList(0, Math.min(numberOfUnits, ids.size()));
+    }
+
+    private Map<String, Long> getWallTimePerUnit() {
+        Map<String, Long> wallTimes = new HashMap<>();
+        for (UnitPhaseMetricsDto metrics : unitMetrics) {
+            Long wallTime = wallTimes.get(metrics.id);
+            wallTimes.put(metrics.id, wallTime == null ? metrics.wallTime : wallTime + metrics.wallTime);
+        }
+        return wallTimes;
+    }
+
+    public String toJson() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\"elapsedTime\":").append(getElapsedTime()).append(",\"phases\":{");
+        boolean isFirst = true;
+        for (Map.Entry<CompilationPhase, PhaseHistograms> entry : phaseHistograms.entrySet()) {
+            PhaseHistograms histograms = entry.getValue();
+            if (histograms.wallTime.getCount() != 0) {
+                if (!isFirst) {
+                    builder.append(',');
+                }
+                isFirst = false;
+                appendPhaseJson(builder, entry.getKey(), entry.getValue());
+            }
+        }
+        builder.append("},\"units\":[");
+        isFirst = true;
+        for (UnitPhaseMetricsDto metrics : unitMetrics) {
+            if (!isFirst) {
+                builder.append(',');
+            }
+            isFirst = false;
+            builder.append("{\"id\":");
+            appendJsonString(builder, metrics.id);
+            builder.append(String.format(Locale.ROOT, ",\"phase\":\"%s\",\"wallTime\":%d,\"cpuTime\":%d,"
+                            + "\"allocatedBytes\":%d,\"queueWaitTime\":%d,\"numberOfErrors\":%d}",
+                    metrics.phase, metrics.wallTime, metrics.cpuTime, metrics.allocatedBytes,
+                    metrics.queueWaitTime, metrics.numberOfErrors));
+        }
+        return builder.append("]}").toString();
+    }
+
+    private void appendPhaseJson(StringBuilder builder, CompilationPhase phase, PhaseHistograms histograms) {
+        builder.append('"').append(phase).append("\":{")
+                .append("\"numberOfErrors\":").append(histograms.numberOfErrors.get())
+                .append(",\"elapsedTime\":").append(getElapsedTime(phase))
+                .append(String.format(Locale.ROOT, ",\"parallelism\":%.3f", getParallelism(phase)));
+        if (numberOfWorkers > 0) {
+            builder.append(String.format(Locale.ROOT, ",\"parallelEfficiency\":%.3f",
+                    getParallelEfficiency(phase, numberOfWorkers)));
+        }
+        builder.append(",\"wallTime\":").append(histograms.wallTime.toJson())
+                .append(",\"cpuTime\":").append(histograms.cpuTime.toJson())
+                .append(",\"allocatedBytes\":").append(histograms.allocatedBytes.toJson())
+                .append(",\"queueWaitTime\":").append(histograms.queueWaitTime.toJson())
+                .append('}');
+    }
+
+    private void appendJsonString(StringBuilder builder, String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); ++i) {
+            char character = value.charAt(i);
+            if (character == '"' || character == '\\') {
+                builder.append('\\').append(character);
+            } else if (character < ' ') {
+                builder.append(String.format(Locale.ROOT, "\\u%04x", (int) character));
+            } else {
+                builder.append(character);
+            }
+        }
+        builder.append('"');
+    }
+
+    private static class PhaseHistograms
+    {
+        private final Histogram wallTime = new Histogram();
+        private final Histogram cpuTime = new Histogram();
+        private final Histogram allocatedBytes = new Histogram();
+        private final Histogram queueWaitTime = new Histogram();
+        private final AtomicLong numberOfErrors = new AtomicLong();
+        private final AtomicLong firstSubmission = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong lastCompletion = new AtomicLong(Long.MIN_VALUE);
+
+        void add(UnitPhaseMetricsDto metrics, long submittedAt, long completedAt) {
+            updateIfLess(firstSubmission, submittedAt);
+            updateIfGreater(lastCompletion, completedAt);
+            wallTime.add(metrics.wallTime);
+            cpuTime.add(metrics.cpuTime);
+            allocatedBytes.add(metrics.allocatedBytes);
+            queueWaitTime.add(metrics.queueWaitTime);
+            numberOfErrors.addAndGet(metrics.numberOfErrors);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.metrics;
+
+/**
+ * The phases in which the compiler processes a single compilation unit.
+ */
+public enum CompilationPhase
+{
+    PARSE_AND_DEFINITION,
+    /**
+     * Definition phase of an already parsed unit during a recompilation.
+     */
+    DEFINITION,
+    REFERENCE,
+    TYPE_CHECK,
+    TRANSLATION
+}
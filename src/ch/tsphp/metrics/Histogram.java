@@ -0,0 +1,95 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.metrics;
+
+import java.util.Locale;
+
+/**
+ * Histogram with power of two buckets - bucket i contains the values in [2^(i-1), 2^i), bucket 0 the values below 1.
+ * <p/>
+ * Percentiles are hence approximated by the upper bound of the bucket they fall into. Negative values are ignored.
+ */
+public class Histogram
+{
+    private static final int NUMBER_OF_BUCKETS = 64;
+    private static final double PERCENT = 100.0;
+    private static final double MEDIAN = 50;
+    private static final double PERCENTILE_90 = 90;
+    private static final double PERCENTILE_99 = 99;
+
+    private final long[] buckets = new long[NUMBER_OF_BUCKETS];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    public synchronized void add(long value) {
+        if (value >= 0) {
+            ++buckets[NUMBER_OF_BUCKETS - Long.numberOfLeadingZeros(value)];
+            ++count;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getSum() {
+        return sum;
+    }
+
+    public synchronized long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    public synchronized long getMax() {
+        return max;
+    }
+
+    public synchronized double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Returns the upper bound of the bucket which contains the given percentile (capped by the maximum).
+     */
+    public synchronized long getPercentile(double percentile) {
+        long threshold = (long) Math.ceil(count * percentile / PERCENT);
+        long seen = buckets[0];
+        int index = 0;
+        while (index < NUMBER_OF_BUCKETS - 1 && seen < threshold) {
+            ++index;
+            seen += buckets[index];
+        }
+        long upperBound = index == NUMBER_OF_BUCKETS - 1 ? Long.MAX_VALUE : (1L << index) - 1;
+        return Math.min(upperBound, max);
+    }
+
+    public synchronized String toJson() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.ROOT,
+                "{\"count\":%d,\"sum\":%d,\"min\":%d,\"max\":%d,\"mean\":%.1f,\"p50\":%d,\"p90\":%d,\"p99\":%d,"
+                        + "\"buckets\":[",
+                count, sum, getMin(), max, getMean(), getPercentile(MEDIAN), getPercentile(PERCENTILE_90),
+                getPercentile(PERCENTILE_99)));
+        boolean isFirst = true;
+        for (int i = 0; i < NUMBER_OF_BUCKETS; ++i) {
+            if (buckets[i] != 0) {
+                if (!isFirst) {
+                    builder.append(',');
+                }
+                isFirst = false;
+                builder.append("{\"lessThan\":").append(i == NUMBER_OF_BUCKETS - 1 ? Long.MAX_VALUE : 1L << i)
+                        .append(",\"count\":").append(buckets[i]).append('}');
+            }
+        }
+        return builder.append("]}").toString();
+    }
+}
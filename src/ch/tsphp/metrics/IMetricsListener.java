@@ -0,0 +1,18 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.metrics;
+
+/**
+ * Listener which is informed each time the compiler has processed a compilation unit in a phase.
+ * <p/>
+ * The listener is called on the worker thread which processed the unit right after the processing, hence it might be
+ * called concurrently and should return quickly.
+ */
+public interface IMetricsListener
+{
+    void afterUnitPhaseCompleted(UnitPhaseMetricsDto metrics);
+}
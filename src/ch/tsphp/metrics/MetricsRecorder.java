@@ -0,0 +1,104 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.Collection;
+
+/**
+ * Measures tasks of the compiler and informs the registered {@link IMetricsListener}s about the results.
+ * <p/>
+ * Nothing is measured as long as no listener is registered. Listeners need to be registered before the compilation
+ * starts.
+ */
+public class MetricsRecorder
+{
+    private final Collection<IMetricsListener> listeners = new ArrayDeque<>();
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final boolean isCpuTimeSupported;
+    private final boolean isAllocatedBytesSupported;
+    private final ThreadLocal<int[]> numberOfErrors = new ThreadLocal<>();
+    private volatile boolean isEnabled = false;
+
+    public MetricsRecorder() {
+        isCpuTimeSupported = threadMXBean.isCurrentThreadCpuTimeSupported() && threadMXBean.isThreadCpuTimeEnabled();
+        isAllocatedBytesSupported = threadMXBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported()
+                && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemoryEnabled();
+    }
+
+    public void registerListener(IMetricsListener listener) {
+        listeners.add(listener);
+        isEnabled = true;
+    }
+
+    public void clearListeners() {
+        isEnabled = false;
+        listeners.clear();
+    }
+
+    public boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * Returns the current time if metrics are enabled, 0 otherwise.
+     */
+    public long getSubmissionTime() {
+        return isEnabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Runs the given task and informs the listeners about its measurements.
+     *
+     * @param submittedAt The result of {@link #getSubmissionTime()} at the time the task was submitted to the executor.
+     */
+    public void measure(String id, CompilationPhase phase, Runnable task, long submittedAt) {
+        long startedAt = System.nanoTime();
+        long cpuTimeAtStart = getCurrentThreadCpuTime();
+        long allocatedBytesAtStart = getCurrentThreadAllocatedBytes();
+        int[] errorCounter = new int[1];
+        numberOfErrors.set(errorCounter);
+        try {
+            task.run();
+        } finally {
+            numberOfErrors.remove();
+            long wallTime = System.nanoTime() - startedAt;
+            long cpuTime = isCpuTimeSupported ? getCurrentThreadCpuTime() - cpuTimeAtStart : -1;
+            long allocatedBytes = isAllocatedBytesSupported
+                    ? getCurrentThreadAllocatedBytes() - allocatedBytesAtStart : -1;
+            UnitPhaseMetricsDto metrics = new UnitPhaseMetricsDto(
+                    id, phase, startedAt - submittedAt, wallTime, cpuTime, allocatedBytes, errorCounter[0]);
+            for (IMetricsListener listener : listeners) {
+                listener.afterUnitPhaseCompleted(metrics);
+            }
+        }
+    }
+
+    /**
+     * Attributes an error to the task which is currently measured on this thread (if there is one).
+     */
+    public void errorOccurred() {
+        int[] errorCounter = numberOfErrors.get();
+        if (errorCounter != null) {
+            ++errorCounter[0];
+        }
+    }
+
+    private long getCurrentThreadCpuTime() {
+        return isCpuTimeSupported ? threadMXBean.getCurrentThreadCpuTime() : 0;
+    }
+
+    private long getCurrentThreadAllocatedBytes() {
+        return isAllocatedBytesSupported
+                ? ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(
+                Thread.currentThread().getId())
+                : 0;
+    }
+}
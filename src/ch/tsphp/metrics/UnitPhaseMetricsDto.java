@@ -0,0 +1,37 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.metrics;
+
+/**
+ * Measurements of a single compilation unit in a single phase. All durations are in nanoseconds.
+ * <p/>
+ * cpuTime and allocatedBytes are -1 if the JVM does not support the corresponding measurement.
+ */
+public class UnitPhaseMetricsDto
+{
+    public final String id;
+    public final CompilationPhase phase;
+    /**
+     * Time between the submission of the task to the executor and the start of its execution.
+     */
+    public final long queueWaitTime;
+    public final long wallTime;
+    public final long cpuTime;
+    public final long allocatedBytes;
+    public final int numberOfErrors;
+
+    public UnitPhaseMetricsDto(String theId, CompilationPhase thePhase, long theQueueWaitTime, long theWallTime,
+            long theCpuTime, long theAllocatedBytes, int theNumberOfErrors) {
+        id = theId;
+        phase = thePhase;
+        queueWaitTime = theQueueWaitTime;
+        wallTime = theWallTime;
+        cpuTime = theCpuTime;
+        allocatedBytes = theAllocatedBytes;
+        numberOfErrors = theNumberOfErrors;
+    }
+}
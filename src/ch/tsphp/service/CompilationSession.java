@@ -0,0 +1,51 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.service;
+
+import ch.tsphp.IIncrementalCompiler;
+
+public class CompilationSession implements ICompilationSession
+{
+    private final String id;
+    private final IIncrementalCompiler compiler;
+    private final SessionExecutor executor;
+    private final CompilerService service;
+
+    public CompilationSession(String theId, IIncrementalCompiler theCompiler, SessionExecutor theExecutor,
+            CompilerService theService) {
+        id = theId;
+        compiler = theCompiler;
+        executor = theExecutor;
+        service = theService;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public IIncrementalCompiler getCompiler() {
+        return compiler;
+    }
+
+    @Override
+    public int getNumberOfRunningTasks() {
+        return executor.getNumberOfRunningTasks();
+    }
+
+    @Override
+    public int getNumberOfQueuedTasks() {
+        return executor.getNumberOfQueuedTasks();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        service.sessionClosed(this);
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.service;
+
+import ch.tsphp.HardCodedCompilerInitialiser;
+import ch.tsphp.ICompilerInitialiser;
+import ch.tsphp.IIncrementalCompiler;
+import ch.tsphp.common.IErrorLogger;
+import ch.tsphp.exceptions.CompilerException;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps up to maxTotal compilers which all run on the same executor (rather than each on its own thread pool).
+ * <p/>
+ * Idle compilers are handed out last-in-first-out so that the most recently used (and thus warm) compilers are
+ * reused and the others become idle long enough to be evicted - down to minIdle compilers which are created up front.
+ * A compiler which is borrowed longer than the leak timeout is reported to the error loggers together with the stack
+ * trace of the borrower (see {@link LeakDetector}), is cancelled and no longer counts against maxTotal.
+ */
+public class CompilerPool implements ICompilerPool
+{
+    private static final int CORE_MULTIPLICATION_FACTOR = 4;
+    private static final int MAINTENANCE_RUNS_PER_TIMEOUT = 2;
+
+    private final ICompilerInitialiser compilerInitialiser;
+    private final ExecutorService executorService;
+    private final boolean isExecutorServiceOwned;
+    private final int minIdle;
+    private final long maxIdleTime;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<IdleCompiler> idleCompilers = new LinkedBlockingDeque<>();
+    private final LeakDetector leakDetector;
+    private final AtomicLong numberOfCreatedCompilers = new AtomicLong();
+    private final AtomicLong numberOfEvictedCompilers = new AtomicLong();
+    private final AtomicLong numberOfLeakedCompilers = new AtomicLong();
+    private final ScheduledExecutorService maintenanceExecutor;
+    private volatile boolean isClosed;
+
+    public CompilerPool(CompilerPoolSettingsDto settings) {
+        this(new HardCodedCompilerInitialiser(),
+                Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * CORE_MULTIPLICATION_FACTOR),
+                true, settings);
+    }
+
+    /**
+     * @param theExecutorService Executor of all compilers of the pool, is not shut down by the pool.
+     */
+    public CompilerPool(ICompilerInitialiser theCompilerInitialiser, ExecutorService theExecutorService,
+            CompilerPoolSettingsDto settings) {
+        this(theCompilerInitialiser, theExecutorService, false, settings);
+    }
+
+    private CompilerPool(ICompilerInitialiser theCompilerInitialiser, ExecutorService theExecutorService,
+            boolean isTheExecutorServiceOwned, CompilerPoolSettingsDto settings) {
+        compilerInitialiser = theCompilerInitialiser;
+        executorService = theExecutorService;
+        isExecutorServiceOwned = isTheExecutorServiceOwned;
+        minIdle = settings.minIdle;
+        maxIdleTime = TimeUnit.MILLISECONDS.toNanos(settings.maxIdleTime);
+        leakDetector = new LeakDetector(TimeUnit.MILLISECONDS.toNanos(settings.leakTimeout));
+        permits = new Semaphore(settings.maxTotal, true);
+
+        long now = System.nanoTime();
+        for (int i = 0; i < minIdle; ++i) {
+            idleCompilers.offerLast(new IdleCompiler(create(), now));
+        }
+
+        maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(new MaintenanceThreadFactory());
+        long interval = Math.max(1, Math.min(settings.maxIdleTime, settings.leakTimeout)
+                / MAINTENANCE_RUNS_PER_TIMEOUT);
+        maintenanceExecutor.scheduleWithFixedDelay(new Runnable()
+        {
+            @Override
+            public void run() {
+                runMaintenance();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private IIncrementalCompiler create() {
+        IIncrementalCompiler compiler = compilerInitialiser.create(executorService);
+        numberOfCreatedCompilers.incrementAndGet();
+        return compiler;
+    }
+
+    @Override
+    public IIncrementalCompiler borrow() throws InterruptedException {
+        return borrow(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public IIncrementalCompiler borrow(long timeout, TimeUnit unit) throws InterruptedException {
+        checkNotClosed();
+        if (!permits.tryAcquire(timeout, unit)) {
+            throw new CompilerException("No compiler was returned to the pool within " + unit.toMillis(timeout)
+                    + " ms.");
+        }
+        IIncrementalCompiler compiler = null;
+        try {
+            IdleCompiler idleCompiler = idleCompilers.pollFirst();
+            compiler = idleCompiler != null ? idleCompiler.compiler : create();
+        } finally {
+            if (compiler == null) {
+                //the creation failed
+                permits.release();
+            }
+        }
+        leakDetector.borrowed(compiler);
+        return compiler;
+    }
+
+    @Override
+    public void giveBack(IIncrementalCompiler compiler) {
+        if (leakDetector.returned(compiler)) {
+            try {
+                if (compiler.isCompiling()) {
+                    compiler.cancel();
+                } else if (!isClosed) {
+                    compiler.reset();
+                    compiler.clearRegistrations();
+                    idleCompilers.offerFirst(new IdleCompiler(compiler, System.nanoTime()));
+                }
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    @Override
+    public void runMaintenance() {
+        long now = System.nanoTime();
+        detectLeaks(now);
+        evictIdleCompilers(now);
+    }
+
+    /**
+     * Cancels the compilation of leaked compilers (so that they do not occupy the shared executor any longer) and
+     * frees their permits.
+     */
+    private void detectLeaks(long now) {
+        for (IIncrementalCompiler compiler : leakDetector.detectLeaks(now)) {
+            numberOfLeakedCompilers.incrementAndGet();
+            permits.release();
+            compiler.cancel();
+        }
+    }
+
+    private void evictIdleCompilers(long now) {
+        IdleCompiler oldest = idleCompilers.peekLast();
+        while (oldest != null && idleCompilers.size() > minIdle && now - oldest.idleSince > maxIdleTime) {
+            if (idleCompilers.removeLastOccurrence(oldest)) {
+                numberOfEvictedCompilers.incrementAndGet();
+            }
+            oldest = idleCompilers.peekLast();
+        }
+    }
+
+    @Override
+    public void registerErrorLogger(IErrorLogger errorLogger) {
+        leakDetector.registerErrorLogger(errorLogger);
+    }
+
+    @Override
+    public CompilerPoolStatisticsDto getStatistics() {
+        return new CompilerPoolStatisticsDto(idleCompilers.size(), leakDetector.getNumberOfBorrowedCompilers(),
+                numberOfCreatedCompilers.get(), numberOfEvictedCompilers.get(), numberOfLeakedCompilers.get());
+    }
+
+    @Override
+    public void close() {
+        isClosed = true;
+        maintenanceExecutor.shutdownNow();
+        idleCompilers.clear();
+        if (isExecutorServiceOwned) {
+            executorService.shutdown();
+        }
+    }
+
+    private void checkNotClosed() {
+        if (isClosed) {
+            throw new CompilerException("The compiler pool was already closed.");
+        }
+    }
+
+    /**
+     * A compiler which waits in the pool since idleSince (nano time).
+     */
+    private static class IdleCompiler
+    {
+        private final IIncrementalCompiler compiler;
+        private final long idleSince;
+
+        IdleCompiler(IIncrementalCompiler theCompiler, long theIdleSince) {
+            compiler = theCompiler;
+            idleSince = theIdleSince;
+        }
+    }
+
+    /**
+     * Creates daemon threads so that the maintenance does not keep the JVM alive.
+     */
+    private static class MaintenanceThreadFactory implements ThreadFactory
+    {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "compiler-pool-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
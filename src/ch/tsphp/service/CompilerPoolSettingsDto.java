@@ -0,0 +1,48 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.service;
+
+/**
+ * Settings of a {@link CompilerPool}, all times are in milliseconds.
+ */
+public class CompilerPoolSettingsDto
+{
+    public static final long DEFAULT_MAX_IDLE_TIME_MILLIS = 60 * 1000;
+    public static final long DEFAULT_LEAK_TIMEOUT_MILLIS = 5 * 60 * 1000;
+
+    /**
+     * Number of compilers which are created up front and which are never evicted.
+     */
+    public final int minIdle;
+    /**
+     * Maximum number of compilers which are borrowed at the same time.
+     */
+    public final int maxTotal;
+    /**
+     * Idle compilers beyond minIdle are evicted after this time.
+     */
+    public final long maxIdleTime;
+    /**
+     * A compiler which is borrowed longer than this time is considered as leaked.
+     */
+    public final long leakTimeout;
+
+    public CompilerPoolSettingsDto(int theMinIdle, int theMaxTotal) {
+        this(theMinIdle, theMaxTotal, DEFAULT_MAX_IDLE_TIME_MILLIS, DEFAULT_LEAK_TIMEOUT_MILLIS);
+    }
+
+    public CompilerPoolSettingsDto(int theMinIdle, int theMaxTotal, long theMaxIdleTime, long theLeakTimeout) {
+        if (theMinIdle < 0 || theMaxTotal < 1 || theMinIdle > theMaxTotal) {
+            throw new IllegalArgumentException("0 <= minIdle <= maxTotal and maxTotal >= 1 is required but minIdle was "
+                    + theMinIdle + " and maxTotal " + theMaxTotal);
+        }
+        minIdle = theMinIdle;
+        maxTotal = theMaxTotal;
+        maxIdleTime = theMaxIdleTime;
+        leakTimeout = theLeakTimeout;
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.service;
+
+/**
+ * Snapshot of the state of a {@link ICompilerPool}.
+ */
+public class CompilerPoolStatisticsDto
+{
+    public final int numberOfIdleCompilers;
+    public final int numberOfBorrowedCompilers;
+    public final long numberOfCreatedCompilers;
+    public final long numberOfEvictedCompilers;
+    public final long numberOfLeakedCompilers;
+
+    public CompilerPoolStatisticsDto(int theNumberOfIdleCompilers, int theNumberOfBorrowedCompilers,
+            long theNumberOfCreatedCompilers, long theNumberOfEvictedCompilers, long theNumberOfLeakedCompilers) {
+        numberOfIdleCompilers = theNumberOfIdleCompilers;
+        numberOfBorrowedCompilers = theNumberOfBorrowedCompilers;
+        numberOfCreatedCompilers = theNumberOfCreatedCompilers;
+        numberOfEvictedCompilers = theNumberOfEvictedCompilers;
+        numberOfLeakedCompilers = theNumberOfLeakedCompilers;
+    }
+}
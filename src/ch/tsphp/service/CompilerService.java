@@ -0,0 +1,126 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.service;
+
+import ch.tsphp.HardCodedCompilerInitialiser;
+import ch.tsphp.ICompilerInitialiser;
+import ch.tsphp.exceptions.CompilerException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CompilerService implements ICompilerService
+{
+    /**
+     * By default a single session may occupy half of the workers so that at least two sessions progress at any time.
+     */
+    private static final int DEFAULT_QUOTA_DIVISOR = 2;
+
+    private final ICompilerInitialiser compilerInitialiser;
+    private final ExecutorService sharedExecutor;
+    private final int defaultQuota;
+    private final ConcurrentMap<String, ICompilationSession> sessions = new ConcurrentHashMap<>();
+    private final Set<SessionExecutor> activeExecutors =
+            Collections.newSetFromMap(new ConcurrentHashMap<SessionExecutor, Boolean>());
+    private final AtomicLong sessionCounter = new AtomicLong();
+    private volatile boolean isShutdown;
+
+    public CompilerService() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public CompilerService(int numberOfWorkers) {
+        this(numberOfWorkers, Math.max(1, numberOfWorkers / DEFAULT_QUOTA_DIVISOR));
+    }
+
+    public CompilerService(int numberOfWorkers, int theDefaultQuota) {
+        this(new HardCodedCompilerInitialiser(), Executors.newFixedThreadPool(numberOfWorkers), theDefaultQuota);
+    }
+
+    public CompilerService(ICompilerInitialiser theCompilerInitialiser, ExecutorService theSharedExecutor,
+            int theDefaultQuota) {
+        compilerInitialiser = theCompilerInitialiser;
+        sharedExecutor = theSharedExecutor;
+        defaultQuota = theDefaultQuota;
+    }
+
+    @Override
+    public ICompilationSession openSession() {
+        return openSession(defaultQuota);
+    }
+
+    @Override
+    public ICompilationSession openSession(int quota) {
+        if (isShutdown) {
+            throw new CompilerException("Cannot open a session, the service was already shut down.");
+        }
+        final SessionExecutor executor = new SessionExecutor(sharedExecutor, quota);
+        activeExecutors.add(executor);
+        executor.addTerminationListener(new Runnable()
+        {
+            @Override
+            public void run() {
+                activeExecutors.remove(executor);
+            }
+        });
+        String id = "session-" + sessionCounter.incrementAndGet();
+        ICompilationSession session = new CompilationSession(
+                id, compilerInitialiser.create(executor), executor, this);
+        sessions.put(id, session);
+        return session;
+    }
+
+    void sessionClosed(ICompilationSession session) {
+        sessions.remove(session.getId());
+    }
+
+    @Override
+    public int getNumberOfOpenSessions() {
+        return sessions.size();
+    }
+
+    /**
+     * Closes all open sessions and shuts the shared executor down as soon as the tasks of all sessions were
+     * forwarded and have completed - the shared executor would reject the tasks still waiting in the queue of a
+     * session otherwise and the corresponding compilations would never complete.
+     */
+    @Override
+    public void shutdown() {
+        isShutdown = true;
+        for (ICompilationSession session : new ArrayList<>(sessions.values())) {
+            session.close();
+        }
+        ArrayList<SessionExecutor> executors = new ArrayList<>(activeExecutors);
+        final AtomicInteger numberOfRemainingExecutors = new AtomicInteger(executors.size() + 1);
+        Runnable shutdownSharedExecutor = new Runnable()
+        {
+            @Override
+            public void run() {
+                if (numberOfRemainingExecutors.decrementAndGet() == 0) {
+                    sharedExecutor.shutdown();
+                }
+            }
+        };
+        for (SessionExecutor executor : executors) {
+            executor.addTerminationListener(shutdownSharedExecutor);
+        }
+        shutdownSharedExecutor.run();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return sharedExecutor.awaitTermination(timeout, unit);
+    }
+}
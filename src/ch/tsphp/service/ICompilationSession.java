@@ -0,0 +1,36 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.service;
+
+import ch.tsphp.IIncrementalCompiler;
+
+/**
+ * A compilation which is isolated from the other sessions of a {@link ICompilerService}: it has its own compilation
+ * units, symbol tables, listeners and error loggers and only shares the worker threads.
+ */
+public interface ICompilationSession
+{
+    String getId();
+
+    IIncrementalCompiler getCompiler();
+
+    /**
+     * Returns the number of tasks of this session which currently occupy a worker of the shared pool.
+     */
+    int getNumberOfRunningTasks();
+
+    /**
+     * Returns the number of tasks of this session which wait until the session is below its quota again.
+     */
+    int getNumberOfQueuedTasks();
+
+    /**
+     * Closes the session, tasks which are already queued are still executed but the compiler of the session does not
+     * accept new tasks anymore.
+     */
+    void close();
+}
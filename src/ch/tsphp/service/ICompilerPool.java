@@ -0,0 +1,56 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.service;
+
+import ch.tsphp.IIncrementalCompiler;
+import ch.tsphp.common.IErrorLogger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pool of pre-initialised compilers which are reset when they are returned, hence a request-scoped compilation
+ * does not pay the construction costs of parser, type checker and translators.
+ */
+public interface ICompilerPool
+{
+    /**
+     * Borrows a compiler and waits as long as necessary if all compilers are borrowed.
+     */
+    IIncrementalCompiler borrow() throws InterruptedException;
+
+    /**
+     * Borrows a compiler and waits at most the given time if all compilers are borrowed.
+     *
+     * @throws ch.tsphp.exceptions.CompilerException if no compiler became available in time.
+     */
+    IIncrementalCompiler borrow(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Returns the compiler to the pool, the compiler is reset and all its registrations are cleared.
+     * <p/>
+     * A compiler which is still compiling is cancelled and discarded instead. Returning a compiler which was already
+     * reported as leaked has no effect.
+     */
+    void giveBack(IIncrementalCompiler compiler);
+
+    /**
+     * Detects leaked compilers and evicts idle compilers - is called periodically by the pool itself.
+     */
+    void runMaintenance();
+
+    /**
+     * Registers an error logger which is informed about compilers which were borrowed but not returned in time.
+     */
+    void registerErrorLogger(IErrorLogger errorLogger);
+
+    CompilerPoolStatisticsDto getStatistics();
+
+    /**
+     * Discards all idle compilers and stops the maintenance. Borrowed compilers are discarded when they are returned.
+     */
+    void close();
+}
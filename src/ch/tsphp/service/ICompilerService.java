@@ -0,0 +1,37 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs many independent compilation sessions concurrently on one bounded worker pool.
+ * <p/>
+ * Each session may occupy at most its quota of workers at once, further tasks of the session are queued per session.
+ * Hence a session with thousands of compilation units cannot starve the other sessions.
+ */
+public interface ICompilerService
+{
+    /**
+     * Opens a session with the default quota of the service.
+     */
+    ICompilationSession openSession();
+
+    /**
+     * Opens a session which may occupy at most the given number of workers at once.
+     */
+    ICompilationSession openSession(int quota);
+
+    int getNumberOfOpenSessions();
+
+    /**
+     * Closes all sessions and shuts the worker pool down.
+     */
+    void shutdown();
+
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException;
+}
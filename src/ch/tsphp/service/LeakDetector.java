@@ -0,0 +1,94 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.service;
+
+import ch.tsphp.IIncrementalCompiler;
+import ch.tsphp.common.IErrorLogger;
+import ch.tsphp.common.exceptions.TSPHPException;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records when and where the compilers of a {@link CompilerPool} were borrowed and reports the ones which are borrowed
+ * longer than the leak timeout to the error loggers, together with the stack trace of the borrower.
+ */
+public class LeakDetector
+{
+    private final long leakTimeout;
+    private final ConcurrentMap<IIncrementalCompiler, Lease> leases = new ConcurrentHashMap<>();
+    private final Collection<IErrorLogger> errorLoggers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param theLeakTimeout in nanoseconds
+     */
+    public LeakDetector(long theLeakTimeout) {
+        leakTimeout = theLeakTimeout;
+    }
+
+    public void borrowed(IIncrementalCompiler compiler) {
+        leases.put(compiler, new Lease(System.nanoTime(), new Throwable("Compiler was borrowed here")));
+    }
+
+    /**
+     * @return true if the compiler was borrowed and was not yet considered as leaked, false otherwise
+     */
+    public boolean returned(IIncrementalCompiler compiler) {
+        return leases.remove(compiler) != null;
+    }
+
+    public int getNumberOfBorrowedCompilers() {
+        return leases.size();
+    }
+
+    public void registerErrorLogger(IErrorLogger errorLogger) {
+        errorLoggers.add(errorLogger);
+    }
+
+    /**
+     * Reports the compilers which are borrowed longer than the leak timeout, they are no longer considered as borrowed
+     * from then on.
+     *
+     * @param now the current nano time
+     * @return the leaked compilers
+     */
+    public Collection<IIncrementalCompiler> detectLeaks(long now) {
+        Collection<IIncrementalCompiler> leakedCompilers = new ArrayDeque<>();
+        for (Map.Entry<IIncrementalCompiler, Lease> entry : leases.entrySet()) {
+            Lease lease = entry.getValue();
+            if (now - lease.borrowedAt > leakTimeout && leases.remove(entry.getKey(), lease)) {
+                leakedCompilers.add(entry.getKey());
+                TSPHPException exception = new TSPHPException("A compiler was borrowed "
+                        + TimeUnit.NANOSECONDS.toMillis(now - lease.borrowedAt)
+                        + " ms ago and was not returned to the pool - it is considered as leaked.", lease.borrower);
+                for (IErrorLogger errorLogger : errorLoggers) {
+                    errorLogger.log(exception);
+                }
+            }
+        }
+        return leakedCompilers;
+    }
+
+    /**
+     * Records when and where a compiler was borrowed.
+     */
+    private static class Lease
+    {
+        private final long borrowedAt;
+        private final Throwable borrower;
+
+        Lease(long theBorrowedAt, Throwable theBorrower) {
+            borrowedAt = theBorrowedAt;
+            borrower = theBorrower;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.service;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor of a single session which forwards its tasks to the shared executor but never has more than quota tasks
+ * forwarded at once. The remaining tasks wait in the queue of the session.
+ * <p/>
+ * Since no session can flood the shared executor, the first-in-first-out queue of the shared executor interleaves the
+ * tasks of all sessions which results in a fair round-robin like scheduling.
+ * <p/>
+ * A task is rejected (by {@link #execute(Runnable)}) only before it is queued. A queued task which the shared executor
+ * rejects when it is forwarded is put back at the head of the queue, it is forwarded again as soon as another task of
+ * the session completes, a new task is executed or a retry succeeds - retries are scheduled with an exponential
+ * backoff as long as the shared executor rejects tasks and is not shut down - or it is returned by
+ * {@link #shutdownNow()}. Hence a task is never dropped silently and the completion of a task is never reported to the
+ * submitter by an exception.
+ */
+public class SessionExecutor extends AbstractExecutorService
+{
+    private static final long INITIAL_RETRY_DELAY_MILLIS = 1;
+    private static final long MAX_RETRY_DELAY_MILLIS = 100;
+
+    private final Executor sharedExecutor;
+    private final int quota;
+    private final Deque<Runnable> queue = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger numberOfQueuedTasks = new AtomicInteger();
+    private final AtomicInteger numberOfRunningTasks = new AtomicInteger();
+    private final CountDownLatch terminationLatch = new CountDownLatch(1);
+    private final Queue<Runnable> terminationListeners = new ConcurrentLinkedQueue<>();
+    private volatile boolean isShutdown;
+    private final AtomicBoolean isRetryScheduled = new AtomicBoolean();
+    private volatile long retryDelay = INITIAL_RETRY_DELAY_MILLIS;
+    private final Runnable retry = new Runnable()
+    {
+        @Override
+        public void run() {
+            isRetryScheduled.set(false);
+            dispatch();
+        }
+    };
+
+    public SessionExecutor(Executor theSharedExecutor, int theQuota) {
+        if (theQuota < 1) {
+            throw new IllegalArgumentException("The quota needs to be at least 1, was " + theQuota);
+        }
+        sharedExecutor = theSharedExecutor;
+        quota = theQuota;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (isShutdown) {
+            throw new RejectedExecutionException("The session was already closed.");
+        }
+        if (sharedExecutor instanceof ExecutorService && ((ExecutorService) sharedExecutor).isShutdown()) {
+            throw new RejectedExecutionException("The shared executor was already shut down.");
+        }
+        numberOfQueuedTasks.incrementAndGet();
+        queue.add(command);
+        dispatch();
+    }
+
+    /**
+     * Forwards queued tasks to the shared executor as long as the session is below its quota.
+     */
+    private void dispatch() {
+        while (!queue.isEmpty()) {
+            int running = numberOfRunningTasks.get();
+            if (running >= quota) {
+                //a running task will dispatch the remaining ones when it completes
+                break;
+            }
+            if (numberOfRunningTasks.compareAndSet(running, running + 1)) {
+                Runnable task = queue.poll();
+                if (task != null) {
+                    numberOfQueuedTasks.decrementAndGet();
+                    if (!forward(task)) {
+                        //the shared executor does not accept tasks at the moment, retrying right away is pointless
+                        scheduleRetry();
+                        break;
+                    }
+                } else {
+                    numberOfRunningTasks.decrementAndGet();
+                }
+            }
+        }
+        checkTerminated();
+    }
+
+    /**
+     * @return true if the task was forwarded, false if the shared executor rejected it and it was put back
+     */
+    private boolean forward(final Runnable task) {
+        try {
+            sharedExecutor.execute(new Runnable()
+            {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } finally {
+                        numberOfRunningTasks.decrementAndGet();
+                        dispatch();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            numberOfQueuedTasks.incrementAndGet();
+            queue.addFirst(task);
+            numberOfRunningTasks.decrementAndGet();
+            return false;
+        }
+        if (retryDelay != INITIAL_RETRY_DELAY_MILLIS) {
+            retryDelay = INITIAL_RETRY_DELAY_MILLIS;
+        }
+        return true;
+    }
+
+    /**
+     * Schedules a dispatch of the queued tasks unless one is already scheduled - otherwise a rejected task would wait
+     * forever if the session has no running task and no new task is executed. The delay doubles with each retry.
+     */
+    private void scheduleRetry() {
+        boolean isSharedExecutorShutdown = sharedExecutor instanceof ExecutorService
+                && ((ExecutorService) sharedExecutor).isShutdown();
+        if (!isSharedExecutorShutdown && isRetryScheduled.compareAndSet(false, true)) {
+            long delay = retryDelay;
+            retryDelay = Math.min(delay * 2, MAX_RETRY_DELAY_MILLIS);
+            RetrySchedulerHolder.SCHEDULER.schedule(retry, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void checkTerminated() {
+        if (isShutdown && numberOfRunningTasks.get() == 0 && queue.isEmpty()) {
+            terminationLatch.countDown();
+            informTerminationListeners();
+        }
+    }
+
+    /**
+     * Calls the given listener once this executor has terminated - right away if it already has.
+     */
+    public void addTerminationListener(Runnable listener) {
+        terminationListeners.add(listener);
+        if (isTerminated()) {
+            informTerminationListeners();
+        }
+    }
+
+    private void informTerminationListeners() {
+        //polling ensures that each listener is called exactly once even if several threads detect the termination
+        Runnable listener = terminationListeners.poll();
+        while (listener != null) {
+            listener.run();
+            listener = terminationListeners.poll();
+        }
+    }
+
+    public int getNumberOfRunningTasks() {
+        return numberOfRunningTasks.get();
+    }
+
+    public int getNumberOfQueuedTasks() {
+        return numberOfQueuedTasks.get();
+    }
+
+    @Override
+    public void shutdown() {
+        isShutdown = true;
+        checkTerminated();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        isShutdown = true;
+        List<Runnable> tasks = new ArrayList<>();
+        Runnable task = queue.poll();
+        while (task != null) {
+            numberOfQueuedTasks.decrementAndGet();
+            tasks.add(task);
+            task = queue.poll();
+        }
+        checkTerminated();
+        return tasks;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return isShutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminationLatch.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminationLatch.await(timeout, unit);
+    }
+
+    /**
+     * Lazily creates the scheduler of the retries which is shared by all sessions. Its single daemon thread only
+     * dispatches, the tasks themselves run on the shared executors.
+     */
+    private static final class RetrySchedulerHolder
+    {
+        private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactory()
+                {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "session-executor-retry");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+
+        private RetrySchedulerHolder() {
+        }
+    }
+}
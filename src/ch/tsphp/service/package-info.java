@@ -0,0 +1,10 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+/**
+ * Contains a service which runs many independent compilation sessions on one shared worker pool.
+ */
+package ch.tsphp.service;
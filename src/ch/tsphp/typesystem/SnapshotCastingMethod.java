@@ -0,0 +1,48 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.typesystem;
+
+import ch.tsphp.common.ITSPHPAst;
+import ch.tsphp.common.ITypeSymbol;
+import ch.tsphp.typechecker.ICastingMethod;
+
+/**
+ * Explicit casting method of a single type checker which creates the cast like the casting method of the
+ * {@link TypeSystemSnapshot} it wraps but keeps the parent type which provides the cast itself.
+ * <p/>
+ * The overload resolver sets this parent type to types of the compilation units it checks, hence it must not be
+ * written into the casting methods of the snapshot which are shared by all type checkers.
+ */
+public class SnapshotCastingMethod implements ICastingMethod
+{
+    private final ICastingMethod castingMethod;
+    private ITypeSymbol parentTypeWhichProvidesCast;
+
+    public SnapshotCastingMethod(ICastingMethod theCastingMethod) {
+        castingMethod = theCastingMethod;
+    }
+
+    @Override
+    public ITSPHPAst createCastAst(ITSPHPAst expression) {
+        return castingMethod.createCastAst(expression);
+    }
+
+    @Override
+    public ITypeSymbol getType() {
+        return castingMethod.getType();
+    }
+
+    @Override
+    public ITypeSymbol getParentTypeWhichProvidesCast() {
+        return parentTypeWhichProvidesCast;
+    }
+
+    @Override
+    public void setParentTypeWhichProvidesCast(ITypeSymbol typeSymbol) {
+        parentTypeWhichProvidesCast = typeSymbol;
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.typesystem;
+
+import ch.tsphp.common.ISymbol;
+import ch.tsphp.typechecker.scopes.GlobalNamespaceScope;
+import ch.tsphp.typechecker.scopes.IScopeHelper;
+
+/**
+ * Global namespace scope which starts with the built-in symbols of a {@link TypeSystemSnapshot} rather than having
+ * them defined one by one.
+ */
+public class SnapshotGlobalNamespaceScope extends GlobalNamespaceScope
+{
+    private final TypeSystemSnapshot snapshot;
+
+    public SnapshotGlobalNamespaceScope(IScopeHelper theScopeHelper, String theScopeName,
+            TypeSystemSnapshot theSnapshot) {
+        super(theScopeHelper, theScopeName);
+        snapshot = theSnapshot;
+        snapshot.copyInto(this);
+    }
+
+    /**
+     * The built-in symbols are not part of the case insensitive symbols of the super class, hence they are checked
+     * here - they were defined first and win thus.
+     */
+    @Override
+    public boolean doubleDefinitionCheckCaseInsensitive(ISymbol symbol) {
+        ISymbol builtInSymbol = snapshot.getBuiltInSymbolCaseInsensitive(symbol.getName());
+        boolean isNotDoubleDefinition;
+        if (builtInSymbol != null) {
+            isNotDoubleDefinition = scopeHelper.checkIsNotDoubleDefinition(builtInSymbol, symbol);
+        } else {
+            isNotDoubleDefinition = super.doubleDefinitionCheckCaseInsensitive(symbol);
+        }
+        return isNotDoubleDefinition;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.typesystem;
+
+import ch.tsphp.typechecker.error.ITypeCheckerErrorReporter;
+import ch.tsphp.typechecker.scopes.IGlobalNamespaceScope;
+import ch.tsphp.typechecker.scopes.IScopeHelper;
+import ch.tsphp.typechecker.scopes.ScopeFactory;
+
+/**
+ * Creates the global default namespace (\) as {@link SnapshotGlobalNamespaceScope} and all other scopes like
+ * {@link ScopeFactory}.
+ */
+public class SnapshotScopeFactory extends ScopeFactory
+{
+    private static final String GLOBAL_DEFAULT_NAMESPACE = "\\";
+
+    private final IScopeHelper scopeHelper;
+    private final TypeSystemSnapshot snapshot;
+
+    public SnapshotScopeFactory(IScopeHelper theScopeHelper, ITypeCheckerErrorReporter theTypeCheckerErrorReporter,
+            TypeSystemSnapshot theSnapshot) {
+        super(theScopeHelper, theTypeCheckerErrorReporter);
+        scopeHelper = theScopeHelper;
+        snapshot = theSnapshot;
+    }
+
+    @Override
+    public IGlobalNamespaceScope createGlobalNamespaceScope(String name) {
+        IGlobalNamespaceScope scope;
+        if (GLOBAL_DEFAULT_NAMESPACE.equals(name)) {
+            scope = new SnapshotGlobalNamespaceScope(scopeHelper, name, snapshot);
+        } else {
+            scope = super.createGlobalNamespaceScope(name);
+        }
+        return scope;
+    }
+}
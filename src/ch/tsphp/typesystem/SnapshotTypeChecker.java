@@ -0,0 +1,41 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.typesystem;
+
+import ch.tsphp.typechecker.DefinitionPhaseController;
+import ch.tsphp.typechecker.IDefinitionPhaseController;
+import ch.tsphp.typechecker.ITypeSystem;
+import ch.tsphp.typechecker.TypeChecker;
+import ch.tsphp.typechecker.error.ITypeCheckerErrorReporter;
+import ch.tsphp.typechecker.scopes.IGlobalNamespaceScope;
+import ch.tsphp.typechecker.scopes.IScopeHelper;
+import ch.tsphp.typechecker.symbols.ISymbolFactory;
+
+/**
+ * Type checker which uses the type system of the default {@link TypeSystemSnapshot} instead of building its own
+ * one - when it is created as well as on each {@link #reset()}. Only the explicit castings are copied per type checker
+ * (see {@link SnapshotTypeSystem}).
+ * <p/>
+ * The snapshot is not passed via the constructor since the constructor of {@link TypeChecker} already calls the
+ * factory methods which are overridden here (before any field of this class would be initialised).
+ */
+public class SnapshotTypeChecker extends TypeChecker
+{
+    @Override
+    protected IDefinitionPhaseController createDefinitionPhaseController(IScopeHelper scopeHelper,
+            ISymbolFactory symbolFactory, ITypeCheckerErrorReporter typeCheckerErrorReporter) {
+        return new DefinitionPhaseController(symbolFactory,
+                new SnapshotScopeFactory(scopeHelper, typeCheckerErrorReporter, TypeSystemSnapshot.getDefault()));
+    }
+
+    @Override
+    protected ITypeSystem createTypeSystem(ISymbolFactory symbolFactory, IGlobalNamespaceScope globalDefaultNamespace) {
+        ITypeSystem typeSystem = new SnapshotTypeSystem(TypeSystemSnapshot.getDefault().getTypeSystem());
+        symbolFactory.setObjectTypeSymbol(typeSystem.getObjectTypeSymbol());
+        return typeSystem;
+    }
+}
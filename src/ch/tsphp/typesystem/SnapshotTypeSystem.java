@@ -0,0 +1,149 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.typesystem;
+
+import ch.tsphp.common.ITypeSymbol;
+import ch.tsphp.typechecker.ICastingMethod;
+import ch.tsphp.typechecker.ITypeSystem;
+import ch.tsphp.typechecker.symbols.IArrayTypeSymbol;
+import ch.tsphp.typechecker.symbols.IClassTypeSymbol;
+import ch.tsphp.typechecker.symbols.IMethodSymbol;
+import ch.tsphp.typechecker.symbols.INullTypeSymbol;
+import ch.tsphp.typechecker.symbols.IPseudoTypeSymbol;
+import ch.tsphp.typechecker.symbols.IScalarTypeSymbol;
+import ch.tsphp.typechecker.symbols.IVoidTypeSymbol;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The type system of a single type checker which shares the types and operators of the {@link TypeSystemSnapshot} but
+ * has its own explicit castings.
+ * <p/>
+ * The types and operators of the snapshot are only read by the type checkers. The casting methods of the explicit
+ * castings on the other hand are written by the overload resolver (see {@link SnapshotCastingMethod}), hence each
+ * type checker gets its own copy of them.
+ */
+public class SnapshotTypeSystem implements ITypeSystem
+{
+    private final ITypeSystem typeSystem;
+    private final Map<ITypeSymbol, Map<ITypeSymbol, ICastingMethod>> explicitCastings;
+
+    public SnapshotTypeSystem(ITypeSystem theTypeSystem) {
+        typeSystem = theTypeSystem;
+        explicitCastings = copy(theTypeSystem.getExplicitCastings());
+    }
+
+    private Map<ITypeSymbol, Map<ITypeSymbol, ICastingMethod>> copy(
+            Map<ITypeSymbol, Map<ITypeSymbol, ICastingMethod>> castings) {
+        //linked maps keep the order of the snapshot, the overload resolver iterates over them
+        Map<ITypeSymbol, Map<ITypeSymbol, ICastingMethod>> copy = new LinkedHashMap<>(castings.size() * 2);
+        for (Map.Entry<ITypeSymbol, Map<ITypeSymbol, ICastingMethod>> entry : castings.entrySet()) {
+            Map<ITypeSymbol, ICastingMethod> castingMethods = new LinkedHashMap<>(entry.getValue().size() * 2);
+            for (Map.Entry<ITypeSymbol, ICastingMethod> castingEntry : entry.getValue().entrySet()) {
+                castingMethods.put(castingEntry.getKey(), new SnapshotCastingMethod(castingEntry.getValue()));
+            }
+            copy.put(entry.getKey(), Collections.unmodifiableMap(castingMethods));
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+
+    @Override
+    public Map<Integer, List<IMethodSymbol>> getUnaryOperators() {
+        return typeSystem.getUnaryOperators();
+    }
+
+    @Override
+    public Map<Integer, List<IMethodSymbol>> getBinaryOperators() {
+        return typeSystem.getBinaryOperators();
+    }
+
+    @Override
+    public Map<ITypeSymbol, Map<ITypeSymbol, ICastingMethod>> getExplicitCastings() {
+        return explicitCastings;
+    }
+
+    @Override
+    public IVoidTypeSymbol getVoidTypeSymbol() {
+        return typeSystem.getVoidTypeSymbol();
+    }
+
+    @Override
+    public INullTypeSymbol getNullTypeSymbol() {
+        return typeSystem.getNullTypeSymbol();
+    }
+
+    @Override
+    public IScalarTypeSymbol getBoolTypeSymbol() {
+        return typeSystem.getBoolTypeSymbol();
+    }
+
+    @Override
+    public IScalarTypeSymbol getBoolNullableTypeSymbol() {
+        return typeSystem.getBoolNullableTypeSymbol();
+    }
+
+    @Override
+    public IScalarTypeSymbol getIntTypeSymbol() {
+        return typeSystem.getIntTypeSymbol();
+    }
+
+    @Override
+    public IScalarTypeSymbol getIntNullableTypeSymbol() {
+        return typeSystem.getIntNullableTypeSymbol();
+    }
+
+    @Override
+    public IScalarTypeSymbol getFloatTypeSymbol() {
+        return typeSystem.getFloatTypeSymbol();
+    }
+
+    @Override
+    public IScalarTypeSymbol getFloatNullableTypeSymbol() {
+        return typeSystem.getFloatNullableTypeSymbol();
+    }
+
+    @Override
+    public IScalarTypeSymbol getStringTypeSymbol() {
+        return typeSystem.getStringTypeSymbol();
+    }
+
+    @Override
+    public IScalarTypeSymbol getStringNullableTypeSymbol() {
+        return typeSystem.getStringNullableTypeSymbol();
+    }
+
+    @Override
+    public IArrayTypeSymbol getArrayTypeSymbol() {
+        return typeSystem.getArrayTypeSymbol();
+    }
+
+    @Override
+    public IPseudoTypeSymbol getResourceTypeSymbol() {
+        return typeSystem.getResourceTypeSymbol();
+    }
+
+    @Override
+    public IPseudoTypeSymbol getObjectTypeSymbol() {
+        return typeSystem.getObjectTypeSymbol();
+    }
+
+    @Override
+    public IClassTypeSymbol getExceptionTypeSymbol() {
+        return typeSystem.getExceptionTypeSymbol();
+    }
+
+    /**
+     * Returns a new casting method on each call like the type system of the snapshot does, hence it can be shared.
+     */
+    @Override
+    public ICastingMethod getStandardCastingMethod(ITypeSymbol typeSymbol) {
+        return typeSystem.getStandardCastingMethod(typeSymbol);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.typesystem;
+
+import ch.tsphp.common.AstHelperRegistry;
+import ch.tsphp.common.ILowerCaseStringMap;
+import ch.tsphp.common.IScope;
+import ch.tsphp.common.ISymbol;
+import ch.tsphp.common.LowerCaseStringMap;
+import ch.tsphp.typechecker.ITypeSystem;
+import ch.tsphp.typechecker.TypeSystem;
+import ch.tsphp.typechecker.error.HardCodedErrorMessageProvider;
+import ch.tsphp.typechecker.error.TypeCheckerErrorReporter;
+import ch.tsphp.typechecker.scopes.GlobalNamespaceScope;
+import ch.tsphp.typechecker.scopes.IGlobalNamespaceScope;
+import ch.tsphp.typechecker.scopes.IScopeHelper;
+import ch.tsphp.typechecker.scopes.ScopeHelper;
+import ch.tsphp.typechecker.symbols.IPolymorphicTypeSymbol;
+import ch.tsphp.typechecker.symbols.SymbolFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The built-in types, operators and castings which a type checker defines before it checks any compilation unit.
+ * They are defined once, frozen and then shared by all {@link SnapshotTypeChecker}s.
+ * <p/>
+ * The type checkers must not change the snapshot after its construction:
+ * <ul>
+ * <li>the types and operators of the type system are only read by the type checkers.</li>
+ * <li>the casting methods of the explicit castings are written by the overload resolver, hence each type checker
+ * works on its own copy of them (see {@link SnapshotTypeSystem}).</li>
+ * <li>the symbols of the built-in types are copied into the global default namespace of each type checker (see
+ * {@link #copyInto(IScope)}), hence definitions of a compilation unit only ever change the copy.</li>
+ * </ul>
+ * Lazily computed state of the built-in symbols is computed up front so that it is not written concurrently.
+ */
+public final class TypeSystemSnapshot
+{
+    private final ITypeSystem typeSystem;
+    private final Map<String, List<ISymbol>> builtInSymbols;
+    private final ILowerCaseStringMap<ISymbol> builtInSymbolsCaseInsensitive = new LowerCaseStringMap<>();
+
+    public TypeSystemSnapshot() {
+        IScopeHelper scopeHelper = new ScopeHelper(new TypeCheckerErrorReporter(new HardCodedErrorMessageProvider()));
+        IGlobalNamespaceScope globalDefaultNamespace = new GlobalNamespaceScope(scopeHelper, "\\");
+        typeSystem = new TypeSystem(new SymbolFactory(scopeHelper), AstHelperRegistry.get(), globalDefaultNamespace);
+        builtInSymbols = freeze(globalDefaultNamespace.getSymbols());
+    }
+
+    private Map<String, List<ISymbol>> freeze(Map<String, List<ISymbol>> symbols) {
+        Map<String, List<ISymbol>> frozenSymbols = new HashMap<>(symbols.size() * 2);
+        for (Map.Entry<String, List<ISymbol>> entry : symbols.entrySet()) {
+            List<ISymbol> symbolList = entry.getValue();
+            for (ISymbol symbol : symbolList) {
+                if (symbol instanceof IPolymorphicTypeSymbol) {
+                    //computes and caches the abstract symbols
+                    ((IPolymorphicTypeSymbol) symbol).getAbstractSymbols();
+                }
+            }
+            frozenSymbols.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<>(symbolList)));
+            builtInSymbolsCaseInsensitive.put(entry.getKey(), symbolList.get(0));
+        }
+        return Collections.unmodifiableMap(frozenSymbols);
+    }
+
+    /**
+     * Returns the snapshot which is shared by default, it is created on first use.
+     */
+    public static TypeSystemSnapshot getDefault() {
+        return DefaultSnapshotHolder.INSTANCE;
+    }
+
+    public ITypeSystem getTypeSystem() {
+        return typeSystem;
+    }
+
+    public Map<String, List<ISymbol>> getBuiltInSymbols() {
+        return builtInSymbols;
+    }
+
+    /**
+     * Returns the first built-in symbol with the given name ignoring the case or null if there is none.
+     */
+    public ISymbol getBuiltInSymbolCaseInsensitive(String name) {
+        return builtInSymbolsCaseInsensitive.get(name);
+    }
+
+    /**
+     * Defines the built-in symbols in the given scope.
+     * <p/>
+     * The symbol lists are copied so that further definitions in the given scope do not change the snapshot. The
+     * symbols keep the snapshot's scope as their definition scope (which has the same name as the given scope).
+     */
+    public void copyInto(IScope scope) {
+        Map<String, List<ISymbol>> symbols = scope.getSymbols();
+        for (Map.Entry<String, List<ISymbol>> entry : builtInSymbols.entrySet()) {
+            symbols.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+    }
+
+    /**
+     * Initialisation-on-demand holder of the default snapshot.
+     */
+    private static final class DefaultSnapshotHolder
+    {
+        private static final TypeSystemSnapshot INSTANCE = new TypeSystemSnapshot();
+
+        private DefaultSnapshotHolder() {
+        }
+    }
+}
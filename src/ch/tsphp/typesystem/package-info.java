@@ -0,0 +1,11 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+/**
+ * Contains a type checker which starts from a shared, immutable snapshot of the built-in type system instead of
+ * defining the built-in types and operators anew for every type checker and every reset.
+ */
+package ch.tsphp.typesystem;
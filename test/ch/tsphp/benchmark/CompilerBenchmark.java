@@ -0,0 +1,300 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.benchmark;
+
+import ch.tsphp.HardCodedCompilerInitialiser;
+import ch.tsphp.common.ACompilerListener;
+import ch.tsphp.common.CompilationUnitDto;
+import ch.tsphp.common.ICompiler;
+import ch.tsphp.common.IErrorLogger;
+import ch.tsphp.common.IParser;
+import ch.tsphp.common.ITSPHPAstAdaptor;
+import ch.tsphp.common.ITranslator;
+import ch.tsphp.common.ITranslatorFactory;
+import ch.tsphp.common.ITypeChecker;
+import ch.tsphp.common.ParserUnitDto;
+import ch.tsphp.common.TSPHPAstAdaptor;
+import ch.tsphp.common.exceptions.TSPHPException;
+import ch.tsphp.parser.ParserFacade;
+import ch.tsphp.translators.php54.PHP54TranslatorFactory;
+import ch.tsphp.typechecker.TypeChecker;
+import org.antlr.runtime.tree.CommonTreeNodeStream;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Measures the throughput of each compiler phase separately as well as end-to-end through {@link ch.tsphp.Compiler}.
+ * <p/>
+ * The phases are measured on a single thread using the component facades directly, hence they show the cost of the
+ * components (parser, type checker and translator jars) without the scheduling of the compiler. The end-to-end
+ * measurement on the other hand uses the configured number of workers.
+ * <p/>
+ * Each measurement is preceded by warm-up iterations so that the JIT compiler has settled. Use the ant target
+ * benchmark to run it, e.g. ant benchmark -Dbenchmark.args="--corpus huge --size 500".
+ * <p/>
+ * Supported arguments:
+ * <ul>
+ * <li>--corpus small|huge|hierarchy (default small), see {@link CorpusGenerator}</li>
+ * <li>--size &lt;n&gt; (default 200)</li>
+ * <li>--warmup &lt;n&gt; number of warm-up iterations (default 5)</li>
+ * <li>--iterations &lt;n&gt; number of measured iterations (default 10)</li>
+ * <li>--workers &lt;n&gt; number of workers for the end-to-end measurement (default number of processors)</li>
+ * </ul>
+ */
+public final class CompilerBenchmark
+{
+    public static final String PARSE_AND_DEFINITION = "parse+definition";
+    public static final String REFERENCE = "reference";
+    public static final String TYPE_CHECK = "type check";
+    public static final String TRANSLATION = "translation";
+    public static final String END_TO_END = "end-to-end";
+
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final double BYTES_PER_KILOBYTE = 1024;
+    private static final int END_TO_END_TIMEOUT_IN_MINUTES = 10;
+
+    private final Map<String, String> corpus;
+    private final int warmupIterations;
+    private final int iterations;
+    private final int workers;
+    private final Map<String, Statistics> statistics = new LinkedHashMap<>();
+
+    public CompilerBenchmark(Map<String, String> theCorpus, int theWarmupIterations, int theIterations, int
+            theWorkers) {
+        corpus = theCorpus;
+        warmupIterations = theWarmupIterations;
+        iterations = theIterations;
+        workers = theWorkers;
+        for (String phase : new String[]{PARSE_AND_DEFINITION, REFERENCE, TYPE_CHECK, TRANSLATION, END_TO_END}) {
+            statistics.put(phase, new Statistics());
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String corpusType = CorpusGenerator.MANY_SMALL_FILES;
+        int size = 200;
+        int warmup = 5;
+        int iterations = 10;
+        int workers = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--corpus":
+                    corpusType = args[i + 1];
+                    break;
+                case "--size":
+                    size = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--workers":
+                    workers = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument " + args[i]);
+            }
+        }
+
+        System.out.println(String.format(Locale.ROOT, "corpus=%s size=%d warmup=%d iterations=%d workers=%d java=%s",
+                corpusType, size, warmup, iterations, workers, System.getProperty("java.version")));
+        CompilerBenchmark benchmark = new CompilerBenchmark(
+                CorpusGenerator.generate(corpusType, size), warmup, iterations, workers);
+        benchmark.run();
+        benchmark.printReport();
+    }
+
+    public void run() throws InterruptedException {
+        for (int i = 0; i < warmupIterations; ++i) {
+            measurePhases(false);
+        }
+        for (int i = 0; i < iterations; ++i) {
+            measurePhases(true);
+        }
+        measureEndToEnd();
+    }
+
+    public Map<String, Statistics> getStatistics() {
+        return statistics;
+    }
+
+    public void printReport() {
+        int numberOfUnits = corpus.size();
+        long numberOfBytes = 0;
+        for (String source : corpus.values()) {
+            numberOfBytes += source.length();
+        }
+        System.out.println(String.format(Locale.ROOT, "%d units, %.1f KB", numberOfUnits,
+                numberOfBytes / BYTES_PER_KILOBYTE));
+        System.out.println(String.format(Locale.ROOT, "%-18s %10s %10s %10s %10s %12s %10s",
+                "phase", "mean ms", "min ms", "max ms", "stddev", "units/s", "KB/s"));
+        for (Map.Entry<String, Statistics> entry : statistics.entrySet()) {
+            Statistics stats = entry.getValue();
+            double meanInSeconds = stats.getMean() / NANOS_PER_SECOND;
+            System.out.println(String.format(Locale.ROOT, "%-18s %10.2f %10.2f %10.2f %10.2f %12.1f %10.1f",
+                    entry.getKey(),
+                    stats.getMean() / NANOS_PER_MILLI,
+                    stats.getMin() / NANOS_PER_MILLI,
+                    stats.getMax() / NANOS_PER_MILLI,
+                    stats.getStandardDeviation() / NANOS_PER_MILLI,
+                    numberOfUnits / meanInSeconds,
+                    numberOfBytes / BYTES_PER_KILOBYTE / meanInSeconds));
+        }
+    }
+
+    private void measurePhases(boolean isMeasured) {
+        ITSPHPAstAdaptor adaptor = new TSPHPAstAdaptor();
+        IParser parser = new ParserFacade(adaptor);
+        ITypeChecker typeChecker = new TypeChecker();
+        ITranslatorFactory translatorFactory = new PHP54TranslatorFactory();
+        IErrorLogger errorLogger = new FailingErrorLogger();
+        parser.registerErrorLogger(errorLogger);
+        typeChecker.registerErrorLogger(errorLogger);
+        List<CompilationUnitDto> compilationUnits = new ArrayList<>(corpus.size());
+
+        long start = System.nanoTime();
+        for (Map.Entry<String, String> entry : corpus.entrySet()) {
+            ParserUnitDto parserUnit = parser.parse(entry.getValue());
+            CommonTreeNodeStream treeNodeStream = new CommonTreeNodeStream(adaptor, parserUnit.compilationUnit);
+            treeNodeStream.setTokenStream(parserUnit.tokenStream);
+            typeChecker.enrichWithDefinitions(parserUnit.compilationUnit, treeNodeStream);
+            compilationUnits.add(new CompilationUnitDto(entry.getKey(), parserUnit.compilationUnit, treeNodeStream));
+        }
+        long afterDefinition = System.nanoTime();
+        for (CompilationUnitDto dto : compilationUnits) {
+            dto.treeNodeStream.reset();
+            typeChecker.enrichWithReferences(dto.compilationUnit, dto.treeNodeStream);
+        }
+        long afterReference = System.nanoTime();
+        for (CompilationUnitDto dto : compilationUnits) {
+            dto.treeNodeStream.reset();
+            typeChecker.doTypeChecking(dto.compilationUnit, dto.treeNodeStream);
+        }
+        long afterTypeCheck = System.nanoTime();
+        for (CompilationUnitDto dto : compilationUnits) {
+            dto.treeNodeStream.reset();
+            ITranslator translator = translatorFactory.build();
+            translator.registerErrorLogger(errorLogger);
+            translator.translate(dto.treeNodeStream);
+        }
+        long afterTranslation = System.nanoTime();
+
+        if (isMeasured) {
+            statistics.get(PARSE_AND_DEFINITION).add(afterDefinition - start);
+            statistics.get(REFERENCE).add(afterReference - afterDefinition);
+            statistics.get(TYPE_CHECK).add(afterTypeCheck - afterReference);
+            statistics.get(TRANSLATION).add(afterTranslation - afterTypeCheck);
+        }
+    }
+
+    private void measureEndToEnd() throws InterruptedException {
+        ExecutorService executorService = Executors.newFixedThreadPool(workers);
+        ICompiler compiler = new HardCodedCompilerInitialiser().create(executorService);
+        final AtomicReference<CountDownLatch> latch = new AtomicReference<>();
+        compiler.registerErrorLogger(new FailingErrorLogger());
+        compiler.registerCompilerListener(new ACompilerListener()
+        {
+            @Override
+            public void afterCompilingCompleted() {
+                latch.get().countDown();
+            }
+        });
+
+        try {
+            for (int i = 0; i < warmupIterations + iterations; ++i) {
+                latch.set(new CountDownLatch(1));
+                compiler.reset();
+                long start = System.nanoTime();
+                for (Map.Entry<String, String> entry : corpus.entrySet()) {
+                    compiler.addCompilationUnit(entry.getKey(), entry.getValue());
+                }
+                compiler.compile();
+                if (!latch.get().await(END_TO_END_TIMEOUT_IN_MINUTES, TimeUnit.MINUTES)) {
+                    throw new IllegalStateException("Compilation did not finish within "
+                            + END_TO_END_TIMEOUT_IN_MINUTES + " minutes");
+                }
+                if (i >= warmupIterations) {
+                    statistics.get(END_TO_END).add(System.nanoTime() - start);
+                }
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Fails the benchmark if the corpus contains errors since the measurements would be meaningless otherwise.
+     */
+    private static class FailingErrorLogger implements IErrorLogger
+    {
+        @Override
+        public void log(TSPHPException exception) {
+            throw new IllegalStateException("Corpus is invalid: " + exception.getMessage(), exception);
+        }
+    }
+
+    /**
+     * Collects the durations (in nanoseconds) of one phase.
+     */
+    public static class Statistics
+    {
+        private final List<Long> samples = new ArrayList<>();
+
+        public void add(long durationInNanos) {
+            samples.add(durationInNanos);
+        }
+
+        public int getNumberOfSamples() {
+            return samples.size();
+        }
+
+        public double getMean() {
+            double sum = 0;
+            for (long sample : samples) {
+                sum += sample;
+            }
+            return samples.isEmpty() ? 0 : sum / samples.size();
+        }
+
+        public double getMin() {
+            long min = samples.isEmpty() ? 0 : Long.MAX_VALUE;
+            for (long sample : samples) {
+                min = Math.min(min, sample);
+            }
+            return min;
+        }
+
+        public double getMax() {
+            long max = 0;
+            for (long sample : samples) {
+                max = Math.max(max, sample);
+            }
+            return max;
+        }
+
+        public double getStandardDeviation() {
+            double mean = getMean();
+            double sum = 0;
+            for (long sample : samples) {
+                sum += (sample - mean) * (sample - mean);
+            }
+            return samples.isEmpty() ? 0 : Math.sqrt(sum / samples.size());
+        }
+    }
+}
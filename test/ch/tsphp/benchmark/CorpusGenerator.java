@@ -0,0 +1,113 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Generates synthetic TSPHP corpora for the {@link CompilerBenchmark}.
+ * <p/>
+ * Each corpus is returned as map from compilation unit id to source code in the order in which the units should be
+ * added to the compiler.
+ */
+public final class CorpusGenerator
+{
+    public static final String MANY_SMALL_FILES = "small";
+    public static final String FEW_HUGE_FILES = "huge";
+    public static final String DEEP_CLASS_HIERARCHY = "hierarchy";
+
+    private static final int NUMBER_OF_HUGE_FILES = 4;
+    private static final int STATEMENTS_PER_BLOCK = 8;
+
+    private CorpusGenerator() {
+    }
+
+    /**
+     * @param corpus One of {@link #MANY_SMALL_FILES}, {@link #FEW_HUGE_FILES} or {@link #DEEP_CLASS_HIERARCHY}
+     * @param size   The number of files for small, the number of functions per file for huge and the depth of the
+     *               class hierarchy for hierarchy
+     */
+    public static Map<String, String> generate(String corpus, int size) {
+        Map<String, String> units;
+        switch (corpus) {
+            case MANY_SMALL_FILES:
+                units = generateManySmallFiles(size);
+                break;
+            case FEW_HUGE_FILES:
+                units = generateFewHugeFiles(NUMBER_OF_HUGE_FILES, size);
+                break;
+            case DEEP_CLASS_HIERARCHY:
+                units = generateDeepClassHierarchy(size);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown corpus " + corpus + ", use "
+                        + MANY_SMALL_FILES + ", " + FEW_HUGE_FILES + " or " + DEEP_CLASS_HIERARCHY);
+        }
+        return units;
+    }
+
+    /**
+     * Small independent files, each with one class and a few statements.
+     */
+    public static Map<String, String> generateManySmallFiles(int numberOfFiles) {
+        Map<String, String> units = new LinkedHashMap<>();
+        for (int i = 0; i < numberOfFiles; ++i) {
+            units.put("small" + i + ".tsphp", "namespace small" + i + ";\n"
+                    + "class Small" + i + "{\n"
+                    + "    private int $value = " + i + ";\n"
+                    + "    public function int add(int $x){\n"
+                    + "        return $this->value + $x;\n"
+                    + "    }\n"
+                    + "}\n"
+                    + "Small" + i + " $s = new Small" + i + "();\n"
+                    + "int $r = $s->add(" + i + ");\n");
+        }
+        return units;
+    }
+
+    /**
+     * A few files which consist of many functions with a couple of statements each.
+     */
+    public static Map<String, String> generateFewHugeFiles(int numberOfFiles, int functionsPerFile) {
+        Map<String, String> units = new LinkedHashMap<>();
+        for (int i = 0; i < numberOfFiles; ++i) {
+            StringBuilder builder = new StringBuilder();
+            builder.append("namespace huge").append(i).append(";\n");
+            for (int j = 0; j < functionsPerFile; ++j) {
+                builder.append("function int f").append(j).append("(int $a, int $b){\n");
+                builder.append("    int $c = $a * $b;\n");
+                for (int k = 0; k < STATEMENTS_PER_BLOCK; ++k) {
+                    builder.append("    if($c > ").append(k).append("){ $c = $c - $a; } else { $c = $c + $b; }\n");
+                }
+                builder.append("    return $c;\n}\n");
+                builder.append("int $r").append(j).append(" = f").append(j).append("(").append(j).append(", 2);\n");
+            }
+            units.put("huge" + i + ".tsphp", builder.toString());
+        }
+        return units;
+    }
+
+    /**
+     * One file per class where each class extends the previous one and calls a method of its parent, hence each unit
+     * depends on all units before it.
+     */
+    public static Map<String, String> generateDeepClassHierarchy(int depth) {
+        Map<String, String> units = new LinkedHashMap<>();
+        units.put("level0.tsphp", "namespace hierarchy;\n"
+                + "class Level0{\n"
+                + "    public function int m0(){ return 0; }\n"
+                + "}\n");
+        for (int i = 1; i < depth; ++i) {
+            units.put("level" + i + ".tsphp", "namespace hierarchy;\n"
+                    + "class Level" + i + " extends Level" + (i - 1) + "{\n"
+                    + "    public function int m" + i + "(){ return $this->m" + (i - 1) + "() + 1; }\n"
+                    + "}\n");
+        }
+        return units;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.integration;
+
+import ch.tsphp.HardCodedCompilerInitialiser;
+import ch.tsphp.IIncrementalCompiler;
+import ch.tsphp.common.ACompilerListener;
+import ch.tsphp.metrics.CompilationMetrics;
+import ch.tsphp.metrics.CompilationPhase;
+import ch.tsphp.metrics.UnitPhaseMetricsDto;
+import org.junit.Test;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CompilationMetricsTest
+{
+    private CountDownLatch lock = new CountDownLatch(1);
+
+    @Test
+    public void compile_Standard_MeasuresEachUnitInEachPhase() throws InterruptedException {
+        CompilationMetrics metrics = new CompilationMetrics();
+
+        IIncrementalCompiler compiler = createCompiler(metrics);
+        compiler.addCompilationUnit("a", "int $a;");
+        compiler.addCompilationUnit("b", "int $b;");
+        compiler.compile();
+        lock.await(2, TimeUnit.SECONDS);
+
+        for (String id : new String[]{"a", "b"}) {
+            Set<CompilationPhase> phases = EnumSet.noneOf(CompilationPhase.class);
+            for (UnitPhaseMetricsDto unitMetrics : metrics.getUnitMetrics()) {
+                if (unitMetrics.id.equals(id)) {
+                    phases.add(unitMetrics.phase);
+                    assertThat(unitMetrics.wallTime >= 0, is(true));
+                    assertThat(unitMetrics.queueWaitTime >= 0, is(true));
+                }
+            }
+            assertThat(phases, is((Set<CompilationPhase>) EnumSet.of(CompilationPhase.PARSE_AND_DEFINITION, CompilationPhase.REFERENCE,
+                    CompilationPhase.TYPE_CHECK, CompilationPhase.TRANSLATION)));
+        }
+        assertThat(metrics.getWallTimeHistogram(CompilationPhase.TYPE_CHECK).getCount(), is(2L));
+        assertThat(metrics.getSlowestUnits(5).size(), is(2));
+        assertThat(metrics.getParallelism(CompilationPhase.TYPE_CHECK) > 0, is(true));
+        assertThat(metrics.toJson(), containsString("\"parallelism\":"));
+        assertThat(metrics.toJson(), containsString("{\"id\":\"a\",\"phase\":\"TYPE_CHECK\""));
+    }
+
+    @Test
+    public void compile_TypeCheckError_ErrorIsAttributedToTypeCheckPhase() throws InterruptedException {
+        CompilationMetrics metrics = new CompilationMetrics();
+
+        IIncrementalCompiler compiler = createCompiler(metrics);
+        compiler.addCompilationUnit("a", "int $a = 1.5;");
+        compiler.compile();
+        lock.await(2, TimeUnit.SECONDS);
+
+        assertThat(metrics.getNumberOfErrors(CompilationPhase.PARSE_AND_DEFINITION), is(0L));
+        assertThat(metrics.getNumberOfErrors(CompilationPhase.TYPE_CHECK), is(1L));
+    }
+
+    @Test
+    public void getWorkerUtilisation_NoWorkers_ReturnsZero() throws InterruptedException {
+        CompilationMetrics metrics = new CompilationMetrics();
+
+        IIncrementalCompiler compiler = createCompiler(metrics);
+        compiler.addCompilationUnit("a", "int $a;");
+        compiler.compile();
+        lock.await(2, TimeUnit.SECONDS);
+
+        assertThat(metrics.getWorkerUtilisation(1) > 0, is(true));
+        assertThat(metrics.getWorkerUtilisation(0), is(0.0));
+        assertThat(metrics.getParallelEfficiency(CompilationPhase.TYPE_CHECK, 0), is(0.0));
+    }
+
+    private IIncrementalCompiler createCompiler(CompilationMetrics metrics) {
+        IIncrementalCompiler compiler = new HardCodedCompilerInitialiser().create();
+        compiler.registerMetricsListener(metrics);
+        compiler.registerCompilerListener(new ACompilerListener()
+        {
+            @Override
+            public void afterCompilingCompleted() {
+                lock.countDown();
+            }
+        });
+        return compiler;
+    }
+}
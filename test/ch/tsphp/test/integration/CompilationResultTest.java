@@ -0,0 +1,257 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.integration;
+
+import ch.tsphp.CompilationResultDto;
+import ch.tsphp.Compiler;
+import ch.tsphp.IIncrementalCompiler;
+import ch.tsphp.common.ITSPHPAstAdaptor;
+import ch.tsphp.common.ITranslator;
+import ch.tsphp.common.ITranslatorFactory;
+import ch.tsphp.common.TSPHPAstAdaptor;
+import ch.tsphp.exceptions.CompilerException;
+import ch.tsphp.metrics.CompilationPhase;
+import ch.tsphp.parser.ParserFacade;
+import ch.tsphp.translators.php54.PHP54TranslatorFactory;
+import ch.tsphp.typesystem.SnapshotTypeChecker;
+import org.antlr.runtime.tree.TreeNodeStream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CompilationResultTest
+{
+    private ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void compileAndWait_ValidUnit_ReturnsTranslationsAndPhaseWallTimes() throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler(executorService);
+        compiler.addCompilationUnit("unit", "int $a = 1;");
+
+        CompilationResultDto result = compiler.compileAndWait(5, TimeUnit.SECONDS);
+
+        assertThat(result.hasFoundError, is(false));
+        assertThat(result.wasAborted, is(false));
+        assertThat(result.hasTimedOut, is(false));
+        assertThat(result.diagnostics.isEmpty(), is(true));
+        assertThat(result.translations.size(), is(1));
+        assertThat(result.translations.containsKey("unit"), is(true));
+        assertThat(result.phaseWallTimes.keySet().toString(),
+                is("[PARSE_AND_DEFINITION, REFERENCE, TYPE_CHECK, TRANSLATION]"));
+        assertThat(result.wallTime, greaterThan(0L));
+    }
+
+    @Test
+    public void compileAndWait_UnitWithError_ReturnsDiagnostics() throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler(executorService);
+        compiler.addCompilationUnit("unit", "int $a = $b;");
+
+        CompilationResultDto result = compiler.compileAndWait(5, TimeUnit.SECONDS);
+
+        assertThat(result.hasFoundError, is(true));
+        assertThat(result.diagnostics.size(), greaterThan(0));
+        assertThat(result.translations.isEmpty(), is(true));
+    }
+
+    @Test
+    public void compileAndWait_AfterReset_ContainsOnlyDiagnosticsOfNewCompilation() throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler(executorService);
+        compiler.addCompilationUnit("unit", "int $a = $b;");
+        compiler.compileAndWait(5, TimeUnit.SECONDS);
+        compiler.reset();
+        compiler.addCompilationUnit("unit", "int $a = 1;");
+
+        CompilationResultDto result = compiler.compileAndWait(5, TimeUnit.SECONDS);
+
+        assertThat(result.hasFoundError, is(false));
+        assertThat(result.diagnostics.isEmpty(), is(true));
+    }
+
+    @Test
+    public void compileAndWait_DeadlineExceeded_CancelsCompilation() throws InterruptedException {
+        ExecutorService singleThreadExecutor = Executors.newSingleThreadExecutor();
+        final CountDownLatch blocker = blockExecutor(singleThreadExecutor);
+        IIncrementalCompiler compiler = createCompiler(singleThreadExecutor);
+        compiler.addCompilationUnit("unit", "int $a = 1;");
+        releaseLater(blocker);
+
+        //the blocker is released after the timeout but within the second wait for the aborted compilation
+        CompilationResultDto result = compiler.compileAndWait(300, TimeUnit.MILLISECONDS);
+        singleThreadExecutor.shutdown();
+
+        assertThat(result.hasTimedOut, is(true));
+        assertThat(result.wasAborted, is(true));
+        assertThat(result.translations.isEmpty(), is(true));
+    }
+
+    @Test
+    public void compileAndWait_AbortedCompilationDoesNotCompleteInTime_ThrowsCompilerException()
+            throws InterruptedException {
+        ExecutorService singleThreadExecutor = Executors.newSingleThreadExecutor();
+        CountDownLatch blocker = blockExecutor(singleThreadExecutor);
+        IIncrementalCompiler compiler = createCompiler(singleThreadExecutor);
+        compiler.addCompilationUnit("unit", "int $a = 1;");
+
+        try {
+            compiler.compileAndWait(50, TimeUnit.MILLISECONDS);
+            Assert.fail("No compiler exception thrown although the aborted compilation could not complete.");
+        } catch (CompilerException ex) {
+            //expected
+        } finally {
+            blocker.countDown();
+            singleThreadExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void compileAsync_ValidUnit_FutureReturnsResult() throws InterruptedException, ExecutionException {
+        IIncrementalCompiler compiler = createCompiler(executorService);
+        compiler.addCompilationUnit("unit", "int $a = 1;");
+
+        Future<CompilationResultDto> future = compiler.compileAsync();
+        CompilationResultDto result = future.get();
+
+        assertThat(future.isDone(), is(true));
+        assertThat(future.isCancelled(), is(false));
+        assertThat(result.translations.size(), is(1));
+    }
+
+    @Test
+    public void compileAsync_CancelFuture_AbortsCompilation() throws InterruptedException, ExecutionException {
+        ExecutorService singleThreadExecutor = Executors.newSingleThreadExecutor();
+        CountDownLatch blocker = blockExecutor(singleThreadExecutor);
+        IIncrementalCompiler compiler = createCompiler(singleThreadExecutor);
+        compiler.addCompilationUnit("unit", "int $a = 1;");
+
+        Future<CompilationResultDto> future = compiler.compileAsync();
+        boolean result = future.cancel(true);
+        blocker.countDown();
+        CompilationResultDto compilationResult = future.get();
+        singleThreadExecutor.shutdown();
+
+        assertThat(result, is(true));
+        assertThat(future.isCancelled(), is(true));
+        assertThat(compilationResult.wasAborted, is(true));
+        assertThat(compilationResult.hasTimedOut, is(false));
+    }
+
+    @Test(expected = CompilerException.class)
+    public void compileAsync_DuringCompilation_ThrowsCompilerException() {
+        ExecutorService singleThreadExecutor = Executors.newSingleThreadExecutor();
+        CountDownLatch blocker = blockExecutor(singleThreadExecutor);
+        IIncrementalCompiler compiler = createCompiler(singleThreadExecutor);
+        compiler.addCompilationUnit("unit", "int $a = 1;");
+        compiler.compileAsync();
+
+        try {
+            compiler.compileAsync();
+        } finally {
+            blocker.countDown();
+            singleThreadExecutor.shutdown();
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void compileAndWait_ModifyTranslations_ThrowsUnsupportedOperationException() throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler(executorService);
+        compiler.addCompilationUnit("unit", "int $a = 1;");
+
+        CompilationResultDto result = compiler.compileAndWait(5, TimeUnit.SECONDS);
+        result.translations.clear();
+    }
+
+    @Test
+    public void compileAndWait_TwoTranslatorFactories_ReturnsTranslationsPerTarget() throws InterruptedException {
+        ITranslatorFactory php54 = new PHP54TranslatorFactory();
+        ITranslatorFactory other = mock(ITranslatorFactory.class);
+        ITranslator translator = mock(ITranslator.class);
+        when(other.build()).thenReturn(translator);
+        when(translator.translate(any(TreeNodeStream.class))).thenReturn("other target");
+        Collection<ITranslatorFactory> translatorFactories = new ArrayDeque<>();
+        translatorFactories.add(php54);
+        translatorFactories.add(other);
+        ITSPHPAstAdaptor adaptor = new TSPHPAstAdaptor();
+        IIncrementalCompiler compiler = new Compiler(adaptor, new ParserFacade(adaptor), new SnapshotTypeChecker(),
+                translatorFactories, executorService);
+        compiler.addCompilationUnit("a", "int $a = 1;");
+        compiler.addCompilationUnit("b", "int $b = 2;");
+
+        CompilationResultDto result = compiler.compileAndWait(5, TimeUnit.SECONDS);
+
+        assertThat(result.hasFoundError, is(false));
+        assertThat(result.translationsPerTarget.keySet(), contains(php54, other));
+        assertThat(result.translationsPerTarget.get(php54).get("a"), containsString("$a = 1;"));
+        assertThat(result.translationsPerTarget.get(php54).get("b"), containsString("$b = 2;"));
+        assertThat(result.translationsPerTarget.get(other).get("a"), is("other target"));
+        assertThat(result.translationsPerTarget.get(other).get("b"), is("other target"));
+        assertThat(result.translations, is(result.translationsPerTarget.get(php54)));
+        assertThat(compiler.getTranslationsPerTarget(), is(result.translationsPerTarget));
+        assertThat(compiler.getTranslations(), is(result.translationsPerTarget.get(php54)));
+    }
+
+    private CountDownLatch blockExecutor(ExecutorService executor) {
+        final CountDownLatch blocker = new CountDownLatch(1);
+        executor.execute(new Runnable()
+        {
+            @Override
+            public void run() {
+                try {
+                    blocker.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        return blocker;
+    }
+
+    private void releaseLater(final CountDownLatch blocker) {
+        executorService.execute(new Runnable()
+        {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(450);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                blocker.countDown();
+            }
+        });
+    }
+
+    private IIncrementalCompiler createCompiler(ExecutorService executor) {
+        Collection<ITranslatorFactory> translatorFactories = new ArrayDeque<>();
+        translatorFactories.add(new PHP54TranslatorFactory());
+        ITSPHPAstAdaptor adaptor = new TSPHPAstAdaptor();
+        return new Compiler(adaptor, new ParserFacade(adaptor), new SnapshotTypeChecker(), translatorFactories,
+                executor);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.integration;
+
+import ch.tsphp.HardCodedCompilerInitialiser;
+import ch.tsphp.console.CompileClient;
+import ch.tsphp.console.CompileServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CompileServerTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CompileServer server;
+    private Thread serverThread;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new CompileServer(new HardCodedCompilerInitialiser().create(), 0);
+        serverThread = new Thread(server);
+        serverThread.start();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        server.shutdown();
+        serverThread.join(2000);
+    }
+
+    @Test
+    public void run_ValidFile_WritesTranslationAndReturnsSuccess() throws IOException {
+        File file = createFile("a.tsphp", "int $a;");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        int exitCode = new CompileClient(server.getPort()).run(new String[]{file.getPath()}, createStream(out));
+
+        assertThat(exitCode, is(CompileServer.EXIT_SUCCESS));
+        assertThat(out.toString("UTF-8"), containsString(CompileServer.PREFIX_TRANSLATED + file.getAbsolutePath()));
+        assertThat(new File(folder.getRoot(), "a.php").exists(), is(true));
+    }
+
+    @Test
+    public void run_SeveralRequests_ReusesCompilerAndReportsErrorsPerRequest() throws IOException {
+        File valid = createFile("a.tsphp", "int $a;");
+        File invalid = createFile("b.tsphp", "int $b = 1.5;");
+        CompileClient client = new CompileClient(server.getPort());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        int exitCode1 = client.run(new String[]{invalid.getPath()}, createStream(new ByteArrayOutputStream()));
+        int exitCode2 = client.run(new String[]{valid.getPath()}, createStream(out));
+
+        assertThat(exitCode1, is(CompileServer.EXIT_ERROR));
+        assertThat(exitCode2, is(CompileServer.EXIT_SUCCESS));
+        assertThat(out.toString("UTF-8").contains(CompileServer.PREFIX_ERROR), is(false));
+    }
+
+    @Test
+    public void run_NoPaths_ReturnsSuccessWithoutCompiling() throws IOException {
+        int exitCode = new CompileClient(server.getPort()).run(new String[]{}, createStream(new ByteArrayOutputStream()));
+
+        assertThat(exitCode, is(CompileServer.EXIT_SUCCESS));
+    }
+
+    @Test
+    public void run_Shutdown_StopsServer() throws IOException, InterruptedException {
+        int exitCode = new CompileClient(server.getPort()).run(
+                new String[]{CompileServer.COMMAND_SHUTDOWN}, createStream(new ByteArrayOutputStream()));
+        serverThread.join(2000);
+
+        assertThat(exitCode, is(CompileServer.EXIT_SUCCESS));
+        assertThat(serverThread.isAlive(), is(false));
+    }
+
+    private File createFile(String name, String content) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private PrintStream createStream(ByteArrayOutputStream out) throws IOException {
+        return new PrintStream(out, true, "UTF-8");
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.integration;
+
+import ch.tsphp.Compiler;
+import ch.tsphp.FailFastPolicy;
+import ch.tsphp.IIncrementalCompiler;
+import ch.tsphp.common.ACompilerListener;
+import ch.tsphp.common.IErrorLogger;
+import ch.tsphp.common.ITSPHPAstAdaptor;
+import ch.tsphp.common.ITranslatorFactory;
+import ch.tsphp.common.TSPHPAstAdaptor;
+import ch.tsphp.common.exceptions.TSPHPException;
+import ch.tsphp.exceptions.CompilerException;
+import ch.tsphp.metrics.CompilationPhase;
+import ch.tsphp.parser.ParserFacade;
+import ch.tsphp.translators.php54.PHP54TranslatorFactory;
+import ch.tsphp.typesystem.SnapshotTypeChecker;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+
+public class CompilerAbortTest
+{
+    private static final int NUMBER_OF_UNITS = 50;
+
+    private ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private CountDownLatch compilationCompleted = new CountDownLatch(1);
+    private AtomicInteger numberOfErrors = new AtomicInteger();
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void compile_FailFastAfterFirstError_AbortsAndDropsRemainingUnits() throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler();
+        compiler.setFailFastPolicy(FailFastPolicy.afterErrors(1));
+        for (int i = 0; i < NUMBER_OF_UNITS; ++i) {
+            compiler.addCompilationUnit("unit" + i, "int $a = $b" + i + ";");
+        }
+
+        compiler.compile();
+        compilationCompleted.await(5, TimeUnit.SECONDS);
+
+        assertThat(compilationCompleted.getCount(), is(0L));
+        assertThat(compiler.wasAborted(), is(true));
+        assertThat(compiler.hasFoundError(), is(true));
+        assertThat(numberOfErrors.get(), lessThan(NUMBER_OF_UNITS));
+        assertThat(compiler.getTranslations().isEmpty(), is(true));
+    }
+
+    @Test
+    public void compile_FailFastInPhaseWithError_Aborts() throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler();
+        compiler.setFailFastPolicy(FailFastPolicy.afterFirstErrorIn(CompilationPhase.REFERENCE));
+        compiler.addCompilationUnit("unit", "int $a = $b;");
+
+        compiler.compile();
+        compilationCompleted.await(5, TimeUnit.SECONDS);
+
+        assertThat(compiler.wasAborted(), is(true));
+    }
+
+    @Test
+    public void compile_FailFastInPhaseWithoutError_DoesNotAbort() throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler();
+        compiler.setFailFastPolicy(FailFastPolicy.afterFirstErrorIn(CompilationPhase.TRANSLATION));
+        compiler.addCompilationUnit("unit", "int $a = $b;");
+
+        compiler.compile();
+        compilationCompleted.await(5, TimeUnit.SECONDS);
+
+        assertThat(compiler.wasAborted(), is(false));
+        assertThat(compiler.hasFoundError(), is(true));
+    }
+
+    @Test
+    public void cancel_DuringCompilation_DropsQueuedTasksAndInformsListener() throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler();
+        final CountDownLatch blocker = new CountDownLatch(1);
+        executorService.execute(new Runnable()
+        {
+            @Override
+            public void run() {
+                try {
+                    blocker.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        for (int i = 0; i < NUMBER_OF_UNITS; ++i) {
+            compiler.addCompilationUnit("unit" + i, "int $a" + i + " = 1;");
+        }
+
+        compiler.compile();
+        compiler.cancel();
+        blocker.countDown();
+        compilationCompleted.await(5, TimeUnit.SECONDS);
+
+        assertThat(compilationCompleted.getCount(), is(0L));
+        assertThat(compiler.wasAborted(), is(true));
+        assertThat(compiler.hasFoundError(), is(false));
+        assertThat(compiler.getTranslations().isEmpty(), is(true));
+    }
+
+    @Test(expected = CompilerException.class)
+    public void recompile_AfterCancel_ThrowsCompilerException() throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler();
+        compiler.addCompilationUnit("unit", "int $a = 1;");
+        compiler.compile();
+        compiler.cancel();
+        compilationCompleted.await(5, TimeUnit.SECONDS);
+
+        compiler.recompile();
+    }
+
+    @Test
+    public void compile_AfterCancelAndReset_Translates() throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler();
+        compiler.addCompilationUnit("unit", "int $a = 1;");
+        compiler.compile();
+        compiler.cancel();
+        compilationCompleted.await(5, TimeUnit.SECONDS);
+        compilationCompleted = new CountDownLatch(1);
+
+        compiler.reset();
+        compiler.addCompilationUnit("unit", "int $a = 1;");
+        compiler.compile();
+        compilationCompleted.await(5, TimeUnit.SECONDS);
+
+        assertThat(compiler.wasAborted(), is(false));
+        assertThat(compiler.hasFoundError(), is(false));
+        assertThat(compiler.getTranslations().size(), is(1));
+    }
+
+    @Test
+    public void cancel_NotCompiling_DoesNothing() throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler();
+        compiler.addCompilationUnit("unit", "int $a = 1;");
+
+        compiler.cancel();
+        compiler.compile();
+        compilationCompleted.await(5, TimeUnit.SECONDS);
+
+        assertThat(compiler.wasAborted(), is(false));
+        assertThat(compiler.getTranslations().size(), is(1));
+    }
+
+    private IIncrementalCompiler createCompiler() {
+        Collection<ITranslatorFactory> translatorFactories = new ArrayDeque<>();
+        translatorFactories.add(new PHP54TranslatorFactory());
+        ITSPHPAstAdaptor adaptor = new TSPHPAstAdaptor();
+        IIncrementalCompiler compiler = new Compiler(adaptor, new ParserFacade(adaptor), new SnapshotTypeChecker(),
+                translatorFactories, executorService);
+        compiler.registerCompilerListener(new ACompilerListener()
+        {
+            @Override
+            public void afterCompilingCompleted() {
+                compilationCompleted.countDown();
+            }
+        });
+        compiler.registerErrorLogger(new IErrorLogger()
+        {
+            @Override
+            public void log(TSPHPException exception) {
+                numberOfErrors.incrementAndGet();
+            }
+        });
+        return compiler;
+    }
+}
@@ -6,7 +6,9 @@
 
 package ch.tsphp.test.integration;
 
+import ch.tsphp.IIncrementalCompiler;
 import ch.tsphp.common.ICompiler;
+import ch.tsphp.io.BufferPoolStatisticsDto;
 import ch.tsphp.test.testutils.ACompilerTest;
 import org.junit.Rule;
 import org.junit.Test;
@@ -18,6 +20,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
 
 public class CompilerInputTest extends ACompilerTest
 {
@@ -107,4 +117,45 @@ public class CompilerInputTest extends ACompilerTest
         compiler.addFile(file.getAbsolutePath(), "UTF-8");
         compileAndCheck(compiler,file.getAbsolutePath(), "<?php\nnamespace{\n    $a;\n}\n?>");
     }
+
+    @Test
+    public void testAddFiles() throws InterruptedException, IOException {
+        IIncrementalCompiler compiler = (IIncrementalCompiler) createCompiler();
+        File small = folder.newFile("small.tsphp");
+        PrintWriter writer = new PrintWriter(small, "UTF-8");
+        writer.println("int $a;");
+        writer.close();
+        File large = folder.newFile("large.tsphp");
+        writer = new PrintWriter(large, "UTF-8");
+        writer.println("int $b; int $c;");
+        writer.close();
+
+        compiler.addFiles(Arrays.asList(small.getAbsolutePath(), large.getAbsolutePath()), "UTF-8");
+        compiler.compile();
+        lock.await(2, TimeUnit.SECONDS);
+
+        assertFalse(compiler.hasFoundError());
+        Map<String, String> translations = compiler.getTranslations();
+        assertThat(translations.size(), is(2));
+        assertThat(translations.get(small.getAbsolutePath()).replaceAll("\r", ""),
+                is("<?php\nnamespace{\n    $a;\n}\n?>"));
+    }
+
+    @Test
+    public void testInputStreamsAcrossReset_ReuseBuffers() throws InterruptedException, IOException {
+        IIncrementalCompiler compiler = (IIncrementalCompiler) createCompiler();
+        compiler.addCompilationUnit("test", new ByteArrayInputStream("int $a;".getBytes(StandardCharsets.UTF_8)));
+        compileAndCheck(compiler, "test", "<?php\nnamespace{\n    $a;\n}\n?>");
+
+        for (int i = 0; i < 10; ++i) {
+            lock = new CountDownLatch(1);
+            compiler.reset();
+            compiler.addCompilationUnit("test", new ByteArrayInputStream("int $a;".getBytes(StandardCharsets.UTF_8)));
+            compileAndCheck(compiler, "test", "<?php\nnamespace{\n    $a;\n}\n?>");
+        }
+
+        BufferPoolStatisticsDto statistics = compiler.getBufferPoolStatistics();
+        assertThat(statistics.numberOfHits + statistics.numberOfMisses, is(11L));
+        assertThat(statistics.numberOfHits > 0, is(true));
+    }
 }
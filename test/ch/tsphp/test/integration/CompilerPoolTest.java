@@ -0,0 +1,222 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.integration;
+
+import ch.tsphp.CompilationResultDto;
+import ch.tsphp.FailFastPolicy;
+import ch.tsphp.HardCodedCompilerInitialiser;
+import ch.tsphp.ICompilerInitialiser;
+import ch.tsphp.IIncrementalCompiler;
+import ch.tsphp.UnitRetentionPolicy;
+import ch.tsphp.common.ACompilerListener;
+import ch.tsphp.common.IErrorLogger;
+import ch.tsphp.common.exceptions.TSPHPException;
+import ch.tsphp.exceptions.CompilerException;
+import ch.tsphp.service.CompilerPool;
+import ch.tsphp.service.CompilerPoolSettingsDto;
+import ch.tsphp.service.CompilerPoolStatisticsDto;
+import ch.tsphp.service.ICompilerPool;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CompilerPoolTest
+{
+    private ExecutorService executorService = Executors.newFixedThreadPool(2);
+    private ICompilerPool pool;
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+        executorService.shutdown();
+    }
+
+    @Test
+    public void constructor_MinIdle_CreatesCompilersUpFront() {
+        pool = createPool(2, 4, 60000, 60000);
+
+        CompilerPoolStatisticsDto result = pool.getStatistics();
+
+        assertThat(result.numberOfIdleCompilers, is(2));
+        assertThat(result.numberOfCreatedCompilers, is(2L));
+    }
+
+    @Test
+    public void borrow_AfterGiveBack_ReusesCompilerWithoutPreviousStateAndRegistrations()
+            throws InterruptedException {
+        pool = createPool(1, 1, 60000, 60000);
+        IIncrementalCompiler compiler = pool.borrow();
+        IErrorLogger errorLogger = mock(IErrorLogger.class);
+        compiler.registerErrorLogger(errorLogger);
+        compile(compiler, "a", "int $a = ;");
+        pool.giveBack(compiler);
+
+        IIncrementalCompiler result = pool.borrow();
+        compile(result, "b", "int $b = 1;");
+
+        assertThat(result, is(sameInstance(compiler)));
+        assertThat(result.hasFoundError(), is(false));
+        assertThat(result.getTranslations().size(), is(1));
+        assertThat(result.getTranslations().containsKey("b"), is(true));
+        assertThat(pool.getStatistics().numberOfCreatedCompilers, is(1L));
+    }
+
+    @Test
+    public void borrow_PreviousBorrowerChangedPolicies_ReturnsCompilerWithDefaultPolicies()
+            throws InterruptedException {
+        pool = createPool(1, 1, 60000, 60000);
+        IIncrementalCompiler compiler = pool.borrow();
+        compiler.setFailFastPolicy(FailFastPolicy.afterErrors(1));
+        compiler.setMaxErrorsPerUnit(1);
+        compiler.setUnitRetentionPolicy(UnitRetentionPolicy.RELEASE_AFTER_TRANSLATION);
+        pool.giveBack(compiler);
+
+        IIncrementalCompiler result = pool.borrow();
+        result.addCompilationUnit("a", "int $a = $b;\nint $c = $d;\nint $e = $f;");
+        CompilationResultDto dto = result.compileAndWait(5, TimeUnit.SECONDS);
+
+        assertThat(result, is(sameInstance(compiler)));
+        assertThat(dto.wasAborted, is(false));
+        //one error and the notice about the suppressed errors if the maximum of one error per unit still applied
+        assertThat(dto.diagnostics.size(), greaterThan(2));
+        //would throw a CompilerException if the compilation units were released
+        result.recompile();
+    }
+
+    @Test(expected = CompilerException.class)
+    public void borrow_AllCompilersBorrowed_ThrowsCompilerExceptionAfterTimeout() throws InterruptedException {
+        pool = createPool(0, 1, 60000, 60000);
+        pool.borrow();
+
+        pool.borrow(10, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void giveBack_WhileCompiling_CancelsAndDiscardsCompiler() throws InterruptedException {
+        IIncrementalCompiler compiler = mock(IIncrementalCompiler.class);
+        when(compiler.isCompiling()).thenReturn(true);
+        ICompilerInitialiser initialiser = mock(ICompilerInitialiser.class);
+        when(initialiser.create(executorService)).thenReturn(compiler);
+        pool = new CompilerPool(initialiser, executorService, new CompilerPoolSettingsDto(0, 1, 60000, 60000));
+
+        pool.giveBack(pool.borrow());
+
+        verify(compiler).cancel();
+        verify(compiler, never()).reset();
+        CompilerPoolStatisticsDto result = pool.getStatistics();
+        assertThat(result.numberOfBorrowedCompilers, is(0));
+        assertThat(result.numberOfIdleCompilers, is(0));
+    }
+
+    @Test
+    public void runMaintenance_CompilerNotReturnedInTime_ReportsLeakAndFreesPermit() throws InterruptedException {
+        pool = createPool(0, 1, 60000, 1);
+        IErrorLogger errorLogger = mock(IErrorLogger.class);
+        pool.registerErrorLogger(errorLogger);
+        IIncrementalCompiler compiler = pool.borrow();
+
+        Thread.sleep(5);
+        pool.runMaintenance();
+        IIncrementalCompiler result = pool.borrow(10, TimeUnit.MILLISECONDS);
+        pool.giveBack(compiler);
+
+        //the periodic maintenance of the pool might report the second compiler as well
+        verify(errorLogger, atLeastOnce()).log(any(TSPHPException.class));
+        assertThat(result == compiler, is(false));
+        assertThat(pool.getStatistics().numberOfLeakedCompilers >= 1, is(true));
+    }
+
+    @Test
+    public void runMaintenance_CompilerNotReturnedInTime_CancelsCompiler() throws InterruptedException {
+        IIncrementalCompiler compiler = mock(IIncrementalCompiler.class);
+        ICompilerInitialiser initialiser = mock(ICompilerInitialiser.class);
+        when(initialiser.create(executorService)).thenReturn(compiler);
+        pool = new CompilerPool(initialiser, executorService, new CompilerPoolSettingsDto(0, 1, 60000, 1));
+        pool.borrow();
+
+        Thread.sleep(5);
+        pool.runMaintenance();
+
+        //the periodic maintenance of the pool might have detected the leak on its own thread
+        verify(compiler, timeout(1000)).cancel();
+    }
+
+    @Test
+    public void runMaintenance_CompilersIdleTooLong_EvictsDownToMinIdle() throws InterruptedException {
+        pool = createPool(1, 3, 1, 60000);
+        IIncrementalCompiler compiler1 = pool.borrow();
+        IIncrementalCompiler compiler2 = pool.borrow();
+        IIncrementalCompiler compiler3 = pool.borrow();
+        pool.giveBack(compiler1);
+        pool.giveBack(compiler2);
+        pool.giveBack(compiler3);
+
+        Thread.sleep(5);
+        pool.runMaintenance();
+
+        CompilerPoolStatisticsDto result = pool.getStatistics();
+        assertThat(result.numberOfIdleCompilers, is(1));
+        assertThat(result.numberOfEvictedCompilers, is(2L));
+    }
+
+    @Test
+    public void runMaintenance_CompilerReturnedInTime_DoesNotReportLeak() throws InterruptedException {
+        pool = createPool(0, 1, 60000, 60000);
+        IErrorLogger errorLogger = mock(IErrorLogger.class);
+        pool.registerErrorLogger(errorLogger);
+        pool.giveBack(pool.borrow());
+
+        pool.runMaintenance();
+
+        verify(errorLogger, never()).log(any(TSPHPException.class));
+    }
+
+    @Test(expected = CompilerException.class)
+    public void borrow_AfterClose_ThrowsCompilerException() throws InterruptedException {
+        pool = createPool(0, 1, 60000, 60000);
+        pool.close();
+
+        pool.borrow();
+    }
+
+    private ICompilerPool createPool(int minIdle, int maxTotal, long maxIdleTimeMillis, long leakTimeoutMillis) {
+        return new CompilerPool(new HardCodedCompilerInitialiser(), executorService,
+                new CompilerPoolSettingsDto(minIdle, maxTotal, maxIdleTimeMillis, leakTimeoutMillis));
+    }
+
+    private void compile(IIncrementalCompiler compiler, String id, String code) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        compiler.registerCompilerListener(new ACompilerListener()
+        {
+            @Override
+            public void afterCompilingCompleted() {
+                latch.countDown();
+            }
+        });
+        compiler.addCompilationUnit(id, code);
+        compiler.compile();
+        latch.await(5, TimeUnit.SECONDS);
+    }
+}
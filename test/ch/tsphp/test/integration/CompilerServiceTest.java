@@ -0,0 +1,127 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.integration;
+
+import ch.tsphp.IIncrementalCompiler;
+import ch.tsphp.common.ACompilerListener;
+import ch.tsphp.exceptions.CompilerException;
+import ch.tsphp.service.CompilerService;
+import ch.tsphp.service.ICompilationSession;
+import ch.tsphp.service.ICompilerService;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CompilerServiceTest
+{
+    private ICompilerService service = new CompilerService(2, 1);
+
+    @After
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    public void openSession_ManyConcurrentSessions_EachTranslatesItsOwnUnits() throws InterruptedException {
+        int numberOfSessions = 20;
+        CountDownLatch latch = new CountDownLatch(numberOfSessions);
+        List<ICompilationSession> sessions = new ArrayList<>();
+        for (int i = 0; i < numberOfSessions; ++i) {
+            ICompilationSession session = service.openSession();
+            IIncrementalCompiler compiler = session.getCompiler();
+            registerLatch(compiler, latch);
+            for (int j = 0; j <= i % 3; ++j) {
+                compiler.addCompilationUnit("unit" + j, "int $a" + j + " = " + i + ";");
+            }
+            sessions.add(session);
+        }
+        for (ICompilationSession session : sessions) {
+            session.getCompiler().compile();
+        }
+        latch.await(10, TimeUnit.SECONDS);
+
+        assertThat(latch.getCount(), is(0L));
+        for (int i = 0; i < numberOfSessions; ++i) {
+            IIncrementalCompiler compiler = sessions.get(i).getCompiler();
+            assertThat(compiler.hasFoundError(), is(false));
+            assertThat(compiler.getTranslations().size(), is(i % 3 + 1));
+            assertThat(compiler.getTranslations().get("unit0").contains("= " + i + ";"), is(true));
+        }
+    }
+
+    @Test
+    public void openSession_OneSessionHasError_OtherSessionIsNotAffected() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(2);
+        ICompilationSession faulty = service.openSession();
+        registerLatch(faulty.getCompiler(), latch);
+        faulty.getCompiler().addCompilationUnit("a", "int $a = ;");
+        ICompilationSession correct = service.openSession();
+        registerLatch(correct.getCompiler(), latch);
+        correct.getCompiler().addCompilationUnit("a", "int $a = 1;");
+
+        faulty.getCompiler().compile();
+        correct.getCompiler().compile();
+        latch.await(5, TimeUnit.SECONDS);
+
+        assertThat(faulty.getCompiler().hasFoundError(), is(true));
+        assertThat(correct.getCompiler().hasFoundError(), is(false));
+        assertThat(correct.getCompiler().getTranslations().size(), is(1));
+    }
+
+    @Test
+    public void close_OpenSession_RemovesSession() {
+        ICompilationSession session1 = service.openSession();
+        service.openSession();
+
+        session1.close();
+
+        assertThat(service.getNumberOfOpenSessions(), is(1));
+    }
+
+    @Test
+    public void shutdown_DuringCompilation_CompilationCompletesAndServiceTerminates() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        ICompilationSession session = service.openSession();
+        IIncrementalCompiler compiler = session.getCompiler();
+        registerLatch(compiler, latch);
+        for (int i = 0; i < 10; ++i) {
+            compiler.addCompilationUnit("unit" + i, "int $a" + i + " = " + i + ";");
+        }
+
+        compiler.compile();
+        service.shutdown();
+        latch.await(5, TimeUnit.SECONDS);
+
+        assertThat(latch.getCount(), is(0L));
+        assertThat(compiler.isCompiling(), is(false));
+        assertThat(service.awaitTermination(5, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test(expected = CompilerException.class)
+    public void openSession_AfterShutdown_ThrowsCompilerException() {
+        service.shutdown();
+
+        service.openSession();
+    }
+
+    private void registerLatch(IIncrementalCompiler compiler, final CountDownLatch latch) {
+        compiler.registerCompilerListener(new ACompilerListener()
+        {
+            @Override
+            public void afterCompilingCompleted() {
+                latch.countDown();
+            }
+        });
+    }
+}
@@ -7,6 +7,7 @@
 package ch.tsphp.test.integration;
 
 import ch.tsphp.HardCodedCompilerInitialiser;
+import ch.tsphp.common.ACompilerListener;
 import ch.tsphp.common.ICompiler;
 import ch.tsphp.exceptions.CompilerException;
 import ch.tsphp.test.testutils.ACompilerTest;
@@ -15,6 +16,7 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -39,6 +41,7 @@ public class CompilerTest extends ACompilerTest
     public void reset_DuringCompilation_ThrowsCompilerException() throws InterruptedException {
 
         ICompiler compiler = createSlowCompiler();
+        compiler.addCompilationUnit("test", "int $a;");
         compiler.compile();
         try {
             compiler.reset();
@@ -72,6 +75,7 @@ public class CompilerTest extends ACompilerTest
     public void isCompiling_DuringCompilation_ReturnsTrue() throws InterruptedException {
 
         ICompiler compiler = createSlowCompiler();
+        compiler.addCompilationUnit("test", "int $a;");
         compiler.compile();
         boolean result = compiler.isCompiling();
 
@@ -122,4 +126,54 @@ public class CompilerTest extends ACompilerTest
         compiler.addCompilationUnit("test", "int $a = 1;");
         compileAndCheck(compiler,"test", "<?php\nnamespace{\n    $a = 1;\n}\n?>");
     }
+
+    @Test
+    public void compile_TypeCheckErrorInOneUnit_OtherUnitsAreNotTranslated() throws InterruptedException {
+        ICompiler compiler = createCompiler();
+        compiler.addCompilationUnit("a", "int $a = 1;");
+        compiler.addCompilationUnit("b", "int $b = 1.5;");
+        compiler.addCompilationUnit("c", "int $c = 1;");
+        compiler.compile();
+        lock.await(2, TimeUnit.SECONDS);
+
+        assertThat(compiler.hasFoundError(), is(true));
+        assertThat(compiler.getTranslations().size(), is(0));
+    }
+
+    @Test
+    public void compile_SeveralUnits_AllAreTranslated() throws InterruptedException {
+        ICompiler compiler = createCompiler();
+        compiler.addCompilationUnit("a", "int $a = 1;");
+        compiler.addCompilationUnit("b", "int $b = 2;");
+        compiler.addCompilationUnit("c", "int $c = 3;");
+        compiler.compile();
+        lock.await(2, TimeUnit.SECONDS);
+
+        assertThat(compiler.hasFoundError(), is(false));
+        assertThat(compiler.getTranslations().size(), is(3));
+    }
+
+    @Test
+    public void compile_ManyUnitsOnManyWorkers_NoUnitAndNoTranslationIsLost() throws InterruptedException {
+        int numberOfUnits = 300;
+        for (int round = 0; round < 3; ++round) {
+            final CountDownLatch latch = new CountDownLatch(1);
+            ICompiler compiler = new HardCodedCompilerInitialiser().create(16);
+            compiler.registerCompilerListener(new ACompilerListener()
+            {
+                @Override
+                public void afterCompilingCompleted() {
+                    latch.countDown();
+                }
+            });
+            for (int i = 0; i < numberOfUnits; ++i) {
+                compiler.addCompilationUnit("unit" + i, "int $a" + i + " = " + i + ";");
+            }
+            compiler.compile();
+            latch.await(10, TimeUnit.SECONDS);
+
+            assertThat(compiler.hasFoundError(), is(false));
+            assertThat(compiler.getTranslations().size(), is(numberOfUnits));
+        }
+    }
 }
@@ -0,0 +1,91 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.integration;
+
+import ch.tsphp.CompilationResultDto;
+import ch.tsphp.HardCodedCompilerInitialiser;
+import ch.tsphp.IIncrementalCompiler;
+import ch.tsphp.common.ACompilerListener;
+import ch.tsphp.common.IErrorLogger;
+import ch.tsphp.common.exceptions.TSPHPException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+
+public class DiagnosticsTest
+{
+    @Test
+    public void compile_ErrorStormInOneUnit_LoggerReceivesAtMostMaximumPerUnit() throws InterruptedException {
+        IIncrementalCompiler compiler = new HardCodedCompilerInitialiser().create();
+        final AtomicInteger numberOfLoggedErrors = new AtomicInteger();
+        compiler.registerErrorLogger(new IErrorLogger()
+        {
+            @Override
+            public void log(TSPHPException exception) {
+                numberOfLoggedErrors.incrementAndGet();
+            }
+        });
+        compiler.setMaxErrorsPerUnit(10);
+        compiler.addCompilationUnit("broken", createUnitWithUndefinedVariables(200));
+
+        CompilationResultDto result = compiler.compileAndWait(10, TimeUnit.SECONDS);
+
+        assertThat(result.hasFoundError, is(true));
+        assertThat(numberOfLoggedErrors.get(), lessThan(15));
+        assertThat(result.diagnostics.size(), is(numberOfLoggedErrors.get()));
+    }
+
+    @Test
+    public void compile_SlowLogger_AllErrorsAreLoggedBeforeCompilationCompleted() throws InterruptedException {
+        IIncrementalCompiler compiler = new HardCodedCompilerInitialiser().create();
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        compiler.registerErrorLogger(new IErrorLogger()
+        {
+            @Override
+            public void log(TSPHPException exception) {
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                events.add("error");
+            }
+        });
+        compiler.registerCompilerListener(new ACompilerListener()
+        {
+            @Override
+            public void afterCompilingCompleted() {
+                events.add("completed");
+            }
+        });
+        for (int i = 0; i < 10; ++i) {
+            compiler.addCompilationUnit("unit" + i, "namespace n" + i + ";" + createUnitWithUndefinedVariables(5));
+        }
+
+        CompilationResultDto result = compiler.compileAndWait(10, TimeUnit.SECONDS);
+
+        assertThat(result.hasFoundError, is(true));
+        assertThat(events.get(events.size() - 1), is("completed"));
+        assertThat(events.size(), is(result.diagnostics.size() + 1));
+    }
+
+    private String createUnitWithUndefinedVariables(int numberOfVariables) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < numberOfVariables; ++i) {
+            stringBuilder.append("int $a").append(i).append(" = $b").append(i).append(";\n");
+        }
+        return stringBuilder.toString();
+    }
+}
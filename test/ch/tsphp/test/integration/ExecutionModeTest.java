@@ -0,0 +1,145 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.integration;
+
+import ch.tsphp.ExecutionMode;
+import ch.tsphp.HardCodedCompilerInitialiser;
+import ch.tsphp.IIncrementalCompiler;
+import ch.tsphp.ITranslationListener;
+import ch.tsphp.common.ACompilerListener;
+import ch.tsphp.common.ITranslatorFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ExecutionModeTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CountDownLatch lock = new CountDownLatch(1);
+
+    @Test
+    public void compile_SeparateIoAndCpuAndFiles_TranslatesAllFiles() throws IOException, InterruptedException {
+        IIncrementalCompiler compiler = createCompiler(ExecutionMode.SEPARATE_IO_AND_CPU);
+        for (int i = 0; i < 20; ++i) {
+            File file = folder.newFile("file" + i + ".tsphp");
+            Files.write(file.toPath(), ("int $a" + i + " = " + i + ";").getBytes(StandardCharsets.UTF_8));
+            compiler.addFile(file.getPath(), "UTF-8");
+        }
+        compiler.compile();
+        lock.await(5, TimeUnit.SECONDS);
+
+        assertThat(compiler.hasFoundError(), is(false));
+        assertThat(compiler.getTranslations().size(), is(20));
+    }
+
+    @Test
+    public void compile_SeparateIoAndCpuAndNonExistingFile_LogsError() throws IOException, InterruptedException {
+        IIncrementalCompiler compiler = createCompiler(ExecutionMode.SEPARATE_IO_AND_CPU);
+        compiler.addFile(new File(folder.getRoot(), "nonExisting.tsphp").getPath());
+        compiler.compile();
+        lock.await(5, TimeUnit.SECONDS);
+
+        assertThat(compiler.hasFoundError(), is(true));
+    }
+
+    @Test
+    public void compile_SeparateIoAndCpu_TranslationListenersAreNotInformedOnCpuWorkers()
+            throws InterruptedException {
+        final boolean[] isInformedOnCpuWorker = new boolean[1];
+        IIncrementalCompiler compiler = createCompiler(ExecutionMode.SEPARATE_IO_AND_CPU);
+        compiler.registerTranslationListener(new ITranslationListener()
+        {
+            @Override
+            public void afterTranslationCompleted(String id, ITranslatorFactory factory, String translation) {
+                isInformedOnCpuWorker[0] |= Thread.currentThread() instanceof ForkJoinWorkerThread;
+            }
+        });
+        compiler.addCompilationUnit("a", "int $a;");
+        compiler.compile();
+        lock.await(5, TimeUnit.SECONDS);
+
+        assertThat(compiler.getTranslations().size(), is(1));
+        assertThat(isInformedOnCpuWorker[0], is(false));
+    }
+
+    @Test
+    public void compile_FixedPool_TranslatesCompilationUnit() throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler(ExecutionMode.FIXED_POOL);
+        compiler.addCompilationUnit("a", "int $a;");
+        compiler.compile();
+        lock.await(5, TimeUnit.SECONDS);
+
+        assertThat(compiler.getTranslations().size(), is(1));
+    }
+
+    @Test
+    public void shutdown_SeparateIoAndCpu_ShutsDownExecutorsOfCompiler() {
+        final List<ExecutorService> executorServices = new ArrayList<>();
+        IIncrementalCompiler compiler = new HardCodedCompilerInitialiser()
+        {
+            @Override
+            protected ExecutorService createCpuExecutorService() {
+                ExecutorService executorService = super.createCpuExecutorService();
+                executorServices.add(executorService);
+                return executorService;
+            }
+
+            @Override
+            protected ExecutorService createIoExecutorService() {
+                ExecutorService executorService = super.createIoExecutorService();
+                executorServices.add(executorService);
+                return executorService;
+            }
+        }.create(ExecutionMode.SEPARATE_IO_AND_CPU);
+
+        compiler.shutdown();
+
+        assertThat(executorServices.size(), is(2));
+        assertThat(executorServices.get(0).isShutdown(), is(true));
+        assertThat(executorServices.get(1).isShutdown(), is(true));
+    }
+
+    @Test
+    public void shutdown_ExecutorPassedIn_DoesNotShutDownExecutor() {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        IIncrementalCompiler compiler = new HardCodedCompilerInitialiser().create(executorService);
+
+        compiler.shutdown();
+
+        assertThat(executorService.isShutdown(), is(false));
+        executorService.shutdown();
+    }
+
+    private IIncrementalCompiler createCompiler(ExecutionMode executionMode) {
+        IIncrementalCompiler compiler = new HardCodedCompilerInitialiser().create(executionMode);
+        compiler.registerCompilerListener(new ACompilerListener()
+        {
+            @Override
+            public void afterCompilingCompleted() {
+                lock.countDown();
+            }
+        });
+        return compiler;
+    }
+}
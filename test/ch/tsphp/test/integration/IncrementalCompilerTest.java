@@ -0,0 +1,186 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.integration;
+
+import ch.tsphp.Compiler;
+import ch.tsphp.IIncrementalCompiler;
+import ch.tsphp.common.ACompilerListener;
+import ch.tsphp.common.ITSPHPAst;
+import ch.tsphp.common.ITranslatorFactory;
+import ch.tsphp.common.ITypeChecker;
+import ch.tsphp.common.TSPHPAstAdaptor;
+import ch.tsphp.exceptions.CompilerException;
+import ch.tsphp.parser.ParserFacade;
+import ch.tsphp.translators.php54.PHP54TranslatorFactory;
+import ch.tsphp.typechecker.TypeChecker;
+import org.antlr.runtime.tree.TreeNodeStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class IncrementalCompilerTest
+{
+    private static final String CLASS_A = "namespace a; class A{ public function int foo(){ return 1; } }";
+    private static final String USES_A = "namespace b; use a\\A; A $a = new A(); int $b = $a->foo();";
+
+    private CountDownLatch lock;
+    private ITypeChecker typeChecker;
+
+    @Test
+    public void getDependentCompilationUnits_UsesClassOfOtherUnit_IsDependent() throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler();
+        compiler.addCompilationUnit("a", CLASS_A);
+        compiler.addCompilationUnit("b", USES_A);
+        compiler.addCompilationUnit("c", "int $c = 1;");
+        compileAndWait(compiler);
+
+        assertThat(compiler.hasFoundError(), is(false));
+        assertThat(compiler.getDependentCompilationUnits("a").size(), is(1));
+        assertThat(compiler.getDependentCompilationUnits("a"), hasItem("b"));
+        assertThat(compiler.getDependentCompilationUnits("c").size(), is(0));
+    }
+
+    @Test
+    public void recompile_IndependentUnitChanged_OnlyChangedUnitIsTypeCheckedAndTranslated()
+            throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler();
+        compiler.addCompilationUnit("a", CLASS_A);
+        compiler.addCompilationUnit("b", USES_A);
+        compiler.addCompilationUnit("c", "int $c = 1;");
+        compileAndWait(compiler);
+        String translationOfB = compiler.getTranslations().get("b");
+
+        compiler.updateCompilationUnit("c", "int $c = 2;");
+        recompileAndWait(compiler);
+
+        assertThat(compiler.hasFoundError(), is(false));
+        verify(typeChecker, times(4)).doTypeChecking(any(ITSPHPAst.class), any(TreeNodeStream.class));
+        assertThat(compiler.getTranslations().size(), is(3));
+        assertThat(compiler.getTranslations().get("b"), is(translationOfB));
+        assertThat(compiler.getTranslations().get("c").replaceAll("\r", ""),
+                is("<?php\nnamespace{\n    $c = 2;\n}\n?>"));
+    }
+
+    @Test
+    public void recompile_DependencyChanged_DependentIsTypeCheckedAgain() throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler();
+        compiler.addCompilationUnit("a", CLASS_A);
+        compiler.addCompilationUnit("b", USES_A);
+        compiler.addCompilationUnit("c", "int $c = 1;");
+        compileAndWait(compiler);
+
+        compiler.updateCompilationUnit("a", "namespace a; class A{ public function float foo(){ return 1.5; } }");
+        recompileAndWait(compiler);
+
+        assertThat(compiler.hasFoundError(), is(true));
+        verify(typeChecker, times(5)).doTypeChecking(any(ITSPHPAst.class), any(TreeNodeStream.class));
+    }
+
+    @Test
+    public void recompile_IndirectDependencyChanged_AllUnitsOfChainAreTypeCheckedAgain()
+            throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler();
+        compiler.addCompilationUnit("a", "namespace a; class A{}");
+        compiler.addCompilationUnit("b", "namespace b; use a\\A; class B extends A{}");
+        compiler.addCompilationUnit("c", "namespace c; use b\\B; class C extends B{}");
+        compiler.addCompilationUnit("d", "int $d = 1;");
+        compileAndWait(compiler);
+
+        compiler.updateCompilationUnit("a", CLASS_A);
+        recompileAndWait(compiler);
+
+        assertThat(compiler.hasFoundError(), is(false));
+        assertThat(compiler.getDependentCompilationUnits("a").size(), is(1));
+        verify(typeChecker, times(7)).doTypeChecking(any(ITSPHPAst.class), any(TreeNodeStream.class));
+    }
+
+    @Test
+    public void recompile_ErroneousUnitFixed_AllUnitsAreTranslated() throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler();
+        compiler.addCompilationUnit("a", "int $a = 1;");
+        compiler.addCompilationUnit("b", "int $b = 1.5;");
+        compileAndWait(compiler);
+        assertThat(compiler.hasFoundError(), is(true));
+
+        compiler.updateCompilationUnit("b", "int $b = 1;");
+        recompileAndWait(compiler);
+
+        assertThat(compiler.hasFoundError(), is(false));
+        assertThat(compiler.getTranslations().size(), is(2));
+    }
+
+    @Test
+    public void recompile_UnitRemoved_TranslationIsRemoved() throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler();
+        compiler.addCompilationUnit("a", "int $a = 1;");
+        compiler.addCompilationUnit("b", "int $b = 1;");
+        compileAndWait(compiler);
+
+        compiler.removeCompilationUnit("b");
+        recompileAndWait(compiler);
+
+        assertThat(compiler.hasFoundError(), is(false));
+        assertThat(compiler.getTranslations().size(), is(1));
+        assertThat(compiler.getTranslations().containsKey("b"), is(false));
+    }
+
+    @Test
+    public void recompile_NotCompiledBefore_ThrowsCompilerException() {
+        IIncrementalCompiler compiler = createCompiler();
+        try {
+            compiler.recompile();
+            Assert.fail("No compiler exception thrown. It should not be allowed to recompile before compile.");
+        } catch (CompilerException ex) {
+        }
+    }
+
+    private IIncrementalCompiler createCompiler() {
+        Collection<ITranslatorFactory> translatorFactories = new ArrayDeque<>();
+        translatorFactories.add(new PHP54TranslatorFactory());
+        TSPHPAstAdaptor astAdaptor = new TSPHPAstAdaptor();
+        typeChecker = spy(new TypeChecker());
+        IIncrementalCompiler compiler = new Compiler(
+                astAdaptor,
+                new ParserFacade(astAdaptor),
+                typeChecker,
+                translatorFactories,
+                Executors.newFixedThreadPool(2));
+        compiler.registerCompilerListener(new ACompilerListener()
+        {
+            @Override
+            public void afterCompilingCompleted() {
+                lock.countDown();
+            }
+        });
+        return compiler;
+    }
+
+    private void compileAndWait(IIncrementalCompiler compiler) throws InterruptedException {
+        lock = new CountDownLatch(1);
+        compiler.compile();
+        lock.await(2, TimeUnit.SECONDS);
+    }
+
+    private void recompileAndWait(IIncrementalCompiler compiler) throws InterruptedException {
+        lock = new CountDownLatch(1);
+        compiler.recompile();
+        lock.await(2, TimeUnit.SECONDS);
+    }
+}
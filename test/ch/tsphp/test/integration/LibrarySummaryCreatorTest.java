@@ -0,0 +1,187 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.integration;
+
+import ch.tsphp.Compiler;
+import ch.tsphp.IIncrementalCompiler;
+import ch.tsphp.common.ACompilerListener;
+import ch.tsphp.common.ITSPHPAstAdaptor;
+import ch.tsphp.common.ITranslatorFactory;
+import ch.tsphp.common.TSPHPAstAdaptor;
+import ch.tsphp.exceptions.CompilerException;
+import ch.tsphp.library.DeclarationExtractor;
+import ch.tsphp.library.LibrarySummary;
+import ch.tsphp.library.LibrarySummaryCreator;
+import ch.tsphp.parser.ParserFacade;
+import ch.tsphp.translators.php54.PHP54TranslatorFactory;
+import ch.tsphp.typesystem.SnapshotTypeChecker;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class LibrarySummaryCreatorTest
+{
+    private static final String LIBRARY_UNIT = "namespace lib;\n"
+            + "use \\Exception as E;\n"
+            + "const int MAX = 10;\n"
+            + "int $counter = 0;\n"
+            + "/** a class */\n"
+            + "class Greeter{\n"
+            + "    private string $name;\n"
+            + "    function __construct(string $name){ $this->name = $name; }\n"
+            + "    function string greet(int $times){ string $s = ''; return $s . $this->name; }\n"
+            + "    function void log(){ $counter = $counter + 1; }\n"
+            + "}\n"
+            + "interface I{ function void foo(); }\n"
+            + "abstract class A implements I{ abstract function int bar(); }\n"
+            + "function int twice(int $i){ return $i * 2; }\n"
+            + "$counter = twice(MAX);";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ExecutorService executorService = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        executorService.shutdown();
+    }
+
+    @Test
+    public void extract_LibraryUnit_KeepsDeclarationsAndStubsBodies() {
+        ITSPHPAstAdaptor adaptor = new TSPHPAstAdaptor();
+
+        String result = new DeclarationExtractor().extract(new ParserFacade(adaptor).parse(LIBRARY_UNIT));
+
+        assertThat(result, is("namespace lib{"
+                + "use \\Exception as E;"
+                + "const int MAX = 10;"
+                + "class Greeter{ private string $name; function __construct(string $name){}"
+                + " function string greet(int $times){throw new \\Exception();}"
+                + " function void log(){} }"
+                + "interface I{ function void foo(); }"
+                + "abstract class A implements I{ abstract function int bar(); }"
+                + "function int twice(int $i){throw new \\Exception();}"
+                + "}"));
+    }
+
+    @Test
+    public void extract_SeveralNamespaces_KeepsAllNamespaces() {
+        ITSPHPAstAdaptor adaptor = new TSPHPAstAdaptor();
+
+        String result = new DeclarationExtractor().extract(new ParserFacade(adaptor).parse(
+                "namespace a{ class A{} int $a = 1; } namespace { class B{} }"));
+
+        assertThat(result, is("namespace a{class A{}}namespace{class B{}}"));
+    }
+
+    @Test
+    public void compile_AppUsesLibrarySummary_DoesNotTypeCheckOrTranslateLibrary()
+            throws IOException, InterruptedException {
+        LibrarySummary summary = createSummary(LIBRARY_UNIT);
+
+        IIncrementalCompiler compiler = compile(summary, "namespace app; use \\lib\\Greeter;"
+                + "Greeter $g = new Greeter('a'); string $s = $g->greet(\\lib\\twice(\\lib\\MAX));");
+
+        assertThat(compiler.hasFoundError(), is(false));
+        assertThat(compiler.getTranslations().size(), is(1));
+        assertThat(compiler.getTranslations().containsKey("app"), is(true));
+    }
+
+    @Test
+    public void compile_AppUsesUnknownMemberOfLibrary_ReportsError() throws IOException, InterruptedException {
+        LibrarySummary summary = createSummary(LIBRARY_UNIT);
+
+        IIncrementalCompiler compiler = compile(summary, "namespace app; use \\lib\\Greeter;"
+                + "Greeter $g = new Greeter('a'); $g->unknown();");
+
+        assertThat(compiler.hasFoundError(), is(true));
+    }
+
+    @Test
+    public void compile_SummaryAfterWriteAndRead_AppCompiles() throws IOException, InterruptedException {
+        LibrarySummary summary = createSummary(LIBRARY_UNIT);
+        File file = folder.newFile("lib.summary");
+        try (OutputStream outputStream = Files.newOutputStream(file.toPath())) {
+            summary.write(outputStream);
+        }
+        LibrarySummary readSummary;
+        try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+            readSummary = LibrarySummary.read(inputStream);
+        }
+
+        IIncrementalCompiler compiler = compile(readSummary, "int $i = \\lib\\twice(2);");
+
+        assertThat(compiler.hasFoundError(), is(false));
+        assertThat(compiler.getTranslations().size(), is(1));
+    }
+
+    @Test(expected = CompilerException.class)
+    public void create_SyntaxError_ThrowsCompilerException() throws IOException, InterruptedException {
+        createSummary("class {");
+    }
+
+    @Test
+    public void create_FileDoesNotExist_ThrowsCompilerExceptionCausedByIOException() throws InterruptedException {
+        File file = new File(folder.getRoot(), "nonExisting.tsphp");
+        ParserFacade parser = new ParserFacade(new TSPHPAstAdaptor());
+
+        try {
+            new LibrarySummaryCreator(parser, executorService).create(Arrays.asList(file.getPath()), "UTF-8");
+            Assert.fail("CompilerException expected");
+        } catch (CompilerException ex) {
+            assertThat(ex.getCause() instanceof IOException, is(true));
+        }
+    }
+
+    private LibrarySummary createSummary(String unit) throws IOException, InterruptedException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), unit.getBytes(StandardCharsets.UTF_8));
+        ParserFacade parser = new ParserFacade(new TSPHPAstAdaptor());
+        return new LibrarySummaryCreator(parser, executorService).create(Arrays.asList(file.getPath()), "UTF-8");
+    }
+
+    private IIncrementalCompiler compile(LibrarySummary summary, String unit) throws InterruptedException {
+        Collection<ITranslatorFactory> translatorFactories = new ArrayDeque<>();
+        translatorFactories.add(new PHP54TranslatorFactory());
+        ITSPHPAstAdaptor adaptor = new TSPHPAstAdaptor();
+        IIncrementalCompiler compiler = new Compiler(adaptor, new ParserFacade(adaptor), new SnapshotTypeChecker(),
+                translatorFactories, executorService);
+        final CountDownLatch latch = new CountDownLatch(1);
+        compiler.registerCompilerListener(new ACompilerListener()
+        {
+            @Override
+            public void afterCompilingCompleted() {
+                latch.countDown();
+            }
+        });
+        compiler.addLibrarySummary(summary);
+        compiler.addCompilationUnit("app", unit);
+        compiler.compile();
+        latch.await(5, TimeUnit.SECONDS);
+        return compiler;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.integration;
+
+import ch.tsphp.HardCodedCompilerInitialiser;
+import ch.tsphp.IIncrementalCompiler;
+import ch.tsphp.ITranslationListener;
+import ch.tsphp.common.ACompilerListener;
+import ch.tsphp.common.ITranslatorFactory;
+import ch.tsphp.console.ConsoleReader;
+import ch.tsphp.console.SourceWatcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SourceWatcherTest
+{
+    private static final long TIMEOUT_IN_SECONDS = 10;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path source;
+    private Path output;
+    private IIncrementalCompiler compiler;
+    private SourceWatcher sourceWatcher;
+    private Set<String> translatedFiles;
+    private AtomicInteger numberOfCompilations;
+
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        source = folder.newFolder("src").toPath();
+        output = folder.newFolder("out").toPath();
+        write("a.tsphp", "class A{ function int foo(){ return 1; } }");
+        write("b.tsphp", "int $b = 1;");
+        write("c.tsphp", "A $a = new A();");
+
+        translatedFiles = Collections.synchronizedSet(new TreeSet<String>());
+        numberOfCompilations = new AtomicInteger();
+        compiler = new HardCodedCompilerInitialiser().create();
+        compiler.registerTranslationListener(new ITranslationListener()
+        {
+            @Override
+            public void afterTranslationCompleted(String id, ITranslatorFactory translatorFactory, String translation) {
+                translatedFiles.add(source.relativize(source.getFileSystem().getPath(id)).toString());
+            }
+        });
+        compiler.registerCompilerListener(new ACompilerListener()
+        {
+            @Override
+            public void afterCompilingCompleted() {
+                numberOfCompilations.incrementAndGet();
+            }
+        });
+
+        ConsoleReader consoleReader = new ConsoleReader(compiler);
+        sourceWatcher = consoleReader.createSourceWatcher();
+        sourceWatcher.setQuietPeriod(100);
+        consoleReader.readArguments(new String[]{ConsoleReader.OPTION_OUT, output.toString(), source.toString()});
+        consoleReader.awaitCompilation();
+        translatedFiles.clear();
+        numberOfCompilations.set(0);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        sourceWatcher.close();
+    }
+
+    @Test
+    public void processChanges_NoChange_ReturnsFalse() throws InterruptedException {
+        boolean hasRecompiled = sourceWatcher.processChanges(200, TimeUnit.MILLISECONDS);
+
+        assertThat(hasRecompiled, is(false));
+        assertThat(numberOfCompilations.get(), is(0));
+    }
+
+    @Test
+    public void processChanges_FileModified_RecompilesOnlyFileAndDependents() throws IOException,
+            InterruptedException {
+        write("a.tsphp", "class A{ function int foo(){ return 2; } }");
+
+        boolean hasRecompiled = sourceWatcher.processChanges(TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+
+        assertThat(hasRecompiled, is(true));
+        assertThat(compiler.hasFoundError(), is(false));
+        assertThat(translatedFiles.toString(), is("[a.tsphp, c.tsphp]"));
+        assertThat(read("a.php"), containsString("return 2;"));
+    }
+
+    @Test
+    public void processChanges_BurstOfChanges_RecompilesOnce() throws IOException, InterruptedException {
+        for (int i = 0; i < 5; ++i) {
+            write("b.tsphp", "int $b = " + i + ";");
+        }
+        write("a.tsphp", "class A{ function int foo(){ return 3; } }");
+
+        boolean hasRecompiled = sourceWatcher.processChanges(TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+
+        assertThat(hasRecompiled, is(true));
+        assertThat(numberOfCompilations.get(), is(1));
+        assertThat(translatedFiles.toString(), is("[a.tsphp, b.tsphp, c.tsphp]"));
+        assertThat(read("b.php"), containsString("$b = 4;"));
+    }
+
+    @Test
+    public void processChanges_FileCreatedInNewDirectory_TranslatesItToMirroredPath() throws IOException,
+            InterruptedException {
+        Files.createDirectories(source.resolve("sub"));
+        write("sub/d.tsphp", "A $d = new A();");
+
+        boolean hasRecompiled = sourceWatcher.processChanges(TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+
+        assertThat(hasRecompiled, is(true));
+        assertThat(compiler.hasFoundError(), is(false));
+        assertThat(read("sub/d.php"), containsString("$d = new A();"));
+    }
+
+    @Test
+    public void processChanges_FileDeleted_RemovesCompilationUnitAndRecompilesDependents() throws IOException,
+            InterruptedException {
+        Files.delete(source.resolve("a.tsphp"));
+
+        boolean hasRecompiled = sourceWatcher.processChanges(TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+
+        assertThat(hasRecompiled, is(true));
+        assertThat(compiler.hasFoundError(), is(true));
+    }
+
+    @Test
+    public void processChanges_NonSourceFileModified_ReturnsFalse() throws IOException, InterruptedException {
+        write("readme.txt", "not a source file");
+
+        boolean hasRecompiled = sourceWatcher.processChanges(TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+
+        assertThat(hasRecompiled, is(false));
+        assertThat(numberOfCompilations.get(), is(0));
+    }
+
+    private void write(String file, String content) throws IOException {
+        Files.write(source.resolve(file), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String read(String file) throws IOException {
+        return new String(Files.readAllBytes(output.resolve(file)), StandardCharsets.UTF_8);
+    }
+}
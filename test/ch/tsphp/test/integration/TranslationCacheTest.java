@@ -0,0 +1,251 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.integration;
+
+import ch.tsphp.Compiler;
+import ch.tsphp.IIncrementalCompiler;
+import ch.tsphp.cache.FileTranslationCache;
+import ch.tsphp.common.ACompilerListener;
+import ch.tsphp.common.IErrorLogger;
+import ch.tsphp.common.ITSPHPAst;
+import ch.tsphp.common.ITranslator;
+import ch.tsphp.common.ITranslatorFactory;
+import ch.tsphp.common.ITypeChecker;
+import ch.tsphp.common.TSPHPAstAdaptor;
+import ch.tsphp.common.exceptions.TSPHPException;
+import ch.tsphp.parser.ParserFacade;
+import ch.tsphp.translators.php54.PHP54TranslatorFactory;
+import ch.tsphp.typechecker.TypeChecker;
+import org.antlr.runtime.tree.TreeNodeStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class TranslationCacheTest
+{
+    private static final String CLASS_A = "namespace a; class A{ public function int foo(){ return 1; } }";
+    private static final String USES_A = "namespace b; use a\\A; A $a = new A(); int $b = $a->foo();";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CountDownLatch lock;
+    private ITypeChecker typeChecker;
+
+    @Test
+    public void compile_NothingChangedSinceLastRun_NothingIsTypeChecked() throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler();
+        compiler.addCompilationUnit("a", CLASS_A);
+        compiler.addCompilationUnit("b", USES_A);
+        compileAndWait(compiler);
+        Map<String, String> translations = compiler.getTranslations();
+
+        compiler = createCompiler();
+        compiler.addCompilationUnit("a", CLASS_A);
+        compiler.addCompilationUnit("b", USES_A);
+        compileAndWait(compiler);
+
+        assertThat(compiler.hasFoundError(), is(false));
+        verify(typeChecker, never()).doTypeChecking(any(ITSPHPAst.class), any(TreeNodeStream.class));
+        assertThat(compiler.getTranslations(), is(translations));
+    }
+
+    @Test
+    public void compile_DependencyChangedSinceLastRun_DependentIsTypeChecked() throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler();
+        compiler.addCompilationUnit("a", CLASS_A);
+        compiler.addCompilationUnit("b", USES_A);
+        compiler.addCompilationUnit("c", "int $c = 1;");
+        compileAndWait(compiler);
+
+        compiler = createCompiler();
+        compiler.addCompilationUnit("a", "namespace a; class A{ public function int foo(){ return 2; } }");
+        compiler.addCompilationUnit("b", USES_A);
+        compiler.addCompilationUnit("c", "int $c = 1;");
+        compileAndWait(compiler);
+
+        assertThat(compiler.hasFoundError(), is(false));
+        verify(typeChecker, times(2)).doTypeChecking(any(ITSPHPAst.class), any(TreeNodeStream.class));
+        assertThat(compiler.getTranslations().size(), is(3));
+    }
+
+    @Test
+    public void compile_ErroneousLastRun_NothingWasCached() throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler();
+        compiler.addCompilationUnit("a", "int $a = 1;");
+        compiler.addCompilationUnit("b", "int $b = 1.5;");
+        compileAndWait(compiler);
+
+        compiler = createCompiler();
+        compiler.addCompilationUnit("a", "int $a = 1;");
+        compileAndWait(compiler);
+
+        assertThat(compiler.hasFoundError(), is(false));
+        verify(typeChecker, times(1)).doTypeChecking(any(ITSPHPAst.class), any(TreeNodeStream.class));
+    }
+
+    @Test
+    public void compile_TranslatorLoggedErrorInLastRun_UnitIsTypeCheckedAgain() throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler(new ErrorLoggingTranslatorFactory());
+        compiler.addCompilationUnit("a", "int $a = 1;");
+        compileAndWait(compiler);
+        assertThat(compiler.hasFoundError(), is(true));
+
+        compiler = createCompiler(new ErrorLoggingTranslatorFactory());
+        compiler.addCompilationUnit("a", "int $a = 1;");
+        compileAndWait(compiler);
+
+        assertThat(compiler.hasFoundError(), is(true));
+        verify(typeChecker, times(1)).doTypeChecking(any(ITSPHPAst.class), any(TreeNodeStream.class));
+    }
+
+    @Test
+    public void compile_FactoriesOfSameClassWithDifferentConfiguration_EachGetsItsOwnCachedTranslation()
+            throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler(
+                new PrefixingTranslatorFactory("//first\n"), new PrefixingTranslatorFactory("//second\n"));
+        compiler.addCompilationUnit("a", "int $a = 1;");
+        compileAndWait(compiler);
+
+        compiler = createCompiler(
+                new PrefixingTranslatorFactory("//first\n"), new PrefixingTranslatorFactory("//second\n"));
+        compiler.addCompilationUnit("a", "int $a = 1;");
+        compileAndWait(compiler);
+
+        assertThat(compiler.hasFoundError(), is(false));
+        verify(typeChecker, never()).doTypeChecking(any(ITSPHPAst.class), any(TreeNodeStream.class));
+        Iterator<Map<String, String>> translations = compiler.getTranslationsPerTarget().values().iterator();
+        assertThat(translations.next().get("a"), startsWith("//first\n"));
+        assertThat(translations.next().get("a"), startsWith("//second\n"));
+    }
+
+    private IIncrementalCompiler createCompiler() {
+        return createCompiler(new PHP54TranslatorFactory());
+    }
+
+    private IIncrementalCompiler createCompiler(ITranslatorFactory... theTranslatorFactories) {
+        Collection<ITranslatorFactory> translatorFactories = new ArrayDeque<>(Arrays.asList(theTranslatorFactories));
+        TSPHPAstAdaptor astAdaptor = new TSPHPAstAdaptor();
+        typeChecker = spy(new TypeChecker());
+        IIncrementalCompiler compiler = new Compiler(
+                astAdaptor,
+                new ParserFacade(astAdaptor),
+                typeChecker,
+                translatorFactories,
+                Executors.newFixedThreadPool(2));
+        compiler.setTranslationCache(new FileTranslationCache(folder.getRoot().getAbsolutePath()));
+        compiler.registerCompilerListener(new ACompilerListener()
+        {
+            @Override
+            public void afterCompilingCompleted() {
+                lock.countDown();
+            }
+        });
+        return compiler;
+    }
+
+    private void compileAndWait(IIncrementalCompiler compiler) throws InterruptedException {
+        lock = new CountDownLatch(1);
+        compiler.compile();
+        lock.await(2, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Translates like the PHP 5.4 translator but prepends the given prefix to each translation.
+     */
+    private static class PrefixingTranslatorFactory implements ITranslatorFactory
+    {
+        private final String prefix;
+
+        public PrefixingTranslatorFactory(String thePrefix) {
+            prefix = thePrefix;
+        }
+
+        @Override
+        public ITranslator build() {
+            final ITranslator translator = new PHP54TranslatorFactory().build();
+            return new ITranslator()
+            {
+                @Override
+                public String translate(TreeNodeStream treeNodeStream) {
+                    return prefix + translator.translate(treeNodeStream);
+                }
+
+                @Override
+                public void registerErrorLogger(IErrorLogger errorLogger) {
+                    translator.registerErrorLogger(errorLogger);
+                }
+
+                @Override
+                public boolean hasFoundError() {
+                    return translator.hasFoundError();
+                }
+
+                @Override
+                public void reset() {
+                    translator.reset();
+                }
+            };
+        }
+    }
+
+    /**
+     * Translates like the PHP 5.4 translator but logs an error for each translated unit.
+     */
+    private static class ErrorLoggingTranslatorFactory implements ITranslatorFactory
+    {
+        @Override
+        public ITranslator build() {
+            final ITranslator translator = new PHP54TranslatorFactory().build();
+            return new ITranslator()
+            {
+                private IErrorLogger errorLogger;
+
+                @Override
+                public String translate(TreeNodeStream treeNodeStream) {
+                    String translation = translator.translate(treeNodeStream);
+                    errorLogger.log(new TSPHPException("translation is broken"));
+                    return translation;
+                }
+
+                @Override
+                public void registerErrorLogger(IErrorLogger theErrorLogger) {
+                    errorLogger = theErrorLogger;
+                    translator.registerErrorLogger(theErrorLogger);
+                }
+
+                @Override
+                public boolean hasFoundError() {
+                    return true;
+                }
+
+                @Override
+                public void reset() {
+                    translator.reset();
+                }
+            };
+        }
+    }
+}
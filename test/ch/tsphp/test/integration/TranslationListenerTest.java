@@ -0,0 +1,149 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.integration;
+
+import ch.tsphp.CompilationResultDto;
+import ch.tsphp.Compiler;
+import ch.tsphp.HardCodedCompilerInitialiser;
+import ch.tsphp.IIncrementalCompiler;
+import ch.tsphp.ITranslationListener;
+import ch.tsphp.common.ACompilerListener;
+import ch.tsphp.common.ITSPHPAstAdaptor;
+import ch.tsphp.common.ITranslatorFactory;
+import ch.tsphp.common.TSPHPAstAdaptor;
+import ch.tsphp.parser.ParserFacade;
+import ch.tsphp.translators.php54.PHP54TranslatorFactory;
+import ch.tsphp.typesystem.SnapshotTypeChecker;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class TranslationListenerTest
+{
+    private CountDownLatch lock = new CountDownLatch(1);
+
+    @Test
+    public void compile_Standard_ListenerReceivesEachTranslation() throws InterruptedException {
+        ITranslationListener listener = mock(ITranslationListener.class);
+
+        IIncrementalCompiler compiler = createCompiler();
+        compiler.registerTranslationListener(listener);
+        compiler.addCompilationUnit("a", "int $a;");
+        compiler.addCompilationUnit("b", "int $b;");
+        compiler.compile();
+        lock.await(2, TimeUnit.SECONDS);
+
+        verify(listener).afterTranslationCompleted(
+                eq("a"), any(ITranslatorFactory.class), eq(compiler.getTranslations().get("a")));
+        verify(listener).afterTranslationCompleted(
+                eq("b"), any(ITranslatorFactory.class), eq(compiler.getTranslations().get("b")));
+    }
+
+    @Test
+    public void compile_DoNotRetainTranslations_ListenerReceivesTranslationButGetTranslationsIsEmpty()
+            throws InterruptedException {
+        ITranslationListener listener = mock(ITranslationListener.class);
+
+        IIncrementalCompiler compiler = createCompiler();
+        compiler.registerTranslationListener(listener);
+        compiler.setRetainTranslations(false);
+        compiler.addCompilationUnit("a", "int $a;");
+        compiler.compile();
+        lock.await(2, TimeUnit.SECONDS);
+
+        verify(listener).afterTranslationCompleted(eq("a"), any(ITranslatorFactory.class), anyString());
+        assertThat(compiler.getTranslations().size(), is(0));
+    }
+
+    @Test
+    public void compile_ErrorInOneUnit_ListenerReceivesNoTranslation() throws InterruptedException {
+        ITranslationListener listener = mock(ITranslationListener.class);
+
+        IIncrementalCompiler compiler = createCompiler();
+        compiler.registerTranslationListener(listener);
+        compiler.addCompilationUnit("a", "int $a;");
+        compiler.addCompilationUnit("b", "int $b = 1.5;");
+        compiler.compile();
+        lock.await(2, TimeUnit.SECONDS);
+
+        verify(listener, never()).afterTranslationCompleted(anyString(), any(ITranslatorFactory.class), anyString());
+    }
+
+    @Test
+    public void compile_SeveralTranslatorFactories_EachTranslatorWalksTheWholeUnit() throws InterruptedException {
+        final int numberOfUnits = 20;
+        final int numberOfTargets = 4;
+        List<ITranslatorFactory> translatorFactories = new ArrayList<>();
+        for (int i = 0; i < numberOfTargets; ++i) {
+            translatorFactories.add(new PHP54TranslatorFactory());
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        ITSPHPAstAdaptor adaptor = new TSPHPAstAdaptor();
+        IIncrementalCompiler compiler = new Compiler(adaptor, new ParserFacade(adaptor), new SnapshotTypeChecker(),
+                translatorFactories, executorService);
+        final ConcurrentMap<ITranslatorFactory, ConcurrentMap<String, String>> translations
+                = new ConcurrentHashMap<>();
+        for (ITranslatorFactory translatorFactory : translatorFactories) {
+            translations.put(translatorFactory, new ConcurrentHashMap<String, String>());
+        }
+        compiler.registerTranslationListener(new ITranslationListener()
+        {
+            @Override
+            public void afterTranslationCompleted(String id, ITranslatorFactory translatorFactory, String translation) {
+                translations.get(translatorFactory).put(id, translation);
+            }
+        });
+        StringBuilder unit = new StringBuilder();
+        for (int i = 0; i < 50; ++i) {
+            unit.append("int $a").append(i).append(" = ").append(i).append(" + 1; if ($a").append(i)
+                    .append(" > 2) { $a").append(i).append(" = 2; }\n");
+        }
+        for (int i = 0; i < numberOfUnits; ++i) {
+            compiler.addCompilationUnit("unit" + i, "namespace u" + i + ";\n" + unit);
+        }
+
+        CompilationResultDto result = compiler.compileAndWait(10, TimeUnit.SECONDS);
+        executorService.shutdown();
+
+        assertThat(result.diagnostics.toString(), result.hasFoundError, is(false));
+        assertThat(result.translationsPerTarget.size(), is(numberOfTargets));
+        for (ITranslatorFactory translatorFactory : translatorFactories) {
+            Map<String, String> translationsOfTarget = result.translationsPerTarget.get(translatorFactory);
+            assertThat(translationsOfTarget.size(), is(numberOfUnits));
+            assertThat(translations.get(translatorFactory), is(translationsOfTarget));
+        }
+    }
+
+    private IIncrementalCompiler createCompiler() {
+        IIncrementalCompiler compiler = new HardCodedCompilerInitialiser().create();
+        compiler.registerCompilerListener(new ACompilerListener()
+        {
+            @Override
+            public void afterCompilingCompleted() {
+                lock.countDown();
+            }
+        });
+        return compiler;
+    }
+}
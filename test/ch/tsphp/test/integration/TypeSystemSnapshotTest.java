@@ -0,0 +1,173 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.integration;
+
+import ch.tsphp.Compiler;
+import ch.tsphp.IIncrementalCompiler;
+import ch.tsphp.common.ACompilerListener;
+import ch.tsphp.common.ISymbol;
+import ch.tsphp.common.ITSPHPAstAdaptor;
+import ch.tsphp.common.ITranslatorFactory;
+import ch.tsphp.common.ITypeChecker;
+import ch.tsphp.common.ITypeSymbol;
+import ch.tsphp.common.TSPHPAstAdaptor;
+import ch.tsphp.parser.ParserFacade;
+import ch.tsphp.translators.php54.PHP54TranslatorFactory;
+import ch.tsphp.typechecker.ICastingMethod;
+import ch.tsphp.typechecker.TypeChecker;
+import ch.tsphp.typesystem.SnapshotTypeChecker;
+import ch.tsphp.typesystem.TypeSystemSnapshot;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class TypeSystemSnapshotTest
+{
+    private static final String[] UNITS = new String[]{
+            "int $a = 1 + 2 * 3; float $b = $a / 2.0; string $c = 'a' . $a; bool $d = $a < 2 || !true;",
+            "class A extends Exception{ function void foo(){ string? $m = $this->getMessage(); } }",
+            "int? $a = null; array $b = [1, 2]; int $c = (int) '1'; float? $d = (float?) $a;",
+            "function int foo(int $i, float $f){ return $i + (int) $f; } int $a = foo(1, 2.0);",
+            "interface I{} abstract class B implements I{ abstract function void foo(); }"
+    };
+
+    private ExecutorService executorService = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        executorService.shutdown();
+    }
+
+    @Test
+    public void compile_SnapshotTypeChecker_TranslatesLikeTypeChecker() throws InterruptedException {
+        for (String unit : UNITS) {
+            IIncrementalCompiler expected = compile(new TypeChecker(), unit);
+            IIncrementalCompiler result = compile(new SnapshotTypeChecker(), unit);
+
+            assertThat(unit, expected.hasFoundError(), is(false));
+            assertThat(unit, result.hasFoundError(), is(false));
+            assertThat(unit, result.getTranslations(), is(expected.getTranslations()));
+        }
+    }
+
+    @Test
+    public void compile_ClassNameClashesCaseInsensitiveWithBuiltInClass_ReportsErrorLikeTypeChecker()
+            throws InterruptedException {
+        String unit = "class exception{}";
+        IIncrementalCompiler expected = compile(new TypeChecker(), unit);
+        IIncrementalCompiler result = compile(new SnapshotTypeChecker(), unit);
+
+        assertThat(expected.hasFoundError(), is(true));
+        assertThat(result.hasFoundError(), is(true));
+    }
+
+    @Test
+    public void compile_ManyConcurrentCompilersAndResets_SnapshotIsNotChanged() throws InterruptedException {
+        Map<String, List<ISymbol>> builtInSymbols = new HashMap<>(TypeSystemSnapshot.getDefault().getBuiltInSymbols());
+        List<IIncrementalCompiler> compilers = new ArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(20);
+        for (int i = 0; i < 20; ++i) {
+            IIncrementalCompiler compiler = createCompiler(new SnapshotTypeChecker());
+            compiler.registerCompilerListener(new ACompilerListener()
+            {
+                @Override
+                public void afterCompilingCompleted() {
+                    latch.countDown();
+                }
+            });
+            compiler.addCompilationUnit("unit", UNITS[i % UNITS.length] + " class Exception{}");
+            compiler.compile();
+            compilers.add(compiler);
+        }
+        latch.await(10, TimeUnit.SECONDS);
+
+        assertThat(latch.getCount(), is(0L));
+        for (IIncrementalCompiler compiler : compilers) {
+            assertThat(compiler.hasFoundError(), is(true));
+        }
+        assertThat(TypeSystemSnapshot.getDefault().getBuiltInSymbols(), is(builtInSymbols));
+        for (IIncrementalCompiler compiler : compilers) {
+            compiler.reset();
+        }
+        IIncrementalCompiler result = compile(new SnapshotTypeChecker(), UNITS[1]);
+        assertThat(result.hasFoundError(), is(false));
+    }
+
+    @Test
+    public void compile_ConcurrentCompilersWithDifferentHierarchies_ExplicitCastingsOfSnapshotAreNotChanged()
+            throws InterruptedException {
+        String[] units = new String[]{
+                "class A{} class B extends A{} function void foo(cast bool $x){} B $b = new B(); foo($b);",
+                "class C{} class D extends C{} function void bar(cast bool? $x){} D $d = new D(); bar($d);"
+        };
+        List<IIncrementalCompiler> compilers = new ArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(20);
+        for (int i = 0; i < 20; ++i) {
+            IIncrementalCompiler compiler = createCompiler(new SnapshotTypeChecker());
+            compiler.registerCompilerListener(new ACompilerListener()
+            {
+                @Override
+                public void afterCompilingCompleted() {
+                    latch.countDown();
+                }
+            });
+            compiler.addCompilationUnit("unit", units[i % units.length]);
+            compiler.compile();
+            compilers.add(compiler);
+        }
+        latch.await(10, TimeUnit.SECONDS);
+
+        assertThat(latch.getCount(), is(0L));
+        for (IIncrementalCompiler compiler : compilers) {
+            assertThat(compiler.hasFoundError(), is(false));
+        }
+        Map<ITypeSymbol, Map<ITypeSymbol, ICastingMethod>> explicitCastings
+                = TypeSystemSnapshot.getDefault().getTypeSystem().getExplicitCastings();
+        for (Map<ITypeSymbol, ICastingMethod> castingMethods : explicitCastings.values()) {
+            for (ICastingMethod castingMethod : castingMethods.values()) {
+                assertThat(castingMethod.getParentTypeWhichProvidesCast(), is(nullValue()));
+            }
+        }
+    }
+
+    private IIncrementalCompiler compile(ITypeChecker typeChecker, String unit) throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler(typeChecker);
+        final CountDownLatch latch = new CountDownLatch(1);
+        compiler.registerCompilerListener(new ACompilerListener()
+        {
+            @Override
+            public void afterCompilingCompleted() {
+                latch.countDown();
+            }
+        });
+        compiler.addCompilationUnit("unit", unit);
+        compiler.compile();
+        latch.await(5, TimeUnit.SECONDS);
+        return compiler;
+    }
+
+    private IIncrementalCompiler createCompiler(ITypeChecker typeChecker) {
+        Collection<ITranslatorFactory> translatorFactories = new ArrayDeque<>();
+        translatorFactories.add(new PHP54TranslatorFactory());
+        ITSPHPAstAdaptor adaptor = new TSPHPAstAdaptor();
+        return new Compiler(adaptor, new ParserFacade(adaptor), typeChecker, translatorFactories, executorService);
+    }
+}
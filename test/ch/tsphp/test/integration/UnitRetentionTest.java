@@ -0,0 +1,147 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.integration;
+
+import ch.tsphp.CompilationResultDto;
+import ch.tsphp.Compiler;
+import ch.tsphp.IIncrementalCompiler;
+import ch.tsphp.UnitRetentionPolicy;
+import ch.tsphp.common.IParser;
+import ch.tsphp.common.ITSPHPAstAdaptor;
+import ch.tsphp.common.ITranslatorFactory;
+import ch.tsphp.common.ParserUnitDto;
+import ch.tsphp.common.TSPHPAstAdaptor;
+import ch.tsphp.exceptions.CompilerException;
+import ch.tsphp.parser.ParserFacade;
+import ch.tsphp.translators.php54.PHP54TranslatorFactory;
+import ch.tsphp.typesystem.SnapshotTypeChecker;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+public class UnitRetentionTest
+{
+    private static final String UNIT = "/** comment */ class A{ function int foo(int $a){ return $a + 1; } }"
+            + " A $a = new A(); int $b = $a->foo(1);";
+
+    private ExecutorService executorService = Executors.newFixedThreadPool(2);
+    private WeakReference<Object> tokenStream;
+    private WeakReference<Object> ast;
+
+    @After
+    public void tearDown() {
+        executorService.shutdown();
+    }
+
+    @Test
+    public void compile_ReleaseAfterTranslation_ReleasesTokenStreamAndAst() throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler();
+        compiler.setUnitRetentionPolicy(UnitRetentionPolicy.RELEASE_AFTER_TRANSLATION);
+        compiler.addCompilationUnit("unit", UNIT);
+
+        CompilationResultDto result = compiler.compileAndWait(5, TimeUnit.SECONDS);
+        collectGarbage();
+
+        assertThat(result.hasFoundError, is(false));
+        assertThat(result.translations.size(), is(1));
+        assertThat(tokenStream.get(), is(nullValue()));
+        assertThat(ast.get(), is(nullValue()));
+    }
+
+    @Test
+    public void compile_RetainForRecompilation_KeepsTokenStreamAndAst() throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler();
+        compiler.addCompilationUnit("unit", UNIT);
+
+        CompilationResultDto result = compiler.compileAndWait(5, TimeUnit.SECONDS);
+        collectGarbage();
+
+        assertThat(result.hasFoundError, is(false));
+        assertThat(tokenStream.get(), is(notNullValue()));
+        assertThat(ast.get(), is(notNullValue()));
+    }
+
+    @Test
+    public void compile_ReleaseAfterTranslation_TranslatesLikeRetainForRecompilation() throws InterruptedException {
+        IIncrementalCompiler retainingCompiler = createCompiler();
+        retainingCompiler.addCompilationUnit("unit", UNIT);
+        IIncrementalCompiler releasingCompiler = createCompiler();
+        releasingCompiler.setUnitRetentionPolicy(UnitRetentionPolicy.RELEASE_AFTER_TRANSLATION);
+        releasingCompiler.addCompilationUnit("unit", UNIT);
+
+        CompilationResultDto expected = retainingCompiler.compileAndWait(5, TimeUnit.SECONDS);
+        CompilationResultDto result = releasingCompiler.compileAndWait(5, TimeUnit.SECONDS);
+
+        assertThat(result.translations, is(expected.translations));
+    }
+
+    @Test(expected = CompilerException.class)
+    public void recompile_AfterRelease_ThrowsCompilerException() throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler();
+        compiler.setUnitRetentionPolicy(UnitRetentionPolicy.RELEASE_AFTER_TRANSLATION);
+        compiler.addCompilationUnit("unit", UNIT);
+        compiler.compileAndWait(5, TimeUnit.SECONDS);
+
+        compiler.recompile();
+    }
+
+    @Test
+    public void compile_AfterReleaseAndReset_Translates() throws InterruptedException {
+        IIncrementalCompiler compiler = createCompiler();
+        compiler.setUnitRetentionPolicy(UnitRetentionPolicy.RELEASE_AFTER_TRANSLATION);
+        compiler.addCompilationUnit("unit", UNIT);
+        compiler.compileAndWait(5, TimeUnit.SECONDS);
+        compiler.reset();
+        compiler.addCompilationUnit("unit", UNIT);
+
+        CompilationResultDto result = compiler.compileAndWait(5, TimeUnit.SECONDS);
+
+        assertThat(result.hasFoundError, is(false));
+        assertThat(result.translations.size(), is(1));
+    }
+
+    private void collectGarbage() throws InterruptedException {
+        for (int i = 0; i < 10 && (tokenStream.get() != null || ast.get() != null); ++i) {
+            System.gc();
+            Thread.sleep(20);
+        }
+    }
+
+    private IIncrementalCompiler createCompiler() {
+        IParser parser = spy(new ParserFacade());
+        doAnswer(new Answer<ParserUnitDto>()
+        {
+            @Override
+            public ParserUnitDto answer(InvocationOnMock invocation) throws Throwable {
+                ParserUnitDto parserUnit = (ParserUnitDto) invocation.callRealMethod();
+                tokenStream = new WeakReference<Object>(parserUnit.tokenStream);
+                ast = new WeakReference<Object>(parserUnit.compilationUnit);
+                return parserUnit;
+            }
+        }).when(parser).parse(anyString());
+        Collection<ITranslatorFactory> translatorFactories = new ArrayDeque<>();
+        translatorFactories.add(new PHP54TranslatorFactory());
+        ITSPHPAstAdaptor adaptor = new TSPHPAstAdaptor();
+        return new Compiler(adaptor, parser, new SnapshotTypeChecker(), translatorFactories, executorService);
+    }
+}
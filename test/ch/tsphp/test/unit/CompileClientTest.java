@@ -0,0 +1,31 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.unit;
+
+import ch.tsphp.console.CompileClient;
+import ch.tsphp.console.ConsoleReader;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CompileClientTest
+{
+    @Test
+    public void makePathsAbsolute_OptionsPatternsAndPaths_OnlyPathsAreMadeAbsolute() {
+        String[] args = new String[]{
+                ConsoleReader.OPTION_INCLUDE, "a/**", ConsoleReader.OPTION_OUT, "out", "src"};
+
+        String[] result = CompileClient.makePathsAbsolute(args);
+
+        assertThat(result, is(new String[]{
+                ConsoleReader.OPTION_INCLUDE, "a/**", ConsoleReader.OPTION_OUT,
+                new File("out").getAbsolutePath(), new File("src").getAbsolutePath()}));
+    }
+}
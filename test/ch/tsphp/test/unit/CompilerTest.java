@@ -8,22 +8,35 @@ package ch.tsphp.test.unit;
 
 import ch.tsphp.Compiler;
 import ch.tsphp.common.ICompiler;
+import ch.tsphp.common.ICompilerListener;
 import ch.tsphp.common.IErrorLogger;
 import ch.tsphp.common.IParser;
+import ch.tsphp.common.ITSPHPAst;
 import ch.tsphp.common.ITSPHPAstAdaptor;
 import ch.tsphp.common.ITranslatorFactory;
 import ch.tsphp.common.ITypeChecker;
+import ch.tsphp.common.ParserUnitDto;
 import ch.tsphp.common.exceptions.TSPHPException;
+import org.antlr.runtime.TokenStream;
+import org.antlr.runtime.tree.TreeNodeStream;
+import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class CompilerTest
 {
@@ -35,6 +48,11 @@ public class CompilerTest
     protected ExecutorService executorService;
 
 
+    @Before
+    public void setUp() {
+        initMocks();
+    }
+
     @Test
     public void log_NoErrorLoggers_HasFoundErrorIsTrue() {
         //no arrange necessary
@@ -68,12 +86,73 @@ public class CompilerTest
         verify(logger).log(exception);
     }
 
+    @Test
+    public void compile_NoCompilationUnits_InformsListenersExactlyOnce() {
+        ICompilerListener listener = mock(ICompilerListener.class);
+
+        ICompiler compiler = createCompiler();
+        runTasksImmediately();
+        compiler.registerCompilerListener(listener);
+        compiler.compile();
+
+        verify(listener).afterParsingAndDefinitionPhaseCompleted();
+        verify(listener).afterCompilingCompleted();
+        assertThat(compiler.isCompiling(), is(false));
+    }
+
+    @Test
+    public void compile_UnitsOfDifferentSize_ReferencePhaseProcessesLargestUnitFirst() {
+        final List<ITSPHPAst> order = new ArrayList<>();
+        ITSPHPAst small = mockParse("small", 1);
+        ITSPHPAst large = mockParse("large", 100);
+        ITSPHPAst medium = mockParse("medium", 10);
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                order.add((ITSPHPAst) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(typeChecker).enrichWithReferences(any(ITSPHPAst.class), any(TreeNodeStream.class));
+
+        ICompiler compiler = createCompiler();
+        runTasksImmediately();
+        compiler.addCompilationUnit("small", "small");
+        compiler.addCompilationUnit("large", "large");
+        compiler.addCompilationUnit("medium", "medium");
+        compiler.compile();
+
+        assertThat(order, is(Arrays.asList(large, medium, small)));
+    }
+
+    private ITSPHPAst mockParse(String content, int numberOfTokens) {
+        ITSPHPAst ast = mock(ITSPHPAst.class);
+        TokenStream tokenStream = mock(TokenStream.class);
+        when(tokenStream.size()).thenReturn(numberOfTokens);
+        when(parser.parse(content)).thenReturn(new ParserUnitDto(content, ast, tokenStream));
+        return ast;
+    }
+
+    private void runTasksImmediately() {
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ((Runnable) invocation.getArguments()[0]).run();
+                return null;
+            }
+        }).when(executorService).execute(any(Runnable.class));
+    }
+
     protected ICompiler createCompiler() {
+        return new Compiler(astAdaptor, parser, typeChecker, translatorFactories, executorService);
+    }
+
+    protected void initMocks() {
         astAdaptor = mock(ITSPHPAstAdaptor.class);
         parser = mock(IParser.class);
         typeChecker = mock(ITypeChecker.class);
         translatorFactories = new ArrayList<>();
         executorService = mock(ExecutorService.class);
-        return new Compiler(astAdaptor, parser, typeChecker, translatorFactories, executorService);
     }
 }
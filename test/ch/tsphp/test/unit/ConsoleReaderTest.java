@@ -6,23 +6,34 @@
 
 package ch.tsphp.test.unit;
 
-import ch.tsphp.common.ICompiler;
+import ch.tsphp.IIncrementalCompiler;
+import ch.tsphp.cache.ITranslationCache;
 import ch.tsphp.console.ConsoleReader;
 import ch.tsphp.console.IConsoleReader;
+import ch.tsphp.console.TranslationFileWriter;
+import ch.tsphp.metrics.IMetricsListener;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
 import java.io.IOException;
 
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 public class ConsoleReaderTest
 {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
 
     @Test
     public void readArguments_noArgumentsProvided_NoInteractionWithCompiler() {
-        ICompiler compiler = mock(ICompiler.class);
+        IIncrementalCompiler compiler = mock(IIncrementalCompiler.class);
 
         IConsoleReader consoleReader = createConsoleReader(compiler);
         consoleReader.readArguments(new String[]{});
@@ -32,7 +43,7 @@ public class ConsoleReaderTest
 
     @Test
     public void readArguments_OneArgument_UseArgumentAsFilePathAndAddToCompilationUnits() throws IOException {
-        ICompiler compiler = mock(ICompiler.class);
+        IIncrementalCompiler compiler = mock(IIncrementalCompiler.class);
         String file = "file";
 
         IConsoleReader consoleReader = createConsoleReader(compiler);
@@ -41,7 +52,80 @@ public class ConsoleReaderTest
         verify(compiler).addFile(file);
     }
 
-    protected IConsoleReader createConsoleReader(ICompiler compiler) {
+    @Test
+    public void readArguments_OneArgument_TranslationIsWrittenToFileInsteadOfRetained() {
+        IIncrementalCompiler compiler = mock(IIncrementalCompiler.class);
+
+        IConsoleReader consoleReader = createConsoleReader(compiler);
+        consoleReader.readArguments(new String[]{"file"});
+
+        verify(compiler).registerTranslationListener(any(TranslationFileWriter.class));
+        verify(compiler).setRetainTranslations(false);
+    }
+
+    @Test
+    public void readArguments_CacheOptionAndFile_SetsCacheAndAddsFile() throws IOException {
+        IIncrementalCompiler compiler = mock(IIncrementalCompiler.class);
+        String file = "file";
+
+        IConsoleReader consoleReader = createConsoleReader(compiler);
+        consoleReader.readArguments(new String[]{ConsoleReader.OPTION_CACHE, "cacheDir", file});
+
+        verify(compiler).setTranslationCache(any(ITranslationCache.class));
+        verify(compiler).addFile(file);
+        verify(compiler).compile();
+    }
+
+    @Test
+    public void readArguments_Directory_AddsContainedSourceFiles() throws IOException {
+        IIncrementalCompiler compiler = mock(IIncrementalCompiler.class);
+        File directory = folder.newFolder("src");
+        File file = folder.newFile("src/a.tsphp");
+        folder.newFile("src/b.php");
+
+        IConsoleReader consoleReader = createConsoleReader(compiler);
+        consoleReader.readArguments(new String[]{directory.getPath()});
+
+        verify(compiler).addFile(file.getPath());
+        verify(compiler, never()).addFile(new File(directory, "b.php").getPath());
+        verify(compiler).compile();
+    }
+
+    @Test
+    public void readArguments_SeveralFiles_AddsAllFilesAndCompilesOnce() throws IOException {
+        IIncrementalCompiler compiler = mock(IIncrementalCompiler.class);
+
+        IConsoleReader consoleReader = createConsoleReader(compiler);
+        consoleReader.readArguments(new String[]{ConsoleReader.OPTION_OUT, "out", "a", "b"});
+
+        verify(compiler).addFile("a");
+        verify(compiler).addFile("b");
+        verify(compiler, times(1)).compile();
+    }
+
+    @Test
+    public void readArguments_CalledTwice_RegistersTranslationFileWriterOnlyOnce() {
+        IIncrementalCompiler compiler = mock(IIncrementalCompiler.class);
+
+        IConsoleReader consoleReader = createConsoleReader(compiler);
+        consoleReader.readArguments(new String[]{"a"});
+        consoleReader.readArguments(new String[]{"b"});
+
+        verify(compiler, times(1)).registerTranslationListener(any(TranslationFileWriter.class));
+        verify(compiler, times(2)).compile();
+    }
+
+    @Test
+    public void readArguments_MetricsOption_RegistersMetricsListener() {
+        IIncrementalCompiler compiler = mock(IIncrementalCompiler.class);
+
+        IConsoleReader consoleReader = createConsoleReader(compiler);
+        consoleReader.readArguments(new String[]{ConsoleReader.OPTION_METRICS, "metrics.json", "file"});
+
+        verify(compiler).registerMetricsListener(any(IMetricsListener.class));
+    }
+
+    protected IConsoleReader createConsoleReader(IIncrementalCompiler compiler) {
         return new ConsoleReader(compiler);
     }
 }
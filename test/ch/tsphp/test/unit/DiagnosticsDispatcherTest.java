@@ -0,0 +1,145 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.unit;
+
+import ch.tsphp.DiagnosticsDispatcher;
+import ch.tsphp.common.IErrorLogger;
+import ch.tsphp.common.ITSPHPAst;
+import ch.tsphp.common.exceptions.DefinitionException;
+import ch.tsphp.common.exceptions.TSPHPException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DiagnosticsDispatcherTest
+{
+    private List<TSPHPException> loggedExceptions = new ArrayList<>();
+
+    @Test
+    public void drain_SeveralErrors_DeliversThemOrderedByUnitAndPosition() {
+        DiagnosticsDispatcher dispatcher = createDispatcher();
+        TSPHPException b = createDefinitionException("b", 1, 0);
+        TSPHPException a2 = createDefinitionException("a2", 2, 5);
+        TSPHPException a1 = createDefinitionException("a1", 2, 1);
+        TSPHPException withoutUnit = new TSPHPException("without unit");
+
+        dispatcher.add(null, withoutUnit);
+        dispatcher.add("b", b);
+        dispatcher.add("a", a2);
+        dispatcher.add("a", a1);
+        dispatcher.drain();
+
+        assertThat(loggedExceptions, is(Arrays.asList(a1, a2, b, withoutUnit)));
+    }
+
+    @Test
+    public void add_SameMessageInSameUnit_IsDeliveredOnce() {
+        DiagnosticsDispatcher dispatcher = createDispatcher();
+
+        boolean first = dispatcher.add("a", new TSPHPException("error"));
+        boolean second = dispatcher.add("a", new TSPHPException("error"));
+        dispatcher.drain();
+
+        assertThat(first, is(true));
+        assertThat(second, is(false));
+        assertThat(loggedExceptions.size(), is(1));
+    }
+
+    @Test
+    public void add_SameMessageInDifferentUnits_IsDeliveredForEach() {
+        DiagnosticsDispatcher dispatcher = createDispatcher();
+
+        dispatcher.add("a", new TSPHPException("error"));
+        dispatcher.add("b", new TSPHPException("error"));
+        dispatcher.drain();
+
+        assertThat(loggedExceptions.size(), is(2));
+    }
+
+    @Test
+    public void add_MoreErrorsThanMaximumPerUnit_SuppressesFurtherErrorsWithNotice() {
+        DiagnosticsDispatcher dispatcher = createDispatcher();
+        dispatcher.setMaxErrorsPerUnit(2);
+
+        for (int i = 0; i < 5; ++i) {
+            dispatcher.add("a", new TSPHPException("error " + i));
+        }
+        dispatcher.add("b", new TSPHPException("error"));
+        dispatcher.drain();
+
+        assertThat(loggedExceptions.size(), is(4));
+        assertThat(loggedExceptions.get(2).getMessage(),
+                is("Further errors of a are suppressed, it reached the maximum of 2 errors."));
+        assertThat(loggedExceptions.get(3).getMessage(), is("error"));
+    }
+
+    @Test
+    public void tryScheduleDrain_NothingQueued_ReturnsFalse() {
+        DiagnosticsDispatcher dispatcher = createDispatcher();
+
+        boolean result = dispatcher.tryScheduleDrain();
+
+        assertThat(result, is(false));
+    }
+
+    @Test
+    public void tryScheduleDrain_DrainAlreadyScheduled_ReturnsFalseUntilDrained() {
+        DiagnosticsDispatcher dispatcher = createDispatcher();
+        dispatcher.add("a", new TSPHPException("error 1"));
+
+        boolean first = dispatcher.tryScheduleDrain();
+        dispatcher.add("a", new TSPHPException("error 2"));
+        boolean second = dispatcher.tryScheduleDrain();
+        dispatcher.drain();
+        dispatcher.add("a", new TSPHPException("error 3"));
+        boolean third = dispatcher.tryScheduleDrain();
+
+        assertThat(first, is(true));
+        assertThat(second, is(false));
+        assertThat(third, is(true));
+    }
+
+    @Test
+    public void reset_AfterDrain_ForgetsReportedMessagesAndDeliveredErrors() {
+        DiagnosticsDispatcher dispatcher = createDispatcher();
+        dispatcher.add("a", new TSPHPException("error"));
+        dispatcher.drain();
+
+        dispatcher.reset();
+        boolean result = dispatcher.add("a", new TSPHPException("error"));
+
+        assertThat(result, is(true));
+        assertThat(dispatcher.getDeliveredDiagnostics().isEmpty(), is(true));
+    }
+
+    private DiagnosticsDispatcher createDispatcher() {
+        Collection<IErrorLogger> loggers = new ArrayList<>();
+        loggers.add(new IErrorLogger()
+        {
+            @Override
+            public void log(TSPHPException exception) {
+                loggedExceptions.add(exception);
+            }
+        });
+        return new DiagnosticsDispatcher(loggers);
+    }
+
+    private TSPHPException createDefinitionException(String message, int line, int charPositionInLine) {
+        ITSPHPAst ast = mock(ITSPHPAst.class);
+        when(ast.getLine()).thenReturn(line);
+        when(ast.getCharPositionInLine()).thenReturn(charPositionInLine);
+        return new DefinitionException(message, mock(ITSPHPAst.class), ast);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.unit;
+
+import ch.tsphp.FailFastPolicy;
+import ch.tsphp.metrics.CompilationPhase;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class FailFastPolicyTest
+{
+    @Test
+    public void shallAbort_Never_ReturnsFalse() {
+        assertThat(FailFastPolicy.NEVER.shallAbort(Integer.MAX_VALUE - 1, CompilationPhase.TYPE_CHECK), is(false));
+    }
+
+    @Test
+    public void shallAbort_AfterErrorsBelowLimit_ReturnsFalse() {
+        assertThat(FailFastPolicy.afterErrors(3).shallAbort(2, CompilationPhase.TYPE_CHECK), is(false));
+    }
+
+    @Test
+    public void shallAbort_AfterErrorsLimitReached_ReturnsTrue() {
+        assertThat(FailFastPolicy.afterErrors(3).shallAbort(3, CompilationPhase.TYPE_CHECK), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void afterErrors_Zero_ThrowsIllegalArgumentException() {
+        FailFastPolicy.afterErrors(0);
+    }
+
+    @Test
+    public void shallAbort_AfterFirstErrorInOtherPhase_ReturnsFalse() {
+        FailFastPolicy policy = FailFastPolicy.afterFirstErrorIn(
+                CompilationPhase.REFERENCE, CompilationPhase.DEFINITION);
+
+        assertThat(policy.shallAbort(1, CompilationPhase.TYPE_CHECK), is(false));
+    }
+
+    @Test
+    public void shallAbort_AfterFirstErrorInSamePhase_ReturnsTrue() {
+        FailFastPolicy policy = FailFastPolicy.afterFirstErrorIn(
+                CompilationPhase.REFERENCE, CompilationPhase.DEFINITION);
+
+        assertThat(policy.shallAbort(1, CompilationPhase.DEFINITION), is(true));
+    }
+
+    @Test
+    public void shallAbort_Or_AbortsIfOneOfThemDoes() {
+        FailFastPolicy policy = FailFastPolicy.afterErrors(5).or(
+                FailFastPolicy.afterFirstErrorIn(CompilationPhase.PARSE_AND_DEFINITION));
+
+        assertThat(policy.shallAbort(1, CompilationPhase.PARSE_AND_DEFINITION), is(true));
+        assertThat(policy.shallAbort(5, CompilationPhase.TRANSLATION), is(true));
+        assertThat(policy.shallAbort(4, CompilationPhase.TRANSLATION), is(false));
+    }
+}
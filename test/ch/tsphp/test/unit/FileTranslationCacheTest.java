@@ -0,0 +1,94 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.unit;
+
+import ch.tsphp.cache.FileTranslationCache;
+import ch.tsphp.cache.ITranslationCache;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class FileTranslationCacheTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void get_NothingPut_ReturnsNull() {
+        //no arrange necessary
+
+        ITranslationCache cache = createCache();
+        String result = cache.get("id", "translator", "key");
+
+        assertThat(result, is(nullValue()));
+    }
+
+    @Test
+    public void get_PutWithSameKey_ReturnsTranslation() throws IOException {
+        //no arrange necessary
+
+        ITranslationCache cache = createCache();
+        cache.put("id", "translator", "key", "<?php ?>");
+        String result = cache.get("id", "translator", "key");
+
+        assertThat(result, is("<?php ?>"));
+    }
+
+    @Test
+    public void get_PutWithOtherKey_ReturnsNull() throws IOException {
+        //no arrange necessary
+
+        ITranslationCache cache = createCache();
+        cache.put("id", "translator", "key", "<?php ?>");
+        String result = cache.get("id", "translator", "otherKey");
+
+        assertThat(result, is(nullValue()));
+    }
+
+    @Test
+    public void get_PutForOtherTranslator_ReturnsNull() throws IOException {
+        //no arrange necessary
+
+        ITranslationCache cache = createCache();
+        cache.put("id", "translator", "key", "<?php ?>");
+        String result = cache.get("id", "otherTranslator", "key");
+
+        assertThat(result, is(nullValue()));
+    }
+
+    @Test
+    public void get_PutTwice_ReturnsLatestTranslation() throws IOException {
+        //no arrange necessary
+
+        ITranslationCache cache = createCache();
+        cache.put("id", "translator", "key", "<?php ?>");
+        cache.put("id", "translator", "key2", "<?php $a; ?>");
+        String result = cache.get("id", "translator", "key2");
+
+        assertThat(result, is("<?php $a; ?>"));
+    }
+
+    @Test
+    public void get_OtherInstanceSameDirectory_ReturnsTranslation() throws IOException {
+        createCache().put("id", "translator", "key", "<?php ?>");
+
+        ITranslationCache cache = createCache();
+        String result = cache.get("id", "translator", "key");
+
+        assertThat(result, is("<?php ?>"));
+    }
+
+    protected ITranslationCache createCache() {
+        return new FileTranslationCache(folder.getRoot().getAbsolutePath() + "/cache");
+    }
+}
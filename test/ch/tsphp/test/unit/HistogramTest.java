@@ -0,0 +1,65 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.unit;
+
+import ch.tsphp.metrics.Histogram;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class HistogramTest
+{
+    @Test
+    public void add_SeveralValues_TracksCountSumMinMaxAndMean() {
+        Histogram histogram = createHistogram();
+        histogram.add(10);
+        histogram.add(20);
+        histogram.add(30);
+
+        assertThat(histogram.getCount(), is(3L));
+        assertThat(histogram.getSum(), is(60L));
+        assertThat(histogram.getMin(), is(10L));
+        assertThat(histogram.getMax(), is(30L));
+        assertThat(histogram.getMean(), is(20.0));
+    }
+
+    @Test
+    public void add_NegativeValue_IsIgnored() {
+        Histogram histogram = createHistogram();
+        histogram.add(-1);
+
+        assertThat(histogram.getCount(), is(0L));
+        assertThat(histogram.getMin(), is(0L));
+    }
+
+    @Test
+    public void getPercentile_Standard_ReturnsUpperBoundOfBucket() {
+        Histogram histogram = createHistogram();
+        for (int i = 0; i < 99; ++i) {
+            histogram.add(5);
+        }
+        histogram.add(1000);
+
+        assertThat(histogram.getPercentile(50), is(7L));
+        assertThat(histogram.getPercentile(99), is(7L));
+        assertThat(histogram.getPercentile(100), is(1000L));
+    }
+
+    @Test
+    public void toJson_Standard_ContainsBuckets() {
+        Histogram histogram = createHistogram();
+        histogram.add(5);
+
+        assertThat(histogram.toJson(), containsString("\"buckets\":[{\"lessThan\":8,\"count\":1}]"));
+    }
+
+    protected Histogram createHistogram() {
+        return new Histogram();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.unit;
+
+import ch.tsphp.library.LibrarySummary;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class LibrarySummaryTest
+{
+    @Test
+    public void read_WrittenSummary_ReturnsSameDeclarationsInSameOrder() throws IOException {
+        Map<String, String> declarations = new LinkedHashMap<>();
+        declarations.put("b.tsphp", "namespace b{class B{}}");
+        declarations.put("a.tsphp", "namespace{function int foo(){throw new \\Exception();}}");
+        declarations.put("\u00e4.tsphp", "namespace{const string A = '\u20ac';}");
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        new LibrarySummary(declarations).write(outputStream);
+        LibrarySummary result = LibrarySummary.read(new ByteArrayInputStream(outputStream.toByteArray()));
+
+        assertThat(result.getDeclarations(), is(declarations));
+        assertThat(result.getDeclarations().keySet().iterator().next(), is("b.tsphp"));
+    }
+
+    @Test
+    public void read_EmptySummary_ReturnsNoDeclarations() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        new LibrarySummary(new LinkedHashMap<String, String>()).write(outputStream);
+        LibrarySummary result = LibrarySummary.read(new ByteArrayInputStream(outputStream.toByteArray()));
+
+        assertThat(result.getDeclarations().isEmpty(), is(true));
+    }
+
+    @Test(expected = IOException.class)
+    public void read_NotASummary_ThrowsIOException() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (DataOutputStream dataStream = new DataOutputStream(new DeflaterOutputStream(outputStream))) {
+            dataStream.writeInt(1);
+            dataStream.writeInt(1);
+        }
+
+        LibrarySummary.read(new ByteArrayInputStream(outputStream.toByteArray()));
+    }
+
+    @Test(expected = IOException.class)
+    public void read_UnsupportedVersion_ThrowsIOException() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (DataOutputStream dataStream = new DataOutputStream(new DeflaterOutputStream(outputStream))) {
+            dataStream.writeInt(0x54535053);
+            dataStream.writeInt(2);
+            dataStream.writeInt(0);
+        }
+
+        LibrarySummary.read(new ByteArrayInputStream(outputStream.toByteArray()));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void getDeclarations_Modify_ThrowsUnsupportedOperationException() {
+        Map<String, String> declarations = new LinkedHashMap<>();
+        declarations.put("a", "namespace{}");
+
+        new LibrarySummary(declarations).getDeclarations().put("b", "namespace{}");
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.unit;
+
+import ch.tsphp.io.BufferPoolStatisticsDto;
+import ch.tsphp.io.ReadBufferPool;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+public class ReadBufferPoolTest
+{
+    @Test
+    public void read_StreamFitsIntoBuffers_ReturnsContent() throws IOException {
+        ReadBufferPool pool = new ReadBufferPool();
+        CharBuffer result = pool.read(createStream("int $a;", StandardCharsets.UTF_8), 1024, 1024, "UTF-8");
+
+        assertThat(toString(result), is("int $a;"));
+    }
+
+    @Test
+    public void read_StreamLargerThanBuffers_GrowsAndReturnsContent() throws IOException {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < 100; ++i) {
+            stringBuilder.append("int $a").append(i).append(";\n");
+        }
+        String content = stringBuilder.toString();
+
+        ReadBufferPool pool = new ReadBufferPool();
+        CharBuffer result = pool.read(createStream(content, StandardCharsets.UTF_8), 4, 16, "UTF-8");
+
+        assertThat(toString(result), is(content));
+    }
+
+    @Test
+    public void read_MultiByteCharacterSplitAcrossReads_DecodesIt() throws IOException {
+        String content = "string $a = '\u00e4\u00f6\u00fc\u20ac\u00e4\u00f6\u00fc\u20ac';";
+
+        ReadBufferPool pool = new ReadBufferPool();
+        CharBuffer result = pool.read(createStream(content, StandardCharsets.UTF_8), 1, 1, "UTF-8");
+
+        assertThat(toString(result), is(content));
+    }
+
+    @Test
+    public void read_EncodingIsNull_UsesDefaultEncoding() throws IOException {
+        ReadBufferPool pool = new ReadBufferPool();
+        CharBuffer result = pool.read(createStream("int $a;", Charset.defaultCharset()), 1024, 1024, null);
+
+        assertThat(toString(result), is("int $a;"));
+    }
+
+    @Test
+    public void read_Standard_ClosesStream() throws IOException {
+        InputStream stream = spy(createStream("int $a;", StandardCharsets.UTF_8));
+
+        ReadBufferPool pool = new ReadBufferPool();
+        pool.read(stream, 1024, 1024, "UTF-8");
+
+        verify(stream).close();
+    }
+
+    @Test
+    public void getStatistics_SecondReadFitsIntoBuffers_CountsHit() throws IOException {
+        ReadBufferPool pool = new ReadBufferPool();
+        pool.read(createStream("int $a;", StandardCharsets.UTF_8), 1024, 1024, "UTF-8");
+        pool.read(createStream("int $b;", StandardCharsets.UTF_8), 1024, 1024, "UTF-8");
+        BufferPoolStatisticsDto result = pool.getStatistics();
+
+        assertThat(result.numberOfMisses, is(1L));
+        assertThat(result.numberOfHits, is(1L));
+        assertThat(result.hitRate, is(0.5));
+    }
+
+    @Test
+    public void getStatistics_SecondReadNeedsLargerBuffer_CountsMiss() throws IOException {
+        ReadBufferPool pool = new ReadBufferPool();
+        pool.read(createStream("int $a;", StandardCharsets.UTF_8), 8, 1024, "UTF-8");
+        pool.read(createStream("int $abcdefghijk;", StandardCharsets.UTF_8), 8, 1024, "UTF-8");
+        pool.read(createStream("int $b;", StandardCharsets.UTF_8), 8, 1024, "UTF-8");
+        BufferPoolStatisticsDto result = pool.getStatistics();
+
+        assertThat(result.numberOfMisses, is(2L));
+        assertThat(result.numberOfHits, is(1L));
+    }
+
+    @Test
+    public void getStatistics_BufferGrewBeyondMaxRetainedChars_DropsBuffer() throws IOException {
+        ReadBufferPool pool = new ReadBufferPool(8);
+        pool.read(createStream("int $abcdefghijk;", StandardCharsets.UTF_8), 8, 1024, "UTF-8");
+        pool.read(createStream("int $a;", StandardCharsets.UTF_8), 8, 1024, "UTF-8");
+        BufferPoolStatisticsDto result = pool.getStatistics();
+
+        assertThat(result.numberOfMisses, is(2L));
+        assertThat(result.numberOfHits, is(0L));
+    }
+
+    @Test
+    public void getStatistics_NothingRead_HitRateIsZero() {
+        ReadBufferPool pool = new ReadBufferPool();
+        BufferPoolStatisticsDto result = pool.getStatistics();
+
+        assertThat(result.hitRate, is(0.0));
+    }
+
+    private InputStream createStream(String content, Charset charset) {
+        return new ByteArrayInputStream(content.getBytes(charset));
+    }
+
+    private String toString(CharBuffer buffer) {
+        return new String(buffer.array(), 0, buffer.remaining());
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.unit;
+
+import ch.tsphp.service.SessionExecutor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SessionExecutorTest
+{
+    @Test
+    public void execute_MoreTasksThanQuota_ForwardsOnlyQuotaTasksAtOnce() {
+        List<Runnable> forwarded = new ArrayList<>();
+        SessionExecutor executor = new SessionExecutor(createCollectingExecutor(forwarded), 2);
+
+        for (int i = 0; i < 5; ++i) {
+            executor.execute(createNoOp());
+        }
+
+        assertThat(forwarded.size(), is(2));
+        assertThat(executor.getNumberOfRunningTasks(), is(2));
+        assertThat(executor.getNumberOfQueuedTasks(), is(3));
+    }
+
+    @Test
+    public void execute_ForwardedTaskCompletes_ForwardsNextQueuedTask() {
+        List<Runnable> forwarded = new ArrayList<>();
+        SessionExecutor executor = new SessionExecutor(createCollectingExecutor(forwarded), 1);
+        executor.execute(createNoOp());
+        executor.execute(createNoOp());
+
+        forwarded.get(0).run();
+
+        assertThat(forwarded.size(), is(2));
+        assertThat(executor.getNumberOfRunningTasks(), is(1));
+        assertThat(executor.getNumberOfQueuedTasks(), is(0));
+    }
+
+    @Test
+    public void execute_ManyTasksOnRealPool_RunsAllAndNeverExceedsQuota() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        final SessionExecutor executor = new SessionExecutor(pool, 2);
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(100);
+
+        for (int i = 0; i < 100; ++i) {
+            executor.execute(new Runnable()
+            {
+                @Override
+                public void run() {
+                    int current = concurrent.incrementAndGet();
+                    int max = maxConcurrent.get();
+                    while (current > max && !maxConcurrent.compareAndSet(max, current)) {
+                        max = maxConcurrent.get();
+                    }
+                    concurrent.decrementAndGet();
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await(5, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertThat(latch.getCount(), is(0L));
+        assertThat(maxConcurrent.get() <= 2, is(true));
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void execute_AfterShutdown_ThrowsRejectedExecutionException() {
+        SessionExecutor executor = new SessionExecutor(createCollectingExecutor(new ArrayList<Runnable>()), 1);
+        executor.shutdown();
+
+        executor.execute(createNoOp());
+    }
+
+    @Test
+    public void execute_SharedExecutorShutDown_RejectsCommandWithoutQueueingIt() {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        pool.shutdown();
+        SessionExecutor executor = new SessionExecutor(pool, 1);
+
+        try {
+            executor.execute(createNoOp());
+            Assert.fail("RejectedExecutionException expected");
+        } catch (RejectedExecutionException ex) {
+            //expected
+        }
+
+        assertThat(executor.getNumberOfQueuedTasks(), is(0));
+        assertThat(executor.getNumberOfRunningTasks(), is(0));
+    }
+
+    @Test
+    public void execute_SharedExecutorRejectsQueuedTask_KeepsTaskQueuedAndDoesNotThrow() {
+        //the retries forward from another thread
+        final List<Runnable> forwarded = Collections.synchronizedList(new ArrayList<Runnable>());
+        final AtomicBoolean isRejecting = new AtomicBoolean();
+        SessionExecutor executor = new SessionExecutor(new Executor()
+        {
+            @Override
+            public void execute(Runnable command) {
+                if (isRejecting.get()) {
+                    throw new RejectedExecutionException("rejected");
+                }
+                forwarded.add(command);
+            }
+        }, 1);
+        executor.execute(createNoOp());
+        executor.execute(createNoOp());
+        isRejecting.set(true);
+
+        //completion of the running task dispatches the queued one from the worker path
+        forwarded.get(0).run();
+
+        assertThat(forwarded.size(), is(1));
+        assertThat(executor.getNumberOfRunningTasks(), is(0));
+        assertThat(executor.getNumberOfQueuedTasks(), is(1));
+        assertThat(executor.shutdownNow().size(), is(1));
+        assertThat(executor.isTerminated(), is(true));
+    }
+
+    @Test
+    public void execute_SharedExecutorAcceptsAgain_ForwardsPreviouslyRejectedTask() {
+        //the retries forward from another thread
+        final List<Runnable> forwarded = Collections.synchronizedList(new ArrayList<Runnable>());
+        final AtomicBoolean isRejecting = new AtomicBoolean();
+        SessionExecutor executor = new SessionExecutor(new Executor()
+        {
+            @Override
+            public void execute(Runnable command) {
+                if (isRejecting.get()) {
+                    throw new RejectedExecutionException("rejected");
+                }
+                forwarded.add(command);
+            }
+        }, 1);
+        executor.execute(createNoOp());
+        executor.execute(createNoOp());
+        isRejecting.set(true);
+        forwarded.get(0).run();
+        isRejecting.set(false);
+
+        executor.execute(createNoOp());
+
+        assertThat(forwarded.size(), is(2));
+        assertThat(executor.getNumberOfRunningTasks(), is(1));
+        assertThat(executor.getNumberOfQueuedTasks(), is(1));
+    }
+
+    @Test(timeout = 5000)
+    public void execute_SaturatedBoundedSharedExecutorWithoutOtherTasksOfSession_RetriesRejectedTasks()
+            throws InterruptedException {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(1));
+        final CountDownLatch blocker = new CountDownLatch(1);
+        pool.execute(new Runnable()
+        {
+            @Override
+            public void run() {
+                try {
+                    blocker.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        pool.execute(createNoOp());
+        SessionExecutor executor = new SessionExecutor(pool, 2);
+        final CountDownLatch latch = new CountDownLatch(2);
+        Runnable task = new Runnable()
+        {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        };
+
+        executor.execute(task);
+        executor.execute(task);
+        blocker.countDown();
+        latch.await();
+        executor.shutdown();
+        pool.shutdown();
+
+        assertThat(executor.awaitTermination(1, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test
+    public void addTerminationListener_ShutdownWithRunningTask_IsCalledOnceTaskCompleted() {
+        List<Runnable> forwarded = new ArrayList<>();
+        SessionExecutor executor = new SessionExecutor(createCollectingExecutor(forwarded), 1);
+        executor.execute(createNoOp());
+        final AtomicInteger calls = new AtomicInteger();
+        executor.addTerminationListener(new Runnable()
+        {
+            @Override
+            public void run() {
+                calls.incrementAndGet();
+            }
+        });
+        executor.shutdown();
+
+        assertThat(calls.get(), is(0));
+        forwarded.get(0).run();
+        executor.shutdown();
+        assertThat(calls.get(), is(1));
+    }
+
+    @Test
+    public void isTerminated_ShutdownWithRunningTask_TerminatesOnceTaskCompleted() {
+        List<Runnable> forwarded = new ArrayList<>();
+        SessionExecutor executor = new SessionExecutor(createCollectingExecutor(forwarded), 1);
+        executor.execute(createNoOp());
+        executor.shutdown();
+
+        assertThat(executor.isTerminated(), is(false));
+        forwarded.get(0).run();
+        assertThat(executor.isTerminated(), is(true));
+    }
+
+    @Test
+    public void shutdownNow_QueuedTasks_ReturnsThem() {
+        SessionExecutor executor = new SessionExecutor(createCollectingExecutor(new ArrayList<Runnable>()), 1);
+        executor.execute(createNoOp());
+        executor.execute(createNoOp());
+        executor.execute(createNoOp());
+
+        List<Runnable> result = executor.shutdownNow();
+
+        assertThat(result.size(), is(2));
+        assertThat(executor.getNumberOfQueuedTasks(), is(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_QuotaZero_ThrowsIllegalArgumentException() {
+        new SessionExecutor(createCollectingExecutor(new ArrayList<Runnable>()), 0);
+    }
+
+    private Executor createCollectingExecutor(final List<Runnable> forwarded) {
+        return new Executor()
+        {
+            @Override
+            public void execute(Runnable command) {
+                forwarded.add(command);
+            }
+        };
+    }
+
+    private Runnable createNoOp() {
+        return new Runnable()
+        {
+            @Override
+            public void run() {
+                //nothing to do
+            }
+        };
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.unit;
+
+import ch.tsphp.common.IErrorLogger;
+import ch.tsphp.common.exceptions.TSPHPException;
+import ch.tsphp.console.ISourceFileListener;
+import ch.tsphp.console.SourceFileFinder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class SourceFileFinderTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Set<String> foundFiles;
+    private ISourceFileListener listener;
+
+    @Before
+    public void setUp() throws IOException {
+        folder.newFolder("a", "b");
+        folder.newFolder("vendor");
+        folder.newFile("root.tsphp");
+        folder.newFile("root.php");
+        folder.newFile("a/a.tsphp");
+        folder.newFile("a/b/b.tsphp");
+        folder.newFile("a/b/b.txt");
+        folder.newFile("vendor/v.tsphp");
+
+        foundFiles = Collections.synchronizedSet(new TreeSet<String>());
+        listener = new ISourceFileListener()
+        {
+            @Override
+            public void sourceFileFound(Path root, Path file) {
+                foundFiles.add(root.relativize(file).toString().replace(File.separatorChar, '/'));
+            }
+        };
+    }
+
+    @Test
+    public void find_NoPatterns_FindsAllTsphpFilesRecursively() {
+        SourceFileFinder finder = createFinder(mock(IErrorLogger.class));
+        finder.find(folder.getRoot().toPath(), listener);
+
+        assertThat(foundFiles.toString(), is("[a/a.tsphp, a/b/b.tsphp, root.tsphp, vendor/v.tsphp]"));
+    }
+
+    @Test
+    public void find_ExcludeDirectory_SkipsDirectory() {
+        SourceFileFinder finder = createFinder(mock(IErrorLogger.class));
+        finder.addExcludePattern("vendor");
+        finder.find(folder.getRoot().toPath(), listener);
+
+        assertThat(foundFiles.toString(), is("[a/a.tsphp, a/b/b.tsphp, root.tsphp]"));
+    }
+
+    @Test
+    public void find_IncludeAndExclude_FindsOnlyIncludedWhichAreNotExcluded() {
+        SourceFileFinder finder = createFinder(mock(IErrorLogger.class));
+        finder.addIncludePattern("a/**");
+        finder.addExcludePattern("**/b.tsphp");
+        finder.find(folder.getRoot().toPath(), listener);
+
+        assertThat(foundFiles.toString(), is("[a/a.tsphp]"));
+    }
+
+    @Test
+    public void find_NotADirectory_LogsError() {
+        IErrorLogger errorLogger = mock(IErrorLogger.class);
+
+        SourceFileFinder finder = createFinder(errorLogger);
+        finder.find(new File(folder.getRoot(), "nonExisting").toPath(), listener);
+
+        verify(errorLogger).log(any(TSPHPException.class));
+        assertThat(foundFiles.size(), is(0));
+    }
+
+    @Test
+    public void find_SymbolicLinkCycle_WalksEachDirectoryOnce() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Files.createSymbolicLink(root.resolve("a/b/loop"), root.resolve("a"));
+
+        SourceFileFinder finder = createFinder(mock(IErrorLogger.class));
+        finder.find(root, listener);
+
+        assertThat(foundFiles.toString(), is("[a/a.tsphp, a/b/b.tsphp, root.tsphp, vendor/v.tsphp]"));
+    }
+
+    @Test
+    public void findByGlob_Standard_UsesDirectoryBeforeFirstGlobCharacterAsRoot() {
+        SourceFileFinder finder = createFinder(mock(IErrorLogger.class));
+        finder.findByGlob(folder.getRoot().getPath() + "/a/**/*.tsphp", listener);
+
+        assertThat(foundFiles.toString(), is("[b/b.tsphp]"));
+    }
+
+    @Test
+    public void isGlob_Glob_ReturnsTrue() {
+        assertThat(SourceFileFinder.isGlob("src/*.tsphp"), is(true));
+    }
+
+    @Test
+    public void isGlob_PlainPath_ReturnsFalse() {
+        assertThat(SourceFileFinder.isGlob("src/a.tsphp"), is(false));
+    }
+
+    protected SourceFileFinder createFinder(IErrorLogger errorLogger) {
+        return new SourceFileFinder(errorLogger);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.unit;
+
+import ch.tsphp.io.SourceFileReader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SourceFileReaderTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void read_SmallFile_ReturnsContent() throws IOException {
+        String path = createFile("int $a;", StandardCharsets.UTF_8);
+
+        SourceFileReader reader = new SourceFileReader();
+        CharBuffer result = reader.read(path, "UTF-8");
+
+        assertThat(toString(result), is("int $a;"));
+    }
+
+    @Test
+    public void read_FileAboveMappingThreshold_ReturnsContent() throws IOException {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < 100; ++i) {
+            stringBuilder.append("int $a").append(i).append(";\n");
+        }
+        String content = stringBuilder.toString();
+        String path = createFile(content, StandardCharsets.UTF_8);
+
+        SourceFileReader reader = new SourceFileReader(16);
+        CharBuffer result = reader.read(path, "UTF-8");
+
+        assertThat(toString(result), is(content));
+    }
+
+    @Test
+    public void read_FileAboveThresholdAndMappingDisabled_ReturnsContentAndFileCanBeDeleted() throws IOException {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < 100; ++i) {
+            stringBuilder.append("int $a").append(i).append(";\n");
+        }
+        String content = stringBuilder.toString();
+        String path = createFile(content, StandardCharsets.UTF_8);
+
+        SourceFileReader reader = new SourceFileReader(16, false);
+        CharBuffer result = reader.read(path, "UTF-8");
+        Files.delete(Paths.get(path));
+
+        assertThat(toString(result), is(content));
+    }
+
+    @Test
+    public void read_MultiByteCharacters_DecodesThemOnce() throws IOException {
+        String content = "string $a = '\u00e4\u00f6\u00fc\u20ac';";
+        String path = createFile(content, StandardCharsets.UTF_8);
+
+        SourceFileReader reader = new SourceFileReader();
+        CharBuffer result = reader.read(path, "UTF-8");
+
+        assertThat(result.remaining(), is(content.length()));
+        assertThat(toString(result), is(content));
+    }
+
+    @Test
+    public void read_OtherEncoding_UsesGivenEncoding() throws IOException {
+        String content = "string $a = '\u00e4\u00f6\u00fc';";
+        String path = createFile(content, StandardCharsets.ISO_8859_1);
+
+        SourceFileReader reader = new SourceFileReader();
+        CharBuffer result = reader.read(path, "ISO-8859-1");
+
+        assertThat(toString(result), is(content));
+    }
+
+    @Test
+    public void read_EncodingIsNull_UsesDefaultEncoding() throws IOException {
+        String path = createFile("int $a;", Charset.defaultCharset());
+
+        SourceFileReader reader = new SourceFileReader();
+        CharBuffer result = reader.read(path, null);
+
+        assertThat(toString(result), is("int $a;"));
+    }
+
+    @Test
+    public void read_SmallFileAfterLargerOne_ReusesBufferWithoutLeftovers() throws IOException {
+        String path1 = createFile("int $abcdefgh;", StandardCharsets.UTF_8);
+        String path2 = createFile("int $a;", StandardCharsets.UTF_8);
+
+        SourceFileReader reader = new SourceFileReader();
+        reader.read(path1, "UTF-8");
+        CharBuffer result = reader.read(path2, "UTF-8");
+
+        assertThat(toString(result), is("int $a;"));
+    }
+
+    @Test(expected = NoSuchFileException.class)
+    public void read_FileDoesNotExist_ThrowsNoSuchFileException() throws IOException {
+        SourceFileReader reader = new SourceFileReader();
+        reader.read(new File(folder.getRoot(), "nonExisting.tsphp").getPath(), "UTF-8");
+    }
+
+    private String createFile(String content, Charset charset) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), content.getBytes(charset));
+        return file.getPath();
+    }
+
+    private String toString(CharBuffer buffer) {
+        return new String(buffer.array(), 0, buffer.remaining());
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.test.unit;
+
+import ch.tsphp.ITranslationListener;
+import ch.tsphp.common.IErrorLogger;
+import ch.tsphp.common.ITranslatorFactory;
+import ch.tsphp.common.exceptions.TSPHPException;
+import ch.tsphp.console.TranslationFileWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class TranslationFileWriterTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void afterTranslationCompleted_TsphpFile_WritesPhpFileNextToIt() throws IOException {
+        String path = new File(folder.getRoot(), "test.tsphp").getAbsolutePath();
+
+        ITranslationListener writer = createWriter(mock(IErrorLogger.class));
+        writer.afterTranslationCompleted(path, mock(ITranslatorFactory.class), "<?php ?>");
+
+        File file = new File(folder.getRoot(), "test.php");
+        assertThat(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8), is("<?php ?>"));
+    }
+
+    @Test
+    public void afterTranslationCompleted_OtherExtension_AppendsPhpExtension() throws IOException {
+        String path = new File(folder.getRoot(), "test.txt").getAbsolutePath();
+
+        ITranslationListener writer = createWriter(mock(IErrorLogger.class));
+        writer.afterTranslationCompleted(path, mock(ITranslatorFactory.class), "<?php ?>");
+
+        assertThat(new File(folder.getRoot(), "test.txt.php").exists(), is(true));
+    }
+
+    @Test
+    public void afterTranslationCompleted_DirectoryDoesNotExist_LogsError() {
+        String path = new File(folder.getRoot(), "nonExisting/test.tsphp").getAbsolutePath();
+        IErrorLogger errorLogger = mock(IErrorLogger.class);
+
+        ITranslationListener writer = createWriter(errorLogger);
+        writer.afterTranslationCompleted(path, mock(ITranslatorFactory.class), "<?php ?>");
+
+        verify(errorLogger).log(any(TSPHPException.class));
+    }
+
+    @Test
+    public void afterTranslationCompleted_OutputDirectoryAndRegisteredSourceFile_MirrorsSourceTree()
+            throws IOException {
+        File outputDirectory = folder.newFolder("out");
+        String path = "src/a/b/test.tsphp";
+
+        TranslationFileWriter writer = new TranslationFileWriter(mock(IErrorLogger.class), outputDirectory.toPath());
+        writer.addSourceFile(path, Paths.get("a", "b", "test.tsphp"));
+        writer.afterTranslationCompleted(path, mock(ITranslatorFactory.class), "<?php ?>");
+
+        assertThat(new File(outputDirectory, "a/b/test.php").exists(), is(true));
+    }
+
+    @Test
+    public void afterTranslationCompleted_OutputDirectoryAndUnknownSourceFile_WritesToOutputDirectory()
+            throws IOException {
+        File outputDirectory = folder.newFolder("out");
+
+        TranslationFileWriter writer = new TranslationFileWriter(mock(IErrorLogger.class), outputDirectory.toPath());
+        writer.afterTranslationCompleted("src/test.tsphp", mock(ITranslatorFactory.class), "<?php ?>");
+
+        assertThat(new File(outputDirectory, "test.php").exists(), is(true));
+    }
+
+    @Test
+    public void afterTranslationCompleted_ContentUnchanged_DoesNotRewriteFile() throws IOException {
+        String path = new File(folder.getRoot(), "test.tsphp").getAbsolutePath();
+        Path file = new File(folder.getRoot(), "test.php").toPath();
+        FileTime lastModified = FileTime.fromMillis(1000000000000L);
+        ITranslatorFactory translatorFactory = mock(ITranslatorFactory.class);
+
+        ITranslationListener writer = createWriter(mock(IErrorLogger.class));
+        writer.afterTranslationCompleted(path, translatorFactory, "<?php ?>");
+        Files.setLastModifiedTime(file, lastModified);
+        writer.afterTranslationCompleted(path, translatorFactory, "<?php ?>");
+
+        assertThat(Files.getLastModifiedTime(file), is(lastModified));
+    }
+
+    @Test
+    public void afterTranslationCompleted_ContentChanged_ReplacesFileWithoutLeavingTemporaryFiles()
+            throws IOException {
+        String path = new File(folder.getRoot(), "test.tsphp").getAbsolutePath();
+        ITranslatorFactory translatorFactory = mock(ITranslatorFactory.class);
+
+        ITranslationListener writer = createWriter(mock(IErrorLogger.class));
+        writer.afterTranslationCompleted(path, translatorFactory, "<?php ?>");
+        writer.afterTranslationCompleted(path, translatorFactory, "<?php $a = 1; ?>");
+
+        File file = new File(folder.getRoot(), "test.php");
+        assertThat(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8), is("<?php $a = 1; ?>"));
+        assertThat(Arrays.asList(folder.getRoot().list()).toString(), is("[test.php]"));
+    }
+
+    @Test
+    public void afterTranslationCompleted_SecondTranslatorFactory_LogsErrorAndKeepsFileOfFirstOne()
+            throws IOException {
+        String path = new File(folder.getRoot(), "test.tsphp").getAbsolutePath();
+        ITranslatorFactory first = mock(ITranslatorFactory.class);
+        IErrorLogger errorLogger = mock(IErrorLogger.class);
+
+        ITranslationListener writer = createWriter(errorLogger);
+        writer.afterTranslationCompleted(path, first, "<?php ?>");
+        writer.afterTranslationCompleted(path, mock(ITranslatorFactory.class), "<?php $a = 1; ?>");
+        writer.afterTranslationCompleted(path, first, "<?php $b = 1; ?>");
+
+        File file = new File(folder.getRoot(), "test.php");
+        assertThat(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8), is("<?php $b = 1; ?>"));
+        verify(errorLogger).log(any(TSPHPException.class));
+    }
+
+    @Test
+    public void writeAll_OneOfThreeUnchanged_WritesTheOtherTwo() throws IOException, InterruptedException {
+        File outputDirectory = folder.newFolder("out");
+        Files.write(new File(outputDirectory, "b.php").toPath(), "b".getBytes(StandardCharsets.UTF_8));
+        Map<String, String> translations = new HashMap<>();
+        translations.put("a.tsphp", "a");
+        translations.put("b.tsphp", "b");
+        translations.put("c.tsphp", "c");
+        ExecutorService executorService = Executors.newFixedThreadPool(3);
+
+        TranslationFileWriter writer = new TranslationFileWriter(mock(IErrorLogger.class), outputDirectory.toPath());
+        int numberOfWrittenFiles = writer.writeAll(translations, executorService);
+        executorService.shutdown();
+
+        assertThat(numberOfWrittenFiles, is(2));
+        assertThat(new File(outputDirectory, "a.php").exists(), is(true));
+        assertThat(new File(outputDirectory, "c.php").exists(), is(true));
+    }
+
+    @Test(timeout = 2000)
+    public void writeAll_ExecutorRejects_WritesOnCallingThread() throws IOException, InterruptedException {
+        File outputDirectory = folder.newFolder("out");
+        Map<String, String> translations = new HashMap<>();
+        translations.put("a.tsphp", "a");
+        translations.put("b.tsphp", "b");
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        executorService.shutdown();
+
+        TranslationFileWriter writer = new TranslationFileWriter(mock(IErrorLogger.class), outputDirectory.toPath());
+        int numberOfWrittenFiles = writer.writeAll(translations, executorService);
+
+        assertThat(numberOfWrittenFiles, is(2));
+        assertThat(new File(outputDirectory, "a.php").exists(), is(true));
+        assertThat(new File(outputDirectory, "b.php").exists(), is(true));
+    }
+
+    protected ITranslationListener createWriter(IErrorLogger errorLogger) {
+        return new TranslationFileWriter(errorLogger);
+    }
+}